@@ -1,5 +1,7 @@
 package uk.co.aosd.flash.config;
 
+import java.util.List;
+
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,6 +9,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import uk.co.aosd.flash.dto.OrderPage;
 
 /**
  * CORS configuration for the API. Registers a {@link CorsConfigurationSource}
@@ -23,6 +26,9 @@ public class CorsConfig {
         config.setAllowedOrigins(properties.allowedOrigins());
         config.setAllowedMethods(properties.allowedMethods());
         config.setAllowedHeaders(properties.allowedHeaders());
+        // Paged order lists return their cursor and count in headers
+        config.setExposedHeaders(List.of(
+            OrderPage.NEXT_CURSOR_HEADER, OrderPage.TOTAL_COUNT_HEADER, OrderPage.TOTAL_COUNT_CAPPED_HEADER));
         config.setAllowCredentials(properties.allowCredentials());
         config.setMaxAge(properties.maxAge());
 
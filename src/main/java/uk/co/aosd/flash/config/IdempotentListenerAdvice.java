@@ -0,0 +1,104 @@
+package uk.co.aosd.flash.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.co.aosd.flash.services.ProcessedMessageStore;
+import uk.co.aosd.flash.services.ProcessedMessageStore.Claim;
+
+/**
+ * Listener container advice that makes the order consumers idempotent. Each message ID is claimed
+ * as in progress in the {@link ProcessedMessageStore} before the listener runs and marked done only
+ * after the listener's work has committed; a delivery of a message that is already done is
+ * acknowledged without invoking the listener. If the listener fails the claim is released so the
+ * redelivery is processed, and a delivery that finds a claim still in progress (a concurrent
+ * duplicate, or a consumer that died before committing) is requeued until that claim completes or
+ * expires. Redeliveries are counted in {@code flash.messages.redelivered}.
+ * Only single-message listeners are advised; batch listeners are passed through unchanged.
+ */
+public class IdempotentListenerAdvice implements MethodInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotentListenerAdvice.class);
+
+    private final ProcessedMessageStore processedMessageStore;
+    private final MeterRegistry meterRegistry;
+
+    public IdempotentListenerAdvice(final ProcessedMessageStore processedMessageStore, final MeterRegistry meterRegistry) {
+        this.processedMessageStore = processedMessageStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+        final Message message = findMessage(invocation.getArguments());
+        if (message == null || message.getMessageProperties().getMessageId() == null) {
+            return invocation.proceed();
+        }
+
+        final MessageProperties properties = message.getMessageProperties();
+        final String queue = properties.getConsumerQueue() != null ? properties.getConsumerQueue() : "unknown";
+        final String messageId = properties.getMessageId();
+
+        final Claim claim = processedMessageStore.tryClaim(queue, messageId);
+        if (claim == Claim.DONE) {
+            meterRegistry.counter("flash.messages.redelivered", "queue", queue, "outcome", "skipped").increment();
+            log.info("Acknowledging duplicate message {} from {} without processing", messageId, queue);
+            return null;
+        }
+        if (claim == Claim.IN_PROGRESS) {
+            meterRegistry.counter("flash.messages.redelivered", "queue", queue, "outcome", "requeued").increment();
+            log.info("Message {} from {} is already being processed; requeueing", messageId, queue);
+            throw new ImmediateRequeueAmqpException("Message " + messageId + " is already being processed");
+        }
+        if (Boolean.TRUE.equals(properties.getRedelivered())) {
+            meterRegistry.counter("flash.messages.redelivered", "queue", queue, "outcome", "reprocessed").increment();
+        }
+
+        final Object result;
+        try {
+            result = invocation.proceed();
+        } catch (final Throwable t) {
+            processedMessageStore.release(queue, messageId);
+            throw t;
+        }
+        markDoneAfterCommit(queue, messageId);
+        return result;
+    }
+
+    /**
+     * The consumers' service calls commit their own transactions before the listener returns; if the
+     * listener itself runs in a transaction, the message is only marked done once that commits.
+     */
+    private void markDoneAfterCommit(final String queue, final String messageId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            processedMessageStore.markDone(queue, messageId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == STATUS_COMMITTED) {
+                    processedMessageStore.markDone(queue, messageId);
+                } else {
+                    processedMessageStore.release(queue, messageId);
+                }
+            }
+        });
+    }
+
+    private static Message findMessage(final Object[] arguments) {
+        for (final Object argument : arguments) {
+            if (argument instanceof Message message) {
+                return message;
+            }
+        }
+        return null;
+    }
+}
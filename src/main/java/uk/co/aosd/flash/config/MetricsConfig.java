@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -28,10 +29,11 @@ public class MetricsConfig {
 
     /**
      * Registers queue depth gauges for order-related RabbitMQ queues when
-     * RabbitAdmin is available.
+     * RabbitAdmin is available and RabbitMQ is the order message transport.
      */
     @Bean
     @ConditionalOnBean(RabbitAdmin.class)
+    @ConditionalOnProperty(name = "app.messaging.transport", havingValue = "rabbit", matchIfMissing = true)
     public RabbitQueueDepthMetrics rabbitQueueDepthMetrics(
             final MeterRegistry registry,
             final RabbitAdmin rabbitAdmin) {
@@ -2,6 +2,7 @@ package uk.co.aosd.flash.config;
 
 import java.util.HashMap;
 
+import org.quartz.Job;
 import org.quartz.JobDetail;
 import org.quartz.SimpleTrigger;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,17 +11,76 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.quartz.JobDetailFactoryBean;
 import org.springframework.scheduling.quartz.SimpleTriggerFactoryBean;
 import uk.co.aosd.flash.services.ActivateDraftSalesJob;
+import uk.co.aosd.flash.services.ActivateSaleJob;
 import uk.co.aosd.flash.services.CompleteActiveSalesJob;
+import uk.co.aosd.flash.services.CompleteSaleJob;
+import uk.co.aosd.flash.services.DrawDueLotteriesJob;
+import uk.co.aosd.flash.services.DrawLotteryJob;
+import uk.co.aosd.flash.services.FoldOrderRollupsJob;
+import uk.co.aosd.flash.services.MaintainOrderPartitionsJob;
+import uk.co.aosd.flash.services.SaleScheduler;
+import uk.co.aosd.flash.services.WarmUpSaleJob;
 
 /**
  * Configuration for Quartz scheduled jobs.
+ * Sales are opened and closed by per-sale triggers created by {@link SaleScheduler}; the periodic
+ * activate/complete jobs are a low-frequency safety sweep for sales whose triggers were missed.
  */
 @Configuration
 public class QuartzConfig {
 
-    @Value("${app.scheduler.interval-seconds:30}")
+    @Value("${app.scheduler.interval-seconds:300}")
     private int intervalSeconds;
 
+    @Value("${app.orders.partitions.interval-hours:24}")
+    private int partitionIntervalHours;
+
+    @Value("${app.orders.rollups.interval-seconds:10}")
+    private int rollupIntervalSeconds;
+
+    /**
+     * Job detail for warming up a single sale; fired by per-sale triggers.
+     */
+    @Bean
+    public JobDetailFactoryBean warmUpSaleJobDetail() {
+        return saleJobDetail(WarmUpSaleJob.class, SaleScheduler.WARM_UP_JOB, "Warms caches for a sale shortly before it starts");
+    }
+
+    /**
+     * Job detail for activating a single sale; fired by per-sale triggers.
+     */
+    @Bean
+    public JobDetailFactoryBean activateSaleJobDetail() {
+        return saleJobDetail(ActivateSaleJob.class, SaleScheduler.ACTIVATE_JOB, "Activates a DRAFT sale at its start time");
+    }
+
+    /**
+     * Job detail for completing a single sale; fired by per-sale triggers.
+     */
+    @Bean
+    public JobDetailFactoryBean completeSaleJobDetail() {
+        return saleJobDetail(CompleteSaleJob.class, SaleScheduler.COMPLETE_JOB, "Completes an ACTIVE sale at its end time");
+    }
+
+    /**
+     * Job detail for drawing a lottery sale's winners; fired when its entry window closes.
+     */
+    @Bean
+    public JobDetailFactoryBean drawLotteryJobDetail() {
+        return saleJobDetail(DrawLotteryJob.class, SaleScheduler.DRAW_LOTTERY_JOB, "Draws the winners of a lottery sale when entries close");
+    }
+
+    private JobDetailFactoryBean saleJobDetail(final Class<? extends Job> jobClass, final String name, final String description) {
+        final JobDetailFactoryBean factoryBean = new JobDetailFactoryBean();
+        factoryBean.setJobClass(jobClass);
+        factoryBean.setName(name);
+        factoryBean.setDescription(description);
+        factoryBean.setDurability(true);
+        factoryBean.setJobDataAsMap(new HashMap<>());
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
     /**
      * Job detail for activating draft sales.
      */
@@ -44,7 +104,7 @@ public class QuartzConfig {
         final SimpleTriggerFactoryBean factoryBean = new SimpleTriggerFactoryBean();
         factoryBean.setJobDetail(activateDraftSalesJobDetail);
         factoryBean.setName("activateDraftSalesTrigger");
-        factoryBean.setDescription("Trigger for activating draft sales");
+        factoryBean.setDescription("Safety sweep for activating draft sales");
         factoryBean.setRepeatInterval(intervalSeconds * 1000L); // Convert seconds to milliseconds
         factoryBean.setRepeatCount(SimpleTrigger.REPEAT_INDEFINITELY);
         factoryBean.setMisfireInstruction(SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT);
@@ -75,11 +135,104 @@ public class QuartzConfig {
         final SimpleTriggerFactoryBean factoryBean = new SimpleTriggerFactoryBean();
         factoryBean.setJobDetail(completeActiveSalesJobDetail);
         factoryBean.setName("completeActiveSalesTrigger");
-        factoryBean.setDescription("Trigger for completing active sales");
+        factoryBean.setDescription("Safety sweep for completing active sales");
+        factoryBean.setRepeatInterval(intervalSeconds * 1000L); // Convert seconds to milliseconds
+        factoryBean.setRepeatCount(SimpleTrigger.REPEAT_INDEFINITELY);
+        factoryBean.setMisfireInstruction(SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT);
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
+    /**
+     * Job detail for drawing lottery sales whose draw was missed.
+     */
+    @Bean
+    public JobDetailFactoryBean drawDueLotteriesJobDetail() {
+        final JobDetailFactoryBean factoryBean = new JobDetailFactoryBean();
+        factoryBean.setJobClass(DrawDueLotteriesJob.class);
+        factoryBean.setName("drawDueLotteriesJob");
+        factoryBean.setDescription("Draws ACTIVE lottery sales whose entry window has closed but are still undrawn");
+        factoryBean.setDurability(true);
+        factoryBean.setJobDataAsMap(new HashMap<>());
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
+    /**
+     * Trigger for drawing due lotteries job.
+     */
+    @Bean
+    public SimpleTriggerFactoryBean drawDueLotteriesTrigger(final JobDetail drawDueLotteriesJobDetail) {
+        final SimpleTriggerFactoryBean factoryBean = new SimpleTriggerFactoryBean();
+        factoryBean.setJobDetail(drawDueLotteriesJobDetail);
+        factoryBean.setName("drawDueLotteriesTrigger");
+        factoryBean.setDescription("Safety sweep for drawing lottery sales");
         factoryBean.setRepeatInterval(intervalSeconds * 1000L); // Convert seconds to milliseconds
         factoryBean.setRepeatCount(SimpleTrigger.REPEAT_INDEFINITELY);
         factoryBean.setMisfireInstruction(SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT);
         factoryBean.afterPropertiesSet();
         return factoryBean;
     }
+
+    /**
+     * Job detail for maintaining the monthly order partitions.
+     */
+    @Bean
+    public JobDetailFactoryBean maintainOrderPartitionsJobDetail() {
+        final JobDetailFactoryBean factoryBean = new JobDetailFactoryBean();
+        factoryBean.setJobClass(MaintainOrderPartitionsJob.class);
+        factoryBean.setName("maintainOrderPartitionsJob");
+        factoryBean.setDescription("Creates upcoming order partitions and archives expired ones");
+        factoryBean.setDurability(true);
+        factoryBean.setJobDataAsMap(new HashMap<>());
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
+    /**
+     * Trigger for the order partition maintenance job.
+     */
+    @Bean
+    public SimpleTriggerFactoryBean maintainOrderPartitionsTrigger(final JobDetail maintainOrderPartitionsJobDetail) {
+        final SimpleTriggerFactoryBean factoryBean = new SimpleTriggerFactoryBean();
+        factoryBean.setJobDetail(maintainOrderPartitionsJobDetail);
+        factoryBean.setName("maintainOrderPartitionsTrigger");
+        factoryBean.setDescription("Creates and archives order partitions");
+        factoryBean.setRepeatInterval(partitionIntervalHours * 3_600_000L); // Convert hours to milliseconds
+        factoryBean.setRepeatCount(SimpleTrigger.REPEAT_INDEFINITELY);
+        factoryBean.setMisfireInstruction(SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT);
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
+    /**
+     * Job detail for folding the order rollup deltas into their buckets.
+     */
+    @Bean
+    public JobDetailFactoryBean foldOrderRollupsJobDetail() {
+        final JobDetailFactoryBean factoryBean = new JobDetailFactoryBean();
+        factoryBean.setJobClass(FoldOrderRollupsJob.class);
+        factoryBean.setName("foldOrderRollupsJob");
+        factoryBean.setDescription("Folds order rollup deltas into their hourly buckets");
+        factoryBean.setDurability(true);
+        factoryBean.setJobDataAsMap(new HashMap<>());
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
+
+    /**
+     * Trigger for the order rollup folding job.
+     */
+    @Bean
+    public SimpleTriggerFactoryBean foldOrderRollupsTrigger(final JobDetail foldOrderRollupsJobDetail) {
+        final SimpleTriggerFactoryBean factoryBean = new SimpleTriggerFactoryBean();
+        factoryBean.setJobDetail(foldOrderRollupsJobDetail);
+        factoryBean.setName("foldOrderRollupsTrigger");
+        factoryBean.setDescription("Folds order rollup deltas");
+        factoryBean.setRepeatInterval(rollupIntervalSeconds * 1000L); // Convert seconds to milliseconds
+        factoryBean.setRepeatCount(SimpleTrigger.REPEAT_INDEFINITELY);
+        factoryBean.setMisfireInstruction(SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT);
+        factoryBean.afterPropertiesSet();
+        return factoryBean;
+    }
 }
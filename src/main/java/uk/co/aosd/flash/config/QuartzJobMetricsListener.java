@@ -0,0 +1,71 @@
+package uk.co.aosd.flash.config;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how late each Quartz job starts compared with its trigger's scheduled fire time, and how
+ * long it runs. For the per-sale triggers the lag is how late the sale opened or closed.
+ */
+@Component
+public class QuartzJobMetricsListener implements JobListener {
+
+    private static final Logger log = LoggerFactory.getLogger(QuartzJobMetricsListener.class);
+
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+
+    public QuartzJobMetricsListener(final Scheduler scheduler, final MeterRegistry meterRegistry) {
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Register this listener for all jobs.
+     *
+     * @throws SchedulerException if the listener cannot be registered
+     */
+    @PostConstruct
+    public void register() throws SchedulerException {
+        scheduler.getListenerManager().addJobListener(this);
+        log.debug("Registered Quartz job metrics listener");
+    }
+
+    @Override
+    public String getName() {
+        return "quartzJobMetrics";
+    }
+
+    @Override
+    public void jobToBeExecuted(final JobExecutionContext context) {
+        if (context.getScheduledFireTime() == null || context.getFireTime() == null) {
+            return;
+        }
+        final long lagMs = Math.max(0, context.getFireTime().getTime() - context.getScheduledFireTime().getTime());
+        meterRegistry.timer("flash.scheduler.job.lag", "job", context.getJobDetail().getKey().getName())
+            .record(Duration.ofMillis(lagMs));
+    }
+
+    @Override
+    public void jobExecutionVetoed(final JobExecutionContext context) {
+        // Nothing to record
+    }
+
+    @Override
+    public void jobWasExecuted(final JobExecutionContext context, final JobExecutionException jobException) {
+        meterRegistry.timer("flash.scheduler.job.duration",
+            "job", context.getJobDetail().getKey().getName(),
+            "outcome", jobException == null ? "success" : "failure")
+            .record(Duration.ofMillis(Math.max(0, context.getJobRunTime())));
+    }
+}
@@ -1,15 +1,27 @@
 package uk.co.aosd.flash.config;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import uk.co.aosd.flash.services.ProcessedMessageStore;
 
 /**
  * RabbitMQ configuration for order processing queues.
@@ -33,6 +45,10 @@ public class RabbitMQConfig {
     public static final String ROUTING_KEY_DISPATCH = "order.dispatch";
     public static final String ROUTING_KEY_REFUND = "order.refund";
 
+    // Listener container factories
+    public static final String STOCK_RELEASE_LISTENER_FACTORY = "stockReleaseListenerContainerFactory";
+    public static final String DISPATCH_BATCH_LISTENER_FACTORY = "dispatchBatchListenerContainerFactory";
+
     /**
      * Direct exchange for order-related messages.
      */
@@ -120,4 +136,107 @@ public class RabbitMQConfig {
     public MessageConverter jsonMessageConverter() {
         return new JacksonJsonMessageConverter();
     }
+
+    /**
+     * Fast-lane listener container factory for messages that release stock (e.g. failed payments).
+     * Runs more consumers with a small prefetch than the default factory so freed stock is returned
+     * to the sale promptly, even while the payment backlog on order.processing is large.
+     *
+     * @param connectionFactory the RabbitMQ connection factory
+     * @param containerCustomizer customizer applied to every listener container
+     * @param concurrentConsumers minimum number of consumers
+     * @param maxConcurrentConsumers maximum number of consumers
+     * @param prefetchCount messages prefetched per consumer
+     * @param autoStartup whether listeners start automatically
+     * @return the listener container factory
+     */
+    @Bean(name = STOCK_RELEASE_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory stockReleaseListenerContainerFactory(
+        final ConnectionFactory connectionFactory,
+        final ContainerCustomizer<SimpleMessageListenerContainer> containerCustomizer,
+        @Value("${app.messaging.stock-release.concurrency:4}") final int concurrentConsumers,
+        @Value("${app.messaging.stock-release.max-concurrency:8}") final int maxConcurrentConsumers,
+        @Value("${app.messaging.stock-release.prefetch:1}") final int prefetchCount,
+        @Value("${spring.rabbitmq.listener.simple.auto-startup:true}") final boolean autoStartup) {
+        final SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setConcurrentConsumers(concurrentConsumers);
+        factory.setMaxConcurrentConsumers(Math.max(concurrentConsumers, maxConcurrentConsumers));
+        factory.setPrefetchCount(prefetchCount);
+        factory.setAutoStartup(autoStartup);
+        factory.setContainerCustomizer(containerCustomizer);
+        return factory;
+    }
+
+    /**
+     * Batch listener container factory for the dispatch stage. Messages are accumulated until the batch
+     * is full or the receive window elapses, so stock decrements can be aggregated per product.
+     * The batch listener receives payloads rather than {@code Message}s, so the message-ID dedupe advice
+     * is not applied here: dispatch is idempotent on its own, because the batch only moves orders that
+     * are still PAID and redelivered orders are skipped.
+     *
+     * @param connectionFactory the RabbitMQ connection factory
+     * @param meterRegistry the meter registry
+     * @param batchSize maximum messages per batch
+     * @param windowMs how long to wait for more messages before delivering a partial batch
+     * @param autoStartup whether listeners start automatically
+     * @return the listener container factory
+     */
+    @Bean(name = DISPATCH_BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory dispatchBatchListenerContainerFactory(
+        final ConnectionFactory connectionFactory,
+        final MeterRegistry meterRegistry,
+        @Value("${app.messaging.dispatch-batch.size:50}") final int batchSize,
+        @Value("${app.messaging.dispatch-batch.window-ms:200}") final long windowMs,
+        @Value("${spring.rabbitmq.listener.simple.auto-startup:true}") final boolean autoStartup) {
+        final SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(windowMs);
+        factory.setAutoStartup(autoStartup);
+        final MessagePostProcessor recorder = handoffLatencyRecorder(meterRegistry);
+        factory.setContainerCustomizer(container -> container.addAfterReceivePostProcessors(recorder));
+        return factory;
+    }
+
+    /**
+     * Customizer for the single-message listener containers (applied by Spring Boot to the default
+     * factory as well). Records the time each message spent between publish and receipt, for comparison
+     * with the broker-free transports, and skips redelivered duplicates via {@link IdempotentListenerAdvice}.
+     *
+     * @param meterRegistry the meter registry
+     * @param processedMessageStore the dedupe store for message IDs
+     * @return the container customizer
+     */
+    @Bean
+    public ContainerCustomizer<SimpleMessageListenerContainer> orderListenerContainerCustomizer(
+        final MeterRegistry meterRegistry,
+        final ProcessedMessageStore processedMessageStore) {
+        final MessagePostProcessor recorder = handoffLatencyRecorder(meterRegistry);
+        final IdempotentListenerAdvice idempotentAdvice = new IdempotentListenerAdvice(processedMessageStore, meterRegistry);
+        return container -> {
+            container.addAfterReceivePostProcessors(recorder);
+            container.setAdviceChain(idempotentAdvice);
+        };
+    }
+
+    /**
+     * Record the time each received message spent between publish and receipt.
+     */
+    private static MessagePostProcessor handoffLatencyRecorder(final MeterRegistry meterRegistry) {
+        return message -> {
+            final Date enqueuedAt = message.getMessageProperties().getTimestamp();
+            if (enqueuedAt != null) {
+                final String queue = message.getMessageProperties().getConsumerQueue();
+                meterRegistry.timer("flash.messaging.handoff.latency", "transport", "rabbit", "queue", queue != null ? queue : "unknown")
+                    .record(Duration.between(enqueuedAt.toInstant(), Instant.now()));
+            }
+            return message;
+        };
+    }
 }
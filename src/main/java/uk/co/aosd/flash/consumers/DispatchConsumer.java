@@ -1,5 +1,7 @@
 package uk.co.aosd.flash.consumers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import lombok.RequiredArgsConstructor;
@@ -8,10 +10,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 import uk.co.aosd.flash.config.RabbitMQConfig;
+import uk.co.aosd.flash.exc.InvalidOrderStatusException;
 import uk.co.aosd.flash.services.OrderService;
 
 /**
- * Consumer for dispatching orders.
+ * Consumer for dispatching orders. The RabbitMQ listener receives dispatch messages in batches so
+ * stock is decremented once per product per batch.
  */
 @Component
 @RequiredArgsConstructor
@@ -22,11 +26,56 @@ public class DispatchConsumer {
     private final OrderService orderService;
 
     /**
-     * Listen to dispatch queue and process dispatch.
+     * Listen to dispatch queue and process a batch of dispatches in one transaction.
+     * If the batch fails, each order is dispatched on its own so one bad order cannot hold up the rest;
+     * the first unexpected failure is rethrown so the batch is redelivered (orders already dispatched
+     * are skipped on redelivery).
+     *
+     * @param orderIdStrs the order IDs as strings
+     */
+    @RabbitListener(queues = RabbitMQConfig.ORDER_DISPATCH_QUEUE, containerFactory = RabbitMQConfig.DISPATCH_BATCH_LISTENER_FACTORY)
+    public void processDispatchBatch(final List<String> orderIdStrs) {
+        final List<UUID> orderIds = new ArrayList<>(orderIdStrs.size());
+        for (final String orderIdStr : orderIdStrs) {
+            try {
+                orderIds.add(UUID.fromString(orderIdStr));
+            } catch (final IllegalArgumentException e) {
+                log.error("Discarding dispatch message with invalid order ID: {}", orderIdStr);
+            }
+        }
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        log.info("Received dispatch batch of {} orders", orderIds.size());
+
+        try {
+            orderService.processDispatchBatch(orderIds);
+        } catch (final Exception e) {
+            log.warn("Dispatch batch of {} orders failed; falling back to per-order dispatch", orderIds.size(), e);
+            RuntimeException firstFailure = null;
+            for (final UUID orderId : orderIds) {
+                try {
+                    orderService.processDispatch(orderId);
+                } catch (final InvalidOrderStatusException ex) {
+                    log.warn("Skipping dispatch for order {}: {}", orderId, ex.getMessage());
+                } catch (final RuntimeException ex) {
+                    log.error("Error processing dispatch for order ID: {}", orderId, ex);
+                    if (firstFailure == null) {
+                        firstFailure = ex;
+                    }
+                }
+            }
+            if (firstFailure != null) {
+                throw firstFailure; // Re-throw to trigger retry mechanism
+            }
+        }
+    }
+
+    /**
+     * Process a single dispatch (used by the broker-free transports).
      *
      * @param orderIdStr the order ID as string
      */
-    @RabbitListener(queues = RabbitMQConfig.ORDER_DISPATCH_QUEUE)
     public void processDispatch(final String orderIdStr) {
         try {
             final UUID orderId = UUID.fromString(orderIdStr);
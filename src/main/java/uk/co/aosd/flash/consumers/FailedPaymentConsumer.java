@@ -1,17 +1,25 @@
 package uk.co.aosd.flash.consumers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 import java.util.UUID;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import uk.co.aosd.flash.config.RabbitMQConfig;
 import uk.co.aosd.flash.services.OrderService;
 
 /**
  * Consumer for handling failed payments.
+ * Runs on the stock-release fast lane so freed stock is returned ahead of the payment backlog.
  */
 @Component
 @RequiredArgsConstructor
@@ -20,18 +28,26 @@ public class FailedPaymentConsumer {
     private static final Logger log = LoggerFactory.getLogger(FailedPaymentConsumer.class);
 
     private final OrderService orderService;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Listen to failed payment queue and process failed payment.
      *
      * @param orderIdStr the order ID as string
+     * @param enqueuedAt the time the message was published, or null if not stamped
      */
-    @RabbitListener(queues = RabbitMQConfig.ORDER_PAYMENT_FAILED_QUEUE)
-    public void processFailedPayment(final String orderIdStr) {
+    @RabbitListener(queues = RabbitMQConfig.ORDER_PAYMENT_FAILED_QUEUE,
+        containerFactory = RabbitMQConfig.STOCK_RELEASE_LISTENER_FACTORY)
+    public void processFailedPayment(final String orderIdStr,
+        @Header(name = AmqpHeaders.TIMESTAMP, required = false) final Date enqueuedAt) {
         try {
             final UUID orderId = UUID.fromString(orderIdStr);
             log.info("Received failed payment message for order {}", orderId);
             orderService.processFailedPayment(orderId);
+            if (enqueuedAt != null) {
+                meterRegistry.timer("flash.stock.release.latency", "reason", "payment_failed")
+                    .record(Duration.between(enqueuedAt.toInstant(), Instant.now()));
+            }
         } catch (final Exception e) {
             log.error("Error processing failed payment for order ID: {}", orderIdStr, e);
             throw e; // Re-throw to trigger retry mechanism
@@ -103,7 +103,7 @@ public class AdminAnalyticsRestApi {
     @GetMapping("/revenue")
     @Operation(
         summary = "Get revenue reporting metrics",
-        description = "Returns revenue reporting and financial metrics including total revenue, average order value, and refund rates."
+        description = "Returns revenue reporting and financial metrics including total revenue, average order value, and refund rates. Orders are counted in the UTC hour they were placed, so the date range covers every hour it overlaps."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -185,7 +185,7 @@ public class AdminAnalyticsRestApi {
     @GetMapping("/orders")
     @Operation(
         summary = "Get order statistics",
-        description = "Returns order statistics including order counts by status, average order quantity, and success rates."
+        description = "Returns order statistics including order counts by status, average order quantity, and success rates. Orders are counted in the UTC hour they were placed, so the date range covers every hour it overlaps."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -3,6 +3,7 @@ package uk.co.aosd.flash.controllers;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -10,7 +11,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,8 +24,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -31,9 +37,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import uk.co.aosd.flash.domain.OrderStatus;
 import uk.co.aosd.flash.dto.ErrorResponseDto;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.UpdateOrderStatusDto;
 import uk.co.aosd.flash.exc.InvalidOrderStatusException;
 import uk.co.aosd.flash.exc.OrderNotFoundException;
+import uk.co.aosd.flash.services.OrderExportService;
 import uk.co.aosd.flash.services.OrderService;
 
 /**
@@ -52,6 +61,7 @@ public class AdminOrderRestApi {
     private static final Logger log = LoggerFactory.getLogger(AdminOrderRestApi.class);
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     /**
      * List all orders with optional filters.
@@ -60,24 +70,35 @@ public class AdminOrderRestApi {
      * @param startDate optional start date filter (ISO-8601 format)
      * @param endDate optional end date filter (ISO-8601 format)
      * @param userId optional user ID filter
-     * @return ResponseEntity with list of orders
+     * @param fields optional comma-separated fields to return
+     * @param include optional expansions (history)
+     * @param cursor optional cursor from the previous page
+     * @param limit optional page size
+     * @return ResponseEntity with one page of orders, and the next cursor and total count in headers
      */
     @PreAuthorize("hasRole('ADMIN_USER')")
     @GetMapping("/orders")
     @Operation(
         summary = "List all orders",
-        description = "Lists all orders with optional status, date range, and user filters."
+        description = "Lists all orders with optional status, date range, and user filters. "
+            + "Use fields to return only some order fields, and include=history to add the status history to them. "
+            + "Orders are returned a page at a time, newest first: pass the X-Next-Cursor header of a page as cursor to get the next one."
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200",
-            description = "List of orders.",
+            description = "One page of orders.",
+            headers = {
+                @Header(name = OrderPage.NEXT_CURSOR_HEADER, description = "Cursor for the next page; absent on the last page."),
+                @Header(name = OrderPage.TOTAL_COUNT_HEADER, description = "Number of matching orders, counted up to a cap."),
+                @Header(name = OrderPage.TOTAL_COUNT_CAPPED_HEADER, description = "true when the count stopped at the cap.")
+            },
             content = @Content(
                 mediaType = "application/json",
                 array = @ArraySchema(schema = @Schema(implementation = OrderDetailDto.class))
             )
         ),
-        @ApiResponse(responseCode = "400", description = "Invalid filters or date range.", content = @Content)
+        @ApiResponse(responseCode = "400", description = "Invalid filters, date range, fields, include, cursor or limit.", content = @Content)
     })
     public ResponseEntity<List<OrderDetailDto>> getAllOrders(
         @Parameter(description = "Optional status filter.", schema = @Schema(implementation = OrderStatus.class), example = "PAID")
@@ -87,10 +108,18 @@ public class AdminOrderRestApi {
         @Parameter(description = "Optional filter end date (ISO-8601).", example = "2026-12-31T23:59:59Z")
         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime endDate,
         @Parameter(description = "Optional user ID filter.", example = "9b2b8c2c-2f53-4a57-a07e-0a2b2b1de3a9")
-        @RequestParam(required = false) final String userId) {
+        @RequestParam(required = false) final String userId,
+        @Parameter(description = "Optional comma-separated order fields to return (default: all).", example = "orderId,status,totalAmount")
+        @RequestParam(required = false) final String fields,
+        @Parameter(description = "Optional expansions: history adds the status history (included by default when fields is not given).", example = "history")
+        @RequestParam(required = false) final String include,
+        @Parameter(description = "Optional cursor from the X-Next-Cursor header of the previous page.")
+        @RequestParam(required = false) final String cursor,
+        @Parameter(description = "Optional page size (default 20, at most 100).", example = "50")
+        @RequestParam(required = false) final Integer limit) {
 
-        log.info("Getting all orders with filters: status={}, startDate={}, endDate={}, userId={}",
-            status, startDate, endDate, userId);
+        log.info("Getting all orders with filters: status={}, startDate={}, endDate={}, userId={}, fields={}, include={}, cursor={}, limit={}",
+            status, startDate, endDate, userId, fields, include, cursor, limit);
 
         OrderStatus orderStatus = null;
         if (status != null && !status.isEmpty()) {
@@ -113,15 +142,106 @@ public class AdminOrderRestApi {
         }
 
         try {
-            final List<OrderDetailDto> orders = orderService.getAllOrders(orderStatus, startDate, endDate, userUuid);
-            log.info("Returned {} order(s)", orders.size());
-            return ResponseEntity.ok(orders);
+            final OrderView view = OrderView.of(fields, include);
+            final OrderPage page = orderService.getAllOrders(orderStatus, startDate, endDate, userUuid, view, cursor, limit);
+            log.info("Returned {} order(s)", page.orders().size());
+            final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(OrderPage.TOTAL_COUNT_HEADER, String.valueOf(page.totalCount()));
+            if (page.totalCountCapped()) {
+                response.header(OrderPage.TOTAL_COUNT_CAPPED_HEADER, "true");
+            }
+            if (page.nextCursor() != null) {
+                response.header(OrderPage.NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.orders());
         } catch (final IllegalArgumentException e) {
             log.warn("Invalid filter parameters: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Export all orders matching optional filters, streamed as they are read.
+     *
+     * @param status optional status filter
+     * @param startDate optional start date filter (ISO-8601 format)
+     * @param endDate optional end date filter (ISO-8601 format)
+     * @param userId optional user ID filter
+     * @param format optional format, ndjson (default) or csv
+     * @param gzip whether to gzip the response
+     * @return ResponseEntity streaming the orders, or 400 if the filters or format are invalid
+     */
+    @PreAuthorize("hasRole('ADMIN_USER')")
+    @GetMapping("/orders/export")
+    @Operation(
+        summary = "Export orders",
+        description = "Streams every order matching optional status, date range, and user filters, newest first, "
+            + "as NDJSON (one order per line) or CSV. Orders are written as they are read, so exports of any size "
+            + "run in constant memory. Set gzip=true to compress the response."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "The matching orders.",
+            content = {
+                @Content(mediaType = "application/x-ndjson"),
+                @Content(mediaType = "text/csv")
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid filters, date range or format.", content = @Content)
+    })
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+        @Parameter(description = "Optional status filter.", schema = @Schema(implementation = OrderStatus.class), example = "PAID")
+        @RequestParam(required = false) final String status,
+        @Parameter(description = "Optional filter start date (ISO-8601).", example = "2026-01-01T00:00:00Z")
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime startDate,
+        @Parameter(description = "Optional filter end date (ISO-8601).", example = "2026-12-31T23:59:59Z")
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime endDate,
+        @Parameter(description = "Optional user ID filter.", example = "9b2b8c2c-2f53-4a57-a07e-0a2b2b1de3a9")
+        @RequestParam(required = false) final String userId,
+        @Parameter(description = "Optional format: ndjson (default) or csv.", example = "csv")
+        @RequestParam(required = false) final String format,
+        @Parameter(description = "Whether to gzip the response (default false).", example = "true")
+        @RequestParam(defaultValue = "false") final boolean gzip) {
+
+        log.info("Exporting orders with filters: status={}, startDate={}, endDate={}, userId={}, format={}, gzip={}",
+            status, startDate, endDate, userId, format, gzip);
+
+        final OrderStatus orderStatus;
+        final UUID userUuid;
+        final OrderExportService.Format exportFormat;
+        try {
+            orderStatus = status == null || status.isEmpty() ? null : OrderStatus.valueOf(status.toUpperCase());
+            userUuid = userId == null || userId.isEmpty() ? null : UUID.fromString(userId);
+            exportFormat = OrderExportService.Format.of(format);
+        } catch (final IllegalArgumentException e) {
+            log.warn("Invalid export parameters: status={}, userId={}, format={}", status, userId, format);
+            return ResponseEntity.badRequest().build();
+        }
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            log.warn("Invalid export date range: {} to {}", startDate, endDate);
+            return ResponseEntity.badRequest().build();
+        }
+
+        final StreamingResponseBody body = out -> {
+            if (gzip) {
+                final GZIPOutputStream compressed = new GZIPOutputStream(out);
+                orderExportService.export(orderStatus, startDate, endDate, userUuid, exportFormat, compressed);
+                compressed.finish();
+            } else {
+                orderExportService.export(orderStatus, startDate, endDate, userUuid, exportFormat, out);
+            }
+        };
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.mediaType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("orders." + exportFormat.extension()).build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     /**
      * Get order details by ID (admin view).
      *
@@ -13,6 +13,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -23,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -36,18 +38,24 @@ import uk.co.aosd.flash.dto.ClientDraftSaleDto;
 import uk.co.aosd.flash.dto.ClientProductDto;
 import uk.co.aosd.flash.dto.CreateOrderDto;
 import uk.co.aosd.flash.dto.ErrorResponseDto;
+import uk.co.aosd.flash.dto.LotteryEntryDto;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
 import uk.co.aosd.flash.dto.OrderResponseDto;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProductDto;
 import uk.co.aosd.flash.dto.UpdateProfileDto;
 import uk.co.aosd.flash.dto.UserDto;
+import uk.co.aosd.flash.dto.WaitlistEntryDto;
 import uk.co.aosd.flash.security.SecurityUtils;
 import uk.co.aosd.flash.services.ActiveSalesService;
 import uk.co.aosd.flash.services.DraftSalesService;
+import uk.co.aosd.flash.services.LotteryService;
 import uk.co.aosd.flash.services.OrderMessageSender;
 import uk.co.aosd.flash.services.OrderService;
 import uk.co.aosd.flash.services.ProductsService;
 import uk.co.aosd.flash.services.UserService;
+import uk.co.aosd.flash.services.WaitlistService;
 
 /**
  * Client API.
@@ -73,6 +81,8 @@ public class ClientRestApi {
     private final OrderService orderService;
     private final OrderMessageSender orderMessageSender;
     private final UserService userService;
+    private final WaitlistService waitlistService;
+    private final LotteryService lotteryService;
 
     /**
      * Get current user profile (authenticated client).
@@ -376,7 +386,6 @@ public class ClientRestApi {
         try {
             final OrderResponseDto response = orderService.createOrder(createOrderDto, userId);
             log.info("Order created successfully: {}", response.orderId());
-            orderMessageSender.sendForProcessing(response.orderId());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (final Exception e) {
             log.error("Failed to create order", e);
@@ -441,17 +450,32 @@ public class ClientRestApi {
      *            optional start date filter (ISO-8601 format)
      * @param endDate
      *            optional end date filter (ISO-8601 format)
-     * @return List of OrderDetailDto matching the criteria
+     * @param fields
+     *            optional comma-separated fields to return
+     * @param include
+     *            optional expansions (history)
+     * @param cursor
+     *            optional cursor from the previous page
+     * @param limit
+     *            optional page size
+     * @return one page of OrderDetailDto matching the criteria, and the next cursor and total count in headers
      */
     @GetMapping("/orders")
     @Operation(
         summary = "List orders for a user",
-        description = "Returns the authenticated user's order history with optional status and date range filters."
+        description = "Returns the authenticated user's order history with optional status and date range filters. "
+            + "Use fields to return only some order fields, and include=history to add the status history to them. "
+            + "Orders are returned a page at a time, newest first: pass the X-Next-Cursor header of a page as cursor to get the next one."
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200",
-            description = "List of orders.",
+            description = "One page of orders.",
+            headers = {
+                @Header(name = OrderPage.NEXT_CURSOR_HEADER, description = "Cursor for the next page; absent on the last page."),
+                @Header(name = OrderPage.TOTAL_COUNT_HEADER, description = "Number of matching orders, counted up to a cap."),
+                @Header(name = OrderPage.TOTAL_COUNT_CAPPED_HEADER, description = "true when the count stopped at the cap.")
+            },
             content = @Content(
                 mediaType = "application/json",
                 array = @ArraySchema(schema = @Schema(implementation = OrderDetailDto.class))
@@ -459,7 +483,7 @@ public class ClientRestApi {
         ),
         @ApiResponse(
             responseCode = "400",
-            description = "Invalid parameters (status/date range).",
+            description = "Invalid parameters (status/date range/fields/include/cursor/limit).",
             content = @Content
         )
     })
@@ -469,10 +493,18 @@ public class ClientRestApi {
         @Parameter(description = "Optional start date/time filter (ISO-8601).", example = "2026-01-01T00:00:00Z")
         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime startDate,
         @Parameter(description = "Optional end date/time filter (ISO-8601).", example = "2026-12-31T23:59:59Z")
-        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime endDate) {
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime endDate,
+        @Parameter(description = "Optional comma-separated order fields to return (default: all).", example = "orderId,status,totalAmount")
+        @RequestParam(required = false) final String fields,
+        @Parameter(description = "Optional expansions: history adds the status history (included by default when fields is not given).", example = "history")
+        @RequestParam(required = false) final String include,
+        @Parameter(description = "Optional cursor from the X-Next-Cursor header of the previous page.")
+        @RequestParam(required = false) final String cursor,
+        @Parameter(description = "Optional page size (default 20, at most 100).", example = "50")
+        @RequestParam(required = false) final Integer limit) {
         final UUID userId = SecurityUtils.getCurrentUserId();
-        log.info("Fetching orders for user {} with filters: status={}, startDate={}, endDate={}",
-            userId, status, startDate, endDate);
+        log.info("Fetching orders for user {} with filters: status={}, startDate={}, endDate={}, fields={}, include={}, cursor={}, limit={}",
+            userId, status, startDate, endDate, fields, include, cursor, limit);
         try {
             OrderStatus orderStatus = null;
             if (status != null && !status.isEmpty()) {
@@ -484,11 +516,20 @@ public class ClientRestApi {
                 }
             }
 
-            final List<OrderDetailDto> orders = orderService.getOrdersByUser(userId, orderStatus, startDate, endDate);
-            log.info("Fetched {} orders for user {}", orders.size(), userId);
-            return ResponseEntity.ok(orders);
+            final OrderView view = OrderView.of(fields, include);
+            final OrderPage page = orderService.getOrdersByUser(userId, orderStatus, startDate, endDate, view, cursor, limit);
+            log.info("Fetched {} orders for user {}", page.orders().size(), userId);
+            final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(OrderPage.TOTAL_COUNT_HEADER, String.valueOf(page.totalCount()));
+            if (page.totalCountCapped()) {
+                response.header(OrderPage.TOTAL_COUNT_CAPPED_HEADER, "true");
+            }
+            if (page.nextCursor() != null) {
+                response.header(OrderPage.NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.orders());
         } catch (final IllegalArgumentException e) {
-            log.error("Invalid date range: error={}", e.getMessage());
+            log.error("Invalid date range, fields or page: error={}", e.getMessage());
             return ResponseEntity.badRequest().build();
         } catch (final Exception e) {
             log.error("Failed to fetch orders for user {}", userId, e);
@@ -597,4 +638,164 @@ public class ClientRestApi {
         }
     }
 
+    /**
+     * Join the waitlist of a sold-out flash sale item.
+     *
+     * @param createOrderDto the item and quantity wanted
+     * @return the user's place in the waitlist
+     */
+    @PostMapping("/waitlist")
+    @Operation(
+        summary = "Join waitlist",
+        description = "Queues the authenticated user for a sold-out flash sale item. When stock is freed, an order is placed "
+            + "for the user at the head of the waitlist and the user is notified. Joining again changes the quantity and keeps the user's place."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202",
+            description = "User is on the waitlist.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = WaitlistEntryDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Sale not active or quantity exceeds the item's allocated stock.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Flash sale item not found.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "409",
+            description = "User already has an order for the item.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        )
+    })
+    public ResponseEntity<WaitlistEntryDto> joinWaitlist(@Valid @RequestBody final CreateOrderDto createOrderDto) {
+        final UUID userId = SecurityUtils.getCurrentUserId();
+        log.info("User {} joining waitlist for flash sale item {}", userId, createOrderDto.flashSaleItemId());
+        final WaitlistEntryDto entry = waitlistService.join(userId, createOrderDto);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(entry);
+    }
+
+    /**
+     * Get the user's place in a flash sale item's waitlist.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @return the user's place, or 404 if the user is not waiting
+     */
+    @GetMapping("/waitlist/{flashSaleItemId}")
+    @Operation(
+        summary = "Get waitlist place",
+        description = "Returns the authenticated user's place in the waitlist of a flash sale item."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "User is on the waitlist.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = WaitlistEntryDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid UUID format.",
+            content = @Content
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "User is not on the waitlist (an order may already have been placed).",
+            content = @Content
+        )
+    })
+    public ResponseEntity<WaitlistEntryDto> getWaitlistEntry(
+        @Parameter(description = "Flash sale item identifier (UUID).", example = "b1b7a3c0-8d3b-4d10-8cc1-3c5f88f4bb5a")
+        @PathVariable final String flashSaleItemId) {
+        final UUID userId = SecurityUtils.getCurrentUserId();
+        try {
+            return waitlistService.getEntry(userId, UUID.fromString(flashSaleItemId))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (final IllegalArgumentException e) {
+            log.error("Invalid UUID format: flashSaleItemId={}", flashSaleItemId);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Leave a flash sale item's waitlist.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @return 204 if the user left, or 404 if the user was not waiting
+     */
+    @DeleteMapping("/waitlist/{flashSaleItemId}")
+    @Operation(
+        summary = "Leave waitlist",
+        description = "Removes the authenticated user from the waitlist of a flash sale item."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "204",
+            description = "User left the waitlist.",
+            content = @Content
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid UUID format.",
+            content = @Content
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "User was not on the waitlist.",
+            content = @Content
+        )
+    })
+    public ResponseEntity<Void> leaveWaitlist(
+        @Parameter(description = "Flash sale item identifier (UUID).", example = "b1b7a3c0-8d3b-4d10-8cc1-3c5f88f4bb5a")
+        @PathVariable final String flashSaleItemId) {
+        final UUID userId = SecurityUtils.getCurrentUserId();
+        try {
+            return waitlistService.leave(userId, UUID.fromString(flashSaleItemId))
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+        } catch (final IllegalArgumentException e) {
+            log.error("Invalid UUID format: flashSaleItemId={}", flashSaleItemId);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Enter the draw for an item of a lottery sale.
+     *
+     * @param createOrderDto the item and quantity wanted
+     * @return the user's entry
+     */
+    @PostMapping("/lottery")
+    @Operation(
+        summary = "Enter lottery",
+        description = "Enters the authenticated user in the draw for an item of a lottery sale. When the entry window closes "
+            + "the winners are drawn, an order is placed for each and the winners are notified. Entering again changes the quantity."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202",
+            description = "User is entered in the draw.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = LotteryEntryDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Sale not allocated by lottery, entry window closed or quantity exceeds the item's allocated stock.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Flash sale item not found.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        )
+    })
+    public ResponseEntity<LotteryEntryDto> enterLottery(@Valid @RequestBody final CreateOrderDto createOrderDto) {
+        final UUID userId = SecurityUtils.getCurrentUserId();
+        log.info("User {} entering the draw for flash sale item {}", userId, createOrderDto.flashSaleItemId());
+        final LotteryEntryDto entry = lotteryService.enter(userId, createOrderDto);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(entry);
+    }
 }
@@ -35,6 +35,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.AddFlashSaleItemDto;
 import uk.co.aosd.flash.dto.CreateSaleDto;
+import uk.co.aosd.flash.dto.EnableLotteryDto;
 import uk.co.aosd.flash.dto.ErrorResponseDto;
 import uk.co.aosd.flash.dto.FlashSaleResponseDto;
 import uk.co.aosd.flash.dto.UpdateFlashSaleDto;
@@ -47,6 +48,7 @@ import uk.co.aosd.flash.exc.InvalidSaleTimesException;
 import uk.co.aosd.flash.exc.ProductNotFoundException;
 import uk.co.aosd.flash.exc.SaleDurationTooShortException;
 import uk.co.aosd.flash.services.FlashSalesService;
+import uk.co.aosd.flash.services.LotteryService;
 
 /**
  * A REST API for Flash Sales.
@@ -65,6 +67,8 @@ public class FlashSaleAdminRestApi {
 
     private final FlashSalesService service;
 
+    private final LotteryService lotteryService;
+
     /**
      * Create a new Flash Sale.
      *
@@ -157,6 +161,42 @@ public class FlashSaleAdminRestApi {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Allocate a DRAFT flash sale by lottery instead of first come, first served.
+     *
+     * @param id the flash sale ID
+     * @param lottery when the entry window closes
+     * @return ResponseEntity with no content on success
+     */
+    @PreAuthorize("hasRole('ADMIN_USER')")
+    @PutMapping("/flash_sale/{id}/lottery")
+    @Operation(
+        summary = "Allocate flash sale by lottery",
+        description = "Switches a DRAFT flash sale to lottery allocation. Buyers enter the draw once the sale starts; when the "
+            + "entry window closes the winners are drawn and orders are placed for them. Calling again moves the close of the window."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Flash sale will be allocated by lottery.", content = @Content),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Sale is not DRAFT or the entry window does not close within the sale.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Flash sale not found.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))
+        )
+    })
+    public ResponseEntity<Void> enableLottery(
+        @Parameter(description = "Flash sale identifier (UUID).", example = "5b3c3f18-2f88-4c38-8b35-9aa6d9b9f5af")
+        @PathVariable final String id,
+        @Valid @RequestBody final EnableLotteryDto lottery) {
+        log.info("Allocating Flash Sale {} by lottery: {}", id, lottery);
+        lotteryService.enableLottery(UUID.fromString(id), lottery.entryWindowClosesAt());
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * List all flash sales with optional filters and optional title search.
      *
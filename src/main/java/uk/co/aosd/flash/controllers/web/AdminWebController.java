@@ -28,6 +28,8 @@ import uk.co.aosd.flash.dto.AddFlashSaleItemDto;
 import uk.co.aosd.flash.dto.CreateSaleDto;
 import uk.co.aosd.flash.dto.FlashSaleResponseDto;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProductDto;
 import uk.co.aosd.flash.dto.UpdateFlashSaleItemDto;
 import uk.co.aosd.flash.dto.UpdateOrderStatusDto;
@@ -327,12 +329,17 @@ public class AdminWebController {
         @RequestParam(required = false) final String status,
         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime startDate,
         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final OffsetDateTime endDate,
+        @RequestParam(required = false) final String cursor,
         final Model model) {
 
         final uk.co.aosd.flash.domain.OrderStatus orderStatus = status != null && !status.isEmpty() ? uk.co.aosd.flash.domain.OrderStatus.valueOf(status)
             : null;
-        final List<OrderDetailDto> orders = orderService.getAllOrders(orderStatus, startDate, endDate, null);
-        model.addAttribute("orders", orders);
+        final OrderPage page = orderService.getAllOrders(orderStatus, startDate, endDate, null, OrderView.FULL, cursor, null);
+        model.addAttribute("orders", page.orders());
+        model.addAttribute("nextCursor", page.nextCursor());
+        model.addAttribute("totalCount", page.totalCount());
+        model.addAttribute("totalCountCapped", page.totalCountCapped());
+        model.addAttribute("firstPage", cursor == null || cursor.isBlank());
         model.addAttribute("statusFilter", status);
         return "admin/orders/list";
     }
@@ -10,7 +10,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.security.CustomUserDetailsService;
 import uk.co.aosd.flash.security.SecurityUtils;
 import uk.co.aosd.flash.services.OrderService;
@@ -43,9 +46,12 @@ public class OrdersWebController {
     }
 
     @GetMapping
-    public String listOrders(final Model model) {
+    public String listOrders(@RequestParam(required = false) final String cursor, final Model model) {
         final UUID userId = getCurrentUserId();
-        model.addAttribute("orders", orderService.getOrdersByUser(userId, null, null, null));
+        final OrderPage page = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, cursor, null);
+        model.addAttribute("orders", page.orders());
+        model.addAttribute("nextCursor", page.nextCursor());
+        model.addAttribute("firstPage", cursor == null || cursor.isBlank());
         return "orders/list";
     }
 
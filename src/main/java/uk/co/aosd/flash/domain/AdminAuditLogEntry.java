@@ -21,7 +21,7 @@ import lombok.NoArgsConstructor;
 public class AdminAuditLogEntry {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "actor_user_id")
@@ -0,0 +1,32 @@
+package uk.co.aosd.flash.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity marking a flash sale as allocated by lottery rather than first come, first served.
+ */
+@Entity
+@Table(name = "flash_sale_lotteries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FlashSaleLottery {
+
+    @Id
+    @Column(name = "flash_sale_id")
+    private UUID flashSaleId;
+
+    @Column(name = "entry_window_closes_at", nullable = false)
+    private OffsetDateTime entryWindowClosesAt;
+
+    @Column(name = "drawn_at")
+    private OffsetDateTime drawnAt;
+}
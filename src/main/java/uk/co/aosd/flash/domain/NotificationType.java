@@ -0,0 +1,25 @@
+package uk.co.aosd.flash.domain;
+
+/**
+ * The kinds of notification sent to users about their orders.
+ */
+public enum NotificationType {
+    ORDER_CONFIRMATION("Order confirmation"),
+    PAYMENT_FAILED("Payment failed"),
+    REFUND("Refund"),
+    DISPATCH("Dispatch"),
+    CANCELLATION("Order cancelled"),
+    RESERVATION_EXPIRED("Reservation expired"),
+    WAITLIST_ORDER("Waitlist order placed"),
+    LOTTERY_WON("Lottery won");
+
+    private final String description;
+
+    NotificationType(final String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
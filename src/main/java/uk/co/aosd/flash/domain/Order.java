@@ -10,16 +10,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
- * Domain object for an order entity.
+ * Domain object for an order entity. Orders are partitioned by month of createdAt; one order per
+ * user per flash sale item is enforced by the order_claims table.
  */
 @Entity
-@Table(name = "orders", uniqueConstraints = { @UniqueConstraint(columnNames = { "user_id", "flash_sale_item_id" }) })
+@Table(name = "orders")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "user_id", nullable = false)
@@ -44,4 +45,8 @@ public class Order {
 
     @Column(name = "created_at", updatable = false)
     private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    /** When the stock held by a PENDING order is released if it has not been paid for. */
+    @Column(name = "expires_at")
+    private OffsetDateTime expiresAt;
 }
@@ -0,0 +1,38 @@
+package uk.co.aosd.flash.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity for a pending hand-off in the in-process order pipeline. A row exists from the moment an
+ * order is published to a stage until that stage has handled it, so unhandled messages can be
+ * replayed after a restart.
+ */
+@Entity
+@Table(name = "order_message_journal")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderMessageJournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "order_id", nullable = false)
+    private UUID orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage", nullable = false)
+    private OrderStage stage;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
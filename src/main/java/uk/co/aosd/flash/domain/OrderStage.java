@@ -0,0 +1,24 @@
+package uk.co.aosd.flash.domain;
+
+import uk.co.aosd.flash.config.RabbitMQConfig;
+
+/**
+ * The stages of the asynchronous order pipeline. Each stage maps to the RabbitMQ queue that
+ * carries it, so metrics are tagged consistently whichever transport is in use.
+ */
+public enum OrderStage {
+    PROCESSING(RabbitMQConfig.ORDER_PROCESSING_QUEUE),
+    PAYMENT_FAILED(RabbitMQConfig.ORDER_PAYMENT_FAILED_QUEUE),
+    DISPATCH(RabbitMQConfig.ORDER_DISPATCH_QUEUE),
+    REFUND(RabbitMQConfig.ORDER_REFUND_QUEUE);
+
+    private final String queueName;
+
+    OrderStage(final String queueName) {
+        this.queueName = queueName;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+}
@@ -21,7 +21,7 @@ import lombok.NoArgsConstructor;
 public class OrderStatusHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "order_id", nullable = false)
@@ -0,0 +1,19 @@
+package uk.co.aosd.flash.domain;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Marks an ID that is generated as a time-ordered UUIDv7 by {@link TimeOrderedUuidGenerator}.
+ * New rows then go to the right-hand edge of the primary key index instead of anywhere in it, which
+ * keeps index pages full and the recently written ones in cache.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface TimeOrderedUuid {
+}
@@ -0,0 +1,38 @@
+package uk.co.aosd.flash.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity for a buyer waiting for stock of a sold-out flash sale item.
+ */
+@Entity
+@Table(name = "waitlist_entries", uniqueConstraints = { @UniqueConstraint(columnNames = { "flash_sale_item_id", "user_id" }) })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "flash_sale_item_id", nullable = false)
+    private UUID flashSaleItemId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "quantity", nullable = false)
+    private int quantity;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,23 @@
+package uk.co.aosd.flash.dto;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * DTO for switching a Flash Sale to lottery allocation.
+ */
+@Schema(
+    name = "EnableLottery",
+    description = "Request body for allocating a DRAFT flash sale by lottery. Buyers enter the draw from the sale's start time "
+        + "until the entry window closes; the winners are then drawn and their orders placed."
+)
+public record EnableLotteryDto(
+    @Schema(description = "When the entry window closes and the winners are drawn (ISO-8601). Must fall within the sale.",
+        example = "2026-02-01T10:00:00Z")
+    @NotNull(message = "Entry window close time is required")
+    OffsetDateTime entryWindowClosesAt)
+    implements Serializable {
+}
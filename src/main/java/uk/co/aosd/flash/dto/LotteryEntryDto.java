@@ -0,0 +1,24 @@
+package uk.co.aosd.flash.dto;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for a buyer's entry in a lottery sale's draw.
+ */
+@Schema(
+    name = "LotteryEntry",
+    description = "A buyer's entry in the draw for a flash sale item. Winners are drawn when the entry window closes and an order is placed for each."
+)
+public record LotteryEntryDto(
+    @Schema(description = "Flash sale item identifier entered for.", example = "b1b7a3c0-8d3b-4d10-8cc1-3c5f88f4bb5a")
+    UUID flashSaleItemId,
+    @Schema(description = "Quantity that will be ordered if the entry wins.", example = "1")
+    int quantity,
+    @Schema(description = "When the entry window closes and the winners are drawn (ISO-8601).", example = "2026-02-01T10:00:00Z")
+    OffsetDateTime entryWindowClosesAt)
+    implements Serializable {
+}
@@ -0,0 +1,50 @@
+package uk.co.aosd.flash.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * A position in an order list ordered by creation time and then ID, newest first. The next page
+ * holds the orders that sort after it. Clients see it as an opaque string.
+ *
+ * @param createdAt the creation time of the last order returned
+ * @param orderId   the ID of the last order returned
+ */
+public record OrderCursor(OffsetDateTime createdAt, UUID orderId) {
+
+    /** Sorts before every order, so starts from the newest. */
+    public static final OrderCursor FIRST = new OrderCursor(
+        OffsetDateTime.of(9999, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC), new UUID(-1L, -1L));
+
+    /**
+     * Decode a cursor returned by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor, or null for the first page
+     * @return the cursor
+     * @throws IllegalArgumentException if the cursor is not one this service issued
+     */
+    public static OrderCursor decode(final String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            return new OrderCursor(OffsetDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (final RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Encode the cursor for a client.
+     *
+     * @return the opaque cursor
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((createdAt + "|" + orderId).getBytes(StandardCharsets.UTF_8));
+    }
+}
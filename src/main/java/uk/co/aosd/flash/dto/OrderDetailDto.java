@@ -6,12 +6,15 @@ import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import uk.co.aosd.flash.domain.OrderStatus;
 
 /**
- * DTO for detailed order information in client API responses.
+ * DTO for detailed order information in client API responses. Fields left out of a sparse
+ * {@link OrderView} are null and omitted from the JSON.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(
     name = "OrderDetail",
     description = "Detailed view of an order for a given user."
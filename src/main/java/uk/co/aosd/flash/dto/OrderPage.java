@@ -0,0 +1,25 @@
+package uk.co.aosd.flash.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of an order list, newest first.
+ *
+ * @param orders           the orders on this page
+ * @param nextCursor       the cursor for the next page, or null if this is the last
+ * @param totalCount       the number of matching orders, counted up to a cap
+ * @param totalCountCapped whether the count stopped at the cap, so there are at least that many
+ */
+public record OrderPage(List<OrderDetailDto> orders, String nextCursor, long totalCount, boolean totalCountCapped)
+    implements Serializable {
+
+    /** Response header carrying {@link #nextCursor()}. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /** Response header carrying {@link #totalCount()}. */
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /** Response header set to {@code true} when {@link #totalCountCapped()}. */
+    public static final String TOTAL_COUNT_CAPPED_HEADER = "X-Total-Count-Capped";
+}
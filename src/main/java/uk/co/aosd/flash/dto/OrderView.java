@@ -0,0 +1,111 @@
+package uk.co.aosd.flash.dto;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The parts of an order to return from the order list endpoints: a sparse set of
+ * {@link OrderDetailDto} fields, and whether the status history is included. Fields that are not
+ * requested are left out of the response, and are not read from the database where that can be avoided.
+ *
+ * @param fields         the requested field names, sorted
+ * @param includeHistory whether the status history is included
+ */
+public record OrderView(Set<String> fields, boolean includeHistory) implements Serializable {
+
+    /** Fields held on the order row itself, which need no joins to read. */
+    public static final Set<String> ORDER_FIELDS = Set.of(
+        "orderId", "userId", "productId", "flashSaleItemId", "soldPrice", "soldQuantity", "totalAmount", "status", "createdAt");
+
+    /** All fields, including those read from the product and the flash sale. */
+    public static final Set<String> ALL_FIELDS = Set.copyOf(List.of(
+        "orderId", "userId", "productId", "productName", "flashSaleItemId", "flashSaleId", "flashSaleTitle",
+        "soldPrice", "soldQuantity", "totalAmount", "status", "createdAt"));
+
+    /** Every field and the status history. */
+    public static final OrderView FULL = new OrderView(ALL_FIELDS, true);
+
+    public OrderView {
+        fields = new TreeSet<>(fields);
+    }
+
+    /**
+     * Parse the {@code fields} and {@code include} request parameters. With neither, the full view
+     * is returned; with {@code include} only, all fields are returned.
+     *
+     * @param fields  comma-separated field names, or null for all
+     * @param include comma-separated expansions ({@code history}), or null for none
+     * @return the view
+     * @throws IllegalArgumentException if a field or expansion is unknown
+     */
+    public static OrderView of(final String fields, final String include) {
+        final boolean noFields = fields == null || fields.isBlank();
+        final boolean noInclude = include == null || include.isBlank();
+        if (noFields && noInclude) {
+            return FULL;
+        }
+        final Set<String> requested = noFields ? ALL_FIELDS : split(fields);
+        for (final String field : requested) {
+            if (!ALL_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown order field: " + field + ", expected some of " + new TreeSet<>(ALL_FIELDS));
+            }
+        }
+        final Set<String> expansions = noInclude ? Set.of() : split(include);
+        for (final String expansion : expansions) {
+            if (!"history".equals(expansion)) {
+                throw new IllegalArgumentException("Unknown order expansion: " + expansion + ", expected history");
+            }
+        }
+        return new OrderView(requested, expansions.contains("history"));
+    }
+
+    private static Set<String> split(final String list) {
+        final Set<String> values = new TreeSet<>();
+        Arrays.stream(list.split(",")).map(String::trim).filter(value -> !value.isEmpty()).forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Whether the view needs more than the order row, i.e. the product or flash sale joined in.
+     *
+     * @return true if a requested field comes from another table
+     */
+    public boolean needsJoins() {
+        return !ORDER_FIELDS.containsAll(fields);
+    }
+
+    /**
+     * A cache key part that tells views apart, so slim and full lists are cached separately.
+     *
+     * @return the cache key part
+     */
+    public String cacheKey() {
+        return (fields.equals(ALL_FIELDS) ? "all" : String.join(",", fields)) + (includeHistory ? "+history" : "");
+    }
+
+    /**
+     * Leave out the fields that were not requested.
+     *
+     * @param order the full order
+     * @return the order with only the requested fields set
+     */
+    public OrderDetailDto apply(final OrderDetailDto order) {
+        return new OrderDetailDto(
+            fields.contains("orderId") ? order.orderId() : null,
+            fields.contains("userId") ? order.userId() : null,
+            fields.contains("productId") ? order.productId() : null,
+            fields.contains("productName") ? order.productName() : null,
+            fields.contains("flashSaleItemId") ? order.flashSaleItemId() : null,
+            fields.contains("flashSaleId") ? order.flashSaleId() : null,
+            fields.contains("flashSaleTitle") ? order.flashSaleTitle() : null,
+            fields.contains("soldPrice") ? order.soldPrice() : null,
+            fields.contains("soldQuantity") ? order.soldQuantity() : null,
+            fields.contains("totalAmount") ? order.totalAmount() : null,
+            fields.contains("status") ? order.status() : null,
+            fields.contains("createdAt") ? order.createdAt() : null,
+            includeHistory ? order.statusHistory() : null);
+    }
+}
@@ -0,0 +1,23 @@
+package uk.co.aosd.flash.dto;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for a buyer's place in a flash sale item's waitlist.
+ */
+@Schema(
+    name = "WaitlistEntry",
+    description = "A buyer's place in the waitlist of a sold-out flash sale item. When stock is freed it is ordered for the buyer at the head of the list."
+)
+public record WaitlistEntryDto(
+    @Schema(description = "Flash sale item identifier being waited for.", example = "b1b7a3c0-8d3b-4d10-8cc1-3c5f88f4bb5a")
+    UUID flashSaleItemId,
+    @Schema(description = "Quantity that will be ordered when stock is freed.", example = "2")
+    int quantity,
+    @Schema(description = "Place in the waitlist, starting at 1 for the next buyer to be served.", example = "3")
+    long position)
+    implements Serializable {
+}
@@ -0,0 +1,99 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.Query;
+
+/**
+ * The WHERE clause of a query with optional filters, holding only the predicates whose filter is
+ * set. A predicate such as {@code col = COALESCE(:param, col)} cannot use an index on {@code col}
+ * and gives every combination of filters the same plan; leaving unset filters out of the query
+ * lets each combination use the index that matches it.
+ */
+final class FilterClause {
+
+    private final List<String> predicates = new ArrayList<>();
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    /**
+     * Add a predicate that always applies.
+     *
+     * @param predicate the predicate, with no parameters
+     * @return this clause
+     */
+    FilterClause where(final String predicate) {
+        predicates.add(predicate);
+        return this;
+    }
+
+    /**
+     * Add a predicate that always applies.
+     *
+     * @param predicate the predicate
+     * @param name      the name of its parameter
+     * @param value     the parameter value
+     * @return this clause
+     */
+    FilterClause where(final String predicate, final String name, final Object value) {
+        return where(predicate).parameter(name, value);
+    }
+
+    /**
+     * Add a parameter used by a predicate added with {@link #where(String)}.
+     *
+     * @param name  the parameter name
+     * @param value the parameter value
+     * @return this clause
+     */
+    FilterClause parameter(final String name, final Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * Add a predicate only when its filter is set.
+     *
+     * @param predicate the predicate
+     * @param name      the name of its parameter
+     * @param value     the filter value, or null to leave the predicate out
+     * @return this clause
+     */
+    FilterClause whereIfSet(final String predicate, final String name, final Object value) {
+        return value == null ? this : where(predicate, name, value);
+    }
+
+    /**
+     * Get the clause to append to a query.
+     *
+     * @return " WHERE " and the predicates, or an empty string when there are none
+     */
+    String sql() {
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    /**
+     * Get the parameters of the added predicates, for a named-parameter JDBC query.
+     *
+     * @return the parameters by name
+     */
+    Map<String, Object> parameters() {
+        return parameters;
+    }
+
+    /**
+     * Bind the parameters of the added predicates.
+     *
+     * @param query the query built from {@link #sql()}
+     * @param <Q>   the query type
+     * @return the query
+     */
+    <Q extends Query> Q bind(final Q query) {
+        for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+        return query;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Flash sale listings and analytics with optional filters. Each query holds only the filters that
+ * are set, so it can use the index that matches them.
+ */
+public interface FlashSaleFilterQueries {
+
+    /**
+     * Find all flash sales with optional filters for status and date range.
+     * Uses JOIN FETCH to eagerly load items and products to avoid lazy loading
+     * issues.
+     *
+     * @param status
+     *            optional status filter
+     * @param startDate
+     *            optional filter window start (inclusive). When provided, only
+     *            sales whose time period overlaps
+     *            the specified window are returned.
+     * @param endDate
+     *            optional filter window end (inclusive). When provided, only sales
+     *            whose time period overlaps
+     *            the specified window are returned.
+     * @return list of flash sales matching the filters, ordered by startTime
+     */
+    List<FlashSale> findAllWithFilters(SaleStatus status, OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Find flash sale IDs with optional filters and optional title search (FTS).
+     * Used when search is non-blank; results are then loaded with findByIdInWithItems.
+     *
+     * @param status    optional status filter
+     * @param startDate optional filter window start
+     * @param endDate   optional filter window end
+     * @param search    optional search term for title (null or blank = no FTS)
+     * @return list of flash sale IDs in start_time order
+     */
+    List<UUID> findFlashSaleIdsWithFiltersAndSearch(SaleStatus status, OffsetDateTime startDate, OffsetDateTime endDate,
+        String search);
+
+    /**
+     * Calculate total items sold across all flash sale items with optional date
+     * range filter.
+     * Items sold are tracked in the sold_count field of flash_sale_items.
+     *
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return total items sold
+     */
+    Long calculateTotalItemsSold(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Calculate total items allocated across all flash sale items with optional
+     * date range filter.
+     *
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return total items allocated
+     */
+    Long calculateTotalItemsAllocated(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Find top sales by items sold with optional date range filter.
+     *
+     * @param limit
+     *            maximum number of results
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return list of Object arrays: [saleId, title, itemsSold, revenue]
+     */
+    List<Object[]> findTopSalesByItemsSold(int limit, OffsetDateTime startDate, OffsetDateTime endDate);
+}
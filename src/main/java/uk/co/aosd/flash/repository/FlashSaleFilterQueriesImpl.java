@@ -0,0 +1,100 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Implementation of {@link FlashSaleFilterQueries} that builds each query from the filters that are
+ * set.
+ */
+@Transactional(readOnly = true)
+public class FlashSaleFilterQueriesImpl implements FlashSaleFilterQueries {
+
+    private static final String ITEMS_OF_SALES_IN_RANGE = " FROM flash_sale_items fsi "
+        + "JOIN flash_sales fs ON fs.id = fsi.flash_sale_id";
+
+    private final EntityManager entityManager;
+
+    public FlashSaleFilterQueriesImpl(final EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<FlashSale> findAllWithFilters(final SaleStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        // overlap: saleEnd >= filterStart AND saleStart <= filterEnd, each side only when given
+        final FilterClause where = new FilterClause()
+            .whereIfSet("fs.status = :status", "status", status)
+            .whereIfSet("fs.endTime >= :startDate", "startDate", startDate)
+            .whereIfSet("fs.startTime <= :endDate", "endDate", endDate);
+        return where.bind(entityManager.createQuery("SELECT DISTINCT fs FROM FlashSale fs "
+            + "LEFT JOIN FETCH fs.items item LEFT JOIN FETCH item.product"
+            + where.sql()
+            + " ORDER BY fs.startTime ASC", FlashSale.class)).getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<UUID> findFlashSaleIdsWithFiltersAndSearch(final SaleStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final String search) {
+        final String terms = search == null || search.isBlank() ? null : search.trim();
+        final FilterClause where = new FilterClause()
+            .whereIfSet("fs.status = CAST(:status AS sale_status)", "status", status != null ? status.name() : null)
+            .whereIfSet("fs.end_time >= :startDate", "startDate", startDate)
+            .whereIfSet("fs.start_time <= :endDate", "endDate", endDate)
+            .whereIfSet("fs.search_vector @@ plainto_tsquery('english', :search)", "search", terms);
+        return where.bind(entityManager.createNativeQuery("SELECT fs.id FROM flash_sales fs"
+            + where.sql()
+            + " ORDER BY fs.start_time ASC")).getResultList();
+    }
+
+    @Override
+    public Long calculateTotalItemsSold(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        final FilterClause where = withinRange(startDate, endDate);
+        return wholeNumber(where.bind(entityManager.createNativeQuery(
+            "SELECT SUM(fsi.sold_count)" + ITEMS_OF_SALES_IN_RANGE + where.sql())).getSingleResult());
+    }
+
+    @Override
+    public Long calculateTotalItemsAllocated(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        final FilterClause where = withinRange(startDate, endDate);
+        return wholeNumber(where.bind(entityManager.createNativeQuery(
+            "SELECT SUM(fsi.allocated_stock)" + ITEMS_OF_SALES_IN_RANGE + where.sql())).getSingleResult());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findTopSalesByItemsSold(final int limit, final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        final FilterClause where = withinRange(startDate, endDate);
+        final Query query = where.bind(entityManager.createNativeQuery("SELECT fs.id, fs.title, SUM(fsi.sold_count) as items_sold, "
+            + "SUM(fsi.sold_count * fsi.sale_price) as revenue"
+            + ITEMS_OF_SALES_IN_RANGE
+            + where.sql()
+            + " GROUP BY fs.id, fs.title "
+            + "ORDER BY items_sold DESC "
+            + "LIMIT :limit"));
+        return query.setParameter("limit", limit).getResultList();
+    }
+
+    /**
+     * Sales that start and end within the given range; unlike the listing filter this does not
+     * include sales that only overlap it.
+     */
+    private static FilterClause withinRange(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        return new FilterClause()
+            .whereIfSet("fs.start_time >= :startDate", "startDate", startDate)
+            .whereIfSet("fs.end_time <= :endDate", "endDate", endDate);
+    }
+
+    private static Long wholeNumber(final Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+}
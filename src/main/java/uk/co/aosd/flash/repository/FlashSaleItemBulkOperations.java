@@ -0,0 +1,20 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.List;
+
+import uk.co.aosd.flash.domain.FlashSaleItem;
+
+/**
+ * Bulk write operations for Flash Sale Items that bypass per-entity persistence.
+ */
+public interface FlashSaleItemBulkOperations {
+
+    /**
+     * Insert many items with JDBC batch statements. Items without an ID are given one, so callers can
+     * refer to them afterwards. Pending changes are flushed first and the persistence context is cleared
+     * afterwards, so later reads in the same transaction see the new rows.
+     *
+     * @param items the items to insert; each must reference a saved sale and product
+     */
+    void insertAll(List<FlashSaleItem> items);
+}
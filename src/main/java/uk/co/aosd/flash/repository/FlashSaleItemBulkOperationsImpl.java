@@ -0,0 +1,57 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+
+/**
+ * JDBC implementation of {@link FlashSaleItemBulkOperations}.
+ */
+public class FlashSaleItemBulkOperationsImpl implements FlashSaleItemBulkOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleItemBulkOperationsImpl.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL = "INSERT INTO flash_sale_items "
+        + "(id, flash_sale_id, product_id, allocated_stock, sold_count, sale_price) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    public FlashSaleItemBulkOperationsImpl(final EntityManager entityManager, final JdbcTemplate jdbcTemplate) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertAll(final List<FlashSaleItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        // The sale may only exist in the persistence context so far
+        entityManager.flush();
+        for (final FlashSaleItem item : items) {
+            if (item.getId() == null) {
+                item.setId(UUID.randomUUID());
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, items, BATCH_SIZE, (ps, item) -> {
+            ps.setObject(1, item.getId());
+            ps.setObject(2, item.getFlashSale().getId());
+            ps.setObject(3, item.getProduct().getId());
+            ps.setInt(4, item.getAllocatedStock());
+            ps.setInt(5, item.getSoldCount() != null ? item.getSoldCount() : 0);
+            ps.setBigDecimal(6, item.getSalePrice());
+        });
+        entityManager.clear();
+        log.debug("Batch inserted {} flash sale items", items.size());
+    }
+}
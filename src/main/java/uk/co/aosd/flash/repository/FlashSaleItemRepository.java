@@ -1,5 +1,6 @@
 package uk.co.aosd.flash.repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,18 +16,11 @@ import uk.co.aosd.flash.domain.FlashSaleItem;
  * Repository for Flash Sale Items.
  */
 @Repository
-public interface FlashSaleItemRepository extends JpaRepository<FlashSaleItem, UUID> {
-
-    @Modifying(clearAutomatically = true)
-    @Transactional
-    @Query("UPDATE FlashSaleItem f SET f.soldCount = f.soldCount + :increment "
-        + "WHERE f.id = :id AND f.soldCount + :increment <= f.allocatedStock "
-        + "AND f.flashSale.status = 'ACTIVE'")
-    int incrementSoldCount(@Param("id") UUID id, @Param("increment") int increment);
+public interface FlashSaleItemRepository extends JpaRepository<FlashSaleItem, UUID>, FlashSaleItemBulkOperations {
 
     /**
-     * Increment the sold count for a flash sale item (admin operation).
-     * This version does not require the sale to be ACTIVE, allowing reverse transitions.
+     * Increment the sold count for an item of an ACTIVE sale if the stock is there. Items of lottery
+     * sales are only sold by the draw, so they are never incremented here.
      *
      * @param id        the flash sale item ID
      * @param increment the amount to increment
@@ -35,8 +29,10 @@ public interface FlashSaleItemRepository extends JpaRepository<FlashSaleItem, UU
     @Modifying(clearAutomatically = true)
     @Transactional
     @Query("UPDATE FlashSaleItem f SET f.soldCount = f.soldCount + :increment "
-        + "WHERE f.id = :id AND f.soldCount + :increment <= f.allocatedStock")
-    int incrementSoldCountForAdmin(@Param("id") UUID id, @Param("increment") int increment);
+        + "WHERE f.id = :id AND f.soldCount + :increment <= f.allocatedStock "
+        + "AND f.flashSale.status = 'ACTIVE' "
+        + "AND NOT EXISTS (SELECT 1 FROM FlashSaleLottery l WHERE l.flashSaleId = f.flashSale.id)")
+    int incrementSoldCount(@Param("id") UUID id, @Param("increment") int increment);
 
     /**
      * Decrement the sold count for a flash sale item.
@@ -51,6 +47,30 @@ public interface FlashSaleItemRepository extends JpaRepository<FlashSaleItem, UU
         + "WHERE f.id = :id AND f.soldCount >= :decrement")
     int decrementSoldCount(@Param("id") UUID id, @Param("decrement") int decrement);
 
+    /**
+     * Release the unsold stock of the given sales in one statement: each item's allocated stock is
+     * cut back to its sold count, and the released quantities are summed per product and taken off
+     * the products' reserved counts. Item rows are locked first, so sales made concurrently are
+     * either counted as sold or released, never both.
+     *
+     * @param saleIds the sale IDs
+     * @return the number of products whose reserved count was reduced
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "WITH unsold AS (" +
+        "    SELECT id, product_id, allocated_stock - sold_count AS released FROM flash_sale_items " +
+        "    WHERE flash_sale_id IN (:saleIds) AND allocated_stock > sold_count " +
+        "    FOR UPDATE), " +
+        "released_items AS (" +
+        "    UPDATE flash_sale_items fsi SET allocated_stock = fsi.sold_count " +
+        "    FROM unsold WHERE fsi.id = unsold.id), " +
+        "released_per_product AS (" +
+        "    SELECT product_id, SUM(released) AS released FROM unsold GROUP BY product_id) " +
+        "UPDATE products p SET reserved_count = p.reserved_count - released_per_product.released " +
+        "FROM released_per_product WHERE p.id = released_per_product.product_id", nativeQuery = true)
+    int releaseUnsoldStock(@Param("saleIds") List<UUID> saleIds);
+
     /**
      * Find a flash sale item by its ID and flash sale ID.
      *
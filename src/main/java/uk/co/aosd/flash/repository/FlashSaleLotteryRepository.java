@@ -0,0 +1,105 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
+
+/**
+ * Repository for lottery sales and their entries.
+ */
+@Repository
+public interface FlashSaleLotteryRepository extends JpaRepository<FlashSaleLottery, UUID> {
+
+    /**
+     * Enter a buyer in the draw for an item, or change the quantity they entered for. This is the
+     * only write on the entry path, a single-row upsert.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param userId          the user ID
+     * @param quantity        the quantity wanted
+     * @return the number of rows inserted or updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "INSERT INTO lottery_entries (flash_sale_item_id, user_id, quantity) " +
+        "VALUES (:flashSaleItemId, :userId, :quantity) " +
+        "ON CONFLICT (flash_sale_item_id, user_id) DO UPDATE SET quantity = EXCLUDED.quantity", nativeQuery = true)
+    int enter(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("userId") UUID userId, @Param("quantity") int quantity);
+
+    /**
+     * Count the entries in the draw for an item.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @return the number of entries
+     */
+    @Query(value = "SELECT COUNT(*) FROM lottery_entries WHERE flash_sale_item_id = :flashSaleItemId", nativeQuery = true)
+    long countEntries(@Param("flashSaleItemId") UUID flashSaleItemId);
+
+    /**
+     * Find the ACTIVE lottery sales whose entry window has closed but which have not been drawn, for
+     * the safety sweep: their draw trigger was lost, fired while the sale was not yet ACTIVE, or failed.
+     *
+     * @param now the current time
+     * @return the flash sale IDs
+     */
+    @Query(value = "SELECT l.flash_sale_id FROM flash_sale_lotteries l " +
+        "JOIN flash_sales s ON s.id = l.flash_sale_id " +
+        "WHERE l.drawn_at IS NULL AND l.entry_window_closes_at <= :now AND s.status = CAST('ACTIVE' AS sale_status)", nativeQuery = true)
+    List<UUID> findSaleIdsDueToDraw(@Param("now") OffsetDateTime now);
+
+    /**
+     * Draw the winners of a lottery sale whose entry window has closed, in one statement: the
+     * lottery is marked as drawn, its items are locked, each item's entries are shuffled and walked in
+     * that order, taking every entry that still fits the item's remaining stock and skipping those
+     * that do not (so a large entry drawn early cannot shut out later, smaller ones), the winners' PENDING
+     * orders are inserted in bulk and each item's sold count is raised once by the total won, provided
+     * that still fits the item's allocated stock. Buyers who already have an order for the item are
+     * passed over. Nothing is drawn, and the lottery is left undrawn, if it has already been drawn,
+     * its window is still open or the sale is not ACTIVE.
+     *
+     * @param flashSaleId the flash sale ID
+     * @param now         the draw time, used as the orders' creation time
+     * @param expiresAt   when the winners' holds run out
+     * @return the winning orders as [order ID, user ID, whether the item's sold count was raised]
+     */
+    @Transactional
+    @Query(value = "WITH lottery AS ("
+        + "  UPDATE flash_sale_lotteries l SET drawn_at = :now "
+        + "  FROM flash_sales s "
+        + "  WHERE l.flash_sale_id = :flashSaleId AND s.id = l.flash_sale_id AND s.status = CAST('ACTIVE' AS sale_status) "
+        + "    AND l.drawn_at IS NULL AND l.entry_window_closes_at <= :now "
+        + "  RETURNING l.flash_sale_id"
+        + "), items AS ("
+        + "  SELECT i.id, i.product_id, i.sale_price, i.allocated_stock - i.sold_count AS available "
+        + "  FROM lottery l "
+        + "  JOIN flash_sale_items i ON i.flash_sale_id = l.flash_sale_id "
+        + "  FOR UPDATE OF i"
+        + "), ranked AS ("
+        + "  SELECT e.user_id, e.quantity, i.id AS flash_sale_item_id, i.product_id, i.sale_price, i.available, "
+        + "    lottery_fits(e.quantity, i.available) OVER (PARTITION BY i.id ORDER BY random() ROWS UNBOUNDED PRECEDING) AS taken "
+        + "  FROM items i "
+        + "  JOIN lottery_entries e ON e.flash_sale_item_id = i.id "
+        + "  WHERE NOT EXISTS (SELECT 1 FROM order_claims c WHERE c.user_id = e.user_id AND c.flash_sale_item_id = i.id)"
+        + "), inserted AS ("
+        + "  INSERT INTO orders (user_id, flash_sale_item_id, product_id, sold_price, sold_quantity, status, created_at, expires_at) "
+        + "  SELECT user_id, flash_sale_item_id, product_id, sale_price, quantity, CAST('PENDING' AS order_status), :now, :expiresAt "
+        + "  FROM ranked WHERE taken "
+        + "  RETURNING id, user_id, flash_sale_item_id, sold_quantity"
+        + "), sold AS ("
+        + "  UPDATE flash_sale_items i SET sold_count = i.sold_count + won.quantity "
+        + "  FROM (SELECT flash_sale_item_id, SUM(sold_quantity) AS quantity FROM inserted GROUP BY flash_sale_item_id) won "
+        + "  WHERE i.id = won.flash_sale_item_id AND i.sold_count + won.quantity <= i.allocated_stock "
+        + "  RETURNING i.id"
+        + ") SELECT ins.id, ins.user_id, sold.id IS NOT NULL "
+        + "FROM inserted ins LEFT JOIN sold ON sold.id = ins.flash_sale_item_id", nativeQuery = true)
+    List<Object[]> drawWinners(@Param("flashSaleId") UUID flashSaleId, @Param("now") OffsetDateTime now,
+        @Param("expiresAt") OffsetDateTime expiresAt);
+}
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.SaleStatus;
 
@@ -15,7 +16,7 @@ import uk.co.aosd.flash.domain.SaleStatus;
  * Flash Sale Repository.
  */
 @Repository
-public interface FlashSaleRepository extends JpaRepository<FlashSale, UUID> {
+public interface FlashSaleRepository extends JpaRepository<FlashSale, UUID>, FlashSaleFilterQueries {
     List<FlashSale> findByStatus(SaleStatus status);
 
     /**
@@ -65,56 +66,46 @@ public interface FlashSaleRepository extends JpaRepository<FlashSale, UUID> {
     List<FlashSale> findActiveSalesReadyToComplete(@Param("status") SaleStatus status, @Param("currentTime") OffsetDateTime currentTime);
 
     /**
-     * Find all flash sales with optional filters for status and date range.
-     * Uses JOIN FETCH to eagerly load items and products to avoid lazy loading
-     * issues.
+     * Find the IDs of sales in the given status whose start time has passed, without loading the sales.
      *
      * @param status
-     *            optional status filter
-     * @param startDate
-     *            optional filter window start (inclusive). When provided, only
-     *            sales whose time period overlaps
-     *            the specified window are returned.
-     * @param endDate
-     *            optional filter window end (inclusive). When provided, only sales
-     *            whose time period overlaps
-     *            the specified window are returned.
-     * @return list of flash sales matching the filters, ordered by startTime
+     *            the sale status (should be DRAFT)
+     * @param currentTime
+     *            the current time
+     * @return the sale IDs, earliest start time first
+     */
+    @Query("SELECT fs.id FROM FlashSale fs WHERE fs.status = :status AND fs.startTime <= :currentTime ORDER BY fs.startTime ASC")
+    List<UUID> findSaleIdsReadyToActivate(@Param("status") SaleStatus status, @Param("currentTime") OffsetDateTime currentTime);
+
+    /**
+     * Find the IDs of sales in the given status whose end time has passed, without loading the sales.
+     *
+     * @param status
+     *            the sale status (should be ACTIVE)
+     * @param currentTime
+     *            the current time
+     * @return the sale IDs, earliest end time first
      */
-    @Query("SELECT DISTINCT fs FROM FlashSale fs LEFT JOIN FETCH fs.items item LEFT JOIN FETCH item.product " +
-        "WHERE fs.status = COALESCE(:status, fs.status) " +
-        // overlap: saleEnd >= filterStart AND saleStart <= filterEnd (with open-ended
-        // window support)
-        "AND fs.endTime >= COALESCE(:startDate, fs.endTime) " +
-        "AND fs.startTime <= COALESCE(:endDate, fs.startTime) " +
-        "ORDER BY fs.startTime ASC")
-    List<FlashSale> findAllWithFilters(
-        @Param("status") SaleStatus status,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
+    @Query("SELECT fs.id FROM FlashSale fs WHERE fs.status = :status AND fs.endTime <= :currentTime ORDER BY fs.endTime ASC")
+    List<UUID> findSaleIdsReadyToComplete(@Param("status") SaleStatus status, @Param("currentTime") OffsetDateTime currentTime);
 
     /**
-     * Find flash sale IDs with optional filters and optional title search (FTS).
-     * Used when search is non-blank; results are then loaded with findByIdInWithItems.
+     * Move sales from one status to another in a single statement. Sales no longer in the
+     * expected status (e.g. changed concurrently) are left alone.
      *
-     * @param status    optional status filter
-     * @param startDate optional filter window start
-     * @param endDate   optional filter window end
-     * @param search    optional search term for title (null or blank = no FTS)
-     * @return list of flash sale IDs in start_time order
+     * @param ids
+     *            the sale IDs
+     * @param fromStatus
+     *            the status the sales must currently have
+     * @param toStatus
+     *            the new status
+     * @return the IDs of the sales that changed status
      */
-    @Query(value = "SELECT id FROM flash_sales fs " +
-        "WHERE (CAST(:status AS text) IS NULL OR fs.status::text = CAST(:status AS text)) " +
-        "AND fs.end_time >= COALESCE(:startDate, fs.end_time) " +
-        "AND fs.start_time <= COALESCE(:endDate, fs.start_time) " +
-        "AND (CAST(:search AS TEXT) IS NULL OR trim(CAST(:search AS TEXT)) = '' OR fs.search_vector @@ plainto_tsquery('english', COALESCE(trim(CAST(:search AS TEXT)), ''))) " +
-        "ORDER BY fs.start_time ASC",
-        nativeQuery = true)
-    List<UUID> findFlashSaleIdsWithFiltersAndSearch(
-        @Param("status") SaleStatus status,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate,
-        @Param("search") String search);
+    @Transactional
+    @Query(value = "UPDATE flash_sales SET status = CAST(:toStatus AS sale_status) " +
+        "WHERE id IN (:ids) AND status = CAST(:fromStatus AS sale_status) " +
+        "RETURNING id", nativeQuery = true)
+    List<UUID> transitionStatus(@Param("ids") List<UUID> ids, @Param("fromStatus") String fromStatus, @Param("toStatus") String toStatus);
 
     /**
      * Find flash sales by IDs with items and products eagerly loaded.
@@ -147,70 +138,6 @@ public interface FlashSaleRepository extends JpaRepository<FlashSale, UUID> {
      */
     Long countByStatus(SaleStatus status);
 
-    /**
-     * Calculate total items sold across all flash sale items with optional date
-     * range filter.
-     * Items sold are tracked in the sold_count field of flash_sale_items.
-     *
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total items sold
-     */
-    @Query(value = "SELECT COALESCE(SUM(fsi.sold_count), 0) " +
-        "FROM flash_sale_items fsi " +
-        "JOIN flash_sales fs ON fs.id = fsi.flash_sale_id " +
-        "WHERE fs.start_time >= COALESCE(:startDate, TIMESTAMP '1970-01-01 00:00:00+00') " +
-        "AND fs.end_time <= COALESCE(:endDate, TIMESTAMP '9999-12-31 23:59:59+00')", nativeQuery = true)
-    Long calculateTotalItemsSold(
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Calculate total items allocated across all flash sale items with optional
-     * date range filter.
-     *
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total items allocated
-     */
-    @Query(value = "SELECT COALESCE(SUM(fsi.allocated_stock), 0) " +
-        "FROM flash_sale_items fsi " +
-        "JOIN flash_sales fs ON fs.id = fsi.flash_sale_id " +
-        "WHERE fs.start_time >= COALESCE(:startDate, TIMESTAMP '1970-01-01 00:00:00+00') " +
-        "AND fs.end_time <= COALESCE(:endDate, TIMESTAMP '9999-12-31 23:59:59+00')", nativeQuery = true)
-    Long calculateTotalItemsAllocated(
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Find top sales by items sold with optional date range filter.
-     *
-     * @param limit
-     *            maximum number of results
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return list of Object arrays: [saleId, title, itemsSold, revenue]
-     */
-    @Query(value = "SELECT fs.id, fs.title, SUM(fsi.sold_count) as items_sold, " +
-        "SUM(fsi.sold_count * fsi.sale_price) as revenue " +
-        "FROM flash_sales fs " +
-        "JOIN flash_sale_items fsi ON fs.id = fsi.flash_sale_id " +
-        "WHERE fs.start_time >= COALESCE(:startDate, TIMESTAMP '1970-01-01 00:00:00+00') " +
-        "AND fs.end_time <= COALESCE(:endDate, TIMESTAMP '9999-12-31 23:59:59+00') " +
-        "GROUP BY fs.id, fs.title " +
-        "ORDER BY items_sold DESC " +
-        "LIMIT :limit", nativeQuery = true)
-    List<Object[]> findTopSalesByItemsSold(
-        @Param("limit") int limit,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
     /**
      * Calculate average number of products per sale.
      * This counts the number of flash sale items (products) per sale and averages
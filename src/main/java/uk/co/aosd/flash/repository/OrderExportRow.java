@@ -0,0 +1,36 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * One order as read for an export, straight from the result set without loading entities.
+ *
+ * @param orderId         the order ID
+ * @param userId          the ID of the user who placed the order
+ * @param productId       the product ID
+ * @param productName     the product name
+ * @param flashSaleId     the flash sale ID
+ * @param flashSaleItemId the flash sale item ID
+ * @param soldPrice       the unit price the order was sold at
+ * @param soldQuantity    the quantity ordered
+ * @param totalAmount     the sold price times the quantity
+ * @param status          the order status
+ * @param createdAt       when the order was placed
+ */
+public record OrderExportRow(
+    UUID orderId,
+    UUID userId,
+    UUID productId,
+    String productName,
+    UUID flashSaleId,
+    UUID flashSaleItemId,
+    BigDecimal soldPrice,
+    int soldQuantity,
+    BigDecimal totalAmount,
+    OrderStatus status,
+    OffsetDateTime createdAt) {
+}
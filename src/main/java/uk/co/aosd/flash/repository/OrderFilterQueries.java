@@ -0,0 +1,94 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Limit;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * Order listings, counts and exports with optional filters. Each query holds only the filters
+ * that are set, so it can use the index that matches them.
+ */
+public interface OrderFilterQueries {
+
+    /**
+     * Find one page of the orders matching optional filters, with all related entities eagerly
+     * loaded. Orders are ordered by createdAt and then ID, both descending, and the page starts after
+     * the given position, so each page is an index range scan however deep it is.
+     *
+     * @param status
+     *            optional status filter
+     * @param startDate
+     *            optional start date filter (inclusive)
+     * @param endDate
+     *            optional end date filter (inclusive)
+     * @param userId
+     *            optional user ID filter
+     * @param afterCreatedAt
+     *            the creation time of the last order on the previous page
+     * @param afterId
+     *            the ID of the last order on the previous page
+     * @param limit
+     *            the most orders to return
+     * @return the page of orders
+     */
+    List<Order> findPageWithFilters(OrderStatus status, OffsetDateTime startDate, OffsetDateTime endDate, UUID userId,
+        OffsetDateTime afterCreatedAt, UUID afterId, Limit limit);
+
+    /**
+     * Find one page of the order rows matching optional filters, as {@link #findPageWithFilters}
+     * but without joining the product, flash sale item or flash sale. Used when only the order's own
+     * fields are requested.
+     *
+     * @param status
+     *            optional status filter
+     * @param startDate
+     *            optional start date filter (inclusive)
+     * @param endDate
+     *            optional end date filter (inclusive)
+     * @param userId
+     *            optional user ID filter
+     * @param afterCreatedAt
+     *            the creation time of the last order on the previous page
+     * @param afterId
+     *            the ID of the last order on the previous page
+     * @param limit
+     *            the most orders to return
+     * @return the page of order summaries
+     */
+    List<OrderSummary> findSummaryPageWithFilters(OrderStatus status, OffsetDateTime startDate, OffsetDateTime endDate,
+        UUID userId, OffsetDateTime afterCreatedAt, UUID afterId, Limit limit);
+
+    /**
+     * Count the orders matching optional filters, stopping at {@code cap} so that the cost of the
+     * count is bounded however many orders there are. Pending changes are flushed first.
+     *
+     * @param status    optional status filter
+     * @param startDate optional start date filter (inclusive)
+     * @param endDate   optional end date filter (inclusive)
+     * @param userId    optional user ID filter
+     * @param cap       the most orders to count
+     * @return the number of matching orders, at most {@code cap}
+     */
+    long countWithFilters(OrderStatus status, OffsetDateTime startDate, OffsetDateTime endDate, UUID userId, long cap);
+
+    /**
+     * Stream the orders matching optional filters, newest first, through a database cursor that
+     * reads {@code fetchSize} rows at a time. Rows are mapped straight from the result set, so memory
+     * use does not grow with the number of orders. The cursor stays open until every row has been
+     * handed over, inside one read-only transaction.
+     *
+     * @param status    optional status filter
+     * @param startDate optional start date filter (inclusive)
+     * @param endDate   optional end date filter (inclusive)
+     * @param userId    optional user ID filter
+     * @param fetchSize the rows to read from the database at a time
+     * @param rows      receives each order in turn
+     */
+    void streamWithFilters(OrderStatus status, OffsetDateTime startDate, OffsetDateTime endDate, UUID userId,
+        int fetchSize, Consumer<OrderExportRow> rows);
+}
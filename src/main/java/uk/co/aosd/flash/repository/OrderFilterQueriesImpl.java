@@ -0,0 +1,194 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * Implementation of {@link OrderFilterQueries} that builds each query from the filters that are set.
+ */
+@Transactional(readOnly = true)
+public class OrderFilterQueriesImpl implements OrderFilterQueries {
+
+    private static final String ORDERS_WITH_RELATIONS = "SELECT o FROM Order o "
+        + "LEFT JOIN FETCH o.product p "
+        + "LEFT JOIN FETCH o.flashSaleItem fsi "
+        + "LEFT JOIN FETCH fsi.flashSale fs";
+
+    private static final String ORDER_SUMMARIES = "SELECT o.id AS orderId, o.userId AS userId, o.product.id AS productId, "
+        + "o.flashSaleItem.id AS flashSaleItemId, o.soldPrice AS soldPrice, o.soldQuantity AS soldQuantity, "
+        + "o.status AS status, o.createdAt AS createdAt "
+        + "FROM Order o";
+
+    private static final String NEWEST_FIRST = " ORDER BY o.createdAt DESC, o.id DESC";
+
+    private static final String EXPORT_SQL = "SELECT o.id, o.user_id, o.product_id, p.name AS product_name, "
+        + "fsi.flash_sale_id, o.flash_sale_item_id, o.sold_price, o.sold_quantity, o.status, o.created_at "
+        + "FROM orders o "
+        + "JOIN products p ON p.id = o.product_id "
+        + "JOIN flash_sale_items fsi ON fsi.id = o.flash_sale_item_id";
+
+    private final EntityManager entityManager;
+    private final DataSource dataSource;
+
+    public OrderFilterQueriesImpl(final EntityManager entityManager, final DataSource dataSource) {
+        this.entityManager = entityManager;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public List<Order> findPageWithFilters(final OrderStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final UUID userId, final OffsetDateTime afterCreatedAt, final UUID afterId,
+        final Limit limit) {
+        final FilterClause where = pageFilters(status, startDate, endDate, userId, afterCreatedAt, afterId);
+        return limit(where.bind(entityManager.createQuery(ORDERS_WITH_RELATIONS + where.sql() + NEWEST_FIRST, Order.class)),
+            limit).getResultList();
+    }
+
+    @Override
+    public List<OrderSummary> findSummaryPageWithFilters(final OrderStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final UUID userId, final OffsetDateTime afterCreatedAt, final UUID afterId,
+        final Limit limit) {
+        final FilterClause where = pageFilters(status, startDate, endDate, userId, afterCreatedAt, afterId);
+        final List<Tuple> rows = limit(where.bind(entityManager.createQuery(ORDER_SUMMARIES + where.sql() + NEWEST_FIRST, Tuple.class)),
+            limit).getResultList();
+        return rows.stream().<OrderSummary>map(SummaryRow::new).toList();
+    }
+
+    @Override
+    public long countWithFilters(final OrderStatus status, final OffsetDateTime startDate, final OffsetDateTime endDate,
+        final UUID userId, final long cap) {
+        final FilterClause where = rowFilters(status, startDate, endDate, userId);
+        entityManager.flush();
+        final Query query = where.bind(entityManager.createNativeQuery(
+            "SELECT count(*) FROM (SELECT 1 FROM orders o" + where.sql() + " LIMIT :cap) capped"));
+        return wholeNumber(query.setParameter("cap", cap).getSingleResult());
+    }
+
+    @Override
+    public void streamWithFilters(final OrderStatus status, final OffsetDateTime startDate, final OffsetDateTime endDate,
+        final UUID userId, final int fetchSize, final Consumer<OrderExportRow> rows) {
+        final FilterClause where = rowFilters(status, startDate, endDate, userId);
+        // The driver only reads fetchSize rows at a time when it runs inside a transaction
+        final JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(fetchSize);
+        entityManager.flush();
+        new NamedParameterJdbcTemplate(cursor).query(EXPORT_SQL + where.sql() + " ORDER BY o.created_at DESC, o.id DESC",
+            where.parameters(), (RowCallbackHandler) rs -> rows.accept(exportRow(rs)));
+    }
+
+    private static FilterClause pageFilters(final OrderStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final UUID userId, final OffsetDateTime afterCreatedAt, final UUID afterId) {
+        return createdBetween("o.createdAt", startDate, endDate)
+            .whereIfSet("o.status = :status", "status", status)
+            .whereIfSet("o.userId = :userId", "userId", userId)
+            .where("(o.createdAt, o.id) < (:afterCreatedAt, :afterId)")
+            .parameter("afterCreatedAt", afterCreatedAt)
+            .parameter("afterId", afterId);
+    }
+
+    private static FilterClause rowFilters(final OrderStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final UUID userId) {
+        return createdBetween("o.created_at", startDate, endDate)
+            .whereIfSet("o.status = CAST(:status AS order_status)", "status", status != null ? status.name() : null)
+            .whereIfSet("o.user_id = :userId", "userId", userId);
+    }
+
+    private static OrderExportRow exportRow(final ResultSet rs) throws SQLException {
+        final BigDecimal soldPrice = rs.getBigDecimal("sold_price");
+        final int soldQuantity = rs.getInt("sold_quantity");
+        return new OrderExportRow(
+            rs.getObject("id", UUID.class),
+            rs.getObject("user_id", UUID.class),
+            rs.getObject("product_id", UUID.class),
+            rs.getString("product_name"),
+            rs.getObject("flash_sale_id", UUID.class),
+            rs.getObject("flash_sale_item_id", UUID.class),
+            soldPrice,
+            soldQuantity,
+            soldPrice.multiply(BigDecimal.valueOf(soldQuantity)),
+            OrderStatus.valueOf(rs.getString("status")),
+            rs.getObject("created_at", OffsetDateTime.class));
+    }
+
+    private static FilterClause createdBetween(final String column, final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        return new FilterClause()
+            .whereIfSet(column + " >= :startDate", "startDate", startDate)
+            .whereIfSet(column + " <= :endDate", "endDate", endDate);
+    }
+
+    private static <Q extends Query> Q limit(final Q query, final Limit limit) {
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+        return query;
+    }
+
+    private static Long wholeNumber(final Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+
+    /**
+     * An {@link OrderSummary} read from a tuple with the summary's column aliases.
+     */
+    private record SummaryRow(Tuple tuple) implements OrderSummary {
+
+        @Override
+        public UUID getOrderId() {
+            return tuple.get("orderId", UUID.class);
+        }
+
+        @Override
+        public UUID getUserId() {
+            return tuple.get("userId", UUID.class);
+        }
+
+        @Override
+        public UUID getProductId() {
+            return tuple.get("productId", UUID.class);
+        }
+
+        @Override
+        public UUID getFlashSaleItemId() {
+            return tuple.get("flashSaleItemId", UUID.class);
+        }
+
+        @Override
+        public BigDecimal getSoldPrice() {
+            return tuple.get("soldPrice", BigDecimal.class);
+        }
+
+        @Override
+        public Integer getSoldQuantity() {
+            return tuple.get("soldQuantity", Integer.class);
+        }
+
+        @Override
+        public OrderStatus getStatus() {
+            return tuple.get("status", OrderStatus.class);
+        }
+
+        @Override
+        public OffsetDateTime getCreatedAt() {
+            return tuple.get("createdAt", OffsetDateTime.class);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.OrderJob;
+
+/**
+ * Repository for the database-backed order pipeline queue.
+ */
+@Repository
+public interface OrderJobRepository extends JpaRepository<OrderJob, UUID> {
+
+    /**
+     * Claim up to {@code batchSize} visible jobs for a stage. Rows locked by another worker are
+     * skipped, so concurrent workers on any node never claim the same job. Claimed jobs are hidden
+     * for the visibility timeout; if they are not deleted by then they become claimable again.
+     *
+     * @param stage             the stage name
+     * @param batchSize         the maximum number of jobs to claim
+     * @param visibilitySeconds how long claimed jobs stay hidden
+     * @param maxAttempts       jobs with this many attempts are no longer claimed
+     * @param workerId          identifies the claiming worker
+     * @return the claimed jobs
+     */
+    @Transactional
+    @Query(value = "UPDATE order_job_queue SET available_at = CURRENT_TIMESTAMP + make_interval(secs => :visibilitySeconds), " +
+        "attempts = attempts + 1, claimed_by = :workerId " +
+        "WHERE id IN (SELECT id FROM order_job_queue " +
+        "    WHERE stage = :stage AND available_at <= CURRENT_TIMESTAMP AND attempts < :maxAttempts " +
+        "    ORDER BY available_at " +
+        "    LIMIT :batchSize " +
+        "    FOR UPDATE SKIP LOCKED) " +
+        "RETURNING *", nativeQuery = true)
+    List<OrderJob> claimBatch(
+        @Param("stage") String stage,
+        @Param("batchSize") int batchSize,
+        @Param("visibilitySeconds") int visibilitySeconds,
+        @Param("maxAttempts") int maxAttempts,
+        @Param("workerId") String workerId);
+
+    /**
+     * Count the jobs that have used up their attempts and are no longer claimed. They stay in the
+     * table for inspection until they are deleted or their attempts reset.
+     *
+     * @param maxAttempts the configured maximum attempts
+     * @return the number of exhausted jobs
+     */
+    @Query(value = "SELECT count(*) FROM order_job_queue " +
+        "WHERE attempts >= :maxAttempts AND available_at <= CURRENT_TIMESTAMP", nativeQuery = true)
+    long countExhausted(@Param("maxAttempts") int maxAttempts);
+}
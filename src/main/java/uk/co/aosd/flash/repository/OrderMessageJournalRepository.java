@@ -0,0 +1,24 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import uk.co.aosd.flash.domain.OrderMessageJournalEntry;
+
+/**
+ * Repository for the in-process order pipeline journal.
+ */
+@Repository
+public interface OrderMessageJournalRepository extends JpaRepository<OrderMessageJournalEntry, UUID> {
+
+    /**
+     * Find journal entries published before the given time, oldest first (used for replay on startup).
+     *
+     * @param cutoff only entries created before this time are returned
+     * @return list of unhandled journal entries
+     */
+    List<OrderMessageJournalEntry> findByCreatedAtBeforeOrderByCreatedAtAsc(OffsetDateTime cutoff);
+}
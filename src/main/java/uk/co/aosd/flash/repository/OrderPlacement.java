@@ -0,0 +1,36 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.UUID;
+
+/**
+ * The outcome of placing an order in a single statement with {@link OrderRepository#placeOrder}.
+ */
+public interface OrderPlacement {
+
+    String PLACED = "PLACED";
+    String ITEM_NOT_FOUND = "ITEM_NOT_FOUND";
+    String SALE_NOT_ACTIVE = "SALE_NOT_ACTIVE";
+    String LOTTERY = "LOTTERY";
+    String INSUFFICIENT_STOCK = "INSUFFICIENT_STOCK";
+
+    /**
+     * Get the new order's ID.
+     *
+     * @return the order ID, or null if the order was rejected
+     */
+    UUID getOrderId();
+
+    /**
+     * Get the outcome: {@link #PLACED} or the reason the order was rejected.
+     *
+     * @return the outcome
+     */
+    String getOutcome();
+
+    /**
+     * Get the item's stock still available when the order was rejected.
+     *
+     * @return the available stock, or null if the item does not exist
+     */
+    Integer getAvailable();
+}
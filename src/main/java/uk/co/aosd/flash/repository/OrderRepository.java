@@ -1,20 +1,24 @@
 package uk.co.aosd.flash.repository;
 
-import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import uk.co.aosd.flash.domain.Order;
 import uk.co.aosd.flash.domain.OrderStatus;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, UUID> {
+public interface OrderRepository extends JpaRepository<Order, UUID>, OrderStatusTransitions, OrderFilterQueries,
+    OrderRollupQueries {
 
     /**
      * Find order by ID with flash sale item eagerly loaded.
@@ -36,6 +40,122 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     @Query("SELECT o FROM Order o LEFT JOIN FETCH o.product WHERE o.id = :id")
     Optional<Order> findByIdWithProduct(@Param("id") UUID id);
 
+    /**
+     * Find orders by IDs with product eagerly loaded.
+     *
+     * @param ids
+     *            the order IDs
+     * @return the orders with product (missing IDs are omitted)
+     */
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.product WHERE o.id IN :ids")
+    List<Order> findByIdInWithProduct(@Param("ids") List<UUID> ids);
+
+    /**
+     * Load an order and lock its row until the end of the transaction, so that payment, cancel and
+     * expiry of the same order cannot interleave.
+     *
+     * @param id the order ID
+     * @return the locked order
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Place an order in one statement: the item's sold count is raised if its sale is ACTIVE and
+     * not over, it is not a lottery sale and the stock is there, and the PENDING order is inserted
+     * from the reserved row. The item row is locked for this statement only, not across several
+     * round trips. When nothing is reserved the same statement reports why.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param userId          the user ID
+     * @param quantity        the quantity ordered
+     * @param now             the order time
+     * @param expiresAt       when the order's hold runs out
+     * @return the new order's ID, or the reason it was rejected
+     */
+    @Transactional
+    @Query(value = "WITH reserved AS ("
+        + "  UPDATE flash_sale_items i SET sold_count = i.sold_count + :quantity "
+        + "  FROM flash_sales s "
+        + "  WHERE i.id = :flashSaleItemId AND s.id = i.flash_sale_id "
+        + "  AND s.status = 'ACTIVE' AND s.end_time > :now "
+        + "  AND i.sold_count + :quantity <= i.allocated_stock "
+        + "  AND NOT EXISTS (SELECT 1 FROM flash_sale_lotteries l WHERE l.flash_sale_id = s.id) "
+        + "  RETURNING i.id, i.product_id, i.sale_price"
+        + "), placed AS ("
+        + "  INSERT INTO orders (user_id, flash_sale_item_id, product_id, sold_price, sold_quantity, status, created_at, expires_at) "
+        + "  SELECT :userId, id, product_id, sale_price, :quantity, CAST('PENDING' AS order_status), :now, :expiresAt FROM reserved "
+        + "  RETURNING id"
+        + ") SELECT p.id AS \"orderId\", "
+        + "  CASE WHEN p.id IS NOT NULL THEN 'PLACED' "
+        + "    WHEN i.id IS NULL THEN 'ITEM_NOT_FOUND' "
+        + "    WHEN s.status <> 'ACTIVE' OR s.end_time <= :now THEN 'SALE_NOT_ACTIVE' "
+        + "    WHEN EXISTS (SELECT 1 FROM flash_sale_lotteries l WHERE l.flash_sale_id = s.id) THEN 'LOTTERY' "
+        + "    ELSE 'INSUFFICIENT_STOCK' END AS \"outcome\", "
+        + "  i.allocated_stock - i.sold_count AS \"available\" "
+        + "FROM (SELECT 1) AS request "
+        + "LEFT JOIN placed p ON TRUE "
+        + "LEFT JOIN flash_sale_items i ON i.id = :flashSaleItemId "
+        + "LEFT JOIN flash_sales s ON s.id = i.flash_sale_id", nativeQuery = true)
+    OrderPlacement placeOrder(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("userId") UUID userId,
+        @Param("quantity") int quantity, @Param("now") OffsetDateTime now, @Param("expiresAt") OffsetDateTime expiresAt);
+
+    /**
+     * Lock the PENDING orders whose hold has run out, so they can be expired. Orders locked by another
+     * transaction (e.g. one being paid for) are skipped rather than waited for; they are picked up
+     * again later if they are still PENDING.
+     *
+     * @param ids the candidate order IDs
+     * @param now the current time
+     * @return the locked orders
+     */
+    @Query(value = "SELECT * FROM orders WHERE id IN (:ids) AND status = 'PENDING' AND expires_at <= :now " +
+        "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Order> lockExpiredPendingOrders(@Param("ids") List<UUID> ids, @Param("now") OffsetDateTime now);
+
+    /**
+     * Find PENDING orders whose hold has run out, oldest first. Served by the partial index on
+     * PENDING orders, so the cost depends on the unpaid backlog rather than the size of the table.
+     *
+     * @param now   the current time
+     * @param limit the maximum number of IDs to return
+     * @return the order IDs
+     */
+    @Query(value = "SELECT id FROM orders WHERE status = 'PENDING' AND expires_at <= :now " +
+        "ORDER BY expires_at LIMIT :limit", nativeQuery = true)
+    List<UUID> findExpiredPendingOrderIds(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    /**
+     * Start a new hold on a PENDING order, for an order moved back to PENDING whose old hold has
+     * already run out.
+     *
+     * @param id        the order ID
+     * @param expiresAt when the new hold runs out
+     * @return the number of orders updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE orders SET expires_at = :expiresAt WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int restartHold(@Param("id") UUID id, @Param("expiresAt") OffsetDateTime expiresAt);
+
+    /**
+     * Move the given orders from one status to another in a single statement.
+     * Orders not currently in {@code fromStatus} are left untouched.
+     *
+     * @param ids
+     *            the order IDs
+     * @param fromStatus
+     *            the required current status
+     * @param toStatus
+     *            the new status
+     * @return the number of orders updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :toStatus WHERE o.id IN :ids AND o.status = :fromStatus")
+    int updateStatusForIds(@Param("ids") List<UUID> ids, @Param("fromStatus") OrderStatus fromStatus,
+        @Param("toStatus") OrderStatus toStatus);
+
     /**
      * Find order by ID and userId with all related entities eagerly loaded.
      * Used for ownership validation and retrieving complete order details.
@@ -72,6 +192,18 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
         @Param("userId") UUID userId,
         @Param("flashSaleItemId") UUID flashSaleItemId);
 
+    /**
+     * Check whether a user already has an order for a flash sale item, without loading it.
+     *
+     * @param userId
+     *            the user ID
+     * @param flashSaleItemId
+     *            the flash sale item ID
+     * @return true if the user has an order for the item
+     */
+    @Query("SELECT COUNT(o) > 0 FROM Order o WHERE o.userId = :userId AND o.flashSaleItem.id = :flashSaleItemId")
+    boolean existsByUserIdAndFlashSaleItemId(@Param("userId") UUID userId, @Param("flashSaleItemId") UUID flashSaleItemId);
+
     /**
      * Find all orders for a user with all related entities eagerly loaded.
      * Results are ordered by createdAt descending (most recent first).
@@ -157,36 +289,6 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
         @Param("startDate") OffsetDateTime startDate,
         @Param("endDate") OffsetDateTime endDate);
 
-    /**
-     * Find all orders with optional filters for admin use.
-     * All related entities (product, flashSaleItem, flashSale) are eagerly loaded.
-     * Results are ordered by createdAt descending (most recent first).
-     *
-     * @param status
-     *            optional status filter
-     * @param startDate
-     *            optional start date filter (inclusive)
-     * @param endDate
-     *            optional end date filter (inclusive)
-     * @param userId
-     *            optional user ID filter
-     * @return list of orders matching the criteria
-     */
-    @Query("SELECT DISTINCT o FROM Order o " +
-        "LEFT JOIN FETCH o.product p " +
-        "LEFT JOIN FETCH o.flashSaleItem fsi " +
-        "LEFT JOIN FETCH fsi.flashSale fs " +
-        "WHERE o.status = COALESCE(:status, o.status) " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt) " +
-        "AND o.userId = COALESCE(:userId, o.userId) " +
-        "ORDER BY o.createdAt DESC")
-    List<Order> findAllWithFilters(
-        @Param("status") OrderStatus status,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate,
-        @Param("userId") UUID userId);
-
     /**
      * Find order by ID with all related entities eagerly loaded for admin view.
      * Does not validate user ownership.
@@ -203,168 +305,29 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     Optional<Order> findByIdForAdmin(@Param("id") UUID id);
 
     /**
-     * Calculate total revenue from orders with optional status and date range
-     * filters.
-     * Revenue is calculated as SUM(soldPrice * soldQuantity) for matching orders.
+     * Create the monthly partitions of orders and their status history for every month from
+     * {@code from} to {@code to}, both inclusive, that does not have one yet. Rows for those months
+     * in the default partitions are moved into the new ones.
      *
-     * @param status
-     *            optional status filter (null for all statuses)
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total revenue, or 0 if no matching orders
+     * @param from a time in the first month
+     * @param to   a time in the last month
+     * @return the number of partitions created
      */
-    @Query("SELECT COALESCE(SUM(o.soldPrice * o.soldQuantity), 0) FROM Order o " +
-        "WHERE o.status = COALESCE(:status, o.status) " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    BigDecimal calculateTotalRevenue(
-        @Param("status") OrderStatus status,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Count orders by status with optional date range filter.
-     *
-     * @param status
-     *            the order status
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return count of orders matching the criteria
-     */
-    @Query("SELECT COUNT(o) FROM Order o " +
-        "WHERE o.status = :status " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    Long countOrdersByStatus(
-        @Param("status") OrderStatus status,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Calculate average order value (total revenue / number of paid orders).
-     *
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return average order value, or 0 if no paid orders
-     */
-    @Query("SELECT COALESCE(SUM(o.soldPrice * o.soldQuantity) / NULLIF(COUNT(o), 0), 0) FROM Order o " +
-        "WHERE o.status = 'PAID' " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    BigDecimal calculateAverageOrderValue(
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Find top products by revenue (sum of soldPrice * soldQuantity) for paid
-     * orders.
-     *
-     * @param limit
-     *            maximum number of results
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return list of Object arrays: [productId, productName, revenue]
-     */
-    @Query(value = "SELECT o.product_id, p.name, SUM(o.sold_price * o.sold_quantity) as revenue " +
-        "FROM orders o " +
-        "JOIN products p ON o.product_id = p.id " +
-        "WHERE o.status = 'PAID' " +
-        "AND o.created_at >= COALESCE(:startDate, TIMESTAMP '1970-01-01 00:00:00+00') " +
-        "AND o.created_at <= COALESCE(:endDate, TIMESTAMP '9999-12-31 23:59:59+00') " +
-        "GROUP BY o.product_id, p.name " +
-        "ORDER BY revenue DESC " +
-        "LIMIT :limit", nativeQuery = true)
-    List<Object[]> findTopProductsByRevenue(
-        @Param("limit") int limit,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
+    @Transactional
+    @Query(value = "SELECT create_monthly_partitions('orders', 'created_at', :from, :to) "
+        + "+ create_monthly_partitions('order_status_history', 'changed_at', :from, :to)", nativeQuery = true)
+    int createMonthlyPartitions(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
 
     /**
-     * Find top products by quantity sold for paid orders.
+     * Detach the monthly partitions of orders and their status history that end on or before
+     * {@code before} and move them to the archive schema. One order per user per flash sale item
+     * is still enforced for archived orders.
      *
-     * @param limit
-     *            maximum number of results
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return list of Object arrays: [productId, productName, quantitySold]
-     */
-    @Query(value = "SELECT o.product_id, p.name, SUM(o.sold_quantity) as quantity_sold " +
-        "FROM orders o " +
-        "JOIN products p ON o.product_id = p.id " +
-        "WHERE o.status = 'PAID' " +
-        "AND o.created_at >= COALESCE(:startDate, TIMESTAMP '1970-01-01 00:00:00+00') " +
-        "AND o.created_at <= COALESCE(:endDate, TIMESTAMP '9999-12-31 23:59:59+00') " +
-        "GROUP BY o.product_id, p.name " +
-        "ORDER BY quantity_sold DESC " +
-        "LIMIT :limit", nativeQuery = true)
-    List<Object[]> findTopProductsByQuantity(
-        @Param("limit") int limit,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Calculate total order quantity (sum of soldQuantity) with optional filters.
-     *
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total quantity ordered
-     */
-    @Query("SELECT COALESCE(SUM(o.soldQuantity), 0) FROM Order o " +
-        "WHERE o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    Long calculateTotalOrderQuantity(
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Calculate revenue for a specific product from paid orders.
-     *
-     * @param productId
-     *            the product ID
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total revenue for the product
-     */
-    @Query("SELECT COALESCE(SUM(o.soldPrice * o.soldQuantity), 0) FROM Order o " +
-        "WHERE o.product.id = :productId AND o.status = 'PAID' " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    BigDecimal calculateRevenueForProduct(
-        @Param("productId") UUID productId,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
-
-    /**
-     * Calculate quantity sold for a specific product from paid orders.
-     *
-     * @param productId
-     *            the product ID
-     * @param startDate
-     *            optional start date filter (null for no lower bound)
-     * @param endDate
-     *            optional end date filter (null for no upper bound)
-     * @return total quantity sold for the product
+     * @param before the end of the archived months
+     * @return the number of partitions archived
      */
-    @Query("SELECT COALESCE(SUM(o.soldQuantity), 0) FROM Order o " +
-        "WHERE o.product.id = :productId AND o.status = 'PAID' " +
-        "AND o.createdAt >= COALESCE(:startDate, o.createdAt) " +
-        "AND o.createdAt <= COALESCE(:endDate, o.createdAt)")
-    Long calculateQuantityForProduct(
-        @Param("productId") UUID productId,
-        @Param("startDate") OffsetDateTime startDate,
-        @Param("endDate") OffsetDateTime endDate);
+    @Transactional
+    @Query(value = "SELECT archive_monthly_partitions('orders', :before) "
+        + "+ archive_monthly_partitions('order_status_history', :before)", nativeQuery = true)
+    int archiveMonthlyPartitions(@Param("before") OffsetDateTime before);
 }
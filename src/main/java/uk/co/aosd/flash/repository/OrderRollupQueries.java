@@ -0,0 +1,61 @@
+package uk.co.aosd.flash.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Order analytics read from the hourly order rollups, which the database keeps up to date as orders
+ * are placed, change status and are deleted. Changes are appended as deltas and folded into the
+ * buckets in batches; queries add the deltas not folded yet. Each query sums the buckets in its date
+ * range, so its cost depends on the number of hours, items and products in the range rather than the
+ * number of orders. Orders are counted in the UTC hour they were placed in, and a date range covers every
+ * hour it overlaps.
+ */
+public interface OrderRollupQueries {
+
+    /**
+     * Sum the orders in each status.
+     *
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return the totals of each status with orders in the range
+     */
+    List<OrderStatusTotals> sumOrdersByStatus(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Find the products with the most quantity sold in paid orders.
+     *
+     * @param limit
+     *            maximum number of results
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return the products' totals, highest quantity first
+     */
+    List<ProductTotals> findTopPaidProductsByQuantity(int limit, OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Find the products with the most revenue from paid orders.
+     *
+     * @param limit
+     *            maximum number of results
+     * @param startDate
+     *            optional start date filter (null for no lower bound)
+     * @param endDate
+     *            optional end date filter (null for no upper bound)
+     * @return the products' totals, highest revenue first
+     */
+    List<ProductTotals> findTopPaidProductsByRevenue(int limit, OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Fold the oldest rollup deltas into their buckets, in one transaction.
+     *
+     * @param limit
+     *            maximum number of deltas to fold
+     * @return the number of deltas folded
+     */
+    int foldRollupDeltas(int limit);
+}
@@ -0,0 +1,106 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * Implementation of {@link OrderRollupQueries} over the {@code order_rollup_totals} view: the folded
+ * {@code order_rollups} buckets plus the deltas not folded yet.
+ */
+@Transactional(readOnly = true)
+public class OrderRollupQueriesImpl implements OrderRollupQueries {
+
+    private final EntityManager entityManager;
+
+    public OrderRollupQueriesImpl(final EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<OrderStatusTotals> sumOrdersByStatus(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        final FilterClause where = bucketsBetween(startDate, endDate);
+        entityManager.flush();
+        final List<Object[]> rows = where.bind(entityManager.createNativeQuery(
+            "SELECT CAST(r.status AS text), SUM(r.order_count), SUM(r.quantity), SUM(r.revenue) "
+                + "FROM order_rollup_totals r"
+                + where.sql()
+                + " GROUP BY r.status")).getResultList();
+        return rows.stream()
+            .map(row -> new OrderStatusTotals(OrderStatus.valueOf((String) row[0]), wholeNumber(row[1]),
+                wholeNumber(row[2]), decimal(row[3])))
+            .toList();
+    }
+
+    @Override
+    public List<ProductTotals> findTopPaidProductsByQuantity(final int limit, final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        return findTopPaidProducts("quantity_sold", limit, startDate, endDate);
+    }
+
+    @Override
+    public List<ProductTotals> findTopPaidProductsByRevenue(final int limit, final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        return findTopPaidProducts("revenue", limit, startDate, endDate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProductTotals> findTopPaidProducts(final String orderBy, final int limit,
+        final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        final FilterClause where = bucketsBetween(startDate, endDate)
+            .where("r.status = 'PAID'");
+        entityManager.flush();
+        final Query query = where.bind(entityManager.createNativeQuery("SELECT r.product_id, p.name, "
+            + "SUM(r.quantity) AS quantity_sold, SUM(r.revenue) AS revenue "
+            + "FROM order_rollup_totals r "
+            + "JOIN products p ON p.id = r.product_id"
+            + where.sql()
+            + " GROUP BY r.product_id, p.name "
+            + "HAVING SUM(r.order_count) > 0 "
+            + "ORDER BY " + orderBy + " DESC "
+            + "LIMIT :limit"));
+        final List<Object[]> rows = query.setParameter("limit", limit).getResultList();
+        return rows.stream()
+            .map(row -> new ProductTotals((UUID) row[0], (String) row[1], wholeNumber(row[2]), decimal(row[3])))
+            .toList();
+    }
+
+    @Override
+    @Transactional
+    public int foldRollupDeltas(final int limit) {
+        return ((Number) entityManager.createNativeQuery("SELECT fold_order_rollup_deltas(:limit)")
+            .setParameter("limit", limit)
+            .getSingleResult()).intValue();
+    }
+
+    /**
+     * Buckets of the hours the range overlaps: a bucket is the UTC hour starting at its time.
+     */
+    private static FilterClause bucketsBetween(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        return new FilterClause()
+            .whereIfSet("r.bucket >= :startDate", "startDate", startDate != null
+                ? startDate.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS)
+                : null)
+            .whereIfSet("r.bucket <= :endDate", "endDate", endDate);
+    }
+
+    private static BigDecimal decimal(final Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+
+    private static long wholeNumber(final Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import uk.co.aosd.flash.domain.OrderStatusHistory;
 
@@ -11,4 +13,14 @@ import uk.co.aosd.flash.domain.OrderStatusHistory;
 public interface OrderStatusHistoryRepository extends JpaRepository<OrderStatusHistory, UUID> {
 
     List<OrderStatusHistory> findByOrderIdOrderByChangedAtAsc(UUID orderId);
+
+    /**
+     * Find the status history of many orders in one query, oldest change first. The IDs are bound as
+     * a single array, so the statement is the same whatever the number of orders.
+     *
+     * @param orderIds the order IDs
+     * @return the history of all the orders
+     */
+    @Query(value = "SELECT * FROM order_status_history WHERE order_id = ANY(:orderIds) ORDER BY changed_at, id", nativeQuery = true)
+    List<OrderStatusHistory> findByOrderIdIn(@Param("orderIds") UUID[] orderIds);
 }
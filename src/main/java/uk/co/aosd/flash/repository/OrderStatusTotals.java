@@ -0,0 +1,26 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * The orders in one status summed over a range of hourly rollup buckets.
+ *
+ * @param status   the order status
+ * @param orders   the number of orders
+ * @param quantity the total quantity ordered
+ * @param revenue  the total of sold price times quantity
+ */
+public record OrderStatusTotals(OrderStatus status, long orders, long quantity, BigDecimal revenue) {
+
+    /**
+     * Totals for a status with no orders.
+     *
+     * @param status the order status
+     * @return zero totals
+     */
+    public static OrderStatusTotals none(final OrderStatus status) {
+        return new OrderStatusTotals(status, 0L, 0L, BigDecimal.ZERO);
+    }
+}
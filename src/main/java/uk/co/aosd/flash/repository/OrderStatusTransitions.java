@@ -0,0 +1,27 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * Order status transitions made by the database in a single call.
+ */
+public interface OrderStatusTransitions {
+
+    /**
+     * Change an order's status with the {@code transition_order_status} function: the order row is
+     * locked and its status checked, the flash sale item's sold count or the product's stock is
+     * adjusted as the transition requires, the status is changed and the history row is appended, all
+     * in one round trip. Nothing is changed unless the outcome is OK. Pending changes are flushed first
+     * and the persistence context is cleared afterwards, so later reads see the new state.
+     *
+     * @param orderId         the order ID
+     * @param expected        the status the order must be in, or null to allow any permitted transition
+     * @param to              the new status
+     * @param changedByUserId the user making the change, or null for system changes
+     * @param adjustStock     false to change the status without adjusting stock
+     * @return the outcome, with the order's previous status, user and flash sale item
+     */
+    OrderTransition transitionStatus(UUID orderId, OrderStatus expected, OrderStatus to, UUID changedByUserId, boolean adjustStock);
+}
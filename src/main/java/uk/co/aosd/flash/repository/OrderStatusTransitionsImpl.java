@@ -0,0 +1,50 @@
+package uk.co.aosd.flash.repository;
+
+import java.sql.Types;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * JDBC implementation of {@link OrderStatusTransitions}.
+ */
+public class OrderStatusTransitionsImpl implements OrderStatusTransitions {
+
+    private static final String TRANSITION_SQL = "SELECT result_code, prior_status, order_user_id, order_item_id "
+        + "FROM transition_order_status(CAST(? AS uuid), CAST(? AS order_status), CAST(? AS order_status), CAST(? AS uuid), ?)";
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderStatusTransitionsImpl(final EntityManager entityManager, final JdbcTemplate jdbcTemplate) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public OrderTransition transitionStatus(final UUID orderId, final OrderStatus expected, final OrderStatus to,
+        final UUID changedByUserId, final boolean adjustStock) {
+        entityManager.flush();
+        final OrderTransition transition = jdbcTemplate.query(TRANSITION_SQL, ps -> {
+            ps.setObject(1, orderId, Types.OTHER);
+            ps.setString(2, expected != null ? expected.name() : null);
+            ps.setString(3, to.name());
+            ps.setObject(4, changedByUserId, Types.OTHER);
+            ps.setBoolean(5, adjustStock);
+        }, rs -> {
+            rs.next();
+            final String priorStatus = rs.getString("prior_status");
+            return new OrderTransition(
+                OrderTransition.Outcome.valueOf(rs.getString("result_code")),
+                priorStatus != null ? OrderStatus.valueOf(priorStatus) : null,
+                rs.getObject("order_user_id", UUID.class),
+                rs.getObject("order_item_id", UUID.class));
+        });
+        entityManager.clear();
+        return transition;
+    }
+}
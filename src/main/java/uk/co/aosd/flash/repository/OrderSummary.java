@@ -0,0 +1,70 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * The columns of an order row, read with {@link OrderRepository#findSummaryPageWithFilters} without
+ * joining the product or flash sale.
+ */
+public interface OrderSummary {
+
+    /**
+     * Get the order ID.
+     *
+     * @return the order ID
+     */
+    UUID getOrderId();
+
+    /**
+     * Get the ID of the user who placed the order.
+     *
+     * @return the user ID
+     */
+    UUID getUserId();
+
+    /**
+     * Get the ordered product's ID.
+     *
+     * @return the product ID
+     */
+    UUID getProductId();
+
+    /**
+     * Get the flash sale item's ID.
+     *
+     * @return the flash sale item ID
+     */
+    UUID getFlashSaleItemId();
+
+    /**
+     * Get the unit price the order was sold at.
+     *
+     * @return the sold price
+     */
+    BigDecimal getSoldPrice();
+
+    /**
+     * Get the quantity ordered.
+     *
+     * @return the sold quantity
+     */
+    Integer getSoldQuantity();
+
+    /**
+     * Get the order's status.
+     *
+     * @return the status
+     */
+    OrderStatus getStatus();
+
+    /**
+     * Get when the order was placed.
+     *
+     * @return the creation time
+     */
+    OffsetDateTime getCreatedAt();
+}
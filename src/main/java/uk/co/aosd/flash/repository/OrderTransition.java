@@ -0,0 +1,34 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.OrderStatus;
+
+/**
+ * The result of an order status transition made with {@link OrderStatusTransitions#transitionStatus}.
+ *
+ * @param outcome         whether the transition was made, or why not
+ * @param previousStatus  the order's status before the transition, or null if the order does not exist
+ * @param userId          the order's user, or null if the order does not exist
+ * @param flashSaleItemId the order's flash sale item, or null if the order does not exist
+ */
+public record OrderTransition(Outcome outcome, OrderStatus previousStatus, UUID userId, UUID flashSaleItemId) {
+
+    /**
+     * Transition outcomes. Nothing is changed unless the outcome is {@link #OK}.
+     */
+    public enum Outcome {
+        /** The status was changed, the stock adjusted and the change recorded. */
+        OK,
+        /** The order is already in the requested status. */
+        UNCHANGED,
+        /** The order does not exist. */
+        NOT_FOUND,
+        /** The order is not in the expected status. */
+        WRONG_STATUS,
+        /** The order's status cannot be changed to the requested one. */
+        INVALID_TRANSITION,
+        /** The stock counters could not be adjusted for the transition. */
+        STOCK_CONFLICT
+    }
+}
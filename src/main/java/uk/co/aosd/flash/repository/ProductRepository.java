@@ -45,6 +45,29 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
         + "WHERE p.id = :id")
     int incrementStock(@Param("id") UUID id, @Param("quantity") int quantity);
 
+    /**
+     * Reserve stock for many products in one statement. Quantities for the same product are summed,
+     * and each product's reserved count is raised only if the result stays within its physical stock;
+     * the check and the update happen under the row lock, so concurrent reservations cannot oversell.
+     *
+     * @param ids        the product IDs
+     * @param quantities the quantity to reserve for each product, in the same order as {@code ids}
+     * @return the IDs of products that could not be reserved (insufficient stock or not found)
+     */
+    @Transactional
+    @Query(value = "WITH requested AS (" +
+        "    SELECT product_id, SUM(quantity) AS quantity " +
+        "    FROM unnest(CAST(:ids AS uuid[]), CAST(:quantities AS int[])) AS r(product_id, quantity) " +
+        "    GROUP BY product_id), " +
+        "reserved AS (" +
+        "    UPDATE products p SET reserved_count = p.reserved_count + requested.quantity " +
+        "    FROM requested " +
+        "    WHERE p.id = requested.product_id AND p.reserved_count + requested.quantity <= p.total_physical_stock " +
+        "    RETURNING p.id) " +
+        "SELECT requested.product_id FROM requested " +
+        "WHERE requested.product_id NOT IN (SELECT id FROM reserved)", nativeQuery = true)
+    List<UUID> reserveStockReturningFailures(@Param("ids") UUID[] ids, @Param("quantities") Integer[] quantities);
+
     /**
      * Count total number of products in catalog.
      *
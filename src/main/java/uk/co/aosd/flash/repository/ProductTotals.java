@@ -0,0 +1,15 @@
+package uk.co.aosd.flash.repository;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A product's paid orders summed over a range of hourly rollup buckets.
+ *
+ * @param productId    the product ID
+ * @param productName  the product name
+ * @param quantitySold the total quantity sold
+ * @param revenue      the total of sold price times quantity
+ */
+public record ProductTotals(UUID productId, String productName, long quantitySold, BigDecimal revenue) {
+}
@@ -0,0 +1,78 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uk.co.aosd.flash.domain.WaitlistEntry;
+
+/**
+ * Repository for the per-item waitlists.
+ */
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, UUID> {
+
+    /**
+     * Add a buyer to an item's waitlist, or change the quantity they are waiting for. A buyer who is
+     * already waiting keeps their place in the queue.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param userId          the user ID
+     * @param quantity        the quantity wanted
+     * @return the number of rows inserted or updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "INSERT INTO waitlist_entries (flash_sale_item_id, user_id, quantity) " +
+        "VALUES (:flashSaleItemId, :userId, :quantity) " +
+        "ON CONFLICT (flash_sale_item_id, user_id) DO UPDATE SET quantity = EXCLUDED.quantity", nativeQuery = true)
+    int upsert(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("userId") UUID userId, @Param("quantity") int quantity);
+
+    Optional<WaitlistEntry> findByFlashSaleItemIdAndUserId(UUID flashSaleItemId, UUID userId);
+
+    /**
+     * Get a buyer's place in an item's waitlist, counting from 1 at the head.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param userId          the user ID
+     * @return the position, or 0 if the buyer is not waiting
+     */
+    @Query(value = "SELECT COUNT(*) FROM waitlist_entries w " +
+        "JOIN waitlist_entries me ON me.flash_sale_item_id = w.flash_sale_item_id " +
+        "WHERE me.flash_sale_item_id = :flashSaleItemId AND me.user_id = :userId " +
+        "AND (w.created_at, w.id) <= (me.created_at, me.id)", nativeQuery = true)
+    long findPosition(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("userId") UUID userId);
+
+    /**
+     * Lock and return the oldest entries of an item's waitlist. Allocations for the same item
+     * queue behind each other here, so entries are served strictly in arrival order.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param limit           the maximum number of entries
+     * @return the entries, oldest first
+     */
+    @Query(value = "SELECT * FROM waitlist_entries WHERE flash_sale_item_id = :flashSaleItemId " +
+        "ORDER BY created_at, id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<WaitlistEntry> findHeadForUpdate(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("limit") int limit);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.flashSaleItemId = :flashSaleItemId AND w.userId = :userId")
+    int deleteByFlashSaleItemIdAndUserId(@Param("flashSaleItemId") UUID flashSaleItemId, @Param("userId") UUID userId);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.flashSaleItemId = :flashSaleItemId")
+    int deleteByFlashSaleItemId(@Param("flashSaleItemId") UUID flashSaleItemId);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteEntry(@Param("id") UUID id);
+}
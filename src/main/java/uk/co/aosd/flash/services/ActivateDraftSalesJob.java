@@ -1,5 +1,6 @@
 package uk.co.aosd.flash.services;
 
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Component;
 
 /**
  * Quartz job that activates DRAFT sales whose start time has passed.
+ * Part of the safety sweep; with a clustered job store it runs on one node at a time.
  */
 @Component
+@DisallowConcurrentExecution
 public class ActivateDraftSalesJob implements Job {
 
     private static final Logger log = LoggerFactory.getLogger(ActivateDraftSalesJob.class);
@@ -0,0 +1,40 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that activates one DRAFT sale at its start time and refills the sale and active sales caches.
+ */
+@Component
+public class ActivateSaleJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivateSaleJob.class);
+
+    @Autowired
+    private FlashSalesService flashSalesService;
+
+    @Autowired
+    private SaleWarmUpService saleWarmUpService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        final UUID saleId = UUID.fromString(context.getMergedJobDataMap().getString(SaleScheduler.SALE_ID));
+        log.info("Starting ActivateSaleJob execution for FlashSale {}", saleId);
+        try {
+            if (flashSalesService.activateSale(saleId)) {
+                saleWarmUpService.refreshAfterActivation(saleId);
+            }
+        } catch (final Exception e) {
+            log.error("Error executing ActivateSaleJob for FlashSale {}", saleId, e);
+            throw new JobExecutionException("Failed to activate flash sale " + saleId, e);
+        }
+    }
+}
@@ -3,12 +3,15 @@ package uk.co.aosd.flash.services;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.OffsetDateTime;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,10 +24,13 @@ import uk.co.aosd.flash.dto.RevenueMetricsDto;
 import uk.co.aosd.flash.dto.SalesMetricsDto;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.OrderStatusTotals;
 import uk.co.aosd.flash.repository.ProductRepository;
+import uk.co.aosd.flash.repository.ProductTotals;
 
 /**
- * Service for analytics and reporting.
+ * Service for analytics and reporting. Order figures are summed from the hourly order rollups, so
+ * a date range covers every UTC hour it overlaps.
  */
 @Service
 @RequiredArgsConstructor
@@ -38,6 +44,9 @@ public class AnalyticsService {
     private final FlashSaleRepository flashSaleRepository;
     private final ProductRepository productRepository;
 
+    @Value("${app.orders.rollups.batch-size:10000}")
+    private int rollupBatchSize = 10000;
+
     /**
      * Get sales performance metrics.
      *
@@ -112,20 +121,16 @@ public class AnalyticsService {
     public RevenueMetricsDto getRevenueMetrics(final OffsetDateTime startDate, final OffsetDateTime endDate) {
         log.info("Calculating revenue metrics for date range: {} to {}", startDate, endDate);
 
-        // Calculate total revenue from PAID orders
-        final BigDecimal totalRevenue = orderRepository.calculateTotalRevenue(
-            OrderStatus.PAID, startDate, endDate);
-
-        // Calculate refunded revenue
-        final BigDecimal totalRefundedRevenue = orderRepository.calculateTotalRevenue(
-            OrderStatus.REFUNDED, startDate, endDate);
-
-        // Count paid orders
-        final Long totalPaidOrders = orderRepository.countOrdersByStatus(
-            OrderStatus.PAID, startDate, endDate);
+        final Map<OrderStatus, OrderStatusTotals> totals = sumOrdersByStatus(startDate, endDate);
+        final OrderStatusTotals paid = totals.get(OrderStatus.PAID);
+        final BigDecimal totalRevenue = paid.revenue();
+        final BigDecimal totalRefundedRevenue = totals.get(OrderStatus.REFUNDED).revenue();
+        final Long totalPaidOrders = paid.orders();
 
         // Calculate average order value
-        final BigDecimal averageOrderValue = orderRepository.calculateAverageOrderValue(startDate, endDate);
+        final BigDecimal averageOrderValue = totalPaidOrders > 0
+            ? totalRevenue.divide(BigDecimal.valueOf(totalPaidOrders), 2, RoundingMode.HALF_UP)
+            : BigDecimal.ZERO;
 
         // Calculate refund rate
         final BigDecimal refundRate = totalRevenue.compareTo(BigDecimal.ZERO) > 0
@@ -166,32 +171,14 @@ public class AnalyticsService {
             ? BigDecimal.valueOf(totalReservedStock).divide(BigDecimal.valueOf(totalPhysicalStock), 4, RoundingMode.HALF_UP)
             : BigDecimal.ZERO;
 
-        // Get top products by quantity (all-time, no date filter)
-        final List<Object[]> topProductsByQuantityData = orderRepository.findTopProductsByQuantity(
-            DEFAULT_TOP_LIMIT, null, null);
-        final List<ProductPerformanceDto.TopProduct> topProductsByQuantity = topProductsByQuantityData.stream()
-            .map(row -> {
-                final UUID productId = (UUID) row[0];
-                final String productName = (String) row[1];
-                final Long quantitySold = ((Number) row[2]).longValue();
-                // Calculate revenue for this specific product
-                final BigDecimal revenue = orderRepository.calculateRevenueForProduct(productId, null, null);
-                return new ProductPerformanceDto.TopProduct(productId, productName, quantitySold, revenue);
-            })
+        // Get top products by quantity and by revenue (all-time, no date filter)
+        final List<ProductPerformanceDto.TopProduct> topProductsByQuantity = orderRepository
+            .findTopPaidProductsByQuantity(DEFAULT_TOP_LIMIT, null, null).stream()
+            .map(AnalyticsService::topProduct)
             .toList();
-
-        // Get top products by revenue (all-time, no date filter)
-        final List<Object[]> topProductsByRevenueData = orderRepository.findTopProductsByRevenue(
-            DEFAULT_TOP_LIMIT, null, null);
-        final List<ProductPerformanceDto.TopProduct> topProductsByRevenue = topProductsByRevenueData.stream()
-            .map(row -> {
-                final UUID productId = (UUID) row[0];
-                final String productName = (String) row[1];
-                final BigDecimal revenue = (BigDecimal) row[2];
-                // Get quantity sold for this specific product
-                final Long quantitySold = orderRepository.calculateQuantityForProduct(productId, null, null);
-                return new ProductPerformanceDto.TopProduct(productId, productName, quantitySold, revenue);
-            })
+        final List<ProductPerformanceDto.TopProduct> topProductsByRevenue = orderRepository
+            .findTopPaidProductsByRevenue(DEFAULT_TOP_LIMIT, null, null).stream()
+            .map(AnalyticsService::topProduct)
             .toList();
 
         // Calculate average products per sale
@@ -236,17 +223,19 @@ public class AnalyticsService {
         log.info("Calculating order statistics for date range: {} to {}", startDate, endDate);
 
         // Count orders by status
-        final Long pendingCount = orderRepository.countOrdersByStatus(OrderStatus.PENDING, startDate, endDate);
-        final Long paidCount = orderRepository.countOrdersByStatus(OrderStatus.PAID, startDate, endDate);
-        final Long failedCount = orderRepository.countOrdersByStatus(OrderStatus.FAILED, startDate, endDate);
-        final Long refundedCount = orderRepository.countOrdersByStatus(OrderStatus.REFUNDED, startDate, endDate);
-        final Long dispatchedCount = orderRepository.countOrdersByStatus(OrderStatus.DISPATCHED, startDate, endDate);
-        final Long cancelledCount = orderRepository.countOrdersByStatus(OrderStatus.CANCELLED, startDate, endDate);
+        final Map<OrderStatus, OrderStatusTotals> totals = sumOrdersByStatus(startDate, endDate);
+        final Long pendingCount = totals.get(OrderStatus.PENDING).orders();
+        final Long paidCount = totals.get(OrderStatus.PAID).orders();
+        final Long failedCount = totals.get(OrderStatus.FAILED).orders();
+        final Long refundedCount = totals.get(OrderStatus.REFUNDED).orders();
+        final Long dispatchedCount = totals.get(OrderStatus.DISPATCHED).orders();
+        final Long cancelledCount = totals.get(OrderStatus.CANCELLED).orders();
+        final Long expiredCount = totals.get(OrderStatus.EXPIRED).orders();
 
-        final Long totalOrders = pendingCount + paidCount + failedCount + refundedCount + dispatchedCount + cancelledCount;
+        final Long totalOrders = totals.values().stream().mapToLong(OrderStatusTotals::orders).sum();
 
-        // Calculate total order quantity
-        final Long totalOrderQuantity = orderRepository.calculateTotalOrderQuantity(startDate, endDate);
+        // Calculate total order quantity, across the same statuses as the total
+        final Long totalOrderQuantity = totals.values().stream().mapToLong(OrderStatusTotals::quantity).sum();
 
         // Calculate average order quantity
         final BigDecimal averageOrderQuantity = totalOrders > 0
@@ -261,7 +250,7 @@ public class AnalyticsService {
             : BigDecimal.ZERO;
 
         final OrderStatisticsDto.OrdersByStatus ordersByStatus = new OrderStatisticsDto.OrdersByStatus(
-            pendingCount, paidCount, failedCount, refundedCount, dispatchedCount, cancelledCount);
+            pendingCount, paidCount, failedCount, refundedCount, dispatchedCount, cancelledCount, expiredCount);
 
         return new OrderStatisticsDto(
             totalOrders,
@@ -272,4 +261,40 @@ public class AnalyticsService {
             failedCount,
             successRate);
     }
+
+    /**
+     * Fold the order rollup deltas appended since the last run into their hourly buckets, a batch per
+     * transaction, until none are left.
+     *
+     * @return the number of deltas folded
+     */
+    public int foldOrderRollups() {
+        int total = 0;
+        int folded;
+        do {
+            folded = orderRepository.foldRollupDeltas(rollupBatchSize);
+            total += folded;
+        } while (folded == rollupBatchSize);
+        log.debug("Folded {} order rollup deltas", total);
+        return total;
+    }
+
+    /**
+     * Sum the orders in each status from the hourly rollups, with zero totals for statuses that have
+     * no orders in the range.
+     */
+    private Map<OrderStatus, OrderStatusTotals> sumOrdersByStatus(final OffsetDateTime startDate,
+        final OffsetDateTime endDate) {
+        final Map<OrderStatus, OrderStatusTotals> totals = new EnumMap<>(OrderStatus.class);
+        for (final OrderStatus status : OrderStatus.values()) {
+            totals.put(status, OrderStatusTotals.none(status));
+        }
+        orderRepository.sumOrdersByStatus(startDate, endDate).forEach(t -> totals.put(t.status(), t));
+        return totals;
+    }
+
+    private static ProductPerformanceDto.TopProduct topProduct(final ProductTotals totals) {
+        return new ProductPerformanceDto.TopProduct(
+            totals.productId(), totals.productName(), totals.quantitySold(), totals.revenue());
+    }
 }
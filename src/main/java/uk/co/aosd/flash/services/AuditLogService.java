@@ -5,12 +5,12 @@ import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 import uk.co.aosd.flash.domain.AdminAuditLogEntry;
-import uk.co.aosd.flash.repository.AdminAuditLogRepository;
 import uk.co.aosd.flash.security.SecurityUtils;
 
 /**
  * Service for recording admin actions to the audit log.
  * Resolves the current user (ID or username) when present; uses null for background/system actions.
+ * Entries are written in batches by the {@link AuditLogSink}.
  */
 @Service
 public class AuditLogService {
@@ -25,16 +25,17 @@ public class AuditLogService {
     public static final String ACTION_UPDATE_FLASH_SALE_ITEM = "UPDATE_FLASH_SALE_ITEM";
     public static final String ACTION_REMOVE_FLASH_SALE_ITEM = "REMOVE_FLASH_SALE_ITEM";
     public static final String ACTION_UPDATE_ORDER_STATUS = "UPDATE_ORDER_STATUS";
+    public static final String ACTION_ENABLE_LOTTERY = "ENABLE_LOTTERY";
 
     public static final String ENTITY_PRODUCT = "PRODUCT";
     public static final String ENTITY_FLASH_SALE = "FLASH_SALE";
     public static final String ENTITY_FLASH_SALE_ITEM = "FLASH_SALE_ITEM";
     public static final String ENTITY_ORDER = "ORDER";
 
-    private final AdminAuditLogRepository adminAuditLogRepository;
+    private final AuditLogSink auditLogSink;
 
-    public AuditLogService(final AdminAuditLogRepository adminAuditLogRepository) {
-        this.adminAuditLogRepository = adminAuditLogRepository;
+    public AuditLogService(final AuditLogSink auditLogSink) {
+        this.auditLogSink = auditLogSink;
     }
 
     /**
@@ -59,7 +60,7 @@ public class AuditLogService {
             .payload(payload)
             .build();
 
-        adminAuditLogRepository.save(entry);
+        auditLogSink.submit(entry);
     }
 
     /**
@@ -0,0 +1,237 @@
+package uk.co.aosd.flash.services;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.co.aosd.flash.domain.AdminAuditLogEntry;
+import uk.co.aosd.flash.domain.TimeOrderedUuidGenerator;
+
+/**
+ * Buffers admin audit entries and writes them to {@code admin_audit_log} with JDBC batch inserts.
+ * Entries recorded inside a transaction are collected for that transaction and then, depending on
+ * {@code app.audit.mode}:
+ * <ul>
+ * <li>{@code sync-batch} (default): inserted as one batch just before the transaction commits, so
+ * they commit or roll back with the change they describe;</li>
+ * <li>{@code async}: handed to a bounded buffer after the transaction commits and written by a
+ * background worker. When the buffer is full the entries are written on the caller's thread
+ * instead, so an overflow costs latency rather than audit records.</li>
+ * </ul>
+ * Entries recorded outside a transaction are written (sync-batch) or buffered (async) straight away.
+ */
+@Component
+public class AuditLogSink {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogSink.class);
+
+    private static final String INSERT_SQL = "INSERT INTO admin_audit_log "
+        + "(id, actor_user_id, actor_username, action, entity_type, entity_id, occurred_at, payload) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * How buffered entries reach the database.
+     */
+    enum Mode {
+        SYNC_BATCH, ASYNC;
+
+        static Mode fromProperty(final String value) {
+            return Mode.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final BlockingQueue<AdminAuditLogEntry> buffer;
+    private Thread worker;
+    private volatile boolean running;
+
+    public AuditLogSink(
+        final JdbcTemplate jdbcTemplate,
+        final MeterRegistry meterRegistry,
+        @Value("${app.audit.mode:sync-batch}") final String mode,
+        @Value("${app.audit.capacity:10000}") final int capacity,
+        @Value("${app.audit.batch-size:500}") final int batchSize,
+        @Value("${app.audit.flush-interval-ms:1000}") final long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.fromProperty(mode);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.buffer = new LinkedBlockingQueue<>(capacity);
+        meterRegistry.gauge("flash.audit.buffer.size", buffer, BlockingQueue::size);
+    }
+
+    /**
+     * Accept an audit entry for writing.
+     *
+     * @param entry the entry
+     */
+    public void submit(final AdminAuditLogEntry entry) {
+        if (entry.getId() == null) {
+            entry.setId(TimeOrderedUuidGenerator.next());
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingForTransaction().add(entry);
+        } else if (mode == Mode.ASYNC) {
+            enqueue(List.of(entry));
+        } else {
+            write(List.of(entry));
+        }
+    }
+
+    /**
+     * Start the background writer when running in async mode.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (mode != Mode.ASYNC) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform()
+            .name("audit-log-writer")
+            .daemon(true)
+            .start(this::writeLoop);
+        log.info("Async audit log writer started with batch size {}", batchSize);
+    }
+
+    /**
+     * Stop the background writer and write whatever is still buffered.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+        while (flushOnce() > 0) {
+            // keep draining
+        }
+    }
+
+    private List<AdminAuditLogEntry> pendingForTransaction() {
+        @SuppressWarnings("unchecked")
+        List<AdminAuditLogEntry> pending = (List<AdminAuditLogEntry>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final List<AdminAuditLogEntry> entries = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(final boolean readOnly) {
+                    if (mode == Mode.SYNC_BATCH) {
+                        write(entries);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    if (mode == Mode.ASYNC) {
+                        enqueue(entries);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditLogSink.this);
+                }
+            });
+            pending = entries;
+        }
+        return pending;
+    }
+
+    private void enqueue(final List<AdminAuditLogEntry> entries) {
+        final List<AdminAuditLogEntry> overflow = new ArrayList<>();
+        for (final AdminAuditLogEntry entry : entries) {
+            if (!buffer.offer(entry)) {
+                overflow.add(entry);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            meterRegistry.counter("flash.audit.overflow").increment(overflow.size());
+            log.warn("Audit buffer full; writing {} entries synchronously", overflow.size());
+            write(overflow);
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                final AdminAuditLogEntry first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    final List<AdminAuditLogEntry> batch = new ArrayList<>();
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - 1);
+                    writeSafely(batch);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write one batch from the async buffer.
+     *
+     * @return the number of entries taken from the buffer
+     */
+    int flushOnce() {
+        final List<AdminAuditLogEntry> batch = new ArrayList<>();
+        buffer.drainTo(batch, batchSize);
+        if (!batch.isEmpty()) {
+            writeSafely(batch);
+        }
+        return batch.size();
+    }
+
+    private void writeSafely(final List<AdminAuditLogEntry> batch) {
+        try {
+            write(batch);
+        } catch (final Exception e) {
+            meterRegistry.counter("flash.audit.failed").increment(batch.size());
+            log.error("Failed to write {} audit entries", batch.size(), e);
+        }
+    }
+
+    private void write(final List<AdminAuditLogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, batchSize, (ps, entry) -> {
+            ps.setObject(1, entry.getId());
+            ps.setObject(2, entry.getActorUserId());
+            ps.setString(3, entry.getActorUsername());
+            ps.setString(4, entry.getAction());
+            ps.setString(5, entry.getEntityType());
+            ps.setObject(6, entry.getEntityId());
+            ps.setObject(7, entry.getOccurredAt());
+            if (entry.getPayload() == null) {
+                ps.setNull(8, Types.VARCHAR);
+            } else {
+                ps.setString(8, entry.getPayload());
+            }
+        });
+        meterRegistry.summary("flash.audit.batch.size").record(entries.size());
+    }
+}
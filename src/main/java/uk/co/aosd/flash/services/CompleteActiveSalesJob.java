@@ -1,5 +1,6 @@
 package uk.co.aosd.flash.services;
 
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Component;
 
 /**
  * Quartz job that completes ACTIVE sales whose end time has passed.
+ * Part of the safety sweep; with a clustered job store it runs on one node at a time.
  */
 @Component
+@DisallowConcurrentExecution
 public class CompleteActiveSalesJob implements Job {
 
     private static final Logger log = LoggerFactory.getLogger(CompleteActiveSalesJob.class);
@@ -0,0 +1,35 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that completes one ACTIVE sale at its end time.
+ */
+@Component
+public class CompleteSaleJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(CompleteSaleJob.class);
+
+    @Autowired
+    private FlashSalesService flashSalesService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        final UUID saleId = UUID.fromString(context.getMergedJobDataMap().getString(SaleScheduler.SALE_ID));
+        log.info("Starting CompleteSaleJob execution for FlashSale {}", saleId);
+        try {
+            flashSalesService.completeSale(saleId);
+        } catch (final Exception e) {
+            log.error("Error executing CompleteSaleJob for FlashSale {}", saleId, e);
+            throw new JobExecutionException("Failed to complete flash sale " + saleId, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import uk.co.aosd.flash.domain.OrderJob;
+import uk.co.aosd.flash.domain.OrderStage;
+import uk.co.aosd.flash.repository.OrderJobRepository;
+
+/**
+ * Queues order pipeline jobs in the {@code order_job_queue} table. The insert joins the caller's
+ * transaction, so an order and its processing job commit (or roll back) together.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messaging.transport", havingValue = "db-queue")
+@RequiredArgsConstructor
+public class DbQueueOrderMessageSender implements OrderMessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(DbQueueOrderMessageSender.class);
+
+    private final OrderJobRepository orderJobRepository;
+
+    @Override
+    public void sendForProcessing(final UUID orderId) {
+        enqueue(OrderStage.PROCESSING, orderId);
+    }
+
+    @Override
+    public void sendForDispatch(final UUID orderId) {
+        enqueue(OrderStage.DISPATCH, orderId);
+    }
+
+    @Override
+    public void sendForPaymentFailed(final UUID orderId) {
+        enqueue(OrderStage.PAYMENT_FAILED, orderId);
+    }
+
+    @Override
+    public void sendForRefund(final UUID orderId) {
+        enqueue(OrderStage.REFUND, orderId);
+    }
+
+    private void enqueue(final OrderStage stage, final UUID orderId) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        orderJobRepository.save(OrderJob.builder()
+            .orderId(orderId)
+            .stage(stage)
+            .availableAt(now)
+            .attempts(0)
+            .createdAt(now)
+            .build());
+        log.info("Queued order {} for {} (db-queue)", orderId, stage.getQueueName());
+    }
+}
@@ -0,0 +1,209 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.co.aosd.flash.domain.OrderJob;
+import uk.co.aosd.flash.domain.OrderStage;
+import uk.co.aosd.flash.repository.OrderJobRepository;
+
+/**
+ * Drains the {@code order_job_queue} table. Each stage has its own worker threads that claim
+ * batches with {@code FOR UPDATE SKIP LOCKED}, so any number of nodes can run workers against the
+ * same table. Each job is handled in one transaction that also queues the next stage's job and
+ * deletes the claimed one, so a stage's work, its hand-off and the job's removal commit together.
+ * A job whose worker fails or dies becomes claimable again after the visibility timeout, until it
+ * reaches the maximum attempts. Jobs are therefore handled at least once, so each stage must
+ * tolerate a repeat. Jobs that have
+ * used up their attempts stay in the table and are counted by the {@code flash.dbqueue.exhausted}
+ * gauge.
+ * The claim size per stage adapts to throughput: it grows while batches come back full and are
+ * handled well within the visibility timeout, and halves when a batch runs too long.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messaging.transport", havingValue = "db-queue")
+public class DbQueueOrderWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(DbQueueOrderWorker.class);
+
+    public static final String TRANSPORT = "db-queue";
+
+    private final OrderJobRepository orderJobRepository;
+    private final OrderStageHandler stageHandler;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final int workersPerStage;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int visibilityTimeoutSeconds;
+    private final int maxAttempts;
+    private final long pollIntervalMs;
+    private final String workerId = "worker-" + UUID.randomUUID();
+
+    private final Map<OrderStage, AtomicInteger> batchSizes = new EnumMap<>(OrderStage.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public DbQueueOrderWorker(
+        final OrderJobRepository orderJobRepository,
+        final OrderStageHandler stageHandler,
+        final MeterRegistry meterRegistry,
+        final TransactionTemplate transactionTemplate,
+        @Value("${app.messaging.db-queue.workers-per-stage:2}") final int workersPerStage,
+        @Value("${app.messaging.db-queue.min-batch-size:1}") final int minBatchSize,
+        @Value("${app.messaging.db-queue.max-batch-size:100}") final int maxBatchSize,
+        @Value("${app.messaging.db-queue.visibility-timeout-seconds:60}") final int visibilityTimeoutSeconds,
+        @Value("${app.messaging.db-queue.max-attempts:5}") final int maxAttempts,
+        @Value("${app.messaging.db-queue.poll-interval-ms:200}") final long pollIntervalMs) {
+        this.orderJobRepository = orderJobRepository;
+        this.stageHandler = stageHandler;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = transactionTemplate;
+        this.workersPerStage = workersPerStage;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.maxAttempts = maxAttempts;
+        this.pollIntervalMs = pollIntervalMs;
+        for (final OrderStage stage : OrderStage.values()) {
+            final AtomicInteger batchSize = new AtomicInteger(minBatchSize);
+            batchSizes.put(stage, batchSize);
+            meterRegistry.gauge("flash.dbqueue.batch.size", Tags.of("queue", stage.getQueueName()), batchSize);
+        }
+        meterRegistry.gauge("flash.dbqueue.exhausted", orderJobRepository, r -> r.countExhausted(maxAttempts));
+    }
+
+    /**
+     * Start the stage workers once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (final OrderStage stage : OrderStage.values()) {
+            for (int i = 0; i < workersPerStage; i++) {
+                final Thread worker = Thread.ofPlatform()
+                    .name("order-db-queue-" + stage.getQueueName() + "-" + i)
+                    .daemon(true)
+                    .start(() -> pollLoop(stage));
+                workers.add(worker);
+            }
+        }
+        log.info("DB queue order workers started as {} with {} workers per stage", workerId, workersPerStage);
+    }
+
+    /**
+     * Stop the stage workers. Claimed but unfinished jobs reappear after the visibility timeout.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    private void pollLoop(final OrderStage stage) {
+        while (running) {
+            try {
+                if (pollOnce(stage) == 0) {
+                    Thread.sleep(pollIntervalMs);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final Exception e) {
+                log.error("Error polling order job queue for {}", stage.getQueueName(), e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim and handle one batch of jobs for a stage, then adjust the stage's batch size.
+     *
+     * @param stage the stage to poll
+     * @return the number of jobs claimed
+     */
+    int pollOnce(final OrderStage stage) {
+        final String queue = stage.getQueueName();
+        final AtomicInteger batchSize = batchSizes.get(stage);
+        final int requested = batchSize.get();
+        final List<OrderJob> jobs = orderJobRepository.claimBatch(stage.name(), requested, visibilityTimeoutSeconds, maxAttempts, workerId);
+        if (jobs.isEmpty()) {
+            return 0;
+        }
+
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        for (final OrderJob job : jobs) {
+            meterRegistry.timer("flash.messaging.handoff.latency", "transport", TRANSPORT, "queue", queue)
+                .record(Duration.between(job.getCreatedAt().toInstant(), Instant.now()));
+            try {
+                // The stage's services join this transaction, as does the next stage's job insert, so
+                // a crash cannot leave an order moved on with no job queued for its next stage
+                transactionTemplate.executeWithoutResult(status -> {
+                    stageHandler.handle(stage, job.getOrderId(), job.getCreatedAt().toInstant());
+                    orderJobRepository.deleteById(job.getId());
+                });
+            } catch (final Exception e) {
+                if (job.getAttempts() >= maxAttempts) {
+                    meterRegistry.counter("flash.messaging.exhausted", "transport", TRANSPORT, "queue", queue).increment();
+                    log.error("Giving up on order {} on {} after {} attempts; job left in order_job_queue",
+                        job.getOrderId(), queue, job.getAttempts(), e);
+                } else {
+                    log.warn("Attempt {} failed for order {} on {}; retrying after visibility timeout",
+                        job.getAttempts(), job.getOrderId(), queue);
+                }
+            }
+        }
+        final Duration elapsed = Duration.ofNanos(sample.stop(meterRegistry.timer("flash.dbqueue.batch.duration", "queue", queue)));
+        batchSize.set(nextBatchSize(requested, jobs.size(), elapsed, Duration.ofSeconds(visibilityTimeoutSeconds),
+            minBatchSize, maxBatchSize));
+        return jobs.size();
+    }
+
+    /**
+     * Work out the next claim size. A batch that took more than half the visibility timeout risks
+     * its jobs being re-claimed, so the size halves; a full batch handled comfortably means there is
+     * a backlog, so the size grows by half; otherwise it stays the same.
+     *
+     * @param current           the batch size just used
+     * @param claimed           how many jobs were actually claimed
+     * @param elapsed           how long the batch took to handle
+     * @param visibilityTimeout the visibility timeout
+     * @param min               the minimum batch size
+     * @param max               the maximum batch size
+     * @return the next batch size
+     */
+    static int nextBatchSize(final int current, final int claimed, final Duration elapsed, final Duration visibilityTimeout,
+        final int min, final int max) {
+        if (elapsed.compareTo(visibilityTimeout.dividedBy(2)) > 0) {
+            return Math.max(min, current / 2);
+        }
+        if (claimed >= current && elapsed.compareTo(visibilityTimeout.dividedBy(4)) < 0) {
+            return Math.min(max, current + Math.max(1, current / 2));
+        }
+        return current;
+    }
+}
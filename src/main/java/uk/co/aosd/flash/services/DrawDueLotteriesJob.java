@@ -0,0 +1,54 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that draws ACTIVE lottery sales whose entry window has closed but which are still
+ * undrawn. Part of the safety sweep; each sale is drawn in its own transaction, so one failing
+ * draw does not hold up the others.
+ */
+@Component
+@DisallowConcurrentExecution
+public class DrawDueLotteriesJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(DrawDueLotteriesJob.class);
+
+    @Autowired
+    private LotteryService lotteryService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        log.info("Starting DrawDueLotteriesJob execution");
+        int drawn = 0;
+        Exception firstFailure = null;
+        try {
+            for (final UUID saleId : lotteryService.findLotteriesDueToDraw()) {
+                try {
+                    lotteryService.draw(saleId);
+                    drawn++;
+                } catch (final Exception e) {
+                    log.error("Error drawing lottery for FlashSale {}", saleId, e);
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                }
+            }
+        } catch (final Exception e) {
+            log.error("Error executing DrawDueLotteriesJob", e);
+            throw new JobExecutionException("Failed to draw due lotteries", e);
+        }
+        if (firstFailure != null) {
+            throw new JobExecutionException("Failed to draw some due lotteries", firstFailure);
+        }
+        log.info("DrawDueLotteriesJob completed successfully. Drew {} lottery sale(s)", drawn);
+    }
+}
@@ -0,0 +1,35 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that draws the winners of one lottery sale when its entry window closes.
+ */
+@Component
+public class DrawLotteryJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(DrawLotteryJob.class);
+
+    @Autowired
+    private LotteryService lotteryService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        final UUID saleId = UUID.fromString(context.getMergedJobDataMap().getString(SaleScheduler.SALE_ID));
+        log.info("Starting DrawLotteryJob execution for FlashSale {}", saleId);
+        try {
+            lotteryService.draw(saleId);
+        } catch (final Exception e) {
+            log.error("Error executing DrawLotteryJob for FlashSale {}", saleId, e);
+            throw new JobExecutionException("Failed to draw lottery for flash sale " + saleId, e);
+        }
+    }
+}
@@ -4,8 +4,12 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import jakarta.transaction.Transactional;
@@ -18,13 +22,16 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.*;
 import uk.co.aosd.flash.exc.*;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
@@ -45,9 +52,18 @@ public class FlashSalesService {
 
     private final AuditLogService auditLogService;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final SaleScheduler saleScheduler;
+
+    private final FlashSaleLotteryRepository lotteries;
+
     @Value("${app.settings.min-sale-duration-minutes}")
     private float minSaleDuration = 10; // Default to 10 minutes.
 
+    @Value("${app.scheduler.batch-size:100}")
+    private int batchSize = 100;
+
     /**
      * Create a new Flash Sale.
      *
@@ -92,41 +108,40 @@ public class FlashSalesService {
             final var saved = sales.save(s);
             log.debug("Saved FlashSale result: " + saved);
 
-            // For each product, create a flash sale item and update the reserved stock if
-            // there is enough.
-            final List<String> missingProducts = new ArrayList<>();
-            final List<Product> notEnoughStockProducts = new ArrayList<>();
+            // Load all products in one query, reserve their stock in one statement and insert the
+            // items as a JDBC batch.
             final List<SaleProductDto> productList = sale.products() != null ? sale.products() : List.of();
+            final List<UUID> productIds = productList.stream().map(sp -> UUID.fromString(sp.id())).toList();
+            final Map<UUID, Product> found = findProducts(productIds);
 
-            productList.forEach(sp -> {
-                final var maybeProduct = products.findById(UUID.fromString(sp.id()));
-                maybeProduct.ifPresentOrElse(p -> {
-                    if (p.getReservedCount() + sp.reservedCount() > p.getTotalPhysicalStock()) {
-                        notEnoughStockProducts.add(p);
-                    } else {
-                        final var item = new FlashSaleItem(null, saved, p, sp.reservedCount(), 0, p.getBasePrice());
-                        items.save(item);
-                        auditLogService.recordAdminAction(AuditLogService.ACTION_ADD_FLASH_SALE_ITEM,
-                            AuditLogService.ENTITY_FLASH_SALE_ITEM, item.getId());
-                        final int allocatedStock = sp.reservedCount() + p.getReservedCount();
-                        p.setReservedCount(allocatedStock);
-                        products.save(p);
-                    }
-                }, () -> {
-                    missingProducts.add(sp.id());
-                });
-            });
+            final List<String> missingProducts = new ArrayList<>();
+            for (int i = 0; i < productList.size(); i++) {
+                if (!found.containsKey(productIds.get(i))) {
+                    missingProducts.add(productList.get(i).id());
+                }
+            }
             if (!missingProducts.isEmpty()) {
                 final String ids = missingProducts.stream().collect(Collectors.joining(", "));
                 log.error("Failed to create Flash Sale due to missing products: {}", ids);
                 throw new ProductNotFoundException(ids);
             }
+
+            final List<UUID> notEnoughStockProducts = reserveStock(productIds,
+                productList.stream().map(SaleProductDto::reservedCount).toList());
             if (!notEnoughStockProducts.isEmpty()) {
-                final String ids = notEnoughStockProducts.stream().map(Product::getId).map(Object::toString).collect(Collectors.joining(", "));
+                final String ids = notEnoughStockProducts.stream().map(Object::toString).collect(Collectors.joining(", "));
                 log.error("Failed to create Flash Sale due to not enough stock: {}", ids);
                 throw new InsufficientResourcesException(
                     ids);
             }
+
+            final List<FlashSaleItem> newItems = new ArrayList<>();
+            for (int i = 0; i < productList.size(); i++) {
+                final Product p = found.get(productIds.get(i));
+                newItems.add(new FlashSaleItem(null, saved, p, productList.get(i).reservedCount(), 0, p.getBasePrice()));
+            }
+            insertItems(newItems);
+            saleScheduler.scheduleSale(saved.getId(), saved.getStartTime(), saved.getEndTime(), saved.getStatus());
             auditLogService.recordAdminAction(AuditLogService.ACTION_CREATE_FLASH_SALE, AuditLogService.ENTITY_FLASH_SALE, saved.getId());
             log.info("Created Flash Sale: " + saved);
             return saved.getId();
@@ -141,33 +156,34 @@ public class FlashSalesService {
 
     /**
      * Activates DRAFT sales whose start time has passed.
-     * This method is called by the scheduled job to transition sales from DRAFT to
-     * ACTIVE.
+     * This method is called by the safety sweep to transition sales from DRAFT to
+     * ACTIVE. Only the sale IDs are read; sales are activated in batches, each with one
+     * guarded update in its own transaction.
      *
      * @return the number of sales activated
      */
-    @Transactional
     @CacheEvict(value = { "draftSales", "activeSales" }, allEntries = true)
     public int activateDraftSales() {
         final OffsetDateTime now = OffsetDateTime.now();
         log.debug("Checking for DRAFT sales ready to activate at {}", now);
 
-        final List<FlashSale> draftSales = sales.findDraftSalesReadyToActivate(SaleStatus.DRAFT, now);
+        final List<UUID> saleIds = sales.findSaleIdsReadyToActivate(SaleStatus.DRAFT, now);
 
-        if (draftSales.isEmpty()) {
+        if (saleIds.isEmpty()) {
             log.debug("No DRAFT sales found ready to activate");
             return 0;
         }
 
-        log.info("Found {} DRAFT sale(s) ready to activate", draftSales.size());
+        log.info("Found {} DRAFT sale(s) ready to activate", saleIds.size());
 
         int activatedCount = 0;
-        for (final FlashSale sale : draftSales) {
-            if (sale.getStatus() == SaleStatus.DRAFT && (sale.getStartTime().isBefore(now) || sale.getStartTime().isEqual(now))) {
-                sale.setStatus(SaleStatus.ACTIVE);
-                sales.save(sale);
-                activatedCount++;
-                log.info("Activated FlashSale: {} (startTime: {})", sale.getId(), sale.getStartTime());
+        for (int i = 0; i < saleIds.size(); i += batchSize) {
+            final List<UUID> batch = saleIds.subList(i, Math.min(i + batchSize, saleIds.size()));
+            final List<UUID> activated = transactionTemplate.execute(
+                status -> sales.transitionStatus(batch, SaleStatus.DRAFT.name(), SaleStatus.ACTIVE.name()));
+            if (activated != null) {
+                activated.forEach(id -> log.info("Activated FlashSale: {}", id));
+                activatedCount += activated.size();
             }
         }
 
@@ -175,61 +191,102 @@ public class FlashSalesService {
         return activatedCount;
     }
 
+    /**
+     * Activates a single DRAFT sale whose start time has passed.
+     * This method is called by the sale's activation trigger; a sale that is no longer DRAFT, or
+     * whose start time has moved into the future, is left alone.
+     *
+     * @param saleId
+     *            the flash sale ID
+     * @return true if the sale was activated
+     */
+    @Transactional
+    @CacheEvict(value = { "flashSales", "draftSales", "activeSales" }, allEntries = true)
+    public boolean activateSale(final UUID saleId) {
+        final FlashSale sale = sales.findById(saleId).orElse(null);
+        if (sale == null || sale.getStatus() != SaleStatus.DRAFT || sale.getStartTime().isAfter(OffsetDateTime.now())) {
+            log.debug("FlashSale {} is not ready to activate", saleId);
+            return false;
+        }
+        if (sales.transitionStatus(List.of(saleId), SaleStatus.DRAFT.name(), SaleStatus.ACTIVE.name()).isEmpty()) {
+            log.debug("FlashSale {} changed status before it could be activated", saleId);
+            return false;
+        }
+        log.info("Activated FlashSale: {} (startTime: {})", saleId, sale.getStartTime());
+        return true;
+    }
+
+    /**
+     * Completes a single ACTIVE sale whose end time has passed and releases its unsold stock.
+     * This method is called by the sale's completion trigger; a sale that is no longer ACTIVE, or
+     * whose end time has moved into the future, is left alone.
+     *
+     * @param saleId
+     *            the flash sale ID
+     * @return true if the sale was completed
+     */
+    @Transactional
+    @CacheEvict(value = { "flashSales", "activeSales" }, allEntries = true)
+    public boolean completeSale(final UUID saleId) {
+        final FlashSale sale = sales.findById(saleId).orElse(null);
+        if (sale == null || sale.getStatus() != SaleStatus.ACTIVE || sale.getEndTime().isAfter(OffsetDateTime.now())) {
+            log.debug("FlashSale {} is not ready to complete", saleId);
+            return false;
+        }
+        return completeSales(List.of(saleId)) == 1;
+    }
+
     /**
      * Completes ACTIVE sales whose end time has passed.
      * This method is called by the scheduled job to transition sales from ACTIVE to
-     * COMPLETED.
+     * COMPLETED. Sales are completed in batches, each in its own transaction: a batch is
+     * moved to COMPLETED with one update and its unsold stock is released with another.
      *
      * @return the number of sales completed
      */
-    @Transactional
     @CacheEvict(value = "activeSales", allEntries = true)
     public int completeActiveSales() {
         final OffsetDateTime now = OffsetDateTime.now();
         log.debug("Checking for ACTIVE sales ready to complete at {}", now);
 
-        final List<FlashSale> activeSales = sales.findActiveSalesReadyToComplete(SaleStatus.ACTIVE, now);
+        final List<UUID> saleIds = sales.findSaleIdsReadyToComplete(SaleStatus.ACTIVE, now);
 
-        if (activeSales.isEmpty()) {
+        if (saleIds.isEmpty()) {
             log.debug("No ACTIVE sales found ready to complete");
             return 0;
         }
 
-        log.info("Found {} ACTIVE sale(s) ready to complete", activeSales.size());
+        log.info("Found {} ACTIVE sale(s) ready to complete", saleIds.size());
 
         int completedCount = 0;
-        for (final FlashSale sale : activeSales) {
-            if (sale.getStatus() == SaleStatus.ACTIVE && (sale.getEndTime().isBefore(now) || sale.getEndTime().isEqual(now))) {
-                sale.setStatus(SaleStatus.COMPLETED);
-                sales.save(sale);
-                completedCount++;
-                log.info("Completed FlashSale: {} (endTime: {})", sale.getId(), sale.getEndTime());
-
-                // Release unsold stock for each sale item
-                for (final FlashSaleItem item : sale.getItems()) {
-                    final int difference = item.getAllocatedStock() - item.getSoldCount();
-                    if (difference > 0) {
-                        // Reduce allocated stock to match sold count
-                        item.setAllocatedStock(item.getSoldCount());
-                        items.save(item);
-
-                        // Release reserved count from product
-                        final Product product = item.getProduct();
-                        final int newReservedCount = product.getReservedCount() - difference;
-                        product.setReservedCount(newReservedCount);
-                        products.save(product);
-
-                        log.debug("Released {} unsold units for product {} in sale {}",
-                            difference, product.getId(), sale.getId());
-                    }
-                }
-            }
+        for (int i = 0; i < saleIds.size(); i += batchSize) {
+            final List<UUID> batch = saleIds.subList(i, Math.min(i + batchSize, saleIds.size()));
+            final Integer completed = transactionTemplate.execute(status -> completeSales(batch));
+            completedCount += completed != null ? completed : 0;
         }
 
         log.info("Completed {} ACTIVE sale(s)", completedCount);
         return completedCount;
     }
 
+    /**
+     * Complete one batch of sales and release their unsold stock.
+     *
+     * @param saleIds
+     *            the sale IDs
+     * @return the number of sales completed
+     */
+    private int completeSales(final List<UUID> saleIds) {
+        final List<UUID> completed = sales.transitionStatus(saleIds, SaleStatus.ACTIVE.name(), SaleStatus.COMPLETED.name());
+        if (completed.isEmpty()) {
+            return 0;
+        }
+        final int releasedProducts = items.releaseUnsoldStock(completed);
+        completed.forEach(id -> log.info("Completed FlashSale: {}", id));
+        log.debug("Released unsold stock for {} product(s) across {} completed sale(s)", releasedProducts, completed.size());
+        return completed.size();
+    }
+
     /**
      * Cancels a flash sale by ID.
      * Only DRAFT and ACTIVE sales can be cancelled.
@@ -264,29 +321,17 @@ public class FlashSalesService {
             throw new IllegalArgumentException("Sale is already CANCELLED");
         }
 
-        // Release stock for each sale item
-        for (final FlashSaleItem item : sale.getItems()) {
-            final int difference = item.getAllocatedStock() - item.getSoldCount();
-            if (difference > 0) {
-                // Reduce allocated stock to match sold count (0 for DRAFT, soldCount for
-                // ACTIVE)
-                item.setAllocatedStock(item.getSoldCount());
-                items.save(item);
-
-                // Release reserved count from product
-                final Product product = item.getProduct();
-                final int newReservedCount = product.getReservedCount() - difference;
-                product.setReservedCount(newReservedCount);
-                products.save(product);
-
-                log.debug("Released {} units for product {} in sale {}",
-                    difference, product.getId(), sale.getId());
-            }
+        // Set sale status to CANCELLED, unless it changed since it was read
+        final List<UUID> cancelled = sales.transitionStatus(List.of(saleId), previousStatus.name(), SaleStatus.CANCELLED.name());
+        if (cancelled.isEmpty()) {
+            log.error("FlashSale {} changed status while being cancelled", saleId);
+            throw new IllegalArgumentException("Sale status changed while cancelling; please retry");
         }
+        saleScheduler.unscheduleSale(saleId);
 
-        // Set sale status to CANCELLED
-        sale.setStatus(SaleStatus.CANCELLED);
-        sales.save(sale);
+        // Release stock: allocated stock drops to the sold count (0 for DRAFT, soldCount for ACTIVE)
+        final int releasedProducts = items.releaseUnsoldStock(cancelled);
+        log.debug("Released stock for {} product(s) in sale {}", releasedProducts, saleId);
         log.info("Cancelled FlashSale: {} (previous status: {})", saleId, previousStatus);
     }
 
@@ -362,6 +407,9 @@ public class FlashSalesService {
      *             if the times are invalid
      * @throws SaleDurationTooShortException
      *             if the duration is too short
+     * @throws IllegalArgumentException
+     *             if the sale is allocated by lottery and its undrawn entry window would no longer
+     *             close within the new times
      */
     @Transactional
     @CacheEvict(value = { "flashSales", "activeSales", "draftSales" }, key = "#id", allEntries = true)
@@ -397,6 +445,17 @@ public class FlashSalesService {
                     durationMinutes,
                     minSaleDuration);
             }
+
+            // A lottery is only drawn while its sale is ACTIVE, so its entry window must still close within the sale
+            final FlashSaleLottery lottery = lotteries.findById(id).orElse(null);
+            if (lottery != null && lottery.getDrawnAt() == null
+                && (!lottery.getEntryWindowClosesAt().isAfter(newStartTime) || !lottery.getEntryWindowClosesAt().isBefore(newEndTime))) {
+                log.error("Failed to update FlashSale {}: lottery entry window closes at {}, outside {} to {}",
+                    id, lottery.getEntryWindowClosesAt(), newStartTime, newEndTime);
+                throw new IllegalArgumentException("The lottery entry window closes at " + lottery.getEntryWindowClosesAt()
+                    + ", which must be after the sale starts (" + newStartTime + ") and before it ends (" + newEndTime
+                    + "); move the entry window first");
+            }
         }
 
         // Update fields
@@ -411,6 +470,9 @@ public class FlashSalesService {
         }
 
         final FlashSale saved = sales.save(sale);
+        if (updateDto.startTime() != null || updateDto.endTime() != null) {
+            saleScheduler.scheduleSale(saved.getId(), saved.getStartTime(), saved.getEndTime(), saved.getStatus());
+        }
         auditLogService.recordAdminAction(AuditLogService.ACTION_UPDATE_FLASH_SALE, AuditLogService.ENTITY_FLASH_SALE, saved.getId());
         log.info("Updated FlashSale: {}", saved.getId());
 
@@ -461,6 +523,7 @@ public class FlashSalesService {
             }
         }
 
+        saleScheduler.unscheduleSale(id);
         auditLogService.recordAdminAction(AuditLogService.ACTION_DELETE_FLASH_SALE, AuditLogService.ENTITY_FLASH_SALE, id);
         // Delete the flash sale (cascade will handle items)
         sales.delete(sale);
@@ -504,41 +567,22 @@ public class FlashSalesService {
             throw new IllegalArgumentException("Only DRAFT flash sales can have items added");
         }
 
+        final List<UUID> productIds = items.stream().map(itemDto -> UUID.fromString(itemDto.productId())).toList();
+        final Map<UUID, Product> found = findProducts(productIds);
+
         final List<String> missingProducts = new ArrayList<>();
-        final List<Product> notEnoughStockProducts = new ArrayList<>();
         final List<String> duplicateProducts = new ArrayList<>();
-
-        for (final AddFlashSaleItemDto itemDto : items) {
-            final var maybeProduct = products.findById(UUID.fromString(itemDto.productId()));
-            maybeProduct.ifPresentOrElse(p -> {
-                // Check if product is already in the sale
-                if (this.items.existsByFlashSaleIdAndProductId(saleId, p.getId())) {
-                    duplicateProducts.add(itemDto.productId());
-                    return;
-                }
-
-                // Validate stock availability
-                if (p.getReservedCount() + itemDto.allocatedStock() > p.getTotalPhysicalStock()) {
-                    notEnoughStockProducts.add(p);
-                    return;
-                }
-
-                // Create flash sale item
-                final BigDecimal salePrice = itemDto.salePrice() != null ? itemDto.salePrice() : p.getBasePrice();
-                final var flashSaleItem = new FlashSaleItem(null, sale, p, itemDto.allocatedStock(), 0, salePrice);
-                this.items.save(flashSaleItem);
-                auditLogService.recordAdminAction(AuditLogService.ACTION_ADD_FLASH_SALE_ITEM, AuditLogService.ENTITY_FLASH_SALE_ITEM, flashSaleItem.getId());
-
-                // Update product reserved count
-                final int newReservedCount = p.getReservedCount() + itemDto.allocatedStock();
-                p.setReservedCount(newReservedCount);
-                products.save(p);
-
-                log.debug("Added item for product {} to sale {}: allocatedStock={}, salePrice={}",
-                    p.getId(), saleId, itemDto.allocatedStock(), salePrice);
-            }, () -> {
-                missingProducts.add(itemDto.productId());
-            });
+        final Set<UUID> productsInSale = sale.getItems().stream()
+            .map(item -> item.getProduct().getId())
+            .collect(Collectors.toCollection(HashSet::new));
+        for (int i = 0; i < items.size(); i++) {
+            final UUID productId = productIds.get(i);
+            if (!found.containsKey(productId)) {
+                missingProducts.add(items.get(i).productId());
+            } else if (!productsInSale.add(productId)) {
+                // Already in the sale, or listed twice in this request
+                duplicateProducts.add(items.get(i).productId());
+            }
         }
 
         if (!missingProducts.isEmpty()) {
@@ -553,18 +597,70 @@ public class FlashSalesService {
             throw new IllegalArgumentException("Products already in sale: " + ids);
         }
 
+        final List<UUID> notEnoughStockProducts = reserveStock(productIds,
+            items.stream().map(AddFlashSaleItemDto::allocatedStock).toList());
         if (!notEnoughStockProducts.isEmpty()) {
-            final String ids = notEnoughStockProducts.stream().map(Product::getId).map(Object::toString).collect(Collectors.joining(", "));
+            final String ids = notEnoughStockProducts.stream().map(Object::toString).collect(Collectors.joining(", "));
             log.error("Failed to add items to Flash Sale due to not enough stock: {}", ids);
             throw new InsufficientResourcesException(ids);
         }
 
+        final List<FlashSaleItem> newItems = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            final AddFlashSaleItemDto itemDto = items.get(i);
+            final Product p = found.get(productIds.get(i));
+            final BigDecimal salePrice = itemDto.salePrice() != null ? itemDto.salePrice() : p.getBasePrice();
+            newItems.add(new FlashSaleItem(null, sale, p, itemDto.allocatedStock(), 0, salePrice));
+            log.debug("Adding item for product {} to sale {}: allocatedStock={}, salePrice={}",
+                p.getId(), saleId, itemDto.allocatedStock(), salePrice);
+        }
+        insertItems(newItems);
+
         log.info("Added {} item(s) to FlashSale: {}", items.size(), saleId);
 
         // Reload with items for response
         return mapToResponseDto(sales.findByIdWithItems(saleId).orElse(sale));
     }
 
+    /**
+     * Load products by ID in a single query.
+     *
+     * @param productIds the product IDs
+     * @return the products found, keyed by ID
+     */
+    private Map<UUID, Product> findProducts(final List<UUID> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return products.findAllById(productIds).stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    /**
+     * Reserve stock for all the given products with one conditional update.
+     *
+     * @param productIds the product IDs
+     * @param quantities the quantity to reserve per product, in the same order
+     * @return the IDs of products without enough unreserved stock
+     */
+    private List<UUID> reserveStock(final List<UUID> productIds, final List<Integer> quantities) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return products.reserveStockReturningFailures(productIds.toArray(UUID[]::new), quantities.toArray(Integer[]::new));
+    }
+
+    /**
+     * Batch insert new flash sale items and audit each one.
+     *
+     * @param newItems the items to insert
+     */
+    private void insertItems(final List<FlashSaleItem> newItems) {
+        items.insertAll(newItems);
+        newItems.forEach(item -> auditLogService.recordAdminAction(AuditLogService.ACTION_ADD_FLASH_SALE_ITEM,
+            AuditLogService.ENTITY_FLASH_SALE_ITEM, item.getId()));
+    }
+
     /**
      * Update a flash sale item.
      * Only DRAFT sales can have items updated.
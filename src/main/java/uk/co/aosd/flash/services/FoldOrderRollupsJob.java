@@ -0,0 +1,35 @@
+package uk.co.aosd.flash.services;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that folds the order rollup deltas into their hourly buckets.
+ * With a clustered job store it runs on one node at a time.
+ */
+@Component
+@DisallowConcurrentExecution
+public class FoldOrderRollupsJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(FoldOrderRollupsJob.class);
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        try {
+            final int folded = analyticsService.foldOrderRollups();
+            log.debug("FoldOrderRollupsJob completed successfully. Folded {} delta(s)", folded);
+        } catch (final Exception e) {
+            log.error("Error executing FoldOrderRollupsJob", e);
+            throw new JobExecutionException("Failed to fold order rollups", e);
+        }
+    }
+}
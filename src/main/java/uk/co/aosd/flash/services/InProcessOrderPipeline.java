@@ -0,0 +1,210 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.co.aosd.flash.domain.OrderMessageJournalEntry;
+import uk.co.aosd.flash.domain.OrderStage;
+import uk.co.aosd.flash.repository.OrderMessageJournalRepository;
+
+/**
+ * In-JVM replacement for the RabbitMQ order topology, for single-node installs and load testing.
+ * Each of the four stages has a bounded ring (blocking when full) drained by dedicated worker
+ * threads that invoke the same consumers the Rabbit listeners use (via {@link OrderStageHandler}). Every hand-off is written to
+ * the {@code order_message_journal} table before it is queued and removed once the stage has
+ * handled it, so messages that were in flight when the node stopped are replayed on startup.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messaging.transport", havingValue = "in-process")
+public class InProcessOrderPipeline implements OrderMessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(InProcessOrderPipeline.class);
+
+    public static final String TRANSPORT = "in-process";
+
+    private static final long POLL_TIMEOUT_MS = 500;
+
+    private final OrderMessageJournalRepository journalRepository;
+    private final OrderStageHandler stageHandler;
+    private final MeterRegistry meterRegistry;
+    private final int workersPerStage;
+    private final int maxAttempts;
+
+    private final Map<OrderStage, BlockingQueue<Envelope>> rings = new EnumMap<>(OrderStage.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private final OffsetDateTime replayCutoff = OffsetDateTime.now();
+    private volatile boolean running;
+
+    /**
+     * A message travelling through the pipeline.
+     *
+     * @param journalId  the journal row backing this message
+     * @param orderId    the order ID
+     * @param stage      the stage that should handle the message
+     * @param enqueuedAt when the message was published
+     * @param attempt    the delivery attempt, starting at 1
+     */
+    record Envelope(UUID journalId, UUID orderId, OrderStage stage, Instant enqueuedAt, int attempt) {
+    }
+
+    public InProcessOrderPipeline(
+        final OrderMessageJournalRepository journalRepository,
+        final OrderStageHandler stageHandler,
+        final MeterRegistry meterRegistry,
+        @Value("${app.messaging.in-process.ring-capacity:8192}") final int ringCapacity,
+        @Value("${app.messaging.in-process.workers-per-stage:2}") final int workersPerStage,
+        @Value("${app.messaging.in-process.max-attempts:3}") final int maxAttempts) {
+        this.journalRepository = journalRepository;
+        this.stageHandler = stageHandler;
+        this.meterRegistry = meterRegistry;
+        this.workersPerStage = workersPerStage;
+        this.maxAttempts = maxAttempts;
+        for (final OrderStage stage : OrderStage.values()) {
+            final BlockingQueue<Envelope> ring = new ArrayBlockingQueue<>(ringCapacity);
+            rings.put(stage, ring);
+            meterRegistry.gauge("flash.messaging.inprocess.depth", Tags.of("queue", stage.getQueueName()), ring, BlockingQueue::size);
+        }
+    }
+
+    @Override
+    public void sendForProcessing(final UUID orderId) {
+        publish(OrderStage.PROCESSING, orderId);
+    }
+
+    @Override
+    public void sendForDispatch(final UUID orderId) {
+        publish(OrderStage.DISPATCH, orderId);
+    }
+
+    @Override
+    public void sendForPaymentFailed(final UUID orderId) {
+        publish(OrderStage.PAYMENT_FAILED, orderId);
+    }
+
+    @Override
+    public void sendForRefund(final UUID orderId) {
+        publish(OrderStage.REFUND, orderId);
+    }
+
+    /**
+     * Start the stage workers and replay any journal entries left over from a previous run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (final OrderStage stage : OrderStage.values()) {
+            for (int i = 0; i < workersPerStage; i++) {
+                final Thread worker = Thread.ofPlatform()
+                    .name("order-pipeline-" + stage.getQueueName() + "-" + i)
+                    .daemon(true)
+                    .start(() -> drain(stage));
+                workers.add(worker);
+            }
+        }
+
+        final List<OrderMessageJournalEntry> pending = journalRepository.findByCreatedAtBeforeOrderByCreatedAtAsc(replayCutoff);
+        for (final OrderMessageJournalEntry entry : pending) {
+            enqueue(new Envelope(entry.getId(), entry.getOrderId(), entry.getStage(), entry.getCreatedAt().toInstant(), 1));
+        }
+        log.info("In-process order pipeline started with {} workers per stage; replayed {} journal entries",
+            workersPerStage, pending.size());
+    }
+
+    /**
+     * Stop the stage workers. Messages still queued remain in the journal and are replayed on the next start.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    private void publish(final OrderStage stage, final UUID orderId) {
+        final OrderMessageJournalEntry entry = journalRepository.save(OrderMessageJournalEntry.builder()
+            .orderId(orderId)
+            .stage(stage)
+            .createdAt(OffsetDateTime.now())
+            .build());
+        // The journal row commits with the caller's transaction; the ring only sees it afterwards
+        OrderMessageSender.afterCommit(() -> {
+            enqueue(new Envelope(entry.getId(), orderId, stage, entry.getCreatedAt().toInstant(), 1));
+            log.info("Queued order {} for {} (in-process)", orderId, stage.getQueueName());
+        });
+    }
+
+    private void enqueue(final Envelope envelope) {
+        try {
+            rings.get(envelope.stage()).put(envelope);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted queueing order {} for {}; it will be replayed from the journal",
+                envelope.orderId(), envelope.stage().getQueueName());
+        }
+    }
+
+    private void drain(final OrderStage stage) {
+        final BlockingQueue<Envelope> ring = rings.get(stage);
+        while (running) {
+            final Envelope envelope;
+            try {
+                envelope = ring.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (envelope != null) {
+                handle(envelope);
+            }
+        }
+    }
+
+    /**
+     * Handle a single message: invoke the stage's consumer and remove the journal row on success.
+     * Failures are retried up to the configured number of attempts; after that the row is left in
+     * the journal for replay on the next start.
+     *
+     * @param envelope the message
+     */
+    void handle(final Envelope envelope) {
+        final String queue = envelope.stage().getQueueName();
+        meterRegistry.timer("flash.messaging.handoff.latency", "transport", TRANSPORT, "queue", queue)
+            .record(Duration.between(envelope.enqueuedAt(), Instant.now()));
+        try {
+            stageHandler.handle(envelope.stage(), envelope.orderId(), envelope.enqueuedAt());
+            journalRepository.deleteById(envelope.journalId());
+        } catch (final Exception e) {
+            if (envelope.attempt() < maxAttempts) {
+                log.warn("Attempt {} failed for order {} on {}; retrying", envelope.attempt(), envelope.orderId(), queue);
+                final Envelope retry = new Envelope(envelope.journalId(), envelope.orderId(), envelope.stage(),
+                    envelope.enqueuedAt(), envelope.attempt() + 1);
+                if (!rings.get(envelope.stage()).offer(retry)) {
+                    log.error("Ring full retrying order {} on {}; left in journal for replay", envelope.orderId(), queue);
+                }
+            } else {
+                meterRegistry.counter("flash.messaging.exhausted", "transport", TRANSPORT, "queue", queue).increment();
+                log.error("Giving up on order {} on {} after {} attempts; left in journal for replay",
+                    envelope.orderId(), queue, envelope.attempt(), e);
+            }
+        }
+    }
+}
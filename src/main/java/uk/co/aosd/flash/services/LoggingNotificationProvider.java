@@ -0,0 +1,29 @@
+package uk.co.aosd.flash.services;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local stand-in for a real email provider: logs each user's notifications as an INFO message.
+ */
+@Component
+@ConditionalOnProperty(name = "app.notifications.provider", havingValue = "log", matchIfMissing = true)
+public class LoggingNotificationProvider implements NotificationProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingNotificationProvider.class);
+
+    @Override
+    public void send(final List<UserNotifications> batch) {
+        for (final UserNotifications notifications : batch) {
+            final String summary = notifications.events().stream()
+                .map(event -> event.type().getDescription() + " for order " + event.orderId())
+                .collect(Collectors.joining("; "));
+            log.info("EMAIL NOTIFICATION: {} sent to user {}", summary, notifications.userId());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.LotteryEntryDto;
+import uk.co.aosd.flash.exc.FlashSaleItemNotFoundException;
+import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
+import uk.co.aosd.flash.exc.InsufficientStockException;
+import uk.co.aosd.flash.exc.SaleNotActiveException;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+
+/**
+ * Lottery allocation for heavily oversubscribed sales. Instead of racing for stock, buyers enter a
+ * draw for an item while the sale's entry window is open; entering is a single-row upsert with no
+ * contention on the item's stock. When the window closes the winners are drawn at random and all of
+ * their orders are created by one bulk insert and one sold count update per item. Winning orders
+ * then go through payment like any other order, with a longer hold since the buyer was not waiting
+ * at checkout. A lottery sale takes no first-come orders.
+ */
+@Service
+@RequiredArgsConstructor
+public class LotteryService {
+
+    private static final Logger log = LoggerFactory.getLogger(LotteryService.class);
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final FlashSaleLotteryRepository lotteryRepository;
+    private final SaleScheduler saleScheduler;
+    private final AuditLogService auditLogService;
+    private final ReservationExpiryWheel reservationExpiryWheel;
+    private final OrderMessageSender orderMessageSender;
+    private final NotificationService notificationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.lottery.hold-seconds:900}")
+    private long holdSeconds = 900;
+
+    /**
+     * Allocate a DRAFT sale by lottery, or move the close of its entry window. The draw is
+     * scheduled for when the window closes.
+     *
+     * @param saleId the flash sale ID
+     * @param entryWindowClosesAt when entries close and the winners are drawn
+     * @throws FlashSaleNotFoundException if the sale does not exist
+     * @throws IllegalArgumentException   if the sale is not DRAFT or the window does not close within the sale
+     */
+    @Transactional
+    public void enableLottery(final UUID saleId, final OffsetDateTime entryWindowClosesAt) {
+        final FlashSale sale = flashSaleRepository.findById(saleId)
+            .orElseThrow(() -> new FlashSaleNotFoundException(saleId));
+        if (sale.getStatus() != SaleStatus.DRAFT) {
+            throw new IllegalArgumentException("Only DRAFT sales can be allocated by lottery, sale " + saleId + " is " + sale.getStatus());
+        }
+        if (!entryWindowClosesAt.isAfter(sale.getStartTime()) || !entryWindowClosesAt.isBefore(sale.getEndTime())) {
+            throw new IllegalArgumentException("The entry window must close after the sale starts (" + sale.getStartTime()
+                + ") and before it ends (" + sale.getEndTime() + ")");
+        }
+
+        lotteryRepository.save(new FlashSaleLottery(saleId, entryWindowClosesAt, null));
+        saleScheduler.scheduleLotteryDraw(saleId, entryWindowClosesAt);
+        auditLogService.recordAdminAction(AuditLogService.ACTION_ENABLE_LOTTERY, AuditLogService.ENTITY_FLASH_SALE, saleId);
+        log.info("FlashSale {} will be allocated by lottery, drawn at {}", saleId, entryWindowClosesAt);
+    }
+
+    /**
+     * Enter the draw for an item of a lottery sale. Entering again changes the quantity.
+     *
+     * @param userId the user ID
+     * @param request the item and quantity wanted
+     * @return the entry
+     * @throws FlashSaleItemNotFoundException if the item does not exist
+     * @throws IllegalArgumentException       if the sale is not allocated by lottery
+     * @throws SaleNotActiveException         if the sale is not ACTIVE or the entry window has closed
+     * @throws InsufficientStockException     if the quantity is more than the item's allocated stock
+     */
+    @Transactional
+    public LotteryEntryDto enter(final UUID userId, final CreateOrderDto request) {
+        final UUID flashSaleItemId = request.flashSaleItemId();
+        final FlashSaleItem item = flashSaleItemRepository.findById(flashSaleItemId)
+            .orElseThrow(() -> new FlashSaleItemNotFoundException(flashSaleItemId));
+        final FlashSale sale = item.getFlashSale();
+        final FlashSaleLottery lottery = lotteryRepository.findById(sale.getId())
+            .orElseThrow(() -> new IllegalArgumentException("Flash sale " + sale.getId() + " is not allocated by lottery"));
+        final OffsetDateTime now = OffsetDateTime.now();
+        if (sale.getStatus() != SaleStatus.ACTIVE || lottery.getDrawnAt() != null || !lottery.getEntryWindowClosesAt().isAfter(now)) {
+            throw new SaleNotActiveException(sale.getId(), lottery.getEntryWindowClosesAt(), now);
+        }
+        if (request.quantity() > item.getAllocatedStock()) {
+            throw new InsufficientStockException(flashSaleItemId, request.quantity(), item.getAllocatedStock());
+        }
+
+        lotteryRepository.enter(flashSaleItemId, userId, request.quantity());
+        meterRegistry.counter("flash.lottery.entries").increment();
+        log.debug("User {} entered the draw for flash sale item {}", userId, flashSaleItemId);
+        return new LotteryEntryDto(flashSaleItemId, request.quantity(), lottery.getEntryWindowClosesAt());
+    }
+
+    /**
+     * Find the ACTIVE lottery sales whose entry window has closed and which are still undrawn.
+     *
+     * @return the flash sale IDs
+     */
+    public List<UUID> findLotteriesDueToDraw() {
+        return lotteryRepository.findSaleIdsDueToDraw(OffsetDateTime.now());
+    }
+
+    /**
+     * Draw the winners of a lottery sale whose entry window has closed and place their orders.
+     * Drawing again, or before the window closes, does nothing.
+     *
+     * @param saleId the flash sale ID
+     * @return the number of winning orders placed
+     */
+    @Transactional
+    @CacheEvict(value = {"orders:user", "activeSales"}, allEntries = true)
+    public int draw(final UUID saleId) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final OffsetDateTime expiresAt = now.plusSeconds(holdSeconds);
+        final List<Object[]> winners = lotteryRepository.drawWinners(saleId, now, expiresAt);
+        // The orders are only backed by stock if every winning item's sold count was raised
+        if (winners.stream().anyMatch(winner -> !Boolean.TRUE.equals(winner[2]))) {
+            log.error("Lottery draw for FlashSale {} would oversell an item; rolling back", saleId);
+            throw new IllegalStateException("Lottery draw would exceed allocated stock");
+        }
+
+        for (final Object[] winner : winners) {
+            final UUID orderId = (UUID) winner[0];
+            final UUID userId = (UUID) winner[1];
+            reservationExpiryWheel.schedule(orderId, expiresAt);
+            orderMessageSender.sendForProcessing(orderId);
+            notificationService.sendLotteryWonNotification(userId, orderId);
+        }
+        meterRegistry.counter("flash.orders.created").increment(winners.size());
+        meterRegistry.counter("flash.lottery.winners").increment(winners.size());
+        log.info("Drew {} winner(s) for lottery FlashSale {}", winners.size(), saleId);
+        return winners.size();
+    }
+}
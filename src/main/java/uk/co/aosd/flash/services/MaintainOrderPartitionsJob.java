@@ -0,0 +1,38 @@
+package uk.co.aosd.flash.services;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that creates upcoming order partitions and archives expired ones.
+ * With a clustered job store it runs on one node at a time.
+ */
+@Component
+@DisallowConcurrentExecution
+public class MaintainOrderPartitionsJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(MaintainOrderPartitionsJob.class);
+
+    @Autowired
+    private OrderPartitionService orderPartitionService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        log.info("Starting MaintainOrderPartitionsJob execution");
+        try {
+            final int created = orderPartitionService.createFuturePartitions();
+            final int archived = orderPartitionService.archiveOldPartitions();
+            log.info("MaintainOrderPartitionsJob completed successfully. Created {} and archived {} partition(s)",
+                created, archived);
+        } catch (final Exception e) {
+            log.error("Error executing MaintainOrderPartitionsJob", e);
+            throw new JobExecutionException("Failed to maintain order partitions", e);
+        }
+    }
+}
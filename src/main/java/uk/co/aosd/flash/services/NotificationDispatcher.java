@@ -0,0 +1,193 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Delivers {@link NotificationEvent}s off the request and consumer threads. Events are queued
+ * after the publishing transaction commits (or immediately when there is none) into a bounded
+ * backlog; when the backlog is full new notifications are dropped and counted rather than
+ * blocking the caller. A single worker collects events for up to the batch window, merges all
+ * of a user's notifications into one entry, and hands the batch to the {@link NotificationProvider}.
+ */
+@Component
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final NotificationProvider provider;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final long windowMs;
+
+    private final BlockingQueue<NotificationEvent> backlog;
+    private Thread worker;
+    private volatile boolean running;
+
+    public NotificationDispatcher(
+        final NotificationProvider provider,
+        final MeterRegistry meterRegistry,
+        @Value("${app.notifications.capacity:10000}") final int capacity,
+        @Value("${app.notifications.batch-size:100}") final int batchSize,
+        @Value("${app.notifications.window-ms:500}") final long windowMs) {
+        this.provider = provider;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.windowMs = windowMs;
+        this.backlog = new LinkedBlockingQueue<>(capacity);
+        meterRegistry.gauge("flash.notifications.backlog", backlog, BlockingQueue::size);
+    }
+
+    /**
+     * Queue a notification once the transaction that raised it has committed.
+     *
+     * @param event the notification
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onNotification(final NotificationEvent event) {
+        if (!backlog.offer(event)) {
+            meterRegistry.counter("flash.notifications.dropped", "type", event.type().name()).increment();
+            log.warn("Notification backlog full; dropped {} notification for user {} and order {}",
+                event.type(), event.userId(), event.orderId());
+        }
+    }
+
+    /**
+     * Start the dispatch worker once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+            .name("notification-dispatcher")
+            .daemon(true)
+            .start(this::dispatchLoop);
+        log.info("Notification dispatcher started with batch size {} and window {}ms", batchSize, windowMs);
+    }
+
+    /**
+     * Stop the worker and send whatever is still in the backlog. The worker sends the batch it is
+     * collecting and is waited for first, so the provider is never called from two threads.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                if (!worker.join(STOP_TIMEOUT)) {
+                    log.warn("Notification dispatcher did not stop within {}; {} notifications not sent", STOP_TIMEOUT, backlog.size());
+                    return;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                worker = null;
+            }
+        }
+        final List<NotificationEvent> remaining = new ArrayList<>();
+        backlog.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            send(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                dispatchOnce(POLL_TIMEOUT_MS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for a notification, collect more for up to the batch window, and send them as one batch.
+     * If interrupted while collecting, the notifications already taken are sent and the thread's
+     * interrupt status is restored.
+     *
+     * @param waitMs how long to wait for the first notification
+     * @return the number of notifications sent
+     * @throws InterruptedException if interrupted while waiting for the first notification
+     */
+    int dispatchOnce(final long waitMs) throws InterruptedException {
+        final NotificationEvent first = backlog.poll(waitMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        final List<NotificationEvent> events = new ArrayList<>();
+        events.add(first);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+        while (events.size() < batchSize) {
+            final long remaining = deadline - System.nanoTime();
+            final NotificationEvent next;
+            try {
+                next = remaining > 0 ? backlog.poll(remaining, TimeUnit.NANOSECONDS) : backlog.poll();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            events.add(next);
+        }
+        send(events);
+        return events.size();
+    }
+
+    private void send(final List<NotificationEvent> events) {
+        final List<NotificationProvider.UserNotifications> batch = coalesce(events);
+        try {
+            provider.send(batch);
+        } catch (final Exception e) {
+            meterRegistry.counter("flash.notifications.failed").increment(events.size());
+            log.error("Failed to send {} notifications for {} users", events.size(), batch.size(), e);
+            return;
+        }
+        meterRegistry.summary("flash.notifications.batch.size").record(batch.size());
+        final Instant now = Instant.now();
+        for (final NotificationEvent event : events) {
+            meterRegistry.timer("flash.notifications.latency", "type", event.type().name())
+                .record(Duration.between(event.createdAt(), now));
+        }
+    }
+
+    /**
+     * Group notifications by user, keeping users and each user's notifications in arrival order.
+     *
+     * @param events the notifications
+     * @return one entry per user
+     */
+    static List<NotificationProvider.UserNotifications> coalesce(final List<NotificationEvent> events) {
+        return events.stream()
+            .collect(Collectors.groupingBy(NotificationEvent::userId, LinkedHashMap::new, Collectors.toList()))
+            .entrySet().stream()
+            .map(entry -> new NotificationProvider.UserNotifications(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+}
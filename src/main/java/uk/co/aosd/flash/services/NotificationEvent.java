@@ -0,0 +1,17 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import uk.co.aosd.flash.domain.NotificationType;
+
+/**
+ * Application event raised when a user should be notified about an order.
+ *
+ * @param userId    the user ID
+ * @param orderId   the order ID
+ * @param type      the kind of notification
+ * @param createdAt when the notification was raised
+ */
+public record NotificationEvent(UUID userId, UUID orderId, NotificationType type, Instant createdAt) {
+}
@@ -0,0 +1,27 @@
+package uk.co.aosd.flash.services;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivers notifications to users (email, SMS, push...). Implementations receive batches that
+ * have already been coalesced so that each user appears at most once per batch.
+ */
+public interface NotificationProvider {
+
+    /**
+     * All the pending notifications for one user.
+     *
+     * @param userId the user ID
+     * @param events the user's notifications, oldest first
+     */
+    record UserNotifications(UUID userId, List<NotificationEvent> events) {
+    }
+
+    /**
+     * Send a batch of notifications.
+     *
+     * @param batch one entry per user
+     */
+    void send(List<UserNotifications> batch);
+}
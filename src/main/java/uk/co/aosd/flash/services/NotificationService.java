@@ -1,15 +1,20 @@
 package uk.co.aosd.flash.services;
 
+import java.time.Instant;
 import java.util.UUID;
 
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.domain.NotificationType;
 
 /**
  * Service for sending notifications to users.
- * Currently uses a dummy email sender that logs notifications as INFO messages.
+ * Notifications are published as {@link NotificationEvent}s and delivered by the
+ * {@link NotificationDispatcher} once the caller's transaction has committed, so a slow
+ * provider never holds database locks and a rolled-back change never notifies anyone.
  */
 @Service
 @RequiredArgsConstructor
@@ -17,6 +22,8 @@ public class NotificationService {
 
     private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
 
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
      * Send order confirmation notification.
      *
@@ -24,7 +31,7 @@ public class NotificationService {
      * @param orderId the order ID
      */
     public void sendOrderConfirmation(final UUID userId, final UUID orderId) {
-        log.info("EMAIL NOTIFICATION: Order confirmation sent to user {} for order {}", userId, orderId);
+        publish(userId, orderId, NotificationType.ORDER_CONFIRMATION);
     }
 
     /**
@@ -34,7 +41,7 @@ public class NotificationService {
      * @param orderId the order ID
      */
     public void sendPaymentFailedNotification(final UUID userId, final UUID orderId) {
-        log.info("EMAIL NOTIFICATION: Payment failed notification sent to user {} for order {}", userId, orderId);
+        publish(userId, orderId, NotificationType.PAYMENT_FAILED);
     }
 
     /**
@@ -44,7 +51,7 @@ public class NotificationService {
      * @param orderId the order ID
      */
     public void sendRefundNotification(final UUID userId, final UUID orderId) {
-        log.info("EMAIL NOTIFICATION: Refund notification sent to user {} for order {}", userId, orderId);
+        publish(userId, orderId, NotificationType.REFUND);
     }
 
     /**
@@ -54,7 +61,7 @@ public class NotificationService {
      * @param orderId the order ID
      */
     public void sendDispatchNotification(final UUID userId, final UUID orderId) {
-        log.info("EMAIL NOTIFICATION: Dispatch notification sent to user {} for order {}", userId, orderId);
+        publish(userId, orderId, NotificationType.DISPATCH);
     }
 
     /**
@@ -64,6 +71,41 @@ public class NotificationService {
      * @param orderId the order ID
      */
     public void sendCancellationNotification(final UUID userId, final UUID orderId) {
-        log.info("EMAIL NOTIFICATION: Order cancelled notification sent to user {} for order {}", userId, orderId);
+        publish(userId, orderId, NotificationType.CANCELLATION);
+    }
+
+    /**
+     * Send reservation expired notification (a PENDING order was not paid for in time).
+     *
+     * @param userId  the user ID
+     * @param orderId the order ID
+     */
+    public void sendReservationExpiredNotification(final UUID userId, final UUID orderId) {
+        publish(userId, orderId, NotificationType.RESERVATION_EXPIRED);
+    }
+
+    /**
+     * Send waitlist order notification (freed stock was allocated to the user from the waitlist).
+     *
+     * @param userId  the user ID
+     * @param orderId the order ID
+     */
+    public void sendWaitlistOrderNotification(final UUID userId, final UUID orderId) {
+        publish(userId, orderId, NotificationType.WAITLIST_ORDER);
+    }
+
+    /**
+     * Send lottery won notification (the user was drawn and an order was placed for them).
+     *
+     * @param userId  the user ID
+     * @param orderId the order ID
+     */
+    public void sendLotteryWonNotification(final UUID userId, final UUID orderId) {
+        publish(userId, orderId, NotificationType.LOTTERY_WON);
+    }
+
+    private void publish(final UUID userId, final UUID orderId, final NotificationType type) {
+        log.debug("Raising {} notification for user {} and order {}", type, userId, orderId);
+        eventPublisher.publishEvent(new NotificationEvent(userId, orderId, type, Instant.now()));
     }
 }
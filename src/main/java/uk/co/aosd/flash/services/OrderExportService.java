@@ -0,0 +1,236 @@
+package uk.co.aosd.flash.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.repository.OrderExportRow;
+import uk.co.aosd.flash.repository.OrderRepository;
+
+/**
+ * Exports orders as NDJSON or CSV. Orders are streamed from a database cursor and each one is
+ * written as soon as it is read, so an export of any size runs in constant memory.
+ */
+@Service
+public class OrderExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Export formats.
+     */
+    public enum Format {
+        /** One JSON object per line. */
+        NDJSON("application/x-ndjson", "ndjson"),
+        /** Comma-separated values with a header row. */
+        CSV("text/csv", "csv");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(final String mediaType, final String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * Parse a format name.
+         *
+         * @param value the name, case-insensitive, or null for NDJSON
+         * @return the format
+         * @throws IllegalArgumentException if the name is not a format
+         */
+        public static Format of(final String value) {
+            return value == null || value.isBlank() ? NDJSON : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final MeterRegistry meterRegistry;
+    private final int fetchSize;
+
+    public OrderExportService(
+        final OrderRepository orderRepository,
+        final MeterRegistry meterRegistry,
+        @Value("${app.orders.export.fetch-size:1000}") final int fetchSize) {
+        this.orderRepository = orderRepository;
+        this.meterRegistry = meterRegistry;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Write every order matching optional filters, newest first.
+     *
+     * @param status    optional status filter
+     * @param startDate optional start date filter (inclusive)
+     * @param endDate   optional end date filter (inclusive)
+     * @param userId    optional user ID filter
+     * @param format    the format to write
+     * @param out       where to write the orders; flushed but not closed
+     * @return the number of orders written
+     * @throws IOException              if writing fails, for example because the client went away
+     * @throws IllegalArgumentException if the start date is after the end date
+     */
+    public long export(
+        final OrderStatus status,
+        final OffsetDateTime startDate,
+        final OffsetDateTime endDate,
+        final UUID userId,
+        final Format format,
+        final OutputStream out) throws IOException {
+
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date");
+        }
+        log.info("Exporting orders as {}: status={}, startDate={}, endDate={}, userId={}", format, status, startDate, endDate, userId);
+
+        final RowWriter writer = format == Format.CSV ? new CsvWriter(out) : new NdjsonWriter(out);
+        final long[] written = { 0 };
+        try {
+            orderRepository.streamWithFilters(status, startDate, endDate, userId, fetchSize, row -> {
+                try {
+                    writer.write(row);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0]++;
+            });
+            writer.flush();
+        } catch (final UncheckedIOException e) {
+            log.warn("Order export stopped after {} order(s): {}", written[0], e.getCause().getMessage());
+            throw e.getCause();
+        } finally {
+            meterRegistry.counter("flash.orders.export.rows", "format", format.extension()).increment(written[0]);
+        }
+        log.info("Exported {} order(s)", written[0]);
+        return written[0];
+    }
+
+    /**
+     * Writes export rows in one format.
+     */
+    private interface RowWriter {
+
+        void write(OrderExportRow row) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes each order as a JSON object on its own line, with the field names of the order list.
+     */
+    private static final class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator json;
+
+        NdjsonWriter(final OutputStream out) throws IOException {
+            this.json = JSON.createGenerator(out);
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(final OrderExportRow row) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("orderId", row.orderId().toString());
+            json.writeStringField("userId", row.userId().toString());
+            json.writeStringField("productId", row.productId().toString());
+            json.writeStringField("productName", row.productName());
+            json.writeStringField("flashSaleId", row.flashSaleId().toString());
+            json.writeStringField("flashSaleItemId", row.flashSaleItemId().toString());
+            json.writeNumberField("soldPrice", row.soldPrice());
+            json.writeNumberField("soldQuantity", row.soldQuantity());
+            json.writeNumberField("totalAmount", row.totalAmount());
+            json.writeStringField("status", row.status().name());
+            json.writeStringField("createdAt", row.createdAt().toString());
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            json.flush();
+        }
+    }
+
+    /**
+     * Writes a header row and then one row per order.
+     */
+    private static final class CsvWriter implements RowWriter {
+
+        private static final String HEADER = "orderId,userId,productId,productName,flashSaleId,flashSaleItemId,"
+            + "soldPrice,soldQuantity,totalAmount,status,createdAt\n";
+
+        private final Writer csv;
+
+        CsvWriter(final OutputStream out) throws IOException {
+            this.csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.csv.write(HEADER);
+        }
+
+        @Override
+        public void write(final OrderExportRow row) throws IOException {
+            csv.write(row.orderId().toString());
+            csv.write(',');
+            csv.write(row.userId().toString());
+            csv.write(',');
+            csv.write(row.productId().toString());
+            csv.write(',');
+            csv.write(quote(row.productName()));
+            csv.write(',');
+            csv.write(row.flashSaleId().toString());
+            csv.write(',');
+            csv.write(row.flashSaleItemId().toString());
+            csv.write(',');
+            csv.write(row.soldPrice().toPlainString());
+            csv.write(',');
+            csv.write(Integer.toString(row.soldQuantity()));
+            csv.write(',');
+            csv.write(row.totalAmount().toPlainString());
+            csv.write(',');
+            csv.write(row.status().name());
+            csv.write(',');
+            csv.write(row.createdAt().toString());
+            csv.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            csv.flush();
+        }
+
+        /**
+         * Quote a value if it holds a comma, quote or line break, doubling any quotes (RFC 4180).
+         */
+        private static String quote(final String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
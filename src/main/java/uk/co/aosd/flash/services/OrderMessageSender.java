@@ -2,66 +2,60 @@ package uk.co.aosd.flash.services;
 
 import java.util.UUID;
 
-import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.stereotype.Component;
-import uk.co.aosd.flash.config.RabbitMQConfig;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
- * Sends order-related messages to RabbitMQ.
- * Callers invoke this after the transactional service method returns (and thus after commit).
+ * Hands orders to the next stage of the asynchronous order pipeline.
+ * May be called inside a transaction: transports that cannot enlist in it defer delivery until
+ * after commit, so a rolled-back order is never queued. The transport is selected with
+ * {@code app.messaging.transport}: {@code rabbit} (default), {@code in-process} or {@code db-queue}.
  */
-@Component
-@RequiredArgsConstructor
-public class OrderMessageSender {
-
-    private static final Logger log = LoggerFactory.getLogger(OrderMessageSender.class);
-
-    private final RabbitTemplate rabbitTemplate;
+public interface OrderMessageSender {
 
     /**
      * Send order for processing (payment).
+     *
+     * @param orderId the order ID
      */
-    public void sendForProcessing(final UUID orderId) {
-        rabbitTemplate.convertAndSend(
-            RabbitMQConfig.ORDER_EXCHANGE,
-            RabbitMQConfig.ROUTING_KEY_PROCESSING,
-            orderId.toString());
-        log.info("Queued order {} for processing", orderId);
-    }
+    void sendForProcessing(UUID orderId);
 
     /**
      * Send order for dispatch.
+     *
+     * @param orderId the order ID
      */
-    public void sendForDispatch(final UUID orderId) {
-        rabbitTemplate.convertAndSend(
-            RabbitMQConfig.ORDER_EXCHANGE,
-            RabbitMQConfig.ROUTING_KEY_DISPATCH,
-            orderId.toString());
-        log.info("Queued order {} for dispatch", orderId);
-    }
+    void sendForDispatch(UUID orderId);
 
     /**
      * Send order for failed payment handling.
+     *
+     * @param orderId the order ID
      */
-    public void sendForPaymentFailed(final UUID orderId) {
-        rabbitTemplate.convertAndSend(
-            RabbitMQConfig.ORDER_EXCHANGE,
-            RabbitMQConfig.ROUTING_KEY_PAYMENT_FAILED,
-            orderId.toString());
-        log.info("Queued order {} for failed payment handling", orderId);
-    }
+    void sendForPaymentFailed(UUID orderId);
 
     /**
      * Send order for refund notification.
+     *
+     * @param orderId the order ID
+     */
+    void sendForRefund(UUID orderId);
+
+    /**
+     * Run an action after the current transaction commits, or immediately when there is none.
+     *
+     * @param action the action to run
      */
-    public void sendForRefund(final UUID orderId) {
-        rabbitTemplate.convertAndSend(
-            RabbitMQConfig.ORDER_EXCHANGE,
-            RabbitMQConfig.ROUTING_KEY_REFUND,
-            orderId.toString());
-        log.info("Queued order {} for refund notification", orderId);
+    static void afterCommit(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
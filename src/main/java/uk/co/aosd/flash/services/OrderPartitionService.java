@@ -0,0 +1,72 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.repository.OrderRepository;
+
+/**
+ * Maintains the monthly partitions of orders and their status history: partitions are created a
+ * few months ahead, so new rows never land in the default partitions, and months older than the
+ * retention period are detached and moved to the archive schema. Lookups by order ID alone cannot
+ * be pruned to one month, so they probe every attached partition; the retention period is what
+ * keeps that number bounded.
+ */
+@Service
+public class OrderPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPartitionService.class);
+
+    private final OrderRepository orderRepository;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public OrderPartitionService(
+        final OrderRepository orderRepository,
+        @Value("${app.orders.partitions.months-ahead:3}") final int monthsAhead,
+        @Value("${app.orders.partitions.retention-months:12}") final int retentionMonths) {
+        this.orderRepository = orderRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Create the partitions for the current month and the configured number of months after it.
+     *
+     * @return the number of partitions created
+     */
+    public int createFuturePartitions() {
+        final OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        final int created = orderRepository.createMonthlyPartitions(now, now.plusMonths(monthsAhead));
+        if (created > 0) {
+            log.info("Created {} order partition(s) up to {} month(s) ahead", created, monthsAhead);
+        }
+        return created;
+    }
+
+    /**
+     * Archive the partitions of months that ended more than the retention period ago. Nothing is
+     * archived when the retention period is 0.
+     *
+     * @return the number of partitions archived
+     */
+    public int archiveOldPartitions() {
+        if (retentionMonths <= 0) {
+            return 0;
+        }
+        final OffsetDateTime startOfMonth = OffsetDateTime.now(ZoneOffset.UTC)
+            .withDayOfMonth(1)
+            .truncatedTo(ChronoUnit.DAYS);
+        final OffsetDateTime before = startOfMonth.minusMonths(retentionMonths);
+        final int archived = orderRepository.archiveMonthlyPartitions(before);
+        if (archived > 0) {
+            log.info("Archived {} order partition(s) ending on or before {}", archived, before);
+        }
+        return archived;
+    }
+}
@@ -1,27 +1,40 @@
 package uk.co.aosd.flash.services;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
 import uk.co.aosd.flash.domain.Order;
 import uk.co.aosd.flash.domain.OrderStatus;
-import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.OrderCursor;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
 import uk.co.aosd.flash.dto.OrderResponseDto;
 import uk.co.aosd.flash.dto.OrderStatusHistoryDto;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProcessPaymentResult;
 import uk.co.aosd.flash.exc.InsufficientStockException;
 import uk.co.aosd.flash.exc.InvalidOrderStatusException;
@@ -29,8 +42,11 @@ import uk.co.aosd.flash.exc.OrderNotFoundException;
 import uk.co.aosd.flash.exc.SaleNotActiveException;
 import uk.co.aosd.flash.domain.OrderStatusHistory;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.OrderPlacement;
 import uk.co.aosd.flash.repository.OrderRepository;
 import uk.co.aosd.flash.repository.OrderStatusHistoryRepository;
+import uk.co.aosd.flash.repository.OrderSummary;
+import uk.co.aosd.flash.repository.OrderTransition;
 import uk.co.aosd.flash.repository.ProductRepository;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -51,17 +67,40 @@ public class OrderService {
     private final AuditLogService auditLogService;
     private final PaymentService paymentService;
     private final NotificationService notificationService;
+    private final OrderMessageSender orderMessageSender;
+    private final ReservationExpiryWheel reservationExpiryWheel;
+    private final ApplicationEventPublisher eventPublisher;
     private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.hold-seconds:120}")
+    private long holdSeconds = 120;
+
+    @Value("${app.orders.page.default-size:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${app.orders.page.max-size:100}")
+    private int maxPageSize = 100;
+
+    @Value("${app.orders.page.count-cap:10000}")
+    private long countCap = 10000;
 
     /**
      * Create a new order for an active sale.
-     * Validates that the sale is still active (checks end time), checks stock availability,
-     * creates a PENDING order, increments sold count, and queues the order for processing.
+     * The sale and stock checks, the sold count increment and the PENDING order insert are a single
+     * statement, so the item row is locked for one round trip per order; when the order is rejected
+     * the same statement reports why. The order is then queued for processing.
+     * The stock is held for the order until its expiry time; if it has not been paid for by then it
+     * is expired and the stock goes back to the sale.
+     * The order is queued within this transaction: the database queue commits it atomically with the
+     * order, while broker-based transports defer the send until after commit.
      *
      * @param createOrderDto the order creation DTO
      * @param userId the user ID (extracted from JWT token)
      * @return OrderResponseDto with order status
-     * @throws SaleNotActiveException      if the sale has ended
+     * @throws OrderNotFoundException      if the flash sale item does not exist
+     * @throws SaleNotActiveException      if the sale is not ACTIVE or has ended
+     * @throws IllegalArgumentException    if the sale is allocated by lottery
      * @throws InsufficientStockException if there's not enough stock
      */
     @Transactional
@@ -69,77 +108,111 @@ public class OrderService {
     public OrderResponseDto createOrder(@Valid final CreateOrderDto createOrderDto, final UUID userId) {
         log.info("Creating order for user {} for flash sale item {}", userId, createOrderDto.flashSaleItemId());
 
-        // Load flash sale item with flash sale
-        final FlashSaleItem flashSaleItem = flashSaleItemRepository.findById(createOrderDto.flashSaleItemId())
-            .orElseThrow(() -> {
-                log.error("Flash sale item not found: {}", createOrderDto.flashSaleItemId());
-                return new OrderNotFoundException(createOrderDto.flashSaleItemId());
-            });
-
-        // Check if sale is still active by checking end time (not status)
         final OffsetDateTime now = OffsetDateTime.now();
-        if (flashSaleItem.getFlashSale().getEndTime().isBefore(now) || flashSaleItem.getFlashSale().getEndTime().isEqual(now)) {
-            log.warn("Sale has ended. End time: {}, Current time: {}", flashSaleItem.getFlashSale().getEndTime(), now);
-            throw new SaleNotActiveException(
-                flashSaleItem.getFlashSale().getId(),
-                flashSaleItem.getFlashSale().getEndTime(),
-                now);
+        final OffsetDateTime expiresAt = now.plusSeconds(holdSeconds);
+        final OrderPlacement placement = orderRepository.placeOrder(
+            createOrderDto.flashSaleItemId(), userId, createOrderDto.quantity(), now, expiresAt);
+        if (!OrderPlacement.PLACED.equals(placement.getOutcome())) {
+            throw rejection(placement, createOrderDto, now);
         }
 
-        // Check stock availability
-        final int availableStock = flashSaleItem.getAllocatedStock() - flashSaleItem.getSoldCount();
-        if (availableStock < createOrderDto.quantity()) {
-            log.warn("Insufficient stock. Available: {}, Requested: {}", availableStock, createOrderDto.quantity());
-            throw new InsufficientStockException(
-                createOrderDto.flashSaleItemId(),
-                createOrderDto.quantity(),
-                availableStock);
-        }
+        final UUID orderId = placement.getOrderId();
+        log.info("Created order: {}", orderId);
+        reservationExpiryWheel.schedule(orderId, expiresAt);
 
-        // Check sale status is ACTIVE (required for incrementSoldCount)
-        if (flashSaleItem.getFlashSale().getStatus() != SaleStatus.ACTIVE) {
-            log.warn("Sale is not ACTIVE. Current status: {}", flashSaleItem.getFlashSale().getStatus());
-            throw new SaleNotActiveException(
-                flashSaleItem.getFlashSale().getId(),
-                flashSaleItem.getFlashSale().getEndTime(),
-                now);
-        }
+        meterRegistry.counter("flash.orders.created").increment();
 
-        // Atomically increment sold count FIRST (before creating order)
-        // This ensures we don't create orders that can't be fulfilled
-        final int updated = flashSaleItemRepository.incrementSoldCount(flashSaleItem.getId(), createOrderDto.quantity());
-        if (updated == 0) {
-            log.error("Failed to increment sold count for flash sale item {}. Sale may not be ACTIVE or stock insufficient.", flashSaleItem.getId());
-            throw new InsufficientStockException(
-                createOrderDto.flashSaleItemId(),
-                createOrderDto.quantity(),
-                availableStock);
-        }
+        orderMessageSender.sendForProcessing(orderId);
 
-        // Create order AFTER successful increment
-        final Order order = new Order();
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(flashSaleItem.getProduct());
-        order.setSoldPrice(flashSaleItem.getSalePrice());
-        order.setSoldQuantity(createOrderDto.quantity());
-        order.setStatus(OrderStatus.PENDING);
-        order.setCreatedAt(OffsetDateTime.now());
+        // Send order confirmation notification
+        notificationService.sendOrderConfirmation(userId, orderId);
 
-        final Order savedOrder = orderRepository.save(order);
-        log.info("Created order: {}", savedOrder.getId());
+        return new OrderResponseDto(orderId, OrderStatus.PENDING, "Order created and queued for processing");
+    }
 
-        meterRegistry.counter("flash.orders.created").increment();
+    /**
+     * Turn the reason an order was rejected into the exception reported to the buyer.
+     *
+     * @param placement the rejected placement
+     * @param createOrderDto the order creation DTO
+     * @param now the order time
+     * @return the exception to throw
+     */
+    private RuntimeException rejection(final OrderPlacement placement, final CreateOrderDto createOrderDto, final OffsetDateTime now) {
+        final UUID flashSaleItemId = createOrderDto.flashSaleItemId();
+        log.warn("Order for flash sale item {} rejected: {}", flashSaleItemId, placement.getOutcome());
+        return switch (placement.getOutcome()) {
+            case OrderPlacement.ITEM_NOT_FOUND -> new OrderNotFoundException(flashSaleItemId);
+            case OrderPlacement.SALE_NOT_ACTIVE -> {
+                // Rare enough to afford loading the sale for the error details
+                final FlashSale sale = flashSaleItemRepository.findById(flashSaleItemId)
+                    .map(FlashSaleItem::getFlashSale)
+                    .orElseThrow(() -> new OrderNotFoundException(flashSaleItemId));
+                yield new SaleNotActiveException(sale.getId(), sale.getEndTime(), now);
+            }
+            case OrderPlacement.LOTTERY -> new IllegalArgumentException(
+                "Flash sale item " + flashSaleItemId + " is allocated by lottery; enter the draw instead");
+            default -> new InsufficientStockException(flashSaleItemId, createOrderDto.quantity(), placement.getAvailable());
+        };
+    }
 
-        // Send order confirmation notification
-        notificationService.sendOrderConfirmation(userId, savedOrder.getId());
+    /**
+     * Run the order placement statement in a transaction that is always rolled back, so the JIT, the
+     * statement plan, the connection pool and the database buffers are warm before a sale opens.
+     * Nothing is reserved, saved or queued. The sale does not have to be ACTIVE yet; the statement
+     * then reports that the sale is not active.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @param quantity the quantity to try
+     * @return true if the order would have been placed
+     */
+    public boolean dryRunOrder(final UUID flashSaleItemId, final int quantity) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final OrderPlacement placement = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return orderRepository.placeOrder(flashSaleItemId, new UUID(0L, 0L), quantity, now, now.plusSeconds(holdSeconds));
+        });
+        final boolean placed = placement != null && OrderPlacement.PLACED.equals(placement.getOutcome());
+        if (!placed) {
+            log.debug("Dry-run order for flash sale item {} would not be placed: {}", flashSaleItemId,
+                placement != null ? placement.getOutcome() : null);
+        }
+        return placed;
+    }
 
-        return new OrderResponseDto(savedOrder.getId(), OrderStatus.PENDING, "Order created and queued for processing");
+    /**
+     * Place an order for a buyer at the head of an item's waitlist, if the stock is there. The order
+     * is created exactly as {@link #createOrder(CreateOrderDto, UUID)} would, and the buyer is told
+     * that it was placed for them.
+     *
+     * @param userId the waiting user's ID
+     * @param flashSaleItemId the flash sale item ID
+     * @param quantity the quantity the user is waiting for
+     * @return the new order's ID, or empty if the stock is not available or the sale is no longer ACTIVE
+     */
+    @Transactional
+    @CacheEvict(value = {"orders:user", "activeSales"}, allEntries = true)
+    public Optional<UUID> createWaitlistOrder(final UUID userId, final UUID flashSaleItemId, final int quantity) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final OffsetDateTime expiresAt = now.plusSeconds(holdSeconds);
+        final OrderPlacement placement = orderRepository.placeOrder(flashSaleItemId, userId, quantity, now, expiresAt);
+        if (!OrderPlacement.PLACED.equals(placement.getOutcome())) {
+            return Optional.empty();
+        }
+        final UUID orderId = placement.getOrderId();
+        log.info("Created order {} for user {} from the waitlist of flash sale item {}", orderId, userId, flashSaleItemId);
+        reservationExpiryWheel.schedule(orderId, expiresAt);
+
+        meterRegistry.counter("flash.orders.created").increment();
+        orderMessageSender.sendForProcessing(orderId);
+        notificationService.sendWaitlistOrderNotification(userId, orderId);
+        return Optional.of(orderId);
     }
 
     /**
      * Process payment for an order.
      * Attempts to take payment; returns outcome so caller can send dispatch or payment-failed message.
+     * The order row stays locked while payment is taken, so the hold cannot expire part way through.
      *
      * @param orderId the order ID
      * @return ProcessPaymentResult with success flag and orderId
@@ -149,7 +222,7 @@ public class OrderService {
     public ProcessPaymentResult processOrderPayment(final UUID orderId) {
         log.info("Processing payment for order {}", orderId);
 
-        final Order order = orderRepository.findById(orderId)
+        final Order order = orderRepository.findByIdForUpdate(orderId)
             .orElseThrow(() -> {
                 log.error("Order not found: {}", orderId);
                 return new OrderNotFoundException(orderId);
@@ -167,17 +240,14 @@ public class OrderService {
 
         if (paymentSuccess) {
             meterRegistry.counter("flash.payments.success").increment();
-            order.setStatus(OrderStatus.PAID);
-            orderRepository.save(order);
-            recordOrderStatusChange(orderId, OrderStatus.PENDING, OrderStatus.PAID, null);
+            transition(orderId, OrderStatus.PENDING, OrderStatus.PAID, false, "process payment");
             log.info("Payment succeeded for order {}. Status updated to PAID", orderId);
             return new ProcessPaymentResult(true, orderId);
         }
+        // The order stays PENDING until the payment-failed message moves it to FAILED and releases its
+        // stock in one transition, so a redelivered message cannot release the stock twice
         meterRegistry.counter("flash.payments.failure").increment();
-        order.setStatus(OrderStatus.FAILED);
-        orderRepository.save(order);
-        recordOrderStatusChange(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null);
-        log.warn("Payment failed for order {}. Status updated to FAILED", orderId);
+        log.warn("Payment failed for order {}. Stock will be released by the payment-failed stage", orderId);
         return new ProcessPaymentResult(false, orderId);
     }
 
@@ -192,36 +262,16 @@ public class OrderService {
     @CacheEvict(value = {"orders", "orders:user"}, allEntries = true)
     public void handleRefund(final UUID orderId) {
         log.info("Handling refund for order {}", orderId);
+        final Timer.Sample releaseSample = Timer.start(meterRegistry);
 
-        final Order order = orderRepository.findByIdWithFlashSaleItem(orderId)
-            .orElseThrow(() -> {
-                log.error("Order not found: {}", orderId);
-                return new OrderNotFoundException(orderId);
-            });
-
-        if (order.getStatus() != OrderStatus.PAID) {
-            log.warn("Order {} is not in PAID status. Current status: {}", orderId, order.getStatus());
-            throw new InvalidOrderStatusException(orderId, order.getStatus(), OrderStatus.PAID, "refund");
-        }
-
-        // Decrement sold count
-        final int updated = flashSaleItemRepository.decrementSoldCount(
-            order.getFlashSaleItem().getId(),
-            order.getSoldQuantity());
-
-        if (updated == 0) {
-            log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-            throw new IllegalStateException("Failed to decrement sold count for refund");
-        }
-
-        // Update order status
-        order.setStatus(OrderStatus.REFUNDED);
-        orderRepository.save(order);
-        recordOrderStatusChange(orderId, OrderStatus.PAID, OrderStatus.REFUNDED, null);
+        // Sold count decrement, status change and history in one call
+        final OrderTransition refund = transition(orderId, OrderStatus.PAID, OrderStatus.REFUNDED, true, "refund");
+        releaseSample.stop(meterRegistry.timer("flash.stock.release.latency", "reason", "refund"));
+        eventPublisher.publishEvent(new StockReleasedEvent(refund.flashSaleItemId()));
         log.info("Order {} status updated to REFUNDED", orderId);
 
         // Notify user (can be done synchronously as it's just logging)
-        notificationService.sendRefundNotification(order.getUserId(), orderId);
+        notificationService.sendRefundNotification(refund.userId(), orderId);
     }
 
     /**
@@ -235,42 +285,81 @@ public class OrderService {
     @CacheEvict(value = {"orders", "orders:user"}, allEntries = true)
     public void handleCancel(final UUID orderId) {
         log.info("Handling cancel for order {}", orderId);
+        final Timer.Sample releaseSample = Timer.start(meterRegistry);
 
-        final Order order = orderRepository.findByIdWithFlashSaleItem(orderId)
-            .orElseThrow(() -> {
-                log.error("Order not found: {}", orderId);
-                return new OrderNotFoundException(orderId);
-            });
-
-        if (order.getStatus() != OrderStatus.PENDING) {
-            log.warn("Order {} is not in PENDING status. Current status: {}", orderId, order.getStatus());
-            throw new InvalidOrderStatusException(orderId, order.getStatus(), OrderStatus.PENDING, "cancel");
-        }
+        // The order row is locked by the transition, so a cancel and an expiry of the same hold cannot
+        // both release its stock
+        final OrderTransition cancel = transition(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, true, "cancel");
+        releaseSample.stop(meterRegistry.timer("flash.stock.release.latency", "reason", "cancel"));
+        eventPublisher.publishEvent(new StockReleasedEvent(cancel.flashSaleItemId()));
+        log.info("Order {} status updated to CANCELLED", orderId);
 
-        // Decrement sold count (release reserved stock)
-        final int updated = flashSaleItemRepository.decrementSoldCount(
-            order.getFlashSaleItem().getId(),
-            order.getSoldQuantity());
+        // Notify user
+        notificationService.sendCancellationNotification(cancel.userId(), orderId);
+    }
 
-        if (updated == 0) {
-            log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-            throw new IllegalStateException("Failed to decrement sold count for cancel");
+    /**
+     * Expire PENDING orders whose hold has run out and give their stock back to the sales.
+     * Orders that have been paid for, cancelled or already expired, and orders being paid for right
+     * now, are skipped. The orders are locked first, then their quantities are summed per flash sale
+     * item and released with one decrement per item (in item ID order), and only then is their status
+     * changed: rows are locked order, then item, as the status transitions do.
+     *
+     * @param orderIds the candidate order IDs
+     * @return the number of orders expired
+     */
+    @Transactional
+    @CacheEvict(value = {"orders", "orders:user"}, allEntries = true)
+    public int expireOrders(final List<UUID> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        final OffsetDateTime now = OffsetDateTime.now();
+        final List<Order> expired = orderRepository.lockExpiredPendingOrders(orderIds, now);
+        if (expired.isEmpty()) {
+            return 0;
         }
 
-        // Update order status to CANCELLED
-        order.setStatus(OrderStatus.CANCELLED);
-        orderRepository.save(order);
-        recordOrderStatusChange(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null);
-        log.info("Order {} status updated to CANCELLED", orderId);
-
-        // Notify user
-        notificationService.sendCancellationNotification(order.getUserId(), orderId);
+        final Map<UUID, Integer> quantityByItem = new TreeMap<>();
+        for (final Order order : expired) {
+            quantityByItem.merge(order.getFlashSaleItem().getId(), order.getSoldQuantity(), Integer::sum);
+        }
+        for (final Map.Entry<UUID, Integer> entry : quantityByItem.entrySet()) {
+            final int updated = flashSaleItemRepository.decrementSoldCount(entry.getKey(), entry.getValue());
+            if (updated == 0) {
+                log.error("Failed to decrement sold count by {} for flash sale item {}", entry.getValue(), entry.getKey());
+                throw new IllegalStateException("Failed to decrement sold count for expiry");
+            }
+            eventPublisher.publishEvent(new StockReleasedEvent(entry.getKey()));
+        }
+        orderRepository.updateStatusForIds(expired.stream().map(Order::getId).toList(), OrderStatus.PENDING, OrderStatus.EXPIRED);
+
+        orderStatusHistoryRepository.saveAll(expired.stream()
+            .map(order -> OrderStatusHistory.builder()
+                .orderId(order.getId())
+                .fromStatus(OrderStatus.PENDING)
+                .toStatus(OrderStatus.EXPIRED)
+                .changedAt(now)
+                .build())
+            .toList());
+
+        // Latency is measured from the moment the hold ran out to the moment its stock was released
+        final Timer releaseLatency = meterRegistry.timer("flash.stock.release.latency", "reason", "expiry");
+        for (final Order order : expired) {
+            releaseLatency.record(Duration.between(order.getExpiresAt(), now));
+            notificationService.sendReservationExpiredNotification(order.getUserId(), order.getId());
+        }
+        meterRegistry.counter("flash.orders.expired").increment(expired.size());
+        log.info("Expired {} orders across {} flash sale items", expired.size(), quantityByItem.size());
+        return expired.size();
     }
 
     /**
      * Process failed payment queue.
-     * Decreases the stock sold count for the sales item, changes the order status to FAILED,
-     * and notifies the user.
+     * Moves the order from PENDING to FAILED, decreasing the stock sold count for the sales item in
+     * the same transition, and notifies the user. The transition only succeeds once, so a
+     * redelivered or replayed message finds the order already FAILED (or expired, cancelled or paid
+     * meanwhile) and changes nothing.
      *
      * @param orderId the order ID
      */
@@ -279,33 +368,23 @@ public class OrderService {
     public void processFailedPayment(final UUID orderId) {
         log.info("Processing failed payment for order {}", orderId);
 
-        final Order order = orderRepository.findByIdWithFlashSaleItem(orderId)
-            .orElseThrow(() -> {
+        final OrderTransition failed = orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null, true);
+        switch (failed.outcome()) {
+            case OK -> {
+                eventPublisher.publishEvent(new StockReleasedEvent(failed.flashSaleItemId()));
+                log.info("Processed failed payment for order {}", orderId);
+                notificationService.sendPaymentFailedNotification(failed.userId(), orderId);
+            }
+            case NOT_FOUND -> {
                 log.error("Order not found: {}", orderId);
-                return new OrderNotFoundException(orderId);
-            });
-
-        // Decrement sold count
-        final int updated = flashSaleItemRepository.decrementSoldCount(
-            order.getFlashSaleItem().getId(),
-            order.getSoldQuantity());
-
-        if (updated == 0) {
-            log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-            throw new IllegalStateException("Failed to decrement sold count for failed payment");
-        }
-
-        // Order status should already be FAILED from processOrderPayment, but ensure it is
-        if (order.getStatus() != OrderStatus.FAILED) {
-            order.setStatus(OrderStatus.FAILED);
-            orderRepository.save(order);
-            recordOrderStatusChange(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null);
+                throw new OrderNotFoundException(orderId);
+            }
+            case STOCK_CONFLICT -> {
+                log.error("Failed to decrement sold count for flash sale item {}", failed.flashSaleItemId());
+                throw new IllegalStateException("Failed to decrement sold count for failed payment");
+            }
+            default -> log.info("Order {} is already {}; failed payment already handled", orderId, failed.previousStatus());
         }
-
-        log.info("Processed failed payment for order {}", orderId);
-
-        // Notify user
-        notificationService.sendPaymentFailedNotification(order.getUserId(), orderId);
     }
 
     /**
@@ -321,34 +400,82 @@ public class OrderService {
     public void processDispatch(final UUID orderId) {
         log.info("Processing dispatch for order {}", orderId);
 
-        final Order order = orderRepository.findByIdWithProduct(orderId)
-            .orElseThrow(() -> {
-                log.error("Order not found: {}", orderId);
-                return new OrderNotFoundException(orderId);
-            });
+        // Only PAID orders are dispatched (not refunded ones); the product's physical and reserved stock
+        // are decremented, the status changed and the history recorded in one call
+        final OrderTransition dispatch = transition(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, true, "dispatch");
+        log.info("Order {} status updated to DISPATCHED", orderId);
 
-        // Make sure order is in PAID state (hasn't been refunded)
-        if (order.getStatus() != OrderStatus.PAID) {
-            log.warn("Order {} is not in PAID status. Current status: {}. Cannot dispatch.", orderId, order.getStatus());
-            throw new InvalidOrderStatusException(orderId, order.getStatus(), OrderStatus.PAID, "dispatch");
-        }
+        // Notify user
+        notificationService.sendDispatchNotification(dispatch.userId(), orderId);
+    }
 
-        // Decrement product stock (both totalPhysicalStock and reservedCount)
-        final int updated = productRepository.decrementStock(order.getProduct().getId(), order.getSoldQuantity());
+    /**
+     * Process a batch of dispatch messages in one transaction.
+     * Quantities are summed per product and applied with one stock decrement per product (in product ID
+     * order, so concurrent batches lock product rows consistently). All PAID orders in the batch are moved
+     * to DISPATCHED in a single statement. Orders that are missing or no longer PAID (e.g. refunded, or
+     * already dispatched by a redelivery) are skipped. Stock and statuses end up exactly as if each order
+     * had been passed to {@link #processDispatch(UUID)}.
+     *
+     * @param orderIds the order IDs to dispatch
+     * @return the number of orders dispatched
+     */
+    @Transactional
+    @CacheEvict(value = {"orders", "orders:user"}, allEntries = true)
+    public int processDispatchBatch(final List<UUID> orderIds) {
+        log.info("Processing dispatch batch of {} orders", orderIds.size());
+
+        final List<Order> orders = orderRepository.findByIdInWithProduct(orderIds);
+        final List<Order> dispatchable = new ArrayList<>();
+        final Map<UUID, Integer> quantityByProduct = new TreeMap<>();
+        for (final Order order : orders) {
+            if (order.getStatus() != OrderStatus.PAID) {
+                log.warn("Order {} is not in PAID status. Current status: {}. Skipping dispatch.", order.getId(), order.getStatus());
+                continue;
+            }
+            dispatchable.add(order);
+            quantityByProduct.merge(order.getProduct().getId(), order.getSoldQuantity(), Integer::sum);
+        }
+        if (orders.size() < orderIds.size()) {
+            final Set<UUID> found = orders.stream().map(Order::getId).collect(Collectors.toSet());
+            orderIds.stream().filter(id -> !found.contains(id)).forEach(id -> log.warn("Order not found for dispatch: {}", id));
+        }
+        if (dispatchable.isEmpty()) {
+            return 0;
+        }
 
-        if (updated == 0) {
-            log.error("Failed to decrement stock for product {}", order.getProduct().getId());
-            throw new IllegalStateException("Failed to decrement product stock for dispatch");
+        // One UPDATE per product for the whole batch
+        for (final Map.Entry<UUID, Integer> entry : quantityByProduct.entrySet()) {
+            final int updated = productRepository.decrementStock(entry.getKey(), entry.getValue());
+            if (updated == 0) {
+                log.error("Failed to decrement stock by {} for product {}", entry.getValue(), entry.getKey());
+                throw new IllegalStateException("Failed to decrement product stock for dispatch batch");
+            }
         }
 
-        // Update order status to DISPATCHED
-        order.setStatus(OrderStatus.DISPATCHED);
-        orderRepository.save(order);
-        recordOrderStatusChange(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, null);
-        log.info("Order {} status updated to DISPATCHED", orderId);
+        final List<UUID> dispatchIds = dispatchable.stream().map(Order::getId).toList();
+        final int dispatched = orderRepository.updateStatusForIds(dispatchIds, OrderStatus.PAID, OrderStatus.DISPATCHED);
+        if (dispatched != dispatchIds.size()) {
+            // Another transaction changed an order after it was read; roll back and let the batch be retried
+            throw new IllegalStateException("Dispatch batch raced with a concurrent status change");
+        }
 
-        // Notify user
-        notificationService.sendDispatchNotification(order.getUserId(), orderId);
+        final OffsetDateTime now = OffsetDateTime.now();
+        orderStatusHistoryRepository.saveAll(dispatchIds.stream()
+            .map(id -> OrderStatusHistory.builder()
+                .orderId(id)
+                .fromStatus(OrderStatus.PAID)
+                .toStatus(OrderStatus.DISPATCHED)
+                .changedAt(now)
+                .build())
+            .toList());
+        meterRegistry.summary("flash.dispatch.batch.size").record(dispatched);
+        log.info("Dispatched {} orders across {} products", dispatched, quantityByProduct.size());
+
+        for (final Order order : dispatchable) {
+            notificationService.sendDispatchNotification(order.getUserId(), order.getId());
+        }
+        return dispatched;
     }
 
     /**
@@ -388,84 +515,119 @@ public class OrderService {
     }
 
     /**
-     * Get orders for a user with optional filters (status, date range).
-     * Results are ordered by createdAt descending (most recent first).
+     * Get one page of a user's orders with optional filters (status, date range).
+     * Results are ordered by createdAt descending (most recent first), then by ID. When the view asks
+     * only for fields held on the order row, the product and flash sale are not joined in.
      *
      * @param userId the user ID
      * @param status optional status filter
      * @param startDate optional start date filter (inclusive)
      * @param endDate optional end date filter (inclusive)
-     * @return list of OrderDetailDto matching the criteria
-     * @throws IllegalArgumentException if date range is invalid (startDate > endDate)
+     * @param view the fields to return and whether to include the status history; slim and full views are cached separately
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size, or null for the default; capped at the maximum page size
+     * @return the page of OrderDetailDto matching the criteria
+     * @throws IllegalArgumentException if date range is invalid (startDate > endDate), the cursor is invalid or the limit is below 1
      */
-    @Cacheable(value = "orders:user", key = "#userId + ':' + (#status != null ? #status.toString() : 'null') + ':' + (#startDate != null ? #startDate.toString() : 'null') + ':' + (#endDate != null ? #endDate.toString() : 'null')")
-    public List<OrderDetailDto> getOrdersByUser(
+    @Cacheable(value = "orders:user", key = "#userId + ':' + (#status != null ? #status.toString() : 'null') + ':' + (#startDate != null ? #startDate.toString() : 'null') + ':' + (#endDate != null ? #endDate.toString() : 'null') + ':' + #view.cacheKey() + ':' + #cursor + ':' + #limit")
+    public OrderPage getOrdersByUser(
         final UUID userId,
         final OrderStatus status,
         final OffsetDateTime startDate,
-        final OffsetDateTime endDate) {
-
-        log.info("Fetching orders for user {} with filters: status={}, startDate={}, endDate={}",
-            userId, status, startDate, endDate);
+        final OffsetDateTime endDate,
+        final OrderView view,
+        final String cursor,
+        final Integer limit) {
 
-        // Validate date range if both dates are provided
-        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
-            throw new IllegalArgumentException("Start date must be before or equal to end date");
-        }
+        log.info("Fetching orders for user {} with filters: status={}, startDate={}, endDate={}, view={}, cursor={}, limit={}",
+            userId, status, startDate, endDate, view.cacheKey(), cursor, limit);
 
-        final List<Order> orders;
-        if (status != null && startDate != null && endDate != null) {
-            // All filters
-            orders = orderRepository.findByUserIdAndStatusAndCreatedAtBetween(userId, status, startDate, endDate);
-        } else if (status != null) {
-            // Status only
-            orders = orderRepository.findByUserIdAndStatus(userId, status);
-        } else if (startDate != null && endDate != null) {
-            // Date range only
-            orders = orderRepository.findByUserIdAndCreatedAtBetween(userId, startDate, endDate);
-        } else {
-            // No filters
-            orders = orderRepository.findByUserId(userId);
-        }
+        final OrderPage page = findPage(status, startDate, endDate, userId, view, cursor, limit);
 
-        log.info("Found {} orders for user {}", orders.size(), userId);
-        return orders.stream()
-            .map(this::mapToOrderDetailDto)
-            .toList();
+        log.info("Found {} orders for user {}", page.orders().size(), userId);
+        return page;
     }
 
     /**
-     * Get all orders with optional filters for admin use.
-     * Results are ordered by createdAt descending (most recent first).
+     * Get one page of all orders with optional filters for admin use.
+     * Results are ordered by createdAt descending (most recent first), then by ID. When the view asks
+     * only for fields held on the order row, the product and flash sale are not joined in.
      *
      * @param status optional status filter
      * @param startDate optional start date filter (inclusive)
      * @param endDate optional end date filter (inclusive)
      * @param userId optional user ID filter
-     * @return list of OrderDetailDto matching the criteria
-     * @throws IllegalArgumentException if date range is invalid (startDate > endDate)
+     * @param view the fields to return and whether to include the status history; slim and full views are cached separately
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size, or null for the default; capped at the maximum page size
+     * @return the page of OrderDetailDto matching the criteria
+     * @throws IllegalArgumentException if date range is invalid (startDate > endDate), the cursor is invalid or the limit is below 1
      */
-    @Cacheable(value = "orders:all", key = "(#status != null ? #status.toString() : 'null') + ':' + (#startDate != null ? #startDate.toString() : 'null') + ':' + (#endDate != null ? #endDate.toString() : 'null') + ':' + (#userId != null ? #userId.toString() : 'null')")
-    public List<OrderDetailDto> getAllOrders(
+    @Cacheable(value = "orders:all", key = "(#status != null ? #status.toString() : 'null') + ':' + (#startDate != null ? #startDate.toString() : 'null') + ':' + (#endDate != null ? #endDate.toString() : 'null') + ':' + (#userId != null ? #userId.toString() : 'null') + ':' + #view.cacheKey() + ':' + #cursor + ':' + #limit")
+    public OrderPage getAllOrders(
         final OrderStatus status,
         final OffsetDateTime startDate,
         final OffsetDateTime endDate,
-        final UUID userId) {
+        final UUID userId,
+        final OrderView view,
+        final String cursor,
+        final Integer limit) {
+
+        log.info("Fetching all orders with filters: status={}, startDate={}, endDate={}, userId={}, view={}, cursor={}, limit={}",
+            status, startDate, endDate, userId, view.cacheKey(), cursor, limit);
 
-        log.info("Fetching all orders with filters: status={}, startDate={}, endDate={}, userId={}",
-            status, startDate, endDate, userId);
+        final OrderPage page = findPage(status, startDate, endDate, userId, view, cursor, limit);
+
+        log.info("Found {} orders", page.orders().size());
+        return page;
+    }
+
+    /**
+     * Read one page of orders by keyset: the orders that sort after the cursor, one more than the
+     * page size to tell whether there is a next page. Only a page of orders is ever loaded, and the
+     * count stops at its cap, so the work per request is bounded however many orders there are.
+     */
+    private OrderPage findPage(
+        final OrderStatus status,
+        final OffsetDateTime startDate,
+        final OffsetDateTime endDate,
+        final UUID userId,
+        final OrderView view,
+        final String cursor,
+        final Integer limit) {
 
         // Validate date range if both dates are provided
         if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
             throw new IllegalArgumentException("Start date must be before or equal to end date");
         }
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        final int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        final OrderCursor after = OrderCursor.decode(cursor);
+        final Limit fetch = Limit.of(pageSize + 1);
+
+        final List<OrderDetailDto> orders;
+        final OrderCursor last;
+        final boolean hasMore;
+        if (!view.needsJoins()) {
+            final List<OrderSummary> summaries = orderRepository.findSummaryPageWithFilters(
+                status, startDate, endDate, userId, after.createdAt(), after.orderId(), fetch);
+            hasMore = summaries.size() > pageSize;
+            final List<OrderSummary> page = hasMore ? summaries.subList(0, pageSize) : summaries;
+            orders = mapSummariesToOrderDetailDtos(page, view);
+            last = page.isEmpty() ? null : new OrderCursor(page.getLast().getCreatedAt(), page.getLast().getOrderId());
+        } else {
+            final List<Order> entities = orderRepository.findPageWithFilters(
+                status, startDate, endDate, userId, after.createdAt(), after.orderId(), fetch);
+            hasMore = entities.size() > pageSize;
+            final List<Order> page = hasMore ? entities.subList(0, pageSize) : entities;
+            orders = mapToOrderDetailDtos(page, view);
+            last = page.isEmpty() ? null : new OrderCursor(page.getLast().getCreatedAt(), page.getLast().getId());
+        }
 
-        final List<Order> orders = orderRepository.findAllWithFilters(status, startDate, endDate, userId);
-
-        log.info("Found {} orders", orders.size());
-        return orders.stream()
-            .map(this::mapToOrderDetailDto)
-            .toList();
+        final long totalCount = orderRepository.countWithFilters(status, startDate, endDate, userId, countCap);
+        return new OrderPage(orders, hasMore ? last.encode() : null, totalCount, totalCount >= countCap);
     }
 
     /**
@@ -491,7 +653,9 @@ public class OrderService {
 
     /**
      * Update order status with proper stock adjustments.
-     * Handles all valid status transitions and adjusts stock accordingly.
+     * The database validates the transition, adjusts the sold count or product stock it requires,
+     * changes the status and records who changed it, all in one call. An order moved back to
+     * PENDING is given a new hold, so it is not expired straight away by the old one.
      *
      * @param orderId the order ID
      * @param newStatus the new status to set
@@ -502,179 +666,160 @@ public class OrderService {
     @Transactional
     @CacheEvict(value = {"orders", "orders:user"}, allEntries = true)
     public void updateOrderStatus(final UUID orderId, final OrderStatus newStatus) {
-        log.info("Updating order {} status", orderId);
-
-        // Load order with all related entities
-        final Order order = orderRepository.findByIdForAdmin(orderId)
-            .orElseThrow(() -> {
-                log.error("Order not found: {}", orderId);
-                return new OrderNotFoundException(orderId);
-            });
+        log.info("Updating order {} status to {}", orderId, newStatus);
 
-        final OrderStatus currentStatus = order.getStatus();
+        final OrderTransition transition = transition(orderId, null, newStatus,
+            uk.co.aosd.flash.security.SecurityUtils.getCurrentUserIdOrNull(), true, "status update");
 
         // If status is unchanged, no-op
-        if (currentStatus == newStatus) {
+        if (transition.outcome() == OrderTransition.Outcome.UNCHANGED) {
             log.info("Order {} already in status {}", orderId, newStatus);
             return;
         }
 
-        log.info("Transitioning order {} from {} to {}", orderId, currentStatus, newStatus);
-
-        // Handle stock adjustments based on transition
-        handleStatusTransition(order, currentStatus, newStatus);
+        // An order moved back to PENDING gets a fresh hold; its old one ran out long ago
+        if (newStatus == OrderStatus.PENDING) {
+            final OffsetDateTime expiresAt = OffsetDateTime.now().plusSeconds(holdSeconds);
+            orderRepository.restartHold(orderId, expiresAt);
+            reservationExpiryWheel.schedule(orderId, expiresAt);
+        }
 
-        // Update order status
-        order.setStatus(newStatus);
-        orderRepository.save(order);
-        recordOrderStatusChange(orderId, currentStatus, newStatus, uk.co.aosd.flash.security.SecurityUtils.getCurrentUserIdOrNull());
         auditLogService.recordAdminAction(AuditLogService.ACTION_UPDATE_ORDER_STATUS, AuditLogService.ENTITY_ORDER, orderId,
-            "{\"from\":\"" + currentStatus + "\",\"to\":\"" + newStatus + "\"}");
-        log.info("Order {} status updated to {}", orderId, newStatus);
+            "{\"from\":\"" + transition.previousStatus() + "\",\"to\":\"" + newStatus + "\"}");
+        log.info("Order {} status updated from {} to {}", orderId, transition.previousStatus(), newStatus);
     }
 
     /**
-     * Record an order status change in the history table.
+     * Change an order's status with the database transition function, made by the system.
+     *
+     * @param orderId the order ID
+     * @param expected the status the order must be in
+     * @param toStatus the new status
+     * @param adjustStock whether to adjust stock as the transition requires
+     * @param operation the operation, for errors
+     * @return the transition
      */
-    private void recordOrderStatusChange(final UUID orderId, final OrderStatus fromStatus, final OrderStatus toStatus, final UUID changedByUserId) {
-        final OrderStatusHistory history = OrderStatusHistory.builder()
-            .orderId(orderId)
-            .fromStatus(fromStatus)
-            .toStatus(toStatus)
-            .changedAt(OffsetDateTime.now())
-            .changedByUserId(changedByUserId)
-            .build();
-        orderStatusHistoryRepository.save(history);
+    private OrderTransition transition(final UUID orderId, final OrderStatus expected, final OrderStatus toStatus,
+        final boolean adjustStock, final String operation) {
+        return transition(orderId, expected, toStatus, null, adjustStock, operation);
     }
 
     /**
-     * Handle stock adjustments for status transitions.
+     * Change an order's status with the database transition function, which validates the transition,
+     * adjusts the stock counters, changes the status and appends the history in one round trip, and
+     * turn a rejected transition into the matching exception.
      *
-     * @param order the order
-     * @param fromStatus the current status
+     * @param orderId the order ID
+     * @param expected the status the order must be in, or null to allow any permitted transition
      * @param toStatus the new status
+     * @param changedByUserId the user making the change, or null for system changes
+     * @param adjustStock whether to adjust stock as the transition requires
+     * @param operation the operation, for errors
+     * @return the transition, made or UNCHANGED
+     * @throws OrderNotFoundException if the order doesn't exist
+     * @throws InvalidOrderStatusException if the order is not in the expected status or the transition is invalid
+     * @throws IllegalStateException if the stock could not be adjusted
      */
-    private void handleStatusTransition(final Order order, final OrderStatus fromStatus, final OrderStatus toStatus) {
-        final UUID orderId = order.getId();
-        final int quantity = order.getSoldQuantity();
-
-        // PENDING → PAID: No stock change (stock already reserved via soldCount)
-        if (fromStatus == OrderStatus.PENDING && toStatus == OrderStatus.PAID) {
-            log.debug("PENDING → PAID: No stock adjustment needed");
-            return;
-        }
-
-        // PAID → DISPATCHED: Decrement product stock (both totalPhysicalStock and reservedCount)
-        if (fromStatus == OrderStatus.PAID && toStatus == OrderStatus.DISPATCHED) {
-            log.debug("PAID → DISPATCHED: Decrementing product stock");
-            final int updated = productRepository.decrementStock(order.getProduct().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to decrement stock for product {}", order.getProduct().getId());
-                throw new IllegalStateException("Failed to decrement product stock for dispatch");
+    private OrderTransition transition(final UUID orderId, final OrderStatus expected, final OrderStatus toStatus,
+        final UUID changedByUserId, final boolean adjustStock, final String operation) {
+        final OrderTransition transition = orderRepository.transitionStatus(orderId, expected, toStatus, changedByUserId, adjustStock);
+        switch (transition.outcome()) {
+            case OK, UNCHANGED -> {
+                return transition;
             }
-            return;
-        }
-
-        // PAID → REFUNDED: Decrement flash sale item soldCount
-        if (fromStatus == OrderStatus.PAID && toStatus == OrderStatus.REFUNDED) {
-            log.debug("PAID → REFUNDED: Decrementing flash sale item soldCount");
-            final int updated = flashSaleItemRepository.decrementSoldCount(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to decrement sold count for refund");
+            case NOT_FOUND -> {
+                log.error("Order not found: {}", orderId);
+                throw new OrderNotFoundException(orderId);
             }
-            return;
-        }
-
-        // DISPATCHED → PAID: Increment product stock (reverse dispatch)
-        if (fromStatus == OrderStatus.DISPATCHED && toStatus == OrderStatus.PAID) {
-            log.debug("DISPATCHED → PAID: Incrementing product stock (reverse dispatch)");
-            final int updated = productRepository.incrementStock(order.getProduct().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to increment stock for product {}", order.getProduct().getId());
-                throw new IllegalStateException("Failed to increment product stock for reverse dispatch");
+            case STOCK_CONFLICT -> {
+                log.error("Failed to adjust stock for {} of order {} ({} → {})", operation, orderId, transition.previousStatus(), toStatus);
+                throw new IllegalStateException("Failed to adjust stock for " + operation);
             }
-            return;
-        }
-
-        // REFUNDED → PAID: Increment flash sale item soldCount (reverse refund)
-        if (fromStatus == OrderStatus.REFUNDED && toStatus == OrderStatus.PAID) {
-            log.debug("REFUNDED → PAID: Incrementing flash sale item soldCount (reverse refund)");
-            final int updated = flashSaleItemRepository.incrementSoldCountForAdmin(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to increment sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to increment sold count for reverse refund");
+            default -> {
+                final OrderStatus required = expected != null ? expected : toStatus;
+                log.warn("Invalid status transition for {} of order {}: {} → {}", operation, orderId, transition.previousStatus(), toStatus);
+                throw new InvalidOrderStatusException(orderId, transition.previousStatus(), required, operation);
             }
-            return;
         }
+    }
 
-        // PENDING → FAILED: Decrement flash sale item soldCount (release reserved stock)
-        if (fromStatus == OrderStatus.PENDING && toStatus == OrderStatus.FAILED) {
-            log.debug("PENDING → FAILED: Decrementing flash sale item soldCount");
-            final int updated = flashSaleItemRepository.decrementSoldCount(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to decrement sold count for failed order");
-            }
-            return;
-        }
+    /**
+     * Maps an Order entity to OrderDetailDto, including status history.
+     *
+     * @param order the order entity
+     * @return OrderDetailDto
+     */
+    private OrderDetailDto mapToOrderDetailDto(final Order order) {
+        return mapToOrderDetailDto(order, orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(order.getId()));
+    }
 
-        // PENDING → CANCELLED: Decrement flash sale item soldCount (release reserved stock)
-        if (fromStatus == OrderStatus.PENDING && toStatus == OrderStatus.CANCELLED) {
-            log.debug("PENDING → CANCELLED: Decrementing flash sale item soldCount");
-            final int updated = flashSaleItemRepository.decrementSoldCount(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to decrement sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to decrement sold count for cancel");
-            }
-            return;
-        }
+    /**
+     * Maps a list of Order entities to OrderDetailDtos with only the view's fields set. The status
+     * history of all the orders is read with one query and matched up in memory, so a list costs the
+     * same two queries however long it is; it is not read at all unless the view includes it.
+     *
+     * @param orders the order entities, with product, flash sale item and flash sale loaded
+     * @param view the fields to return and whether to include the status history
+     * @return the OrderDetailDtos, in the same order
+     */
+    private List<OrderDetailDto> mapToOrderDetailDtos(final List<Order> orders, final OrderView view) {
+        final Map<UUID, List<OrderStatusHistory>> historyByOrder = findHistory(orders.stream().map(Order::getId).toList(), view);
+        return orders.stream()
+            .map(order -> view.apply(mapToOrderDetailDto(order, historyByOrder.getOrDefault(order.getId(), List.of()))))
+            .toList();
+    }
 
-        // CANCELLED → PENDING: Increment flash sale item soldCount (re-reserve stock)
-        if (fromStatus == OrderStatus.CANCELLED && toStatus == OrderStatus.PENDING) {
-            log.debug("CANCELLED → PENDING: Incrementing flash sale item soldCount (re-reserve stock)");
-            final int updated = flashSaleItemRepository.incrementSoldCountForAdmin(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to increment sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to increment sold count for re-reserve");
-            }
-            return;
-        }
+    /**
+     * Maps order summaries, read without joins, to OrderDetailDtos with only the view's fields set.
+     *
+     * @param summaries the order summaries
+     * @param view the fields to return, all of them held on the order row, and whether to include the status history
+     * @return the OrderDetailDtos, in the same order
+     */
+    private List<OrderDetailDto> mapSummariesToOrderDetailDtos(final List<OrderSummary> summaries, final OrderView view) {
+        final Map<UUID, List<OrderStatusHistory>> historyByOrder = findHistory(summaries.stream().map(OrderSummary::getOrderId).toList(), view);
+        return summaries.stream()
+            .map(order -> view.apply(new OrderDetailDto(
+                order.getOrderId(),
+                order.getUserId(),
+                order.getProductId(),
+                null,
+                order.getFlashSaleItemId(),
+                null,
+                null,
+                order.getSoldPrice(),
+                order.getSoldQuantity(),
+                order.getSoldPrice().multiply(BigDecimal.valueOf(order.getSoldQuantity())),
+                order.getStatus(),
+                order.getCreatedAt(),
+                mapToHistoryDtos(historyByOrder.getOrDefault(order.getOrderId(), List.of())))))
+            .toList();
+    }
 
-        // FAILED → PENDING: Increment flash sale item soldCount (re-reserve stock)
-        if (fromStatus == OrderStatus.FAILED && toStatus == OrderStatus.PENDING) {
-            log.debug("FAILED → PENDING: Incrementing flash sale item soldCount (re-reserve stock)");
-            final int updated = flashSaleItemRepository.incrementSoldCountForAdmin(
-                order.getFlashSaleItem().getId(), quantity);
-            if (updated == 0) {
-                log.error("Failed to increment sold count for flash sale item {}", order.getFlashSaleItem().getId());
-                throw new IllegalStateException("Failed to increment sold count for re-reserve");
-            }
-            return;
+    /**
+     * Reads the status history of a list of orders with one query, if the view includes it.
+     *
+     * @param orderIds the order IDs
+     * @param view the view being returned
+     * @return the history grouped by order ID, or an empty map if the view leaves it out
+     */
+    private Map<UUID, List<OrderStatusHistory>> findHistory(final List<UUID> orderIds, final OrderView view) {
+        if (orderIds.isEmpty() || !view.includeHistory()) {
+            return Map.of();
         }
-
-        // Invalid transition
-        log.warn("Invalid status transition: {} → {} for order {}", fromStatus, toStatus, orderId);
-        throw new InvalidOrderStatusException(orderId, fromStatus, toStatus, "status update");
+        return orderStatusHistoryRepository.findByOrderIdIn(orderIds.toArray(UUID[]::new)).stream()
+            .collect(Collectors.groupingBy(OrderStatusHistory::getOrderId));
     }
 
     /**
-     * Maps an Order entity to OrderDetailDto, including status history.
+     * Maps an Order entity and its status history, oldest change first, to OrderDetailDto.
      *
      * @param order the order entity
+     * @param history the order's status history
      * @return OrderDetailDto
      */
-    private OrderDetailDto mapToOrderDetailDto(final Order order) {
+    private OrderDetailDto mapToOrderDetailDto(final Order order, final List<OrderStatusHistory> history) {
         final BigDecimal totalAmount = order.getSoldPrice().multiply(BigDecimal.valueOf(order.getSoldQuantity()));
-        final List<OrderStatusHistoryDto> statusHistory = orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(order.getId())
-            .stream()
-            .map(h -> new OrderStatusHistoryDto(h.getId(), h.getFromStatus(), h.getToStatus(), h.getChangedAt(), h.getChangedByUserId()))
-            .toList();
         return new OrderDetailDto(
             order.getId(),
             order.getUserId(),
@@ -688,6 +833,12 @@ public class OrderService {
             totalAmount,
             order.getStatus(),
             order.getCreatedAt(),
-            statusHistory);
+            mapToHistoryDtos(history));
+    }
+
+    private List<OrderStatusHistoryDto> mapToHistoryDtos(final List<OrderStatusHistory> history) {
+        return history.stream()
+            .map(h -> new OrderStatusHistoryDto(h.getId(), h.getFromStatus(), h.getToStatus(), h.getChangedAt(), h.getChangedByUserId()))
+            .toList();
     }
 }
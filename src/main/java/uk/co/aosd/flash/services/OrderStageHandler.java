@@ -0,0 +1,55 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import uk.co.aosd.flash.consumers.DispatchConsumer;
+import uk.co.aosd.flash.consumers.FailedPaymentConsumer;
+import uk.co.aosd.flash.consumers.OrderProcessingConsumer;
+import uk.co.aosd.flash.consumers.RefundConsumer;
+import uk.co.aosd.flash.domain.OrderStage;
+
+/**
+ * Routes an order pipeline message to the consumer for its stage. Used by the broker-free
+ * transports so they run exactly the same stage logic as the RabbitMQ listeners.
+ * Consumers are resolved lazily because they depend on {@link OrderMessageSender}.
+ */
+@Component
+public class OrderStageHandler {
+
+    private final ObjectProvider<OrderProcessingConsumer> orderProcessingConsumer;
+    private final ObjectProvider<FailedPaymentConsumer> failedPaymentConsumer;
+    private final ObjectProvider<DispatchConsumer> dispatchConsumer;
+    private final ObjectProvider<RefundConsumer> refundConsumer;
+
+    public OrderStageHandler(
+        final ObjectProvider<OrderProcessingConsumer> orderProcessingConsumer,
+        final ObjectProvider<FailedPaymentConsumer> failedPaymentConsumer,
+        final ObjectProvider<DispatchConsumer> dispatchConsumer,
+        final ObjectProvider<RefundConsumer> refundConsumer) {
+        this.orderProcessingConsumer = orderProcessingConsumer;
+        this.failedPaymentConsumer = failedPaymentConsumer;
+        this.dispatchConsumer = dispatchConsumer;
+        this.refundConsumer = refundConsumer;
+    }
+
+    /**
+     * Handle a message for the given stage.
+     *
+     * @param stage      the pipeline stage
+     * @param orderId    the order ID
+     * @param enqueuedAt when the message was published
+     */
+    public void handle(final OrderStage stage, final UUID orderId, final Instant enqueuedAt) {
+        final String orderIdStr = orderId.toString();
+        switch (stage) {
+            case PROCESSING -> orderProcessingConsumer.getObject().processOrder(orderIdStr);
+            case PAYMENT_FAILED -> failedPaymentConsumer.getObject().processFailedPayment(orderIdStr, Date.from(enqueuedAt));
+            case DISPATCH -> dispatchConsumer.getObject().processDispatch(orderIdStr);
+            case REFUND -> refundConsumer.getObject().processRefundNotification(orderIdStr);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis-backed record of order messages keyed by queue and message ID. A message is claimed as
+ * in progress with a short TTL while its consumer runs and only marked done, with the long TTL, once
+ * the consumer's work has committed; a consumer that dies mid-message leaves a claim that expires
+ * so the redelivery is processed. Lets consumers acknowledge redelivered duplicates without touching
+ * the order tables. If Redis is unavailable the store fails open and messages are processed normally.
+ */
+@Component
+public class ProcessedMessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedMessageStore.class);
+
+    static final String KEY_PREFIX = "flash_processed_msg:";
+    static final String IN_PROGRESS = "in-progress";
+    static final String DONE = "done";
+
+    /**
+     * Outcome of claiming a message.
+     */
+    public enum Claim {
+        /** First delivery (or Redis is unavailable): process the message. */
+        CLAIMED,
+        /** Another delivery is being processed, or its consumer died before finishing: try again later. */
+        IN_PROGRESS,
+        /** Already processed and committed: acknowledge without processing. */
+        DONE
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+    private final Duration inProgressTtl;
+
+    public ProcessedMessageStore(
+        final StringRedisTemplate redisTemplate,
+        @Value("${app.messaging.dedupe.ttl-seconds:86400}") final long ttlSeconds,
+        @Value("${app.messaging.dedupe.in-progress-ttl-seconds:30}") final long inProgressTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.inProgressTtl = Duration.ofSeconds(inProgressTtlSeconds);
+    }
+
+    /**
+     * Atomically claim a message for processing ({@code SET NX EX} with the in-progress TTL).
+     *
+     * @param queue     the queue the message was received from
+     * @param messageId the message ID
+     * @return whether to process the message, retry it later or skip it as a duplicate
+     */
+    public Claim tryClaim(final String queue, final String messageId) {
+        try {
+            final String key = key(queue, messageId);
+            final Boolean claimed = redisTemplate.opsForValue().setIfAbsent(key, IN_PROGRESS, inProgressTtl);
+            if (!Boolean.FALSE.equals(claimed)) {
+                return Claim.CLAIMED;
+            }
+            return DONE.equals(redisTemplate.opsForValue().get(key)) ? Claim.DONE : Claim.IN_PROGRESS;
+        } catch (final Exception e) {
+            log.warn("Dedupe store unavailable; processing message {} from {} without dedupe", messageId, queue, e);
+            return Claim.CLAIMED;
+        }
+    }
+
+    /**
+     * Mark a claimed message as processed once its work has committed, so later deliveries are skipped.
+     *
+     * @param queue     the queue the message was received from
+     * @param messageId the message ID
+     */
+    public void markDone(final String queue, final String messageId) {
+        try {
+            redisTemplate.opsForValue().set(key(queue, messageId), DONE, ttl);
+        } catch (final Exception e) {
+            log.warn("Failed to mark message {} from {} as processed", messageId, queue, e);
+        }
+    }
+
+    /**
+     * Release a claim after processing failed, so the redelivered message is processed again.
+     *
+     * @param queue     the queue the message was received from
+     * @param messageId the message ID
+     */
+    public void release(final String queue, final String messageId) {
+        try {
+            redisTemplate.delete(key(queue, messageId));
+        } catch (final Exception e) {
+            log.warn("Failed to release dedupe claim for message {} from {}", messageId, queue, e);
+        }
+    }
+
+    private static String key(final String queue, final String messageId) {
+        return KEY_PREFIX + queue + ":" + messageId;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.co.aosd.flash.services;
+
+import java.util.Date;
+import java.util.UUID;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import uk.co.aosd.flash.config.RabbitMQConfig;
+
+/**
+ * Sends order-related messages to RabbitMQ.
+ * When called inside a transaction the send is deferred until after commit.
+ * Every message is stamped with a unique message ID, so consumers can recognise redeliveries, and
+ * with its enqueue time, so consumers can measure queueing latency.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messaging.transport", havingValue = "rabbit", matchIfMissing = true)
+@RequiredArgsConstructor
+public class RabbitOrderMessageSender implements OrderMessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(RabbitOrderMessageSender.class);
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Override
+    public void sendForProcessing(final UUID orderId) {
+        OrderMessageSender.afterCommit(() -> {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.ORDER_EXCHANGE,
+                RabbitMQConfig.ROUTING_KEY_PROCESSING,
+                orderId.toString(),
+                stampTimestamp());
+            log.info("Queued order {} for processing", orderId);
+        });
+    }
+
+    @Override
+    public void sendForDispatch(final UUID orderId) {
+        OrderMessageSender.afterCommit(() -> {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.ORDER_EXCHANGE,
+                RabbitMQConfig.ROUTING_KEY_DISPATCH,
+                orderId.toString(),
+                stampTimestamp());
+            log.info("Queued order {} for dispatch", orderId);
+        });
+    }
+
+    @Override
+    public void sendForPaymentFailed(final UUID orderId) {
+        OrderMessageSender.afterCommit(() -> {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.ORDER_EXCHANGE,
+                RabbitMQConfig.ROUTING_KEY_PAYMENT_FAILED,
+                orderId.toString(),
+                stampTimestamp());
+            log.info("Queued order {} for failed payment handling", orderId);
+        });
+    }
+
+    @Override
+    public void sendForRefund(final UUID orderId) {
+        OrderMessageSender.afterCommit(() -> {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.ORDER_EXCHANGE,
+                RabbitMQConfig.ROUTING_KEY_REFUND,
+                orderId.toString(),
+                stampTimestamp());
+            log.info("Queued order {} for refund notification", orderId);
+        });
+    }
+
+    private static MessagePostProcessor stampTimestamp() {
+        return message -> {
+            message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A hashed timing wheel holding the expiry times of the order holds created on this node.
+ * Time is cut into ticks and each tick maps to one of a fixed number of slots, so scheduling a hold
+ * and finding the holds due in a tick both cost O(1) regardless of how many holds are outstanding.
+ * Holds further away than one turn of the wheel share a slot with nearer ones and are left in place
+ * until their own tick comes round.
+ *
+ * <p>The wheel is only a fast path: it is lost when the node stops, and holds created on other nodes
+ * are not in it. {@link ReservationExpiryWorker} also sweeps the database for overdue holds.
+ */
+@Component
+public class ReservationExpiryWheel {
+
+    private record Entry(UUID orderId, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final Queue<Entry>[] slots;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public ReservationExpiryWheel(
+        @Value("${app.orders.expiry.tick-ms:250}") final long tickMillis,
+        @Value("${app.orders.expiry.wheel-size:512}") final int wheelSize,
+        final MeterRegistry meterRegistry) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick length and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.slots = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        meterRegistry.gauge("flash.orders.expiry.wheel.size", size);
+    }
+
+    /**
+     * Add an order hold to the wheel. A hold that is already due fires on the next tick.
+     *
+     * @param orderId   the order ID
+     * @param expiresAt when the hold runs out
+     */
+    public void schedule(final UUID orderId, final OffsetDateTime expiresAt) {
+        final long deadlineTick = Math.max(Math.ceilDiv(expiresAt.toInstant().toEpochMilli(), tickMillis), currentTick + 1);
+        slots[slotFor(deadlineTick)].add(new Entry(orderId, deadlineTick));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Move the wheel on to the given time and remove the holds that are now due. Only one thread
+     * may advance the wheel; any number may schedule concurrently.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     * @return the IDs of the orders whose holds have run out
+     */
+    public List<UUID> advance(final long nowMillis) {
+        final long target = nowMillis / tickMillis;
+        final List<UUID> due = new ArrayList<>();
+        // After a long pause every slot is visited once, which still finds every due hold
+        final long last = Math.min(target, currentTick + wheelSize);
+        for (long tick = currentTick + 1; tick <= last; tick++) {
+            final Iterator<Entry> entries = slots[slotFor(tick)].iterator();
+            while (entries.hasNext()) {
+                final Entry entry = entries.next();
+                if (entry.deadlineTick() <= target) {
+                    due.add(entry.orderId());
+                    entries.remove();
+                }
+            }
+        }
+        if (target > currentTick) {
+            currentTick = target;
+        }
+        size.addAndGet(-due.size());
+        return due;
+    }
+
+    /**
+     * Get the number of holds in the wheel.
+     *
+     * @return the number of holds
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Get the length of one tick.
+     *
+     * @return the tick length in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private int slotFor(final long tick) {
+        return (int) Math.floorMod(tick, (long) wheelSize);
+    }
+}
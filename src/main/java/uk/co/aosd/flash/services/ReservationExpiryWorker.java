@@ -0,0 +1,141 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.co.aosd.flash.repository.OrderRepository;
+
+/**
+ * Releases the stock of unpaid orders once their hold runs out. A single thread advances the
+ * {@link ReservationExpiryWheel} every tick and expires the holds that fall due, so stock goes back
+ * to the sale within a tick of its expiry. Every sweep interval, and once at start-up, it also looks
+ * for overdue PENDING orders in the database (using the partial index on PENDING orders) to pick up
+ * holds created on other nodes or before a restart.
+ */
+@Component
+public class ReservationExpiryWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationExpiryWorker.class);
+
+    private final ReservationExpiryWheel wheel;
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long sweepIntervalMs;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public ReservationExpiryWorker(
+        final ReservationExpiryWheel wheel,
+        final OrderService orderService,
+        final OrderRepository orderRepository,
+        @Value("${app.orders.expiry.enabled:true}") final boolean enabled,
+        @Value("${app.orders.expiry.batch-size:100}") final int batchSize,
+        @Value("${app.orders.expiry.sweep-seconds:30}") final long sweepSeconds) {
+        this.wheel = wheel;
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sweepIntervalMs = sweepSeconds * 1000;
+    }
+
+    /**
+     * Start the expiry thread once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Reservation expiry is disabled");
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform()
+            .name("reservation-expiry")
+            .daemon(true)
+            .start(this::runLoop);
+        log.info("Reservation expiry started with a {} ms tick and a {} ms sweep", wheel.getTickMillis(), sweepIntervalMs);
+    }
+
+    /**
+     * Stop the expiry thread. Holds still in the wheel are found by the next sweep on any node.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private void runLoop() {
+        long nextSweep = 0;
+        while (running) {
+            try {
+                final long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    sweep();
+                    nextSweep = now + sweepIntervalMs;
+                }
+                expireDue(now);
+                Thread.sleep(wheel.getTickMillis());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final Exception e) {
+                log.error("Error expiring order reservations", e);
+            }
+        }
+    }
+
+    /**
+     * Advance the wheel and expire the holds that have fallen due.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     * @return the number of orders expired
+     */
+    int expireDue(final long nowMillis) {
+        final List<UUID> due = wheel.advance(nowMillis);
+        int expired = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            expired += orderService.expireOrders(due.subList(from, Math.min(from + batchSize, due.size())));
+        }
+        return expired;
+    }
+
+    /**
+     * Expire every overdue PENDING order in the database, a batch at a time.
+     *
+     * @return the number of orders expired
+     */
+    int sweep() {
+        int expired = 0;
+        while (true) {
+            final List<UUID> overdue = orderRepository.findExpiredPendingOrderIds(OffsetDateTime.now(), batchSize);
+            if (overdue.isEmpty()) {
+                break;
+            }
+            final int count = orderService.expireOrders(overdue);
+            expired += count;
+            // Stop when nothing more could be expired (e.g. the rest are locked by payments) or the backlog is cleared
+            if (count == 0 || overdue.size() < batchSize) {
+                break;
+            }
+        }
+        if (expired > 0) {
+            log.info("Expiry sweep released {} overdue order reservations", expired);
+        }
+        return expired;
+    }
+}
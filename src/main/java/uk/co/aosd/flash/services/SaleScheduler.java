@@ -0,0 +1,145 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Schedules the Quartz triggers that open and close an individual sale at its exact start and end
+ * times, plus a warm-up trigger a few seconds before it opens. Quartz uses the application's data
+ * source and transaction manager, so triggers are written in the caller's transaction and vanish if
+ * it rolls back. The periodic activate/complete jobs remain as a safety sweep for anything missed.
+ */
+@Service
+public class SaleScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleScheduler.class);
+
+    public static final String SALE_ID = "saleId";
+
+    public static final String WARM_UP_JOB = "warmUpSaleJob";
+    public static final String ACTIVATE_JOB = "activateSaleJob";
+    public static final String COMPLETE_JOB = "completeSaleJob";
+    public static final String DRAW_LOTTERY_JOB = "drawLotteryJob";
+
+    private static final List<String> JOBS = List.of(WARM_UP_JOB, ACTIVATE_JOB, COMPLETE_JOB);
+
+    private final Scheduler scheduler;
+    private final long warmUpLeadSeconds;
+
+    public SaleScheduler(
+        final Scheduler scheduler,
+        @Value("${app.scheduler.warm-up-lead-seconds:10}") final long warmUpLeadSeconds) {
+        this.scheduler = scheduler;
+        this.warmUpLeadSeconds = warmUpLeadSeconds;
+    }
+
+    /**
+     * Schedule (or reschedule) the triggers for a sale. Existing triggers for the sale are replaced.
+     * A DRAFT sale gets warm-up, activation and completion triggers; an ACTIVE sale only a completion
+     * trigger; any other status none.
+     *
+     * @param saleId    the sale ID
+     * @param startTime the sale start time
+     * @param endTime   the sale end time
+     * @param status    the sale status
+     * @throws IllegalStateException if the triggers cannot be stored
+     */
+    public void scheduleSale(final UUID saleId, final OffsetDateTime startTime, final OffsetDateTime endTime,
+        final SaleStatus status) {
+        try {
+            unscheduleTriggers(saleId);
+            if (status == SaleStatus.DRAFT) {
+                final OffsetDateTime now = OffsetDateTime.now();
+                if (startTime.isAfter(now)) {
+                    final OffsetDateTime warmUpAt = startTime.minusSeconds(warmUpLeadSeconds);
+                    scheduler.scheduleJob(trigger(saleId, WARM_UP_JOB, warmUpAt.isAfter(now) ? warmUpAt : now));
+                }
+                scheduler.scheduleJob(trigger(saleId, ACTIVATE_JOB, startTime));
+            }
+            if (status == SaleStatus.DRAFT || status == SaleStatus.ACTIVE) {
+                scheduler.scheduleJob(trigger(saleId, COMPLETE_JOB, endTime));
+            }
+            log.debug("Scheduled FlashSale {} ({}) for {} to {}", saleId, status, startTime, endTime);
+        } catch (final SchedulerException e) {
+            log.error("Failed to schedule FlashSale {}", saleId, e);
+            throw new IllegalStateException("Failed to schedule flash sale " + saleId, e);
+        }
+    }
+
+    /**
+     * Schedule (or reschedule) the draw of a lottery sale at the close of its entry window.
+     *
+     * @param saleId the sale ID
+     * @param drawAt when the entry window closes
+     * @throws IllegalStateException if the trigger cannot be stored
+     */
+    public void scheduleLotteryDraw(final UUID saleId, final OffsetDateTime drawAt) {
+        try {
+            scheduler.unscheduleJob(triggerKey(saleId, DRAW_LOTTERY_JOB));
+            scheduler.scheduleJob(trigger(saleId, DRAW_LOTTERY_JOB, drawAt));
+            log.debug("Scheduled lottery draw for FlashSale {} at {}", saleId, drawAt);
+        } catch (final SchedulerException e) {
+            log.error("Failed to schedule lottery draw for FlashSale {}", saleId, e);
+            throw new IllegalStateException("Failed to schedule lottery draw for flash sale " + saleId, e);
+        }
+    }
+
+    /**
+     * Remove all triggers for a sale, including any lottery draw.
+     *
+     * @param saleId the sale ID
+     * @throws IllegalStateException if the triggers cannot be removed
+     */
+    public void unscheduleSale(final UUID saleId) {
+        try {
+            unscheduleTriggers(saleId);
+            scheduler.unscheduleJob(triggerKey(saleId, DRAW_LOTTERY_JOB));
+            log.debug("Unscheduled FlashSale {}", saleId);
+        } catch (final SchedulerException e) {
+            log.error("Failed to unschedule FlashSale {}", saleId, e);
+            throw new IllegalStateException("Failed to unschedule flash sale " + saleId, e);
+        }
+    }
+
+    private void unscheduleTriggers(final UUID saleId) throws SchedulerException {
+        scheduler.unscheduleJobs(JOBS.stream().map(job -> triggerKey(saleId, job)).toList());
+    }
+
+    /**
+     * Build a one-shot trigger that fires a job for a sale. A trigger missed while no scheduler was
+     * running fires as soon as one starts.
+     *
+     * @param saleId the sale ID
+     * @param job    the job name
+     * @param fireAt when to fire
+     * @return the trigger
+     */
+    private Trigger trigger(final UUID saleId, final String job, final OffsetDateTime fireAt) {
+        return TriggerBuilder.newTrigger()
+            .withIdentity(triggerKey(saleId, job))
+            .forJob(JobKey.jobKey(job))
+            .usingJobData(SALE_ID, saleId.toString())
+            .startAt(Date.from(fireAt.toInstant()))
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withMisfireHandlingInstructionFireNow())
+            .build();
+    }
+
+    static TriggerKey triggerKey(final UUID saleId, final String job) {
+        return TriggerKey.triggerKey(saleId.toString(), job);
+    }
+}
@@ -0,0 +1,154 @@
+package uk.co.aosd.flash.services;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.ClientActiveSaleDto;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+
+/**
+ * Warms the caches and code paths a sale's first requests will hit, so the burst at opening time
+ * is not served cold. A sale is warmed shortly before it opens (product and stock caches plus a
+ * dry-run order per item) and its sale and active sales caches are refilled as soon as it opens.
+ * On node start the active and soon-to-open sales are warmed the same way, and the node reports
+ * itself not ready until that has finished.
+ */
+@Service
+@RequiredArgsConstructor
+public class SaleWarmUpService {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleWarmUpService.class);
+
+    private final FlashSaleRepository sales;
+
+    private final ProductsService productsService;
+
+    private final ActiveSalesService activeSalesService;
+
+    private final FlashSalesService flashSalesService;
+
+    private final OrderService orderService;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.warm-up.on-startup:true}")
+    private boolean warmUpOnStartup = true;
+
+    @Value("${app.warm-up.startup-horizon-minutes:10}")
+    private long startupHorizonMinutes = 10;
+
+    /**
+     * Load a sale that is about to open, with its items and products, fill the product and
+     * product stock caches for each of its products and dry-run an order for each item.
+     *
+     * @param saleId the sale ID
+     * @return the number of items warmed
+     */
+    public int warmUp(final UUID saleId) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        final FlashSale sale = sales.findByIdWithItems(saleId).orElse(null);
+        if (sale == null) {
+            log.warn("Not warming up FlashSale {}: not found", saleId);
+            return 0;
+        }
+        final int warmed = warmItems(sale.getItems());
+        sample.stop(meterRegistry.timer("flash.warmup.duration", "stage", "sale"));
+        log.info("Warmed up {} item(s) for FlashSale {}", warmed, saleId);
+        return warmed;
+    }
+
+    /**
+     * Refill the caches evicted when a sale opens: the active sales list and the sale itself.
+     *
+     * @param saleId the sale that has just opened
+     */
+    public void refreshAfterActivation(final UUID saleId) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        final int count = activeSalesService.getActiveSales().size();
+        meterRegistry.counter("flash.warmup.cache.entries", "cache", "activeSales").increment(count);
+        flashSalesService.getFlashSaleById(saleId);
+        meterRegistry.counter("flash.warmup.cache.entries", "cache", "flashSales").increment();
+        sample.stop(meterRegistry.timer("flash.warmup.duration", "stage", "activation"));
+        log.debug("Refreshed caches after FlashSale {} opened; {} active item(s)", saleId, count);
+    }
+
+    /**
+     * Warm everything that may be requested as soon as this node takes traffic: the active sales
+     * list, each active sale, and the products and order path of active sales and of DRAFT sales
+     * opening within the startup horizon.
+     *
+     * @return the number of items warmed
+     */
+    public int warmUpOnStartup() {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        final List<ClientActiveSaleDto> active = activeSalesService.getActiveSales();
+        meterRegistry.counter("flash.warmup.cache.entries", "cache", "activeSales").increment(active.size());
+
+        final Map<UUID, FlashSale> toWarm = new LinkedHashMap<>();
+        active.forEach(item -> toWarm.put(UUID.fromString(item.saleId()), null));
+        sales.findDraftSalesReadyToActivate(SaleStatus.DRAFT, OffsetDateTime.now().plusMinutes(startupHorizonMinutes))
+            .forEach(sale -> toWarm.put(sale.getId(), sale));
+
+        int warmed = 0;
+        for (final Map.Entry<UUID, FlashSale> entry : toWarm.entrySet()) {
+            flashSalesService.getFlashSaleById(entry.getKey());
+            meterRegistry.counter("flash.warmup.cache.entries", "cache", "flashSales").increment();
+            final FlashSale sale = entry.getValue() != null ? entry.getValue() : sales.findByIdWithItems(entry.getKey()).orElse(null);
+            if (sale != null) {
+                warmed += warmItems(sale.getItems());
+            }
+        }
+        sample.stop(meterRegistry.timer("flash.warmup.duration", "stage", "startup"));
+        log.info("Startup warm-up finished: {} sale(s), {} item(s)", toWarm.size(), warmed);
+        return warmed;
+    }
+
+    /**
+     * Run the startup warm-up before this node takes traffic. Spring Boot only marks the
+     * application as accepting traffic once every ready listener has returned, so the readiness
+     * probe stays down until the warm-up has finished. A failed warm-up is logged and does not
+     * keep the node out of service.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!warmUpOnStartup) {
+            return;
+        }
+        try {
+            warmUpOnStartup();
+        } catch (final Exception e) {
+            log.error("Startup warm-up failed; accepting traffic anyway", e);
+        }
+    }
+
+    private int warmItems(final List<FlashSaleItem> items) {
+        final Set<UUID> productIds = new LinkedHashSet<>();
+        for (final FlashSaleItem item : items) {
+            productIds.add(item.getProduct().getId());
+            orderService.dryRunOrder(item.getId(), 1);
+        }
+        for (final UUID productId : productIds) {
+            productsService.getProductById(productId.toString());
+            productsService.getProductStockById(productId.toString());
+        }
+        meterRegistry.counter("flash.warmup.cache.entries", "cache", "products").increment(productIds.size() * 2.0);
+        return items.size();
+    }
+}
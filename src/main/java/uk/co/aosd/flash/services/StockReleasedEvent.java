@@ -0,0 +1,12 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+/**
+ * Application event raised when sold stock of a flash sale item is given back to the sale (by a
+ * cancel, failed payment, expiry or refund), or when a buyer joins the item's waitlist.
+ *
+ * @param flashSaleItemId the flash sale item ID
+ */
+public record StockReleasedEvent(UUID flashSaleItemId) {
+}
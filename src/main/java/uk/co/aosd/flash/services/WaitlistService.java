@@ -0,0 +1,234 @@
+package uk.co.aosd.flash.services;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.domain.WaitlistEntry;
+import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.WaitlistEntryDto;
+import uk.co.aosd.flash.exc.DuplicateEntityException;
+import uk.co.aosd.flash.exc.FlashSaleItemNotFoundException;
+import uk.co.aosd.flash.exc.InsufficientStockException;
+import uk.co.aosd.flash.exc.SaleNotActiveException;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
+import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.WaitlistEntryRepository;
+
+/**
+ * Per-item waitlists for sold-out flash sale items. A buyer turned away for lack of stock can join
+ * the item's waitlist once instead of retrying; whenever stock of the item is freed, orders are
+ * placed for the buyers at the head of the list, oldest first, until the next buyer's quantity no
+ * longer fits. Allocation runs after the transaction that freed the stock has committed, in its own
+ * transaction, so a failed allocation never undoes the release.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistService.class);
+
+    private record BatchResult(int served, int allocated) {
+    }
+
+    private final WaitlistEntryRepository waitlist;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final FlashSaleLotteryRepository lotteryRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate allocationTransaction;
+    private final int batchSize;
+
+    public WaitlistService(
+        final WaitlistEntryRepository waitlist,
+        final FlashSaleItemRepository flashSaleItemRepository,
+        final FlashSaleLotteryRepository lotteryRepository,
+        final OrderRepository orderRepository,
+        final OrderService orderService,
+        final ApplicationEventPublisher eventPublisher,
+        final MeterRegistry meterRegistry,
+        final PlatformTransactionManager transactionManager,
+        @Value("${app.waitlist.allocation-batch-size:50}") final int batchSize) {
+        this.waitlist = waitlist;
+        this.flashSaleItemRepository = flashSaleItemRepository;
+        this.lotteryRepository = lotteryRepository;
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        // Allocation runs after another transaction has committed, so it always needs a new one
+        this.allocationTransaction = new TransactionTemplate(transactionManager);
+        this.allocationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Join the waitlist of an ACTIVE sale's item. Joining again changes the quantity but keeps the
+     * buyer's place.
+     *
+     * @param userId the user ID
+     * @param request the item and quantity wanted
+     * @return the buyer's place in the waitlist
+     * @throws FlashSaleItemNotFoundException if the item does not exist
+     * @throws SaleNotActiveException         if the sale is not ACTIVE or has ended
+     * @throws IllegalArgumentException       if the sale is allocated by lottery
+     * @throws InsufficientStockException     if the quantity is more than the item's allocated stock
+     * @throws DuplicateEntityException       if the user already has an order for the item
+     */
+    @Transactional
+    public WaitlistEntryDto join(final UUID userId, final CreateOrderDto request) {
+        final UUID flashSaleItemId = request.flashSaleItemId();
+        final FlashSaleItem item = flashSaleItemRepository.findById(flashSaleItemId)
+            .orElseThrow(() -> new FlashSaleItemNotFoundException(flashSaleItemId));
+        final FlashSale sale = item.getFlashSale();
+        final OffsetDateTime now = OffsetDateTime.now();
+        if (sale.getStatus() != SaleStatus.ACTIVE || !sale.getEndTime().isAfter(now)) {
+            throw new SaleNotActiveException(sale.getId(), sale.getEndTime(), now);
+        }
+        if (lotteryRepository.existsById(sale.getId())) {
+            // Stock of a lottery sale only goes to drawn entries, so the waitlist would never be served
+            throw new IllegalArgumentException("Flash sale " + sale.getId() + " is allocated by lottery");
+        }
+        if (request.quantity() > item.getAllocatedStock()) {
+            throw new InsufficientStockException(flashSaleItemId, request.quantity(), item.getAllocatedStock());
+        }
+        if (orderRepository.existsByUserIdAndFlashSaleItemId(userId, flashSaleItemId)) {
+            throw new DuplicateEntityException(flashSaleItemId.toString(), "Order");
+        }
+
+        waitlist.upsert(flashSaleItemId, userId, request.quantity());
+        final long position = waitlist.findPosition(flashSaleItemId, userId);
+        meterRegistry.counter("flash.waitlist.joined").increment();
+        log.info("User {} is number {} on the waitlist for flash sale item {}", userId, position, flashSaleItemId);
+
+        // Stock may have been freed before there was anyone to give it to
+        eventPublisher.publishEvent(new StockReleasedEvent(flashSaleItemId));
+        return new WaitlistEntryDto(flashSaleItemId, request.quantity(), position);
+    }
+
+    /**
+     * Get a buyer's place in an item's waitlist.
+     *
+     * @param userId the user ID
+     * @param flashSaleItemId the flash sale item ID
+     * @return the buyer's place, or empty if they are not waiting
+     */
+    public Optional<WaitlistEntryDto> getEntry(final UUID userId, final UUID flashSaleItemId) {
+        return waitlist.findByFlashSaleItemIdAndUserId(flashSaleItemId, userId)
+            .map(entry -> new WaitlistEntryDto(flashSaleItemId, entry.getQuantity(), waitlist.findPosition(flashSaleItemId, userId)));
+    }
+
+    /**
+     * Leave an item's waitlist.
+     *
+     * @param userId the user ID
+     * @param flashSaleItemId the flash sale item ID
+     * @return true if the user was waiting
+     */
+    @Transactional
+    public boolean leave(final UUID userId, final UUID flashSaleItemId) {
+        final boolean left = waitlist.deleteByFlashSaleItemIdAndUserId(flashSaleItemId, userId) > 0;
+        if (left) {
+            log.info("User {} left the waitlist for flash sale item {}", userId, flashSaleItemId);
+        }
+        return left;
+    }
+
+    /**
+     * Give freed stock to the item's waitlist once the transaction that freed it has committed.
+     *
+     * @param event the stock release
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockReleased(final StockReleasedEvent event) {
+        try {
+            allocate(event.flashSaleItemId());
+        } catch (final Exception e) {
+            // The stock stays free; the next release or join for the item tries again
+            log.error("Failed to allocate freed stock of flash sale item {} to its waitlist", event.flashSaleItemId(), e);
+        }
+    }
+
+    /**
+     * Place orders for the head of an item's waitlist while its stock lasts, a batch per transaction.
+     * Buyers who meanwhile got an order for the item are dropped from the list. If the sale is no
+     * longer ACTIVE the whole list is dropped.
+     *
+     * @param flashSaleItemId the flash sale item ID
+     * @return the number of orders placed
+     */
+    public int allocate(final UUID flashSaleItemId) {
+        int allocated = 0;
+        while (true) {
+            final BatchResult result = allocationTransaction.execute(status -> allocateBatch(flashSaleItemId));
+            if (result == null) {
+                break;
+            }
+            allocated += result.allocated();
+            if (result.served() < batchSize) {
+                break;
+            }
+        }
+        if (allocated > 0) {
+            log.info("Allocated freed stock of flash sale item {} to {} waiting buyer(s)", flashSaleItemId, allocated);
+        }
+        return allocated;
+    }
+
+    private BatchResult allocateBatch(final UUID flashSaleItemId) {
+        final FlashSaleItem item = flashSaleItemRepository.findById(flashSaleItemId).orElse(null);
+        if (item == null) {
+            return new BatchResult(0, 0);
+        }
+        final FlashSale sale = item.getFlashSale();
+        final OffsetDateTime now = OffsetDateTime.now();
+        if (sale.getStatus() != SaleStatus.ACTIVE || !sale.getEndTime().isAfter(now)) {
+            final int dropped = waitlist.deleteByFlashSaleItemId(flashSaleItemId);
+            if (dropped > 0) {
+                log.info("Dropped {} waitlist entries for flash sale item {}: sale is no longer active", dropped, flashSaleItemId);
+            }
+            return new BatchResult(0, 0);
+        }
+
+        final List<WaitlistEntry> head = waitlist.findHeadForUpdate(flashSaleItemId, batchSize);
+        int served = 0;
+        int allocated = 0;
+        for (final WaitlistEntry entry : head) {
+            if (orderRepository.existsByUserIdAndFlashSaleItemId(entry.getUserId(), flashSaleItemId)) {
+                waitlist.deleteEntry(entry.getId());
+                served++;
+                continue;
+            }
+            final Optional<UUID> orderId = orderService.createWaitlistOrder(entry.getUserId(), flashSaleItemId, entry.getQuantity());
+            if (orderId.isEmpty()) {
+                // Strict arrival order: nobody behind the head is served while the head's quantity does not fit
+                break;
+            }
+            waitlist.deleteEntry(entry.getId());
+            served++;
+            allocated++;
+            meterRegistry.timer("flash.waitlist.wait").record(Duration.between(entry.getCreatedAt(), now));
+        }
+        meterRegistry.counter("flash.waitlist.allocated").increment(allocated);
+        return new BatchResult(served, allocated);
+    }
+}
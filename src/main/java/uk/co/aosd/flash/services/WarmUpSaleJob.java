@@ -0,0 +1,35 @@
+package uk.co.aosd.flash.services;
+
+import java.util.UUID;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quartz job that warms the caches for one sale shortly before it opens.
+ */
+@Component
+public class WarmUpSaleJob implements Job {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUpSaleJob.class);
+
+    @Autowired
+    private SaleWarmUpService saleWarmUpService;
+
+    @Override
+    public void execute(final JobExecutionContext context) throws JobExecutionException {
+        final UUID saleId = UUID.fromString(context.getMergedJobDataMap().getString(SaleScheduler.SALE_ID));
+        log.info("Starting WarmUpSaleJob execution for FlashSale {}", saleId);
+        try {
+            saleWarmUpService.warmUp(saleId);
+        } catch (final Exception e) {
+            log.error("Error executing WarmUpSaleJob for FlashSale {}", saleId, e);
+            throw new JobExecutionException("Failed to warm up flash sale " + saleId, e);
+        }
+    }
+}
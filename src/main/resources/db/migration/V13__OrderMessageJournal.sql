@@ -0,0 +1,9 @@
+-- Journal for the in-process order pipeline: one row per message until its stage has handled it
+CREATE TABLE order_message_journal (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    order_id UUID NOT NULL,
+    stage VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_order_message_journal_created_at ON order_message_journal (created_at);
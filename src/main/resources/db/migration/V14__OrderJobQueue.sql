@@ -0,0 +1,14 @@
+-- Database-backed order pipeline (app.messaging.transport=db-queue).
+-- Workers claim rows with FOR UPDATE SKIP LOCKED; a claim pushes available_at forward by the
+-- visibility timeout so a crashed worker's jobs become claimable again. Rows are deleted once handled.
+CREATE TABLE order_job_queue (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    order_id UUID NOT NULL,
+    stage VARCHAR(32) NOT NULL,
+    available_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    claimed_by VARCHAR(255),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_order_job_queue_stage_available ON order_job_queue (stage, available_at);
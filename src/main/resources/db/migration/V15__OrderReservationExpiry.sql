@@ -0,0 +1,8 @@
+-- Time-bounded stock holds: a PENDING order keeps its stock until expires_at, then it is EXPIRED
+-- and the stock goes back to the sale
+ALTER TYPE order_status ADD VALUE 'EXPIRED';
+
+ALTER TABLE orders ADD COLUMN expires_at TIMESTAMPTZ;
+
+-- Only unpaid holds are ever searched by expiry, so the index stays as small as the PENDING backlog
+CREATE INDEX idx_orders_pending_expires_at ON orders (expires_at) WHERE status = 'PENDING';
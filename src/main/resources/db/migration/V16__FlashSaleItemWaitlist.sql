@@ -0,0 +1,13 @@
+-- Buyers turned away because an item is sold out can queue for it; freed stock is given to the
+-- oldest entry first. One entry per buyer per item.
+CREATE TABLE waitlist_entries (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    flash_sale_item_id UUID NOT NULL REFERENCES flash_sale_items(id) ON DELETE CASCADE,
+    user_id UUID NOT NULL,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT clock_timestamp(),  -- Arrival order, even within one transaction
+    CONSTRAINT uq_waitlist_entries_item_user UNIQUE (flash_sale_item_id, user_id)
+);
+
+-- Head-of-queue reads: the oldest entries for one item
+CREATE INDEX idx_waitlist_entries_item_created ON waitlist_entries (flash_sale_item_id, created_at, id);
@@ -0,0 +1,16 @@
+-- Sales that allocate by lottery instead of first come, first served. Buyers enter a draw while the
+-- entry window is open; when it closes the winners are drawn and their orders created in one go.
+CREATE TABLE flash_sale_lotteries (
+    flash_sale_id UUID PRIMARY KEY REFERENCES flash_sales(id) ON DELETE CASCADE,
+    entry_window_closes_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    drawn_at TIMESTAMP WITH TIME ZONE  -- Set once the draw has run; guards against drawing twice
+);
+
+-- One entry per buyer per item; entering again only changes the quantity
+CREATE TABLE lottery_entries (
+    flash_sale_item_id UUID NOT NULL REFERENCES flash_sale_items(id) ON DELETE CASCADE,
+    user_id UUID NOT NULL,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (flash_sale_item_id, user_id)
+);
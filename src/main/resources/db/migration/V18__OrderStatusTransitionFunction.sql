@@ -0,0 +1,86 @@
+-- Order status transitions in one round trip: the order is locked and its status checked, the stock
+-- counters are adjusted as the transition requires, the status is changed and the history row is
+-- appended. Problems are reported as a result code rather than raised, so the caller decides how to
+-- surface them; nothing is changed unless the result is OK.
+--
+-- p_expected      the status the order must be in, or NULL to allow any status the matrix permits
+-- p_adjust_stock  FALSE to change the status only (a failed payment's stock is released separately)
+CREATE FUNCTION transition_order_status(
+    p_order_id UUID,
+    p_expected order_status,
+    p_to order_status,
+    p_changed_by UUID,
+    p_adjust_stock BOOLEAN)
+RETURNS TABLE (result_code TEXT, prior_status order_status, order_user_id UUID, order_item_id UUID)
+LANGUAGE plpgsql AS $$
+DECLARE
+    o orders%ROWTYPE;
+    item_delta INTEGER := 0;
+    product_delta INTEGER := 0;
+BEGIN
+    SELECT * INTO o FROM orders WHERE id = p_order_id FOR UPDATE;
+    IF NOT FOUND THEN
+        result_code := 'NOT_FOUND';
+        RETURN NEXT;
+        RETURN;
+    END IF;
+    prior_status := o.status;
+    order_user_id := o.user_id;
+    order_item_id := o.flash_sale_item_id;
+
+    IF p_expected IS NOT NULL AND o.status <> p_expected THEN
+        result_code := 'WRONG_STATUS';
+        RETURN NEXT;
+        RETURN;
+    END IF;
+    IF o.status = p_to THEN
+        result_code := 'UNCHANGED';
+        RETURN NEXT;
+        RETURN;
+    END IF;
+
+    -- Transition matrix: sold counts move with reserved stock, product stock moves with dispatch
+    CASE o.status::TEXT || '>' || p_to::TEXT
+        WHEN 'PENDING>PAID' THEN
+            NULL;
+        WHEN 'PAID>DISPATCHED' THEN
+            product_delta := -o.sold_quantity;
+        WHEN 'DISPATCHED>PAID' THEN
+            product_delta := o.sold_quantity;
+        WHEN 'PAID>REFUNDED', 'PENDING>FAILED', 'PENDING>CANCELLED' THEN
+            item_delta := -o.sold_quantity;
+        WHEN 'REFUNDED>PAID', 'CANCELLED>PENDING', 'FAILED>PENDING' THEN
+            item_delta := o.sold_quantity;
+        ELSE
+            result_code := 'INVALID_TRANSITION';
+            RETURN NEXT;
+            RETURN;
+    END CASE;
+
+    IF p_adjust_stock AND item_delta <> 0 THEN
+        UPDATE flash_sale_items SET sold_count = sold_count + item_delta
+        WHERE id = o.flash_sale_item_id AND sold_count + item_delta BETWEEN 0 AND allocated_stock;
+        IF NOT FOUND THEN
+            result_code := 'STOCK_CONFLICT';
+            RETURN NEXT;
+            RETURN;
+        END IF;
+    END IF;
+    IF p_adjust_stock AND product_delta <> 0 THEN
+        UPDATE products SET total_physical_stock = total_physical_stock + product_delta,
+            reserved_count = reserved_count + product_delta
+        WHERE id = o.product_id AND total_physical_stock + product_delta >= 0 AND reserved_count + product_delta >= 0;
+        IF NOT FOUND THEN
+            result_code := 'STOCK_CONFLICT';
+            RETURN NEXT;
+            RETURN;
+        END IF;
+    END IF;
+
+    UPDATE orders SET status = p_to WHERE id = o.id;
+    INSERT INTO order_status_history (order_id, from_status, to_status, changed_at, changed_by_user_id)
+    VALUES (o.id, o.status, p_to, clock_timestamp(), p_changed_by);
+    result_code := 'OK';
+    RETURN NEXT;
+END;
+$$;
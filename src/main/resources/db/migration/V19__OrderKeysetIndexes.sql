@@ -0,0 +1,5 @@
+-- Keyset pagination of a user's orders, newest first with ties broken by id
+CREATE INDEX idx_orders_user_created_id ON orders (user_id, created_at DESC, id DESC);
+
+-- Keyset pagination of all orders for admin listings
+CREATE INDEX idx_orders_created_id ON orders (created_at DESC, id DESC);
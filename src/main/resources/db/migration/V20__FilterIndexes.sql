@@ -0,0 +1,14 @@
+-- Filtered queries now leave out unset filters, so each combination can use its own index.
+
+-- Orders filtered by status, newest first: admin listings and counts by status
+CREATE INDEX idx_orders_status_created_id ON orders (status, created_at DESC, id DESC);
+
+-- Analytics over paid orders in a date range read only this index
+CREATE INDEX idx_orders_paid_created ON orders (created_at) INCLUDE (product_id, sold_price, sold_quantity)
+    WHERE status = 'PAID';
+
+-- Flash sale listings and analytics filtered by date without a status
+CREATE INDEX idx_flash_sales_start_time ON flash_sales (start_time);
+
+-- Covered by idx_orders_user_created_id, which leads with user_id
+DROP INDEX IF EXISTS idx_orders_user_id;
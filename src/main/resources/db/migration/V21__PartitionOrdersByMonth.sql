@@ -0,0 +1,192 @@
+-- Orders and their status history grow without bound and are read by time range, so both are
+-- range partitioned by month (UTC). Queries with a date range only read the months it covers.
+-- Each table has a DEFAULT partition for rows outside the monthly ones; the partition maintenance
+-- job creates months ahead of time so that it stays empty, and moves anything it finds there into
+-- the month's partition when that is created.
+
+CREATE SCHEMA IF NOT EXISTS archive;
+
+-- Create the partition of p_parent (partitioned on p_column) for the UTC month holding p_month,
+-- named <parent>_pYYYYMM. Rows for that month already in the default partition are moved into it.
+-- Returns TRUE if the partition was created, FALSE if it already existed.
+CREATE FUNCTION create_monthly_partition(p_parent TEXT, p_column TEXT, p_month DATE)
+RETURNS BOOLEAN
+LANGUAGE plpgsql AS $$
+DECLARE
+    month_start DATE := date_trunc('month', p_month)::date;
+    range_from TIMESTAMPTZ := month_start::timestamp AT TIME ZONE 'UTC';
+    range_to TIMESTAMPTZ := (month_start + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+    partition_name TEXT := p_parent || '_p' || to_char(month_start, 'YYYYMM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name, p_parent);
+    -- Moving a row out of the default partition is not deleting the order (see release_order_claim)
+    PERFORM set_config('flash.moving_partition_rows', 'on', true);
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) INSERT INTO %I SELECT * FROM moved',
+        p_parent || '_default', p_column, range_from, p_column, range_to, partition_name);
+    PERFORM set_config('flash.moving_partition_rows', 'off', true);
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        p_parent, partition_name, range_from, range_to);
+    RETURN TRUE;
+END;
+$$;
+
+-- Create the monthly partitions of p_parent from the month holding p_from to the month holding
+-- p_to, both inclusive. Returns the number created.
+CREATE FUNCTION create_monthly_partitions(p_parent TEXT, p_column TEXT, p_from TIMESTAMPTZ, p_to TIMESTAMPTZ)
+RETURNS INTEGER
+LANGUAGE plpgsql AS $$
+DECLARE
+    month_start DATE := date_trunc('month', p_from AT TIME ZONE 'UTC')::date;
+    created INTEGER := 0;
+BEGIN
+    WHILE month_start <= (p_to AT TIME ZONE 'UTC')::date LOOP
+        IF create_monthly_partition(p_parent, p_column, month_start) THEN
+            created := created + 1;
+        END IF;
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$$;
+
+-- Detach the monthly partitions of p_parent that end on or before p_before and move them to the
+-- archive schema, where they can still be read, dumped or dropped. Returns the number archived.
+CREATE FUNCTION archive_monthly_partitions(p_parent TEXT, p_before TIMESTAMPTZ)
+RETURNS INTEGER
+LANGUAGE plpgsql AS $$
+DECLARE
+    partition_name TEXT;
+    archived INTEGER := 0;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = p_parent::regclass AND c.relname ~ ('^' || p_parent || '_p[0-9]{6}$')
+        ORDER BY c.relname
+    LOOP
+        -- Names sort by month, so every partition after this one is newer still
+        EXIT WHEN (to_date(right(partition_name, 6), 'YYYYMM') + INTERVAL '1 month') AT TIME ZONE 'UTC' > p_before;
+        EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', p_parent, partition_name);
+        EXECUTE format('ALTER TABLE %I SET SCHEMA archive', partition_name);
+        archived := archived + 1;
+    END LOOP;
+    RETURN archived;
+END;
+$$;
+
+-- Free the names of the old tables' primary keys for the new ones
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER INDEX orders_pkey RENAME TO orders_unpartitioned_pkey;
+ALTER TABLE order_status_history RENAME TO order_status_history_unpartitioned;
+ALTER INDEX order_status_history_pkey RENAME TO order_status_history_unpartitioned_pkey;
+
+-- The primary key of a partitioned table has to include the partition key
+CREATE TABLE orders (
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    user_id UUID NOT NULL,
+    flash_sale_item_id UUID NOT NULL REFERENCES flash_sale_items(id),
+    status order_status DEFAULT 'PENDING',
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    product_id UUID NOT NULL REFERENCES products(id),
+    sold_price DECIMAL(12, 2) NOT NULL,
+    sold_quantity INT NOT NULL,
+    expires_at TIMESTAMPTZ,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+
+-- A foreign key to orders would need created_at as well, so history rows are removed with their
+-- order by release_order_claim instead
+CREATE TABLE order_status_history (
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    order_id UUID NOT NULL,
+    from_status order_status NOT NULL,
+    to_status order_status NOT NULL,
+    changed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    changed_by_user_id UUID,
+    PRIMARY KEY (id, changed_at)
+) PARTITION BY RANGE (changed_at);
+
+CREATE TABLE order_status_history_default PARTITION OF order_status_history DEFAULT;
+
+-- Every month with existing rows, up to three months ahead
+SELECT create_monthly_partitions('orders', 'created_at',
+    LEAST(CURRENT_TIMESTAMP, (SELECT min(created_at) FROM orders_unpartitioned)),
+    CURRENT_TIMESTAMP + INTERVAL '3 months');
+SELECT create_monthly_partitions('order_status_history', 'changed_at',
+    LEAST(CURRENT_TIMESTAMP, (SELECT min(changed_at) FROM order_status_history_unpartitioned)),
+    CURRENT_TIMESTAMP + INTERVAL '3 months');
+
+INSERT INTO orders (id, user_id, flash_sale_item_id, status, created_at, product_id, sold_price, sold_quantity, expires_at)
+SELECT id, user_id, flash_sale_item_id, status, COALESCE(created_at, CURRENT_TIMESTAMP), product_id, sold_price,
+    sold_quantity, expires_at
+FROM orders_unpartitioned;
+
+INSERT INTO order_status_history (id, order_id, from_status, to_status, changed_at, changed_by_user_id)
+SELECT id, order_id, from_status, to_status, changed_at, changed_by_user_id
+FROM order_status_history_unpartitioned;
+
+DROP TABLE order_status_history_unpartitioned;
+DROP TABLE orders_unpartitioned;
+
+CREATE INDEX idx_orders_sale_item ON orders (flash_sale_item_id);
+CREATE INDEX idx_orders_product_id ON orders (product_id);
+CREATE INDEX idx_orders_user_status_created ON orders (user_id, status, created_at);
+CREATE INDEX idx_orders_pending_expires_at ON orders (expires_at) WHERE status = 'PENDING';
+CREATE INDEX idx_orders_user_created_id ON orders (user_id, created_at DESC, id DESC);
+CREATE INDEX idx_orders_created_id ON orders (created_at DESC, id DESC);
+CREATE INDEX idx_orders_status_created_id ON orders (status, created_at DESC, id DESC);
+CREATE INDEX idx_orders_paid_created ON orders (created_at) INCLUDE (product_id, sold_price, sold_quantity)
+    WHERE status = 'PAID';
+CREATE INDEX idx_order_status_history_order_id ON order_status_history (order_id);
+
+-- Rows are appended in time order, so a few bytes per block range are enough to skip most of a
+-- month when a range scan covers part of it
+CREATE INDEX idx_orders_created_at_brin ON orders USING brin (created_at);
+CREATE INDEX idx_order_status_history_changed_at_brin ON order_status_history USING brin (changed_at);
+
+-- One purchase per user per flash sale item. A unique index on orders would have to include
+-- created_at, so each order claims its (user, item) pair here instead. Claims are kept when old
+-- orders are archived, so the rule still holds for them.
+CREATE TABLE order_claims (
+    user_id UUID NOT NULL,
+    flash_sale_item_id UUID NOT NULL,
+    order_id UUID NOT NULL,
+    PRIMARY KEY (user_id, flash_sale_item_id)
+);
+
+INSERT INTO order_claims (user_id, flash_sale_item_id, order_id)
+SELECT user_id, flash_sale_item_id, id FROM orders;
+
+-- A second order for the same pair fails with a unique violation on order_claims_pkey
+CREATE FUNCTION claim_order()
+RETURNS TRIGGER
+LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO order_claims (user_id, flash_sale_item_id, order_id)
+    VALUES (NEW.user_id, NEW.flash_sale_item_id, NEW.id);
+    RETURN NULL;
+END;
+$$;
+
+-- Deleting an order frees its claim and removes its history
+CREATE FUNCTION release_order_claim()
+RETURNS TRIGGER
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('flash.moving_partition_rows', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    DELETE FROM order_claims
+    WHERE user_id = OLD.user_id AND flash_sale_item_id = OLD.flash_sale_item_id AND order_id = OLD.id;
+    DELETE FROM order_status_history WHERE order_id = OLD.id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER claim_order AFTER INSERT ON orders FOR EACH ROW EXECUTE FUNCTION claim_order();
+CREATE TRIGGER release_order_claim AFTER DELETE ON orders FOR EACH ROW EXECUTE FUNCTION release_order_claim();
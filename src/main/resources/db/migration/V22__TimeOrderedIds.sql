@@ -0,0 +1,6 @@
+-- New orders, status history and audit log rows get time-ordered UUIDv7 keys (built into
+-- PostgreSQL 18), so inserts go to the right-hand edge of each primary key index instead of
+-- splitting pages all over it. Existing rows keep their random keys.
+ALTER TABLE orders ALTER COLUMN id SET DEFAULT uuidv7();
+ALTER TABLE order_status_history ALTER COLUMN id SET DEFAULT uuidv7();
+ALTER TABLE admin_audit_log ALTER COLUMN id SET DEFAULT uuidv7();
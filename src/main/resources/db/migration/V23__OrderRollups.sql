@@ -0,0 +1,71 @@
+-- Running totals of orders per hour (UTC, by when the order was placed), flash sale item and
+-- status, so analytics for any date range sum a bounded number of buckets instead of scanning the
+-- orders. Totals per day, product or sale are sums of these rows. Orders change status through
+-- several paths (the transition function, bulk expiry, the lottery draw, entity updates), so the
+-- rollups are kept by a trigger on orders rather than by any one of them. Archived orders stay in
+-- their buckets.
+CREATE TABLE order_rollups (
+    bucket TIMESTAMPTZ NOT NULL,
+    flash_sale_item_id UUID NOT NULL,
+    status order_status NOT NULL,
+    flash_sale_id UUID NOT NULL,
+    product_id UUID NOT NULL,
+    order_count BIGINT NOT NULL,
+    quantity BIGINT NOT NULL,
+    revenue NUMERIC NOT NULL,
+    PRIMARY KEY (bucket, flash_sale_item_id, status)
+);
+
+CREATE INDEX idx_order_rollups_product_bucket ON order_rollups (product_id, bucket);
+CREATE INDEX idx_order_rollups_sale_bucket ON order_rollups (flash_sale_id, bucket);
+
+INSERT INTO order_rollups (bucket, flash_sale_item_id, status, flash_sale_id, product_id, order_count, quantity, revenue)
+SELECT date_trunc('hour', o.created_at, 'UTC'), o.flash_sale_item_id, o.status, i.flash_sale_id, i.product_id,
+    count(*), sum(o.sold_quantity), sum(o.sold_price * o.sold_quantity)
+FROM orders o
+JOIN flash_sale_items i ON i.id = o.flash_sale_item_id
+WHERE o.status IS NOT NULL
+GROUP BY 1, 2, 3, 4, 5;
+
+-- Take an order's old row out of its bucket and add its new row (changes within one bucket are
+-- summed first, as a row can only be upserted once per statement). Each bucket is per item, so
+-- concurrent orders only contend on a bucket where they already contend on the item's row; the
+-- two buckets of a status change are written in status order so that transactions lock them in
+-- the same order.
+CREATE FUNCTION roll_up_order()
+RETURNS TRIGGER
+LANGUAGE plpgsql AS $$
+BEGIN
+    -- Moving a row out of the default partition leaves the order as it was
+    IF current_setting('flash.moving_partition_rows', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'UPDATE' AND OLD.status IS NOT DISTINCT FROM NEW.status AND OLD.created_at = NEW.created_at
+        AND OLD.sold_quantity = NEW.sold_quantity AND OLD.sold_price = NEW.sold_price THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO order_rollups AS r (bucket, flash_sale_item_id, status, flash_sale_id, product_id, order_count, quantity, revenue)
+    SELECT c.bucket, c.flash_sale_item_id, c.status, i.flash_sale_id, i.product_id,
+        sum(c.order_count), sum(c.quantity), sum(c.revenue)
+    FROM (
+        SELECT date_trunc('hour', OLD.created_at, 'UTC') AS bucket, OLD.flash_sale_item_id AS flash_sale_item_id,
+            OLD.status AS status, -1 AS order_count, -OLD.sold_quantity AS quantity,
+            -(OLD.sold_price * OLD.sold_quantity) AS revenue
+        WHERE TG_OP <> 'INSERT' AND OLD.status IS NOT NULL
+        UNION ALL
+        SELECT date_trunc('hour', NEW.created_at, 'UTC'), NEW.flash_sale_item_id, NEW.status, 1,
+            NEW.sold_quantity, NEW.sold_price * NEW.sold_quantity
+        WHERE TG_OP <> 'DELETE' AND NEW.status IS NOT NULL
+    ) c
+    JOIN flash_sale_items i ON i.id = c.flash_sale_item_id
+    GROUP BY c.bucket, c.flash_sale_item_id, c.status, i.flash_sale_id, i.product_id
+    ORDER BY c.bucket, c.flash_sale_item_id, c.status
+    ON CONFLICT (bucket, flash_sale_item_id, status) DO UPDATE
+    SET order_count = r.order_count + EXCLUDED.order_count,
+        quantity = r.quantity + EXCLUDED.quantity,
+        revenue = r.revenue + EXCLUDED.revenue;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER roll_up_order AFTER INSERT OR UPDATE OR DELETE ON orders FOR EACH ROW EXECUTE FUNCTION roll_up_order();
@@ -0,0 +1,79 @@
+-- The rollup trigger upserted the order's hour bucket directly, so every order placed for an item in
+-- the same hour queued on one order_rollups row until its transaction committed, and bulk expiry
+-- (bucket, then item) could deadlock with placement (item, then bucket). The trigger now only
+-- appends to order_rollup_deltas, which takes no row locks, and fold_order_rollup_deltas() moves the
+-- deltas into order_rollups in batches from a scheduled job. Queries read order_rollup_totals, which
+-- adds the deltas not folded yet, so their figures stay exact.
+CREATE TABLE order_rollup_deltas (
+    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    bucket TIMESTAMPTZ NOT NULL,
+    flash_sale_item_id UUID NOT NULL,
+    status order_status NOT NULL,
+    order_count INTEGER NOT NULL,
+    quantity BIGINT NOT NULL,
+    revenue NUMERIC NOT NULL
+);
+
+-- Take an order's old row out of its bucket and add its new row, as deltas
+CREATE OR REPLACE FUNCTION roll_up_order()
+RETURNS TRIGGER
+LANGUAGE plpgsql AS $$
+BEGIN
+    -- Moving a row out of the default partition leaves the order as it was
+    IF current_setting('flash.moving_partition_rows', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'UPDATE' AND OLD.status IS NOT DISTINCT FROM NEW.status AND OLD.created_at = NEW.created_at
+        AND OLD.sold_quantity = NEW.sold_quantity AND OLD.sold_price = NEW.sold_price THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO order_rollup_deltas (bucket, flash_sale_item_id, status, order_count, quantity, revenue)
+    SELECT date_trunc('hour', OLD.created_at, 'UTC'), OLD.flash_sale_item_id, OLD.status, -1, -OLD.sold_quantity,
+        -(OLD.sold_price * OLD.sold_quantity)
+    WHERE TG_OP <> 'INSERT' AND OLD.status IS NOT NULL
+    UNION ALL
+    SELECT date_trunc('hour', NEW.created_at, 'UTC'), NEW.flash_sale_item_id, NEW.status, 1, NEW.sold_quantity,
+        NEW.sold_price * NEW.sold_quantity
+    WHERE TG_OP <> 'DELETE' AND NEW.status IS NOT NULL;
+    RETURN NULL;
+END;
+$$;
+
+-- Move up to p_limit of the oldest deltas into their buckets, summed per bucket, and return how many
+-- were moved. Deltas being folded by another call are skipped.
+CREATE FUNCTION fold_order_rollup_deltas(p_limit INTEGER)
+RETURNS INTEGER
+LANGUAGE plpgsql AS $$
+DECLARE
+    folded INTEGER;
+BEGIN
+    WITH taken AS (
+        DELETE FROM order_rollup_deltas
+        WHERE id IN (SELECT id FROM order_rollup_deltas ORDER BY id LIMIT p_limit FOR UPDATE SKIP LOCKED)
+        RETURNING bucket, flash_sale_item_id, status, order_count, quantity, revenue
+    ), summed AS (
+        INSERT INTO order_rollups AS r (bucket, flash_sale_item_id, status, flash_sale_id, product_id, order_count, quantity, revenue)
+        SELECT t.bucket, t.flash_sale_item_id, t.status, i.flash_sale_id, i.product_id,
+            sum(t.order_count), sum(t.quantity), sum(t.revenue)
+        FROM taken t
+        JOIN flash_sale_items i ON i.id = t.flash_sale_item_id
+        GROUP BY t.bucket, t.flash_sale_item_id, t.status, i.flash_sale_id, i.product_id
+        ORDER BY t.bucket, t.flash_sale_item_id, t.status
+        ON CONFLICT (bucket, flash_sale_item_id, status) DO UPDATE
+        SET order_count = r.order_count + EXCLUDED.order_count,
+            quantity = r.quantity + EXCLUDED.quantity,
+            revenue = r.revenue + EXCLUDED.revenue
+    )
+    SELECT count(*) INTO folded FROM taken;
+    RETURN folded;
+END;
+$$;
+
+-- Folded buckets plus the deltas still waiting to be folded
+CREATE VIEW order_rollup_totals AS
+SELECT bucket, flash_sale_item_id, status, flash_sale_id, product_id, order_count, quantity, revenue
+FROM order_rollups
+UNION ALL
+SELECT d.bucket, d.flash_sale_item_id, d.status, i.flash_sale_id, i.product_id, d.order_count, d.quantity, d.revenue
+FROM order_rollup_deltas d
+JOIN flash_sale_items i ON i.id = d.flash_sale_item_id;
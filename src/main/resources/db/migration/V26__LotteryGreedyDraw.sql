@@ -0,0 +1,28 @@
+-- The lottery draw took each item's shuffled entries while their running total fitted the item's
+-- stock, so one large entry drawn early stopped every later entry, even those that would still fit,
+-- and left that stock unallocated. lottery_fits() is used as a window aggregate over the shuffled
+-- entries instead: it tracks the stock left so far and reports, for each entry, whether it fitted
+-- and was taken. An entry that does not fit is skipped and the draw moves on to the next one.
+
+-- State is [stock left, whether the last entry was taken]; the first call starts from p_available
+CREATE FUNCTION lottery_fit_step(state INTEGER[], p_quantity INTEGER, p_available INTEGER)
+RETURNS INTEGER[]
+LANGUAGE sql IMMUTABLE AS $$
+    SELECT CASE
+        WHEN p_quantity <= COALESCE(state[1], p_available)
+            THEN ARRAY[COALESCE(state[1], p_available) - p_quantity, 1]
+        ELSE ARRAY[COALESCE(state[1], p_available), 0]
+    END;
+$$;
+
+CREATE FUNCTION lottery_fit_final(state INTEGER[])
+RETURNS BOOLEAN
+LANGUAGE sql IMMUTABLE AS $$
+    SELECT state[2] = 1;
+$$;
+
+CREATE AGGREGATE lottery_fits(INTEGER, INTEGER) (
+    SFUNC = lottery_fit_step,
+    STYPE = INTEGER[],
+    FINALFUNC = lottery_fit_final
+);
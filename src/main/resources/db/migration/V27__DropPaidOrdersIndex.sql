@@ -0,0 +1,3 @@
+-- Revenue, order and top product analytics read order_rollups (V23), so nothing reads paid orders
+-- by date any more and this index only added a write to every order placed or paid
+DROP INDEX IF EXISTS idx_orders_paid_created;
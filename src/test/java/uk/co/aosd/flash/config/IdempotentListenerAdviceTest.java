@@ -0,0 +1,119 @@
+package uk.co.aosd.flash.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import uk.co.aosd.flash.services.ProcessedMessageStore;
+import uk.co.aosd.flash.services.ProcessedMessageStore.Claim;
+
+/**
+ * Test the idempotent listener advice.
+ */
+public class IdempotentListenerAdviceTest {
+
+    private static final String QUEUE = RabbitMQConfig.ORDER_PROCESSING_QUEUE;
+    private static final String MESSAGE_ID = "msg-1";
+
+    private ProcessedMessageStore store;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotentListenerAdvice advice;
+    private MethodInvocation invocation;
+
+    @BeforeEach
+    public void beforeEach() {
+        store = Mockito.mock(ProcessedMessageStore.class);
+        meterRegistry = new SimpleMeterRegistry();
+        advice = new IdempotentListenerAdvice(store, meterRegistry);
+        invocation = Mockito.mock(MethodInvocation.class);
+    }
+
+    @Test
+    public void shouldInvokeListenerOnFirstDelivery() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message(false) });
+        when(store.tryClaim(QUEUE, MESSAGE_ID)).thenReturn(Claim.CLAIMED);
+
+        advice.invoke(invocation);
+
+        verify(invocation).proceed();
+        verify(store).markDone(QUEUE, MESSAGE_ID);
+        assertNull(meterRegistry.find("flash.messages.redelivered").counter());
+    }
+
+    @Test
+    public void shouldAcknowledgeDuplicateWithoutInvokingListener() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message(true) });
+        when(store.tryClaim(QUEUE, MESSAGE_ID)).thenReturn(Claim.DONE);
+
+        assertNull(advice.invoke(invocation));
+
+        verify(invocation, never()).proceed();
+        assertEquals(1, meterRegistry.get("flash.messages.redelivered").tag("outcome", "skipped").counter().count());
+    }
+
+    @Test
+    public void shouldCountBrokerRedeliveryThatIsProcessedAgain() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message(true) });
+        when(store.tryClaim(QUEUE, MESSAGE_ID)).thenReturn(Claim.CLAIMED);
+
+        advice.invoke(invocation);
+
+        verify(invocation).proceed();
+        assertEquals(1, meterRegistry.get("flash.messages.redelivered").tag("outcome", "reprocessed").counter().count());
+    }
+
+    @Test
+    public void shouldReleaseClaimWhenListenerFails() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message(false) });
+        when(store.tryClaim(QUEUE, MESSAGE_ID)).thenReturn(Claim.CLAIMED);
+        when(invocation.proceed()).thenThrow(new IllegalStateException("boom"));
+
+        assertThrows(IllegalStateException.class, () -> advice.invoke(invocation));
+
+        verify(store).release(QUEUE, MESSAGE_ID);
+        verify(store, never()).markDone(QUEUE, MESSAGE_ID);
+    }
+
+    @Test
+    public void shouldRequeueWhileAnotherDeliveryIsInProgress() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message(true) });
+        when(store.tryClaim(QUEUE, MESSAGE_ID)).thenReturn(Claim.IN_PROGRESS);
+
+        assertThrows(ImmediateRequeueAmqpException.class, () -> advice.invoke(invocation));
+
+        verify(invocation, never()).proceed();
+        verify(store, never()).release(QUEUE, MESSAGE_ID);
+        assertEquals(1, meterRegistry.get("flash.messages.redelivered").tag("outcome", "requeued").counter().count());
+    }
+
+    @Test
+    public void shouldProceedWhenMessageHasNoId() throws Throwable {
+        final MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(QUEUE);
+        when(invocation.getArguments()).thenReturn(new Object[] { null, new Message(new byte[0], properties) });
+
+        advice.invoke(invocation);
+
+        verify(invocation).proceed();
+        verify(store, never()).tryClaim(QUEUE, MESSAGE_ID);
+    }
+
+    private static Message message(final boolean redelivered) {
+        final MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(QUEUE);
+        properties.setMessageId(MESSAGE_ID);
+        properties.setRedelivered(redelivered);
+        return new Message(new byte[0], properties);
+    }
+}
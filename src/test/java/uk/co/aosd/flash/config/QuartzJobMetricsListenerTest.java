@@ -0,0 +1,73 @@
+package uk.co.aosd.flash.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.ListenerManager;
+import org.quartz.Scheduler;
+import uk.co.aosd.flash.services.ActivateSaleJob;
+
+/**
+ * Tests for QuartzJobMetricsListener.
+ */
+public class QuartzJobMetricsListenerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Scheduler scheduler;
+    private QuartzJobMetricsListener listener;
+    private JobExecutionContext context;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = Mockito.mock(Scheduler.class);
+        listener = new QuartzJobMetricsListener(scheduler, meterRegistry);
+        context = Mockito.mock(JobExecutionContext.class);
+        when(context.getJobDetail()).thenReturn(JobBuilder.newJob(ActivateSaleJob.class).withIdentity("activateSaleJob").build());
+    }
+
+    @Test
+    public void shouldRegisterForAllJobs() throws Exception {
+        final ListenerManager listenerManager = Mockito.mock(ListenerManager.class);
+        when(scheduler.getListenerManager()).thenReturn(listenerManager);
+
+        listener.register();
+
+        verify(listenerManager).addJobListener(listener);
+    }
+
+    @Test
+    public void shouldRecordLagBetweenScheduledAndActualFireTime() {
+        final long scheduled = System.currentTimeMillis();
+        when(context.getScheduledFireTime()).thenReturn(new Date(scheduled));
+        when(context.getFireTime()).thenReturn(new Date(scheduled + 1500));
+
+        listener.jobToBeExecuted(context);
+
+        final var timer = meterRegistry.get("flash.scheduler.job.lag").tag("job", "activateSaleJob").timer();
+        assertEquals(1, timer.count());
+        assertEquals(1500, timer.totalTime(TimeUnit.MILLISECONDS), 0.1);
+    }
+
+    @Test
+    public void shouldRecordDurationWithOutcome() {
+        when(context.getJobRunTime()).thenReturn(250L);
+
+        listener.jobWasExecuted(context, null);
+        listener.jobWasExecuted(context, new JobExecutionException("failed"));
+
+        assertEquals(1, meterRegistry.get("flash.scheduler.job.duration").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("flash.scheduler.job.duration").tag("outcome", "failure").timer().count());
+    }
+}
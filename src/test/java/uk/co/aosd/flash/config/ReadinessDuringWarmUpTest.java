@@ -0,0 +1,84 @@
+package uk.co.aosd.flash.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import org.testcontainers.rabbitmq.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Verifies that the readiness probe stays down until the startup warm-up has finished when a
+ * broker-free transport profile replaces the readiness group. Spring Boot only marks the
+ * application as accepting traffic once every ready listener, the warm-up included, has returned,
+ * so a ready listener sees what the probe reports while the warm-up runs.
+ */
+@SpringBootTest(classes = { TestSecurityConfig.class, ReadinessDuringWarmUpTest.ReadinessProbe.class },
+    properties = "app.warm-up.on-startup=true")
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles({ "test", "admin-service", "api-service", "db-queue" })
+public class ReadinessDuringWarmUpTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres:latest");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    @SuppressWarnings("resource")
+    public static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:latest"))
+        .withExposedPorts(6379);
+
+    @Container
+    @ServiceConnection
+    public static RabbitMQContainer rabbitMQContainer = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    private static final AtomicInteger READINESS_DURING_WARM_UP = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void readinessShouldBeDownUntilWarmUpHasFinished() throws Exception {
+        assertEquals(503, READINESS_DURING_WARM_UP.get());
+
+        mockMvc.perform(get("/actuator/health/readiness"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("UP"));
+    }
+
+    /**
+     * Probes readiness from a ready listener, as the warm-up runs.
+     */
+    @TestConfiguration
+    static class ReadinessProbe {
+
+        @Autowired
+        private ObjectProvider<MockMvc> mockMvc;
+
+        @EventListener(ApplicationReadyEvent.class)
+        public void probe() throws Exception {
+            READINESS_DURING_WARM_UP.set(mockMvc.getObject().perform(get("/actuator/health/readiness"))
+                .andReturn().getResponse().getStatus());
+        }
+    }
+}
@@ -2,15 +2,18 @@ package uk.co.aosd.flash.consumers;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import uk.co.aosd.flash.domain.OrderStatus;
 import uk.co.aosd.flash.exc.InvalidOrderStatusException;
 import uk.co.aosd.flash.exc.OrderNotFoundException;
 import uk.co.aosd.flash.services.OrderService;
@@ -100,4 +103,45 @@ public class DispatchConsumerTest {
 
         verify(orderService).processDispatch(orderId);
     }
+
+    @Test
+    public void shouldProcessDispatchBatchInOneCall() {
+        // Given
+        final UUID otherOrderId = UUID.randomUUID();
+
+        // When
+        consumer.processDispatchBatch(List.of(orderId.toString(), "invalid-uuid", otherOrderId.toString()));
+
+        // Then
+        verify(orderService).processDispatchBatch(List.of(orderId, otherOrderId));
+        verify(orderService, never()).processDispatch(any());
+    }
+
+    @Test
+    public void shouldFallBackToPerOrderDispatchWhenBatchFails() {
+        // Given
+        final UUID otherOrderId = UUID.randomUUID();
+        doThrow(new IllegalStateException("Failed to decrement product stock for dispatch batch"))
+            .when(orderService).processDispatchBatch(anyList());
+        doThrow(new InvalidOrderStatusException(otherOrderId, OrderStatus.REFUNDED, OrderStatus.PAID, "dispatch")).when(orderService).processDispatch(otherOrderId);
+
+        // When
+        consumer.processDispatchBatch(List.of(orderId.toString(), otherOrderId.toString()));
+
+        // Then
+        verify(orderService).processDispatch(orderId);
+        verify(orderService).processDispatch(otherOrderId);
+    }
+
+    @Test
+    public void shouldRethrowWhenPerOrderFallbackFails() {
+        // Given
+        doThrow(new IllegalStateException("batch")).when(orderService).processDispatchBatch(anyList());
+        doThrow(new RuntimeException("Service error")).when(orderService).processDispatch(orderId);
+
+        // When/Then
+        assertThrows(RuntimeException.class, () -> {
+            consumer.processDispatchBatch(List.of(orderId.toString()));
+        });
+    }
 }
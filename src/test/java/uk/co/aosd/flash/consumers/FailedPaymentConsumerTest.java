@@ -1,13 +1,16 @@
 package uk.co.aosd.flash.consumers;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.Date;
 import java.util.UUID;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -20,6 +23,7 @@ import uk.co.aosd.flash.services.OrderService;
 public class FailedPaymentConsumerTest {
 
     private OrderService orderService;
+    private SimpleMeterRegistry meterRegistry;
     private FailedPaymentConsumer consumer;
 
     private UUID orderId;
@@ -27,7 +31,8 @@ public class FailedPaymentConsumerTest {
     @BeforeEach
     public void beforeEach() {
         orderService = Mockito.mock(OrderService.class);
-        consumer = new FailedPaymentConsumer(orderService);
+        meterRegistry = new SimpleMeterRegistry();
+        consumer = new FailedPaymentConsumer(orderService, meterRegistry);
         orderId = UUID.randomUUID();
     }
 
@@ -37,12 +42,25 @@ public class FailedPaymentConsumerTest {
         final String orderIdStr = orderId.toString();
 
         // When
-        consumer.processFailedPayment(orderIdStr);
+        consumer.processFailedPayment(orderIdStr, null);
 
         // Then
         verify(orderService).processFailedPayment(orderId);
     }
 
+    @Test
+    public void shouldRecordStockReleaseLatencyWhenTimestampPresent() {
+        // Given
+        final Date enqueuedAt = new Date(System.currentTimeMillis() - 250);
+
+        // When
+        consumer.processFailedPayment(orderId.toString(), enqueuedAt);
+
+        // Then
+        verify(orderService).processFailedPayment(orderId);
+        assertEquals(1, meterRegistry.get("flash.stock.release.latency").tag("reason", "payment_failed").timer().count());
+    }
+
     @Test
     public void shouldThrowExceptionWhenInvalidUUID() {
         // Given
@@ -50,7 +68,7 @@ public class FailedPaymentConsumerTest {
 
         // When/Then
         assertThrows(IllegalArgumentException.class, () -> {
-            consumer.processFailedPayment(invalidOrderIdStr);
+            consumer.processFailedPayment(invalidOrderIdStr, null);
         });
 
         verify(orderService, never()).processFailedPayment(any());
@@ -64,7 +82,7 @@ public class FailedPaymentConsumerTest {
 
         // When/Then
         assertThrows(OrderNotFoundException.class, () -> {
-            consumer.processFailedPayment(orderIdStr);
+            consumer.processFailedPayment(orderIdStr, null);
         });
 
         verify(orderService).processFailedPayment(orderId);
@@ -79,7 +97,7 @@ public class FailedPaymentConsumerTest {
 
         // When/Then
         assertThrows(RuntimeException.class, () -> {
-            consumer.processFailedPayment(orderIdStr);
+            consumer.processFailedPayment(orderIdStr, null);
         });
 
         verify(orderService).processFailedPayment(orderId);
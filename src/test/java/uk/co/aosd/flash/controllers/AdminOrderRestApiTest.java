@@ -1,20 +1,31 @@
 package uk.co.aosd.flash.controllers;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -22,6 +33,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
@@ -30,15 +42,19 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import uk.co.aosd.flash.config.TestSecurityConfig;
 import uk.co.aosd.flash.domain.OrderStatus;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.UpdateOrderStatusDto;
 import uk.co.aosd.flash.errorhandling.ErrorMapper;
 import uk.co.aosd.flash.errorhandling.GlobalExceptionHandler;
 import uk.co.aosd.flash.exc.InvalidOrderStatusException;
 import uk.co.aosd.flash.exc.OrderNotFoundException;
 import uk.co.aosd.flash.services.JwtTokenProvider;
+import uk.co.aosd.flash.services.OrderExportService;
 import uk.co.aosd.flash.services.OrderService;
 
 /**
@@ -61,6 +77,9 @@ public class AdminOrderRestApiTest {
     @MockitoBean
     private OrderService orderService;
 
+    @MockitoBean
+    private OrderExportService orderExportService;
+
     @BeforeAll
     public static void beforeAll() {
         objectMapper = new ObjectMapper();
@@ -69,7 +88,7 @@ public class AdminOrderRestApiTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(orderService);
+        Mockito.reset(orderService, orderExportService);
     }
 
     // GET /api/v1/admin/orders tests
@@ -82,14 +101,14 @@ public class AdminOrderRestApiTest {
         final OrderDetailDto order2 = createTestOrderDto(orderId2, OrderStatus.PAID);
         final List<OrderDetailDto> orders = List.of(order1, order2);
 
-        when(orderService.getAllOrders(null, null, null, null)).thenReturn(orders);
+        when(orderService.getAllOrders(null, null, null, null, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         mockMvc.perform(get("/api/v1/admin/orders"))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$").isArray())
             .andExpect(jsonPath("$.length()").value(2));
 
-        verify(orderService, times(1)).getAllOrders(null, null, null, null);
+        verify(orderService, times(1)).getAllOrders(null, null, null, null, OrderView.FULL, null, null);
     }
 
     @Test
@@ -98,7 +117,7 @@ public class AdminOrderRestApiTest {
         final OrderDetailDto order = createTestOrderDto(orderId, OrderStatus.PAID);
         final List<OrderDetailDto> orders = List.of(order);
 
-        when(orderService.getAllOrders(OrderStatus.PAID, null, null, null)).thenReturn(orders);
+        when(orderService.getAllOrders(OrderStatus.PAID, null, null, null, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         mockMvc.perform(get("/api/v1/admin/orders")
             .param("status", "PAID"))
@@ -107,7 +126,7 @@ public class AdminOrderRestApiTest {
             .andExpect(jsonPath("$.length()").value(1))
             .andExpect(jsonPath("$[0].status").value("PAID"));
 
-        verify(orderService, times(1)).getAllOrders(OrderStatus.PAID, null, null, null);
+        verify(orderService, times(1)).getAllOrders(OrderStatus.PAID, null, null, null, OrderView.FULL, null, null);
     }
 
     @Test
@@ -118,7 +137,7 @@ public class AdminOrderRestApiTest {
         final OrderDetailDto order = createTestOrderDto(orderId, OrderStatus.PENDING);
         final List<OrderDetailDto> orders = List.of(order);
 
-        when(orderService.getAllOrders(null, startDate, endDate, null)).thenReturn(orders);
+        when(orderService.getAllOrders(null, startDate, endDate, null, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         mockMvc.perform(get("/api/v1/admin/orders")
             .param("startDate", "2026-01-01T00:00:00Z")
@@ -127,7 +146,7 @@ public class AdminOrderRestApiTest {
             .andExpect(jsonPath("$").isArray())
             .andExpect(jsonPath("$.length()").value(1));
 
-        verify(orderService, times(1)).getAllOrders(null, startDate, endDate, null);
+        verify(orderService, times(1)).getAllOrders(null, startDate, endDate, null, OrderView.FULL, null, null);
     }
 
     @Test
@@ -137,7 +156,7 @@ public class AdminOrderRestApiTest {
         final OrderDetailDto order = createTestOrderDto(orderId, OrderStatus.PAID);
         final List<OrderDetailDto> orders = List.of(order);
 
-        when(orderService.getAllOrders(null, null, null, userId)).thenReturn(orders);
+        when(orderService.getAllOrders(null, null, null, userId, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         mockMvc.perform(get("/api/v1/admin/orders")
             .param("userId", userId.toString()))
@@ -145,7 +164,7 @@ public class AdminOrderRestApiTest {
             .andExpect(jsonPath("$").isArray())
             .andExpect(jsonPath("$.length()").value(1));
 
-        verify(orderService, times(1)).getAllOrders(null, null, null, userId);
+        verify(orderService, times(1)).getAllOrders(null, null, null, userId, OrderView.FULL, null, null);
     }
 
     @Test
@@ -157,7 +176,7 @@ public class AdminOrderRestApiTest {
         final OrderDetailDto order = createTestOrderDto(orderId, OrderStatus.PAID);
         final List<OrderDetailDto> orders = List.of(order);
 
-        when(orderService.getAllOrders(OrderStatus.PAID, startDate, endDate, userId)).thenReturn(orders);
+        when(orderService.getAllOrders(OrderStatus.PAID, startDate, endDate, userId, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         mockMvc.perform(get("/api/v1/admin/orders")
             .param("status", "PAID")
@@ -169,7 +188,7 @@ public class AdminOrderRestApiTest {
             .andExpect(jsonPath("$.length()").value(1))
             .andExpect(jsonPath("$[0].status").value("PAID"));
 
-        verify(orderService, times(1)).getAllOrders(OrderStatus.PAID, startDate, endDate, userId);
+        verify(orderService, times(1)).getAllOrders(OrderStatus.PAID, startDate, endDate, userId, OrderView.FULL, null, null);
     }
 
     @Test
@@ -178,7 +197,7 @@ public class AdminOrderRestApiTest {
             .param("status", "INVALID_STATUS"))
             .andExpect(status().isBadRequest());
 
-        verify(orderService, times(0)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        verify(orderService, times(0)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -187,12 +206,12 @@ public class AdminOrderRestApiTest {
             .param("userId", "invalid-uuid"))
             .andExpect(status().isBadRequest());
 
-        verify(orderService, times(0)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        verify(orderService, times(0)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
     public void shouldReturn400ForInvalidDateRange() throws Exception {
-        when(orderService.getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+        when(orderService.getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
             .thenThrow(new IllegalArgumentException("Start date must be before or equal to end date"));
 
         mockMvc.perform(get("/api/v1/admin/orders")
@@ -200,7 +219,140 @@ public class AdminOrderRestApiTest {
             .param("endDate", "2026-01-01T00:00:00Z"))
             .andExpect(status().isBadRequest());
 
-        verify(orderService, times(1)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        verify(orderService, times(1)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void shouldReturnNextCursorAndCountInHeaders() throws Exception {
+        final List<OrderDetailDto> orders = List.of(createTestOrderDto(UUID.randomUUID(), OrderStatus.PAID));
+        when(orderService.getAllOrders(null, null, null, null, OrderView.FULL, "abc", 1))
+            .thenReturn(new OrderPage(orders, "def", 10000, true));
+
+        mockMvc.perform(get("/api/v1/admin/orders")
+            .param("cursor", "abc")
+            .param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(header().string(OrderPage.NEXT_CURSOR_HEADER, "def"))
+            .andExpect(header().string(OrderPage.TOTAL_COUNT_HEADER, "10000"))
+            .andExpect(header().string(OrderPage.TOTAL_COUNT_CAPPED_HEADER, "true"));
+    }
+
+    @Test
+    public void shouldOmitNextCursorOnTheLastPage() throws Exception {
+        when(orderService.getAllOrders(null, null, null, null, OrderView.FULL, null, null))
+            .thenReturn(page(List.of()));
+
+        mockMvc.perform(get("/api/v1/admin/orders"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(OrderPage.NEXT_CURSOR_HEADER))
+            .andExpect(header().doesNotExist(OrderPage.TOTAL_COUNT_CAPPED_HEADER))
+            .andExpect(header().string(OrderPage.TOTAL_COUNT_HEADER, "0"));
+    }
+
+    @Test
+    public void shouldReturnOnlyRequestedFields() throws Exception {
+        final UUID orderId = UUID.randomUUID();
+        final OrderView view = OrderView.of("orderId,status,totalAmount", null);
+        when(orderService.getAllOrders(null, null, null, null, view, null, null))
+            .thenReturn(page(List.of(view.apply(createTestOrderDto(orderId, OrderStatus.PAID)))));
+
+        mockMvc.perform(get("/api/v1/admin/orders")
+            .param("fields", "orderId,status,totalAmount"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].orderId").value(orderId.toString()))
+            .andExpect(jsonPath("$[0].status").value("PAID"))
+            .andExpect(jsonPath("$[0].productName").doesNotExist())
+            .andExpect(jsonPath("$[0].statusHistory").doesNotExist());
+
+        verify(orderService, times(1)).getAllOrders(null, null, null, null, view, null, null);
+    }
+
+    @Test
+    public void shouldReturnRequestedFieldsWithHistory() throws Exception {
+        final OrderView view = OrderView.of("orderId", "history");
+        when(orderService.getAllOrders(null, null, null, null, view, null, null))
+            .thenReturn(page(List.of(view.apply(createTestOrderDto(UUID.randomUUID(), OrderStatus.PAID)))));
+
+        mockMvc.perform(get("/api/v1/admin/orders")
+            .param("fields", "orderId")
+            .param("include", "history"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].statusHistory").isArray())
+            .andExpect(jsonPath("$[0].status").doesNotExist());
+    }
+
+    @Test
+    public void shouldReturn400ForUnknownFieldOrInclude() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/orders")
+            .param("fields", "orderId,password"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/orders")
+            .param("include", "payments"))
+            .andExpect(status().isBadRequest());
+
+        verify(orderService, times(0)).getAllOrders(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    // GET /api/v1/admin/orders/export tests
+
+    @Test
+    public void shouldStreamOrdersAsNdjsonByDefault() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        doAnswer(writes("{\"orderId\":\"a\"}\n")).when(orderExportService)
+            .export(Mockito.eq(OrderStatus.PAID), Mockito.isNull(), Mockito.isNull(), Mockito.eq(userId),
+                Mockito.eq(OrderExportService.Format.NDJSON), Mockito.any(OutputStream.class));
+
+        final MvcResult result = mockMvc.perform(get("/api/v1/admin/orders/export")
+            .param("status", "paid")
+            .param("userId", userId.toString()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/x-ndjson"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"orders.ndjson\""))
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andExpect(content().string("{\"orderId\":\"a\"}\n"));
+    }
+
+    @Test
+    public void shouldStreamGzippedCsv() throws Exception {
+        doAnswer(writes("orderId\na\n")).when(orderExportService)
+            .export(Mockito.isNull(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                Mockito.eq(OrderExportService.Format.CSV), Mockito.any(OutputStream.class));
+
+        final MvcResult result = mockMvc.perform(get("/api/v1/admin/orders/export")
+            .param("format", "csv")
+            .param("gzip", "true"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        final byte[] body = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "text/csv"))
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals("orderId\na\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldReturn400ForInvalidExportParameters() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/orders/export").param("format", "xml"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/orders/export").param("status", "UNKNOWN"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/orders/export").param("userId", "not-a-uuid"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/orders/export")
+            .param("startDate", "2026-12-31T00:00:00Z")
+            .param("endDate", "2026-01-01T00:00:00Z"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(orderExportService);
     }
 
     // GET /api/v1/admin/orders/{id} tests
@@ -367,4 +519,15 @@ public class AdminOrderRestApiTest {
             createdAt,
             List.of());
     }
+
+    private static Answer<Long> writes(final String body) {
+        return invocation -> {
+            invocation.<OutputStream>getArgument(5).write(body.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        };
+    }
+
+    private static OrderPage page(final List<OrderDetailDto> orders) {
+        return new OrderPage(orders, null, orders.size(), false);
+    }
 }
@@ -2,9 +2,12 @@ package uk.co.aosd.flash.controllers;
 
 // Static imports for the fluent API (crucial for readability)
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
@@ -41,11 +44,15 @@ import uk.co.aosd.flash.dto.ClientDraftSaleDto;
 import uk.co.aosd.flash.dto.ClientProductDto;
 import uk.co.aosd.flash.dto.CreateOrderDto;
 import uk.co.aosd.flash.dto.ErrorResponseDto;
+import uk.co.aosd.flash.dto.LotteryEntryDto;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
 import uk.co.aosd.flash.dto.OrderResponseDto;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProductDto;
 import uk.co.aosd.flash.dto.UpdateProfileDto;
 import uk.co.aosd.flash.dto.UserDto;
+import uk.co.aosd.flash.dto.WaitlistEntryDto;
 import uk.co.aosd.flash.errorhandling.ErrorMapper;
 import uk.co.aosd.flash.errorhandling.GlobalExceptionHandler;
 import uk.co.aosd.flash.exc.InvalidCurrentPasswordException;
@@ -88,6 +95,12 @@ public class ClientRestApiTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private WaitlistService waitlistService;
+
+    @MockitoBean
+    private LotteryService lotteryService;
+
     @BeforeAll
     public static void beforeAll() {
         objectMapper = new ObjectMapper();
@@ -96,7 +109,8 @@ public class ClientRestApiTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(productsService, activeSalesService, draftSalesService, orderService, orderMessageSender, userService);
+        Mockito.reset(productsService, activeSalesService, draftSalesService, orderService, orderMessageSender, userService,
+            waitlistService, lotteryService);
         TestJwtUtils.clearSecurityContext();
     }
 
@@ -397,7 +411,7 @@ public class ClientRestApiTest {
         final var response = objectMapper.readValue(result.getResponse().getContentAsString(), OrderResponseDto.class);
         assertEquals(orderId, response.orderId());
         assertEquals(OrderStatus.PENDING, response.status());
-        verify(orderMessageSender).sendForProcessing(orderId);
+        verify(orderMessageSender, never()).sendForProcessing(any());
     }
 
     @Test
@@ -596,7 +610,7 @@ public class ClientRestApiTest {
 
         final List<OrderDetailDto> orders = List.of(order2, order1);
 
-        Mockito.when(orderService.getOrdersByUser(userId, null, null, null)).thenReturn(orders);
+        Mockito.when(orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
 
@@ -639,7 +653,7 @@ public class ClientRestApiTest {
 
         final List<OrderDetailDto> orders = List.of(order);
 
-        Mockito.when(orderService.getOrdersByUser(userId, OrderStatus.PAID, null, null)).thenReturn(orders);
+        Mockito.when(orderService.getOrdersByUser(userId, OrderStatus.PAID, null, null, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
 
@@ -685,7 +699,7 @@ public class ClientRestApiTest {
 
         final List<OrderDetailDto> orders = List.of(order);
 
-        Mockito.when(orderService.getOrdersByUser(userId, null, startDate, endDate)).thenReturn(orders);
+        Mockito.when(orderService.getOrdersByUser(userId, null, startDate, endDate, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
 
@@ -731,7 +745,7 @@ public class ClientRestApiTest {
 
         final List<OrderDetailDto> orders = List.of(order);
 
-        Mockito.when(orderService.getOrdersByUser(userId, OrderStatus.PAID, startDate, endDate)).thenReturn(orders);
+        Mockito.when(orderService.getOrdersByUser(userId, OrderStatus.PAID, startDate, endDate, OrderView.FULL, null, null)).thenReturn(page(orders));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
 
@@ -775,7 +789,7 @@ public class ClientRestApiTest {
         final OffsetDateTime startDate = OffsetDateTime.now();
         final OffsetDateTime endDate = OffsetDateTime.now().minusDays(1); // endDate before startDate
 
-        Mockito.when(orderService.getOrdersByUser(userId, null, startDate, endDate))
+        Mockito.when(orderService.getOrdersByUser(userId, null, startDate, endDate, OrderView.FULL, null, null))
             .thenThrow(new IllegalArgumentException("Start date must be before or equal to end date"));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
@@ -790,11 +804,50 @@ public class ClientRestApiTest {
             .andReturn();
     }
 
+    @Test
+    public void shouldGetOrdersByUserWithOnlyRequestedFields() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        final UUID orderId = UUID.randomUUID();
+        final OrderView view = OrderView.of("orderId,status", null);
+        final OrderDetailDto order = new OrderDetailDto(orderId, null, null, null, null, null, null, null, null, null,
+            OrderStatus.PAID, null, null);
+
+        Mockito.when(orderService.getOrdersByUser(userId, null, null, null, view, null, null)).thenReturn(page(List.of(order)));
+
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        final var result = mockMvc.perform(get("/api/v1/clients/orders")
+            .with(user(userId.toString()).roles("USER"))
+            .with(csrf())
+            .param("fields", "status, orderId")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        final String body = result.getResponse().getContentAsString();
+        assertEquals("[{\"orderId\":\"" + orderId + "\",\"status\":\"PAID\"}]", body);
+    }
+
+    @Test
+    public void shouldReturnBadRequestForUnknownOrderField() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        mockMvc.perform(get("/api/v1/clients/orders")
+            .with(user(userId.toString()).roles("USER"))
+            .with(csrf())
+            .param("fields", "orderId,cardNumber")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+
+        verify(orderService, never()).getOrdersByUser(any(), any(), any(), any(), any(), any(), any());
+    }
+
     @Test
     public void shouldReturnEmptyListWhenNoOrdersFound() throws Exception {
         final UUID userId = UUID.randomUUID();
 
-        Mockito.when(orderService.getOrdersByUser(userId, null, null, null)).thenReturn(List.of());
+        Mockito.when(orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, null)).thenReturn(page(List.of()));
 
         TestJwtUtils.setSecurityContext(userId, UserRole.USER);
 
@@ -968,4 +1021,84 @@ public class ClientRestApiTest {
             .andReturn();
     }
 
+    @Test
+    public void shouldJoinWaitlist() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        final UUID flashSaleItemId = UUID.randomUUID();
+        final CreateOrderDto request = new CreateOrderDto(flashSaleItemId, 2);
+        Mockito.when(waitlistService.join(userId, request)).thenReturn(new WaitlistEntryDto(flashSaleItemId, 2, 3));
+
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        final var result = mockMvc.perform(post("/api/v1/clients/waitlist")
+            .with(user(userId.toString()).roles("USER"))
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(request))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isAccepted())
+            .andReturn();
+
+        final var response = objectMapper.readValue(result.getResponse().getContentAsString(), WaitlistEntryDto.class);
+        assertEquals(3, response.position());
+        assertEquals(2, response.quantity());
+    }
+
+    @Test
+    public void shouldReturnNotFoundWhenNotOnWaitlist() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        final UUID flashSaleItemId = UUID.randomUUID();
+        Mockito.when(waitlistService.getEntry(userId, flashSaleItemId)).thenReturn(Optional.empty());
+
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        mockMvc.perform(get("/api/v1/clients/waitlist/" + flashSaleItemId)
+            .with(user(userId.toString()).roles("USER"))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldLeaveWaitlist() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        final UUID flashSaleItemId = UUID.randomUUID();
+        Mockito.when(waitlistService.leave(userId, flashSaleItemId)).thenReturn(true);
+
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        mockMvc.perform(delete("/api/v1/clients/waitlist/" + flashSaleItemId)
+            .with(user(userId.toString()).roles("USER"))
+            .with(csrf()))
+            .andExpect(status().isNoContent());
+
+        verify(waitlistService).leave(userId, flashSaleItemId);
+    }
+
+    @Test
+    public void shouldEnterLottery() throws Exception {
+        final UUID userId = UUID.randomUUID();
+        final UUID flashSaleItemId = UUID.randomUUID();
+        final OffsetDateTime closesAt = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(10);
+        final CreateOrderDto request = new CreateOrderDto(flashSaleItemId, 1);
+        Mockito.when(lotteryService.enter(userId, request)).thenReturn(new LotteryEntryDto(flashSaleItemId, 1, closesAt));
+
+        TestJwtUtils.setSecurityContext(userId, UserRole.USER);
+
+        final var result = mockMvc.perform(post("/api/v1/clients/lottery")
+            .with(user(userId.toString()).roles("USER"))
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(request))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isAccepted())
+            .andReturn();
+
+        final var response = objectMapper.readValue(result.getResponse().getContentAsString(), LotteryEntryDto.class);
+        assertEquals(flashSaleItemId, response.flashSaleItemId());
+        assertEquals(closesAt.toInstant(), response.entryWindowClosesAt().toInstant());
+    }
+
+    private static OrderPage page(final List<OrderDetailDto> orders) {
+        return new OrderPage(orders, null, orders.size(), false);
+    }
 }
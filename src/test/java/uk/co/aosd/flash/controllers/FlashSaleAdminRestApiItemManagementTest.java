@@ -42,6 +42,7 @@ import uk.co.aosd.flash.exc.InsufficientResourcesException;
 import uk.co.aosd.flash.exc.ProductNotFoundException;
 import uk.co.aosd.flash.services.FlashSalesService;
 import uk.co.aosd.flash.services.JwtTokenProvider;
+import uk.co.aosd.flash.services.LotteryService;
 
 /**
  * Flash Sale Admin REST API test for item management endpoints.
@@ -63,6 +64,9 @@ public class FlashSaleAdminRestApiItemManagementTest {
     @MockitoBean
     private FlashSalesService salesService;
 
+    @MockitoBean
+    private LotteryService lotteryService;
+
     @BeforeAll
     public static void beforeAll() {
         objectMapper = new ObjectMapper();
@@ -71,7 +75,7 @@ public class FlashSaleAdminRestApiItemManagementTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(salesService);
+        Mockito.reset(salesService, lotteryService);
     }
 
     // POST /api/v1/admin/flash_sale/{id}/items tests
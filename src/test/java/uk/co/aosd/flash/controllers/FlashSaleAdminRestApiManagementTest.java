@@ -1,5 +1,8 @@
 package uk.co.aosd.flash.controllers;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
@@ -31,6 +34,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import uk.co.aosd.flash.config.TestSecurityConfig;
 import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.EnableLotteryDto;
 import uk.co.aosd.flash.dto.FlashSaleItemDto;
 import uk.co.aosd.flash.dto.FlashSaleResponseDto;
 import uk.co.aosd.flash.dto.UpdateFlashSaleDto;
@@ -41,6 +45,7 @@ import uk.co.aosd.flash.exc.InvalidSaleTimesException;
 import uk.co.aosd.flash.exc.SaleDurationTooShortException;
 import uk.co.aosd.flash.services.FlashSalesService;
 import uk.co.aosd.flash.services.JwtTokenProvider;
+import uk.co.aosd.flash.services.LotteryService;
 
 /**
  * Flash Sale Admin REST API test for management endpoints.
@@ -62,6 +67,9 @@ public class FlashSaleAdminRestApiManagementTest {
     @MockitoBean
     private FlashSalesService salesService;
 
+    @MockitoBean
+    private LotteryService lotteryService;
+
     @BeforeAll
     public static void beforeAll() {
         objectMapper = new ObjectMapper();
@@ -70,7 +78,7 @@ public class FlashSaleAdminRestApiManagementTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(salesService);
+        Mockito.reset(salesService, lotteryService);
     }
 
     // GET /api/v1/admin/flash_sale tests
@@ -424,6 +432,35 @@ public class FlashSaleAdminRestApiManagementTest {
         verify(salesService, times(1)).deleteFlashSale(saleUuid);
     }
 
+    @Test
+    public void shouldAllocateSaleByLottery() throws Exception {
+        final String saleId = "e00813e5-c928-4477-ba27-dacb62781d5c";
+        final UUID saleUuid = UUID.fromString(saleId);
+        final OffsetDateTime closesAt = OffsetDateTime.of(2026, 1, 15, 10, 30, 0, 0, ZoneOffset.UTC);
+
+        mockMvc.perform(put("/api/v1/admin/flash_sale/" + saleId + "/lottery")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new EnableLotteryDto(closesAt))))
+            .andExpect(status().isNoContent());
+
+        verify(lotteryService, times(1)).enableLottery(eq(saleUuid), argThat(closesAt::isEqual));
+    }
+
+    @Test
+    public void shouldReturn400WhenLotterySaleIsNotDraft() throws Exception {
+        final String saleId = "e00813e5-c928-4477-ba27-dacb62781d5c";
+        final UUID saleUuid = UUID.fromString(saleId);
+        final OffsetDateTime closesAt = OffsetDateTime.of(2026, 1, 15, 10, 30, 0, 0, ZoneOffset.UTC);
+
+        doThrow(new IllegalArgumentException("Only DRAFT sales can be allocated by lottery"))
+            .when(lotteryService).enableLottery(eq(saleUuid), any());
+
+        mockMvc.perform(put("/api/v1/admin/flash_sale/" + saleId + "/lottery")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new EnableLotteryDto(closesAt))))
+            .andExpect(status().isBadRequest());
+    }
+
     // Helper methods
 
     private FlashSaleResponseDto createTestResponseDto(final UUID id, final String title, final SaleStatus status) {
@@ -27,6 +27,7 @@ import uk.co.aosd.flash.errorhandling.GlobalExceptionHandler;
 import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
 import uk.co.aosd.flash.services.FlashSalesService;
 import uk.co.aosd.flash.services.JwtTokenProvider;
+import uk.co.aosd.flash.services.LotteryService;
 
 /**
  * Flash Sale REST API test for cancelling a Flash Sale.
@@ -46,6 +47,9 @@ public class FlashSaleRestApiCancelSaleTest {
     @MockitoBean
     private FlashSalesService salesService;
 
+    @MockitoBean
+    private LotteryService lotteryService;
+
     @BeforeAll
     public static void beforeAll() {
         // No setup needed
@@ -53,7 +57,7 @@ public class FlashSaleRestApiCancelSaleTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(salesService);
+        Mockito.reset(salesService, lotteryService);
     }
 
     @Test
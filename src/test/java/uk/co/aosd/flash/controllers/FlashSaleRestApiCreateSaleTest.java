@@ -40,6 +40,7 @@ import uk.co.aosd.flash.exc.InvalidSaleTimesException;
 import uk.co.aosd.flash.exc.SaleDurationTooShortException;
 import uk.co.aosd.flash.services.FlashSalesService;
 import uk.co.aosd.flash.services.JwtTokenProvider;
+import uk.co.aosd.flash.services.LotteryService;
 
 /**
  * Flash Sale REST API test for creating a new Flash Sale.
@@ -61,6 +62,9 @@ public class FlashSaleRestApiCreateSaleTest {
     @MockitoBean
     private FlashSalesService salesService;
 
+    @MockitoBean
+    private LotteryService lotteryService;
+
     @BeforeAll
     public static void beforeAll() {
         objectMapper = new ObjectMapper();
@@ -69,7 +73,7 @@ public class FlashSaleRestApiCreateSaleTest {
 
     @BeforeEach
     public void beforeEach() {
-        Mockito.reset(salesService);
+        Mockito.reset(salesService, lotteryService);
     }
 
     @Test
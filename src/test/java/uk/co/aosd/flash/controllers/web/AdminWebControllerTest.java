@@ -39,6 +39,8 @@ import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.FlashSaleResponseDto;
 import uk.co.aosd.flash.dto.FlashSaleItemDto;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProductDto;
 import uk.co.aosd.flash.exc.FlashSaleItemNotFoundException;
 import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
@@ -439,8 +441,8 @@ class AdminWebControllerTest {
 
     @Test
     void listOrders_returnsOrdersList() throws Exception {
-        when(orderService.getAllOrders(eq(null), eq(null), eq(null), eq(null)))
-            .thenReturn(Collections.emptyList());
+        when(orderService.getAllOrders(eq(null), eq(null), eq(null), eq(null), eq(OrderView.FULL), eq(null), eq(null)))
+            .thenReturn(page(Collections.emptyList()));
 
         mockMvc.perform(get("/admin/orders").with(user("admin").roles("ADMIN_USER")))
             .andExpect(status().isOk())
@@ -523,4 +525,8 @@ class AdminWebControllerTest {
             .andExpect(status().isOk())
             .andExpect(view().name("admin/analytics/dashboard"));
     }
+
+    private static OrderPage page(final List<OrderDetailDto> orders) {
+        return new OrderPage(orders, null, orders.size(), false);
+    }
 }
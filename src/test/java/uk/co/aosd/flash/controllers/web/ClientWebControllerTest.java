@@ -36,7 +36,6 @@ import uk.co.aosd.flash.dto.CreateOrderDto;
 import uk.co.aosd.flash.dto.OrderResponseDto;
 import uk.co.aosd.flash.security.CustomUserDetailsService;
 import uk.co.aosd.flash.services.ActiveSalesService;
-import uk.co.aosd.flash.services.OrderMessageSender;
 import uk.co.aosd.flash.services.OrderService;
 import uk.co.aosd.flash.services.ProductsService;
 
@@ -57,9 +56,6 @@ class ClientWebControllerTest {
     @MockitoBean
     private OrderService orderService;
 
-    @MockitoBean
-    private OrderMessageSender orderMessageSender;
-
     @MockitoBean
     private CustomUserDetailsService userDetailsService;
 
@@ -122,7 +118,7 @@ class ClientWebControllerTest {
             .andExpect(redirectedUrl("/orders"))
             .andExpect(flash().attribute("success", org.hamcrest.Matchers.containsString("Order created successfully")));
 
-        verify(orderMessageSender).sendForProcessing(orderId);
+        verify(orderService).createOrder(any(CreateOrderDto.class), eq(userId));
     }
 
     @Test
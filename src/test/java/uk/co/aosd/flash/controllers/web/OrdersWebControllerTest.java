@@ -32,6 +32,8 @@ import org.springframework.test.web.servlet.MockMvc;
 import uk.co.aosd.flash.config.TestSecurityConfig;
 import uk.co.aosd.flash.domain.OrderStatus;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.security.CustomUserDetailsService;
 import uk.co.aosd.flash.services.OrderService;
 
@@ -53,8 +55,8 @@ class OrdersWebControllerTest {
     void listOrders_returnsOrdersList() throws Exception {
         final var userId = UUID.randomUUID();
         when(userDetailsService.getUserIdByUsername("user")).thenReturn(userId);
-        when(orderService.getOrdersByUser(eq(userId), eq(null), eq(null), eq(null)))
-            .thenReturn(Collections.emptyList());
+        when(orderService.getOrdersByUser(eq(userId), eq(null), eq(null), eq(null), eq(OrderView.FULL), eq(null), eq(null)))
+            .thenReturn(page(Collections.emptyList()));
 
         mockMvc.perform(get("/orders").with(user("user").roles("USER")))
             .andExpect(status().isOk())
@@ -148,4 +150,8 @@ class OrdersWebControllerTest {
             .andExpect(redirectedUrl("/orders/" + orderId))
             .andExpect(flash().attributeExists("error"));
     }
+
+    private static OrderPage page(final List<OrderDetailDto> orders) {
+        return new OrderPage(orders, null, orders.size(), false);
+    }
 }
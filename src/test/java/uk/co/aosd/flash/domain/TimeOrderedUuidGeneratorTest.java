@@ -0,0 +1,39 @@
+package uk.co.aosd.flash.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for TimeOrderedUuidGenerator.
+ */
+public class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    public void shouldGenerateVersion7UuidsHoldingTheCurrentTime() {
+        final long before = System.currentTimeMillis();
+        final UUID id = TimeOrderedUuidGenerator.next();
+        final long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        final long millis = id.getMostSignificantBits() >>> 16;
+        // A burst of earlier IDs may have borrowed a few milliseconds from the future
+        assertTrue(millis >= before && millis <= after + 10, "timestamp " + millis);
+    }
+
+    @Test
+    public void shouldGenerateStrictlyIncreasingIdsWithinAMillisecond() {
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 10_000; i++) {
+            final UUID next = TimeOrderedUuidGenerator.next();
+            // Compare as unsigned, the way Postgres orders UUIDs
+            assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()) > 0,
+                previous + " then " + next);
+            previous = next;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.OrderCursor;
+
+/**
+ * Checks that the filtered order and flash sale queries leave unset filters out of their SQL and
+ * that the generic plan of each combination of filters reads orders through an index. Generic
+ * plans are the ones Postgres falls back to for a prepared statement, so they cannot rely on the
+ * parameter values.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "uk.co.aosd.flash.repository.RecordingStatementInspector")
+public class FilterQueryPlanTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final OffsetDateTime now = OffsetDateTime.now();
+
+    /**
+     * Enough rows for the planner to prefer an index wherever one fits: 1,000 buyers with 50
+     * orders each, and 5,000 sales.
+     */
+    @BeforeEach
+    public void seed() {
+        jdbcTemplate.update("INSERT INTO products (name, description, base_price, total_physical_stock) "
+            + "SELECT 'Plan product ' || n, 'Description', 10, 1000000 FROM generate_series(1, 50) n");
+        jdbcTemplate.update("INSERT INTO flash_sales (title, start_time, end_time, status) "
+            + "SELECT 'Plan sale ' || n, now() + make_interval(hours => n), now() + make_interval(hours => n, mins => 30), "
+            + "(ARRAY['DRAFT', 'ACTIVE', 'COMPLETED', 'CANCELLED'])[1 + n % 4]::sale_status "
+            + "FROM generate_series(1, 5000) n");
+        jdbcTemplate.update("INSERT INTO flash_sale_items (flash_sale_id, product_id, allocated_stock, sold_count, sale_price) "
+            + "SELECT (SELECT id FROM flash_sales WHERE title = 'Plan sale 1'), p.id, 1000000, 0, 5 "
+            + "FROM products p WHERE p.name LIKE 'Plan product %'");
+        jdbcTemplate.update("WITH buyers AS MATERIALIZED (SELECT gen_random_uuid() AS id FROM generate_series(1, 1000)), "
+            + "numbered AS (SELECT b.id AS user_id, fsi.id AS item_id, fsi.product_id, fsi.sale_price, "
+            + "(row_number() OVER ())::int AS n FROM buyers b CROSS JOIN flash_sale_items fsi) "
+            + "INSERT INTO orders (user_id, flash_sale_item_id, product_id, sold_price, sold_quantity, status, created_at) "
+            + "SELECT user_id, item_id, product_id, sale_price, 1, "
+            + "(ARRAY['PENDING', 'PAID', 'FAILED', 'REFUNDED', 'DISPATCHED', 'CANCELLED'])[1 + n % 6]::order_status, "
+            + "now() - make_interval(mins => n) FROM numbered");
+        jdbcTemplate.execute("ANALYZE orders");
+        jdbcTemplate.execute("ANALYZE flash_sales");
+    }
+
+    @Test
+    public void shouldReadEveryOrderPageThroughAnIndex() {
+        final UUID userId = anyBuyer();
+        RecordingStatementInspector.clear();
+        orderRepository.findPageWithFilters(null, null, null, null,
+            OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(21));
+        // The keyset position, and the page size unless Hibernate writes it inline
+        final int unfiltered = parameterCount(RecordingStatementInspector.last());
+        for (final OrderStatus status : Arrays.asList(null, OrderStatus.PAID)) {
+            for (final boolean dated : List.of(false, true)) {
+                for (final UUID user : Arrays.asList(null, userId)) {
+                    final OffsetDateTime startDate = dated ? now.minusDays(1) : null;
+                    final OffsetDateTime endDate = dated ? now : null;
+                    RecordingStatementInspector.clear();
+                    orderRepository.findPageWithFilters(status, startDate, endDate, user,
+                        OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(21));
+
+                    // One more parameter for each filter that is set, and none for those that are not
+                    assertReadsOrdersByIndex(unfiltered + filterCount(status, startDate, endDate, user));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadSlimOrderPagesThroughAnIndex() {
+        RecordingStatementInspector.clear();
+        orderRepository.findSummaryPageWithFilters(null, null, null, null,
+            OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(21));
+        final int unfiltered = parameterCount(RecordingStatementInspector.last());
+
+        RecordingStatementInspector.clear();
+        orderRepository.findSummaryPageWithFilters(OrderStatus.PAID, null, null, null,
+            OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(21));
+
+        assertReadsOrdersByIndex(unfiltered + 1);
+    }
+
+    @Test
+    public void shouldCountSelectiveFiltersThroughAnIndex() {
+        final UUID userId = anyBuyer();
+        // Counting a whole status, or every order, reads most of the table whichever way it is
+        // done; the cap bounds those instead
+        for (final OrderStatus status : Arrays.asList(null, OrderStatus.PAID)) {
+            for (final boolean dated : List.of(false, true)) {
+                for (final UUID user : Arrays.asList(null, userId)) {
+                    if (!dated && user == null) {
+                        continue;
+                    }
+                    final OffsetDateTime startDate = dated ? now.minusDays(1) : null;
+                    final OffsetDateTime endDate = dated ? now : null;
+                    RecordingStatementInspector.clear();
+                    orderRepository.countWithFilters(status, startDate, endDate, user, 10000);
+
+                    assertReadsOrdersByIndex(1 + filterCount(status, startDate, endDate, user));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldLeaveUnsetFlashSaleFiltersOutOfTheQuery() {
+        RecordingStatementInspector.clear();
+        flashSaleRepository.findAllWithFilters(null, null, null);
+        assertEquals(0, parameterCount(RecordingStatementInspector.last()));
+
+        RecordingStatementInspector.clear();
+        flashSaleRepository.findAllWithFilters(SaleStatus.ACTIVE, null, null);
+        assertEquals(1, parameterCount(RecordingStatementInspector.last()));
+
+        RecordingStatementInspector.clear();
+        flashSaleRepository.findAllWithFilters(SaleStatus.ACTIVE, now, now.plusDays(1));
+        final String sql = RecordingStatementInspector.last();
+        assertEquals(3, parameterCount(sql));
+        final String plan = genericPlan(sql);
+        assertFalse(plan.contains("Seq Scan on flash_sales"), plan);
+
+        RecordingStatementInspector.clear();
+        flashSaleRepository.findFlashSaleIdsWithFiltersAndSearch(null, null, now.plusDays(1), "plan");
+        assertEquals(2, parameterCount(RecordingStatementInspector.last()));
+    }
+
+    private void assertReadsOrdersByIndex(final int expectedParameters) {
+        final String sql = RecordingStatementInspector.last();
+        assertFalse(sql.toLowerCase().contains("coalesce"), sql);
+        assertEquals(expectedParameters, parameterCount(sql), sql);
+        final String plan = genericPlan(sql);
+        assertFalse(plan.contains("Seq Scan on orders"), plan);
+        assertTrue(plan.contains("Index"), plan);
+    }
+
+    private String genericPlan(final String sql) {
+        final StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (final char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + numbered, String.class));
+    }
+
+    private static int parameterCount(final String sql) {
+        return (int) sql.chars().filter(c -> c == '?').count();
+    }
+
+    private static int filterCount(final Object... filters) {
+        return (int) Arrays.stream(filters).filter(Objects::nonNull).count();
+    }
+
+    private UUID anyBuyer() {
+        return jdbcTemplate.queryForObject("SELECT user_id FROM orders LIMIT 1", UUID.class);
+    }
+}
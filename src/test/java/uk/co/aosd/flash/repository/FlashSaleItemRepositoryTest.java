@@ -11,6 +11,7 @@ import java.time.ZoneOffset;
 import java.util.List;
 import java.util.UUID;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
@@ -45,6 +46,9 @@ public class FlashSaleItemRepositoryTest {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @Test
     public void shouldIncrementSoldCount() {
         UUID saleItemUuid = null;
@@ -171,4 +175,51 @@ public class FlashSaleItemRepositoryTest {
         }
     }
 
+    @Test
+    public void shouldBatchInsertItemsAndAssignIds() {
+        final var startTime = OffsetDateTime.of(2026, 01, 01, 12, 0, 0, 0, ZoneOffset.UTC);
+        final var savedFlashSale = sales.save(new FlashSale(null, "Bulk Sale", startTime, startTime.plusHours(1), SaleStatus.DRAFT, List.of()));
+        final var product1 = products.save(new Product(null, "Product 1", "Product 1 description", 100, BigDecimal.valueOf(10.00), 0));
+        final var product2 = products.save(new Product(null, "Product 2", "Product 2 description", 100, BigDecimal.valueOf(20.00), 0));
+
+        final var newItems = List.of(
+            new FlashSaleItem(null, savedFlashSale, product1, 5, 0, BigDecimal.valueOf(8.00)),
+            new FlashSaleItem(null, savedFlashSale, product2, 7, 0, BigDecimal.valueOf(15.00)));
+        items.insertAll(newItems);
+
+        assertTrue(newItems.stream().allMatch(item -> item.getId() != null));
+        final var reloaded = sales.findByIdWithItems(savedFlashSale.getId()).orElseThrow();
+        assertEquals(2, reloaded.getItems().size());
+        final var item1 = items.findById(newItems.get(0).getId()).orElseThrow();
+        assertEquals(5, item1.getAllocatedStock());
+        assertEquals(0, BigDecimal.valueOf(8.00).compareTo(item1.getSalePrice()));
+    }
+
+    @Test
+    public void shouldReleaseUnsoldStockPerProductForManySales() {
+        final var startTime = OffsetDateTime.of(2026, 01, 01, 12, 0, 0, 0, ZoneOffset.UTC);
+        final var sale1 = sales.save(new FlashSale(null, "Release Sale 1", startTime, startTime.plusHours(1), SaleStatus.ACTIVE, List.of()));
+        final var sale2 = sales.save(new FlashSale(null, "Release Sale 2", startTime, startTime.plusHours(1), SaleStatus.ACTIVE, List.of()));
+        final var untouched = sales.save(new FlashSale(null, "Other Sale", startTime, startTime.plusHours(1), SaleStatus.ACTIVE, List.of()));
+        final var shared = products.save(new Product(null, "Shared", "In both sales", 100, BigDecimal.valueOf(10.00), 60));
+        final var soldOut = products.save(new Product(null, "Sold out", "All sold", 100, BigDecimal.valueOf(10.00), 20));
+
+        // Shared product: 20 - 5 and 30 - 10 unsold in the two sales, 10 allocated in a sale that is not released
+        final var item1 = items.save(new FlashSaleItem(null, sale1, shared, 20, 5, BigDecimal.valueOf(8.00)));
+        final var item2 = items.save(new FlashSaleItem(null, sale2, shared, 30, 10, BigDecimal.valueOf(8.00)));
+        final var item3 = items.save(new FlashSaleItem(null, untouched, shared, 10, 0, BigDecimal.valueOf(8.00)));
+        final var item4 = items.save(new FlashSaleItem(null, sale1, soldOut, 20, 20, BigDecimal.valueOf(8.00)));
+        entityManager.flush();
+        entityManager.clear();
+
+        final int updatedProducts = items.releaseUnsoldStock(List.of(sale1.getId(), sale2.getId()));
+
+        assertEquals(1, updatedProducts);
+        assertEquals(5, items.findById(item1.getId()).orElseThrow().getAllocatedStock());
+        assertEquals(10, items.findById(item2.getId()).orElseThrow().getAllocatedStock());
+        assertEquals(10, items.findById(item3.getId()).orElseThrow().getAllocatedStock());
+        assertEquals(20, items.findById(item4.getId()).orElseThrow().getAllocatedStock());
+        assertEquals(25, products.findById(shared.getId()).orElseThrow().getReservedCount()); // 60 - 15 - 20
+        assertEquals(20, products.findById(soldOut.getId()).orElseThrow().getReservedCount());
+    }
 }
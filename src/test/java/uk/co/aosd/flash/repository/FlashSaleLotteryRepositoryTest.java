@@ -0,0 +1,180 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Test the Flash Sale Lottery Repository.
+ */
+@DataJpaTest
+public class FlashSaleLotteryRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private FlashSaleLotteryRepository lotteries;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void shouldDrawWinnersWithinRemainingStockInOneGo() {
+        final FlashSaleItem item = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.ACTIVE);
+        final UUID alreadyOrdered = UUID.randomUUID();
+        orderRepository.save(order(item, alreadyOrdered));
+        lotteries.enter(item.getId(), alreadyOrdered, 1);
+        for (int i = 0; i < 8; i++) {
+            lotteries.enter(item.getId(), UUID.randomUUID(), 1);
+        }
+        assertEquals(9, lotteries.countEntries(item.getId()));
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        final List<Object[]> winners = lotteries.drawWinners(item.getFlashSale().getId(), now, now.plusMinutes(15));
+        entityManager.clear();
+
+        // 5 allocated, 1 already sold: 4 winners, never the buyer who already has an order
+        assertEquals(4, winners.size());
+        final Set<UUID> winningUsers = winners.stream().map(winner -> (UUID) winner[1]).collect(Collectors.toSet());
+        assertEquals(4, winningUsers.size());
+        assertFalse(winningUsers.contains(alreadyOrdered));
+        assertEquals(5, flashSaleItemRepository.findById(item.getId()).orElseThrow().getSoldCount());
+
+        assertTrue(winners.stream().allMatch(winner -> Boolean.TRUE.equals(winner[2])));
+
+        final Order won = orderRepository.findById((UUID) winners.get(0)[0]).orElseThrow();
+        assertEquals(OrderStatus.PENDING, won.getStatus());
+        assertEquals(1, won.getSoldQuantity());
+        assertNotNull(won.getExpiresAt());
+        assertNotNull(lotteries.findById(item.getFlashSale().getId()).orElseThrow().getDrawnAt());
+
+        // Drawing again does nothing
+        assertTrue(lotteries.drawWinners(item.getFlashSale().getId(), now, now.plusMinutes(15)).isEmpty());
+    }
+
+    @Test
+    public void shouldSkipEntriesThatDoNotFitAndKeepDrawing() {
+        final FlashSaleItem item = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.ACTIVE);
+        lotteries.enter(item.getId(), UUID.randomUUID(), 3);
+        for (int i = 0; i < 4; i++) {
+            lotteries.enter(item.getId(), UUID.randomUUID(), 1);
+        }
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        final List<Object[]> winners = lotteries.drawWinners(item.getFlashSale().getId(), now, now.plusMinutes(15));
+        entityManager.clear();
+
+        // Whatever the shuffle, an entry that no longer fits is passed over and all 4 remaining units are won
+        final int won = winners.stream()
+            .mapToInt(winner -> orderRepository.findById((UUID) winner[0]).orElseThrow().getSoldQuantity())
+            .sum();
+        assertEquals(4, won);
+        assertEquals(5, flashSaleItemRepository.findById(item.getId()).orElseThrow().getSoldCount());
+    }
+
+    @Test
+    public void shouldNotDrawBeforeEntryWindowCloses() {
+        final FlashSaleItem item = createLotteryItem(OffsetDateTime.now().plusMinutes(5), SaleStatus.ACTIVE);
+        lotteries.enter(item.getId(), UUID.randomUUID(), 1);
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        assertTrue(lotteries.drawWinners(item.getFlashSale().getId(), now, now.plusMinutes(15)).isEmpty());
+        assertEquals(1, lotteries.countEntries(item.getId()));
+    }
+
+    @Test
+    public void shouldLeaveLotteryUndrawnWhileSaleIsNotActive() {
+        final FlashSaleItem item = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.DRAFT);
+        lotteries.enter(item.getId(), UUID.randomUUID(), 1);
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        assertTrue(lotteries.drawWinners(item.getFlashSale().getId(), now, now.plusMinutes(15)).isEmpty());
+        entityManager.clear();
+
+        assertNull(lotteries.findById(item.getFlashSale().getId()).orElseThrow().getDrawnAt());
+    }
+
+    @Test
+    public void shouldFindOnlyActiveUndrawnLotteriesWhoseWindowHasClosed() {
+        final FlashSaleItem due = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.ACTIVE);
+        final FlashSaleItem open = createLotteryItem(OffsetDateTime.now().plusMinutes(5), SaleStatus.ACTIVE);
+        final FlashSaleItem draft = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.DRAFT);
+        final FlashSaleItem drawn = createLotteryItem(OffsetDateTime.now().minusMinutes(1), SaleStatus.ACTIVE);
+        final OffsetDateTime now = OffsetDateTime.now();
+        lotteries.drawWinners(drawn.getFlashSale().getId(), now, now.plusMinutes(15));
+
+        final List<UUID> found = lotteries.findSaleIdsDueToDraw(OffsetDateTime.now());
+
+        assertTrue(found.contains(due.getFlashSale().getId()));
+        assertFalse(found.contains(open.getFlashSale().getId()));
+        assertFalse(found.contains(draft.getFlashSale().getId()));
+        assertFalse(found.contains(drawn.getFlashSale().getId()));
+    }
+
+    @Test
+    public void shouldNotSellLotteryItemsFirstComeFirstServed() {
+        final FlashSaleItem item = createLotteryItem(OffsetDateTime.now().plusMinutes(5), SaleStatus.ACTIVE);
+
+        assertEquals(0, flashSaleItemRepository.incrementSoldCount(item.getId(), 1));
+    }
+
+    private FlashSaleItem createLotteryItem(final OffsetDateTime entryWindowClosesAt, final SaleStatus status) {
+        final Product product = productRepository.save(new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 5));
+        final FlashSale sale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            status, List.of()));
+        lotteries.save(new FlashSaleLottery(sale.getId(), entryWindowClosesAt, null));
+        return flashSaleItemRepository.save(new FlashSaleItem(null, sale, product, 5, 1, BigDecimal.valueOf(79.99)));
+    }
+
+    private Order order(final FlashSaleItem item, final UUID userId) {
+        final Order order = new Order();
+        order.setUserId(userId);
+        order.setFlashSaleItem(item);
+        order.setProduct(item.getProduct());
+        order.setSoldPrice(item.getSalePrice());
+        order.setSoldQuantity(1);
+        order.setStatus(OrderStatus.PENDING);
+        order.setCreatedAt(OffsetDateTime.now());
+        return order;
+    }
+}
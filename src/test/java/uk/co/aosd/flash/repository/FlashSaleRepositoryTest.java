@@ -1,6 +1,7 @@
 package uk.co.aosd.flash.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
@@ -134,6 +135,19 @@ public class FlashSaleRepositoryTest {
         assertEquals("Draft Sale Ready 3", readySales.get(2).getTitle());
     }
 
+    @Test
+    public void shouldFindIdsOfDraftSalesReadyToActivate() {
+        final var currentTime = OffsetDateTime.now().withSecond(0).withNano(0);
+
+        final var ready1 = sales.save(new FlashSale(null, "Draft Ids Ready 1", currentTime.minusHours(1), currentTime.plusHours(1), SaleStatus.DRAFT, List.of()));
+        final var ready2 = sales.save(new FlashSale(null, "Draft Ids Ready 2", currentTime, currentTime.plusHours(1), SaleStatus.DRAFT, List.of()));
+        sales.save(new FlashSale(null, "Draft Ids Future", currentTime.plusHours(1), currentTime.plusHours(2), SaleStatus.DRAFT, List.of()));
+        sales.save(new FlashSale(null, "Draft Ids Active", currentTime.minusHours(2), currentTime.plusHours(1), SaleStatus.ACTIVE, List.of()));
+
+        final var ids = sales.findSaleIdsReadyToActivate(SaleStatus.DRAFT, currentTime);
+        assertEquals(List.of(ready1.getId(), ready2.getId()), ids);
+    }
+
     @Test
     public void shouldFindActiveSalesReadyToComplete() {
         final var now = OffsetDateTime.now();
@@ -165,4 +179,18 @@ public class FlashSaleRepositoryTest {
         assertEquals("Active Sale Ready 3", readySales.get(2).getTitle());
     }
 
+    @Test
+    public void shouldTransitionOnlySalesInExpectedStatus() {
+        final var startTime = OffsetDateTime.of(2026, 01, 01, 12, 0, 0, 0, ZoneOffset.UTC);
+        final var active = sales.save(new FlashSale(null, "Transition Active", startTime, startTime.plusHours(1), SaleStatus.ACTIVE, List.of()));
+        final var draft = sales.save(new FlashSale(null, "Transition Draft", startTime, startTime.plusHours(1), SaleStatus.DRAFT, List.of()));
+        sales.flush();
+
+        final var transitioned = sales.transitionStatus(List.of(active.getId(), draft.getId()),
+            SaleStatus.ACTIVE.name(), SaleStatus.COMPLETED.name());
+
+        assertEquals(List.of(active.getId()), transitioned);
+        final var ids = sales.findSaleIdsReadyToComplete(SaleStatus.ACTIVE, startTime.plusHours(2));
+        assertTrue(!ids.contains(active.getId()));
+    }
 }
@@ -0,0 +1,66 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.OrderJob;
+import uk.co.aosd.flash.domain.OrderStage;
+
+/**
+ * Test the Order Job Repository.
+ */
+@DataJpaTest
+public class OrderJobRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private OrderJobRepository orderJobs;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void shouldClaimVisibleJobsForStageAndHideThem() {
+        final OffsetDateTime now = OffsetDateTime.now().minusMinutes(1);
+        for (int i = 0; i < 3; i++) {
+            orderJobs.save(new OrderJob(null, UUID.randomUUID(), OrderStage.PROCESSING, now, 0, null, now));
+        }
+        orderJobs.save(new OrderJob(null, UUID.randomUUID(), OrderStage.DISPATCH, now, 0, null, now));
+        entityManager.flush();
+        entityManager.clear();
+
+        final var first = orderJobs.claimBatch(OrderStage.PROCESSING.name(), 2, 60, 5, "worker-a");
+        assertEquals(2, first.size());
+        assertTrue(first.stream().allMatch(job -> job.getStage() == OrderStage.PROCESSING));
+        assertTrue(first.stream().allMatch(job -> job.getAttempts() == 1 && "worker-a".equals(job.getClaimedBy())));
+
+        final var second = orderJobs.claimBatch(OrderStage.PROCESSING.name(), 2, 60, 5, "worker-b");
+        assertEquals(1, second.size());
+
+        final var third = orderJobs.claimBatch(OrderStage.PROCESSING.name(), 2, 60, 5, "worker-b");
+        assertEquals(0, third.size());
+    }
+
+    @Test
+    public void shouldNotClaimJobsThatReachedMaxAttempts() {
+        final OffsetDateTime now = OffsetDateTime.now().minusMinutes(1);
+        orderJobs.save(new OrderJob(null, UUID.randomUUID(), OrderStage.REFUND, now, 5, null, now));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(0, orderJobs.claimBatch(OrderStage.REFUND.name(), 10, 60, 5, "worker-a").size());
+    }
+}
@@ -0,0 +1,199 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.OrderStatusHistory;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Test the monthly partitions of orders and their status history.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "uk.co.aosd.flash.repository.RecordingStatementInspector")
+public class OrderPartitionTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final OffsetDateTime thisMonth = OffsetDateTime.now(ZoneOffset.UTC).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+
+    @Test
+    public void shouldStoreOrdersInTheirMonthsPartitionAndReleaseTheirClaimsWhenDeleted() {
+        // The migration creates this month and the next three; both tables get the three before
+        assertEquals(6, orderRepository.createMonthlyPartitions(thisMonth.minusMonths(3), thisMonth.plusMonths(3)));
+        final FlashSaleItem item = saleItem();
+        final Order old = orderRepository.save(order(item, UUID.randomUUID(), thisMonth.minusMonths(2).plusDays(3)));
+        final Order recent = orderRepository.save(order(item, UUID.randomUUID(), thisMonth.plusHours(1)));
+        orderStatusHistoryRepository.save(history(old, thisMonth.minusMonths(2).plusDays(4)));
+        entityManager.flush();
+
+        assertEquals(partition("orders", thisMonth.minusMonths(2)), partitionOf("orders", "id", old.getId()));
+        assertEquals(partition("orders", thisMonth), partitionOf("orders", "id", recent.getId()));
+        assertEquals(partition("order_status_history", thisMonth.minusMonths(2)),
+            partitionOf("order_status_history", "order_id", old.getId()));
+        assertEquals(1, claims(old));
+
+        orderRepository.delete(old);
+        entityManager.flush();
+        assertEquals(0, claims(old));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM order_status_history WHERE order_id = ?", Integer.class, old.getId()));
+        assertEquals(1, claims(recent));
+    }
+
+    @Test
+    public void shouldOnlyReadTheMonthsInADateRange() {
+        orderRepository.createMonthlyPartitions(thisMonth.minusMonths(3), thisMonth);
+        final FlashSaleItem item = saleItem();
+        orderRepository.save(order(item, UUID.randomUUID(), thisMonth.minusMonths(2).plusDays(3)));
+        orderRepository.save(order(item, UUID.randomUUID(), thisMonth.plusHours(1)));
+        entityManager.flush();
+
+        final OffsetDateTime endOfMonth = thisMonth.plusMonths(1).minusSeconds(1);
+        RecordingStatementInspector.clear();
+        assertEquals(1L, orderRepository.countWithFilters(null, thisMonth, endOfMonth, null, 100));
+
+        final String plan = String.join("\n", jdbcTemplate.queryForList(
+            "EXPLAIN (COSTS OFF) " + RecordingStatementInspector.last(), String.class, thisMonth, endOfMonth, 100));
+        assertTrue(plan.contains(partition("orders", thisMonth)), plan);
+        assertFalse(plan.contains(partition("orders", thisMonth.minusMonths(2))), plan);
+        assertFalse(plan.contains("orders_default"), plan);
+    }
+
+    @Test
+    public void shouldMoveRowsOutOfTheDefaultPartitionWhenTheirMonthIsCreated() {
+        final OffsetDateTime later = thisMonth.plusMonths(6);
+        final FlashSaleItem item = saleItem();
+        final Order order = orderRepository.save(order(item, UUID.randomUUID(), later.plusDays(1)));
+        entityManager.flush();
+        assertEquals("orders_default", partitionOf("orders", "id", order.getId()));
+
+        assertEquals(2, orderRepository.createMonthlyPartitions(later, later));
+
+        assertEquals(partition("orders", later), partitionOf("orders", "id", order.getId()));
+        // Moving the row is not deleting the order, so its claim is kept
+        assertEquals(1, claims(order));
+    }
+
+    @Test
+    public void shouldArchiveOldMonthsAndKeepOneOrderPerUserPerItem() {
+        orderRepository.createMonthlyPartitions(thisMonth.minusMonths(3), thisMonth);
+        final FlashSaleItem item = saleItem();
+        final UUID userId = UUID.randomUUID();
+        final Order old = orderRepository.save(order(item, userId, thisMonth.minusMonths(2).plusDays(3)));
+        orderStatusHistoryRepository.save(history(old, thisMonth.minusMonths(2).plusDays(4)));
+        entityManager.flush();
+
+        // Three and two months ago, for orders and their history
+        assertEquals(4, orderRepository.archiveMonthlyPartitions(thisMonth.minusMonths(1)));
+        entityManager.clear();
+
+        assertTrue(orderRepository.findById(old.getId()).isEmpty());
+        final String archived = "archive." + partition("orders", thisMonth.minusMonths(2));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, archived));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM " + archived, Integer.class));
+        // Last month is kept
+        assertEquals(List.of(partition("orders", thisMonth.minusMonths(1))), jdbcTemplate.queryForList(
+            "SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = 'orders'::regclass AND c.relname ~ '^orders_p' AND c.relname < ?",
+            String.class, partition("orders", thisMonth)));
+
+        // The archived order still holds the buyer's claim on the item
+        assertThrows(DataIntegrityViolationException.class,
+            () -> orderRepository.saveAndFlush(order(item, userId, thisMonth.plusHours(1))));
+    }
+
+    private int claims(final Order order) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM order_claims WHERE order_id = ?", Integer.class, order.getId());
+    }
+
+    private String partitionOf(final String table, final String column, final UUID id) {
+        return jdbcTemplate.queryForObject(
+            "SELECT tableoid::regclass::text FROM " + table + " WHERE " + column + " = ?", String.class, id);
+    }
+
+    private static String partition(final String table, final OffsetDateTime month) {
+        return table + "_p" + month.format(MONTH);
+    }
+
+    private FlashSaleItem saleItem() {
+        final Product product = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale sale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        return flashSaleItemRepository.save(new FlashSaleItem(null, sale, product, 10, 0, BigDecimal.valueOf(79.99)));
+    }
+
+    private static Order order(final FlashSaleItem item, final UUID userId, final OffsetDateTime createdAt) {
+        final Order order = new Order();
+        order.setUserId(userId);
+        order.setFlashSaleItem(item);
+        order.setProduct(item.getProduct());
+        order.setSoldPrice(item.getSalePrice());
+        order.setSoldQuantity(1);
+        order.setStatus(OrderStatus.PAID);
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+
+    private static OrderStatusHistory history(final Order order, final OffsetDateTime changedAt) {
+        return OrderStatusHistory.builder()
+            .orderId(order.getId())
+            .fromStatus(OrderStatus.PENDING)
+            .toStatus(OrderStatus.PAID)
+            .changedAt(changedAt)
+            .build();
+    }
+}
@@ -3,27 +3,40 @@ package uk.co.aosd.flash.repository;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Limit;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.postgresql.PostgreSQLContainer;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
 import uk.co.aosd.flash.domain.Order;
 import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.OrderStatusHistory;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.OrderCursor;
 
 /**
  * Test the Order Repository.
@@ -47,6 +60,15 @@ public class OrderRepositoryTest {
     @Autowired
     private FlashSaleItemRepository flashSaleItemRepository;
 
+    @Autowired
+    private FlashSaleLotteryRepository flashSaleLotteryRepository;
+
+    @Autowired
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
     @Test
     public void shouldFindOrderByIdAndUserId() {
         final UUID userId1 = UUID.randomUUID();
@@ -500,4 +522,349 @@ public class OrderRepositoryTest {
         assertNotNull(foundOrder.getFlashSaleItem().getFlashSale());
         assertEquals("Test Sale", foundOrder.getFlashSaleItem().getFlashSale().getTitle());
     }
+
+    @Test
+    public void shouldFindAndExpireOnlyOverduePendingOrders() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        final FlashSaleItem savedFlashSaleItem = flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 50, 0, BigDecimal.valueOf(79.99)));
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        final Order overdue = orderRepository.save(holdingOrder(savedFlashSaleItem, OrderStatus.PENDING, now.minusMinutes(1)));
+        final Order current = orderRepository.save(holdingOrder(savedFlashSaleItem, OrderStatus.PENDING, now.plusMinutes(1)));
+        final Order paid = orderRepository.save(holdingOrder(savedFlashSaleItem, OrderStatus.PAID, now.minusMinutes(1)));
+
+        final List<UUID> found = orderRepository.findExpiredPendingOrderIds(now, 10);
+        assertEquals(List.of(overdue.getId()), found);
+
+        final List<Order> locked = orderRepository.lockExpiredPendingOrders(List.of(overdue.getId(), current.getId(), paid.getId()), now);
+        assertEquals(List.of(overdue.getId()), locked.stream().map(Order::getId).toList());
+        assertEquals(1, orderRepository.updateStatusForIds(List.of(overdue.getId()), OrderStatus.PENDING, OrderStatus.EXPIRED));
+        assertTrue(orderRepository.findExpiredPendingOrderIds(now, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldPlaceOrderInOneStatementAndReportWhyOrdersAreRejected() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        final FlashSaleItem savedFlashSaleItem = flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 10, 7, BigDecimal.valueOf(79.99)));
+        final UUID itemId = savedFlashSaleItem.getId();
+        final UUID userId = UUID.randomUUID();
+        final OffsetDateTime now = OffsetDateTime.now();
+
+        final OrderPlacement placed = orderRepository.placeOrder(itemId, userId, 2, now, now.plusMinutes(2));
+        entityManager.clear();
+
+        assertEquals(OrderPlacement.PLACED, placed.getOutcome());
+        final Order order = orderRepository.findById(placed.getOrderId()).orElseThrow();
+        assertEquals(userId, order.getUserId());
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+        assertEquals(2, order.getSoldQuantity());
+        assertEquals(0, BigDecimal.valueOf(79.99).compareTo(order.getSoldPrice()));
+        assertEquals(savedProduct.getId(), order.getProduct().getId());
+        assertEquals(9, flashSaleItemRepository.findById(itemId).orElseThrow().getSoldCount());
+
+        final OrderPlacement tooMany = orderRepository.placeOrder(itemId, UUID.randomUUID(), 2, now, now.plusMinutes(2));
+        assertEquals(OrderPlacement.INSUFFICIENT_STOCK, tooMany.getOutcome());
+        assertEquals(1, tooMany.getAvailable());
+        assertNull(tooMany.getOrderId());
+
+        assertEquals(OrderPlacement.ITEM_NOT_FOUND,
+            orderRepository.placeOrder(UUID.randomUUID(), UUID.randomUUID(), 1, now, now.plusMinutes(2)).getOutcome());
+        assertEquals(OrderPlacement.SALE_NOT_ACTIVE,
+            orderRepository.placeOrder(itemId, UUID.randomUUID(), 1, now.plusHours(2), now.plusHours(3)).getOutcome());
+
+        flashSaleLotteryRepository.save(new FlashSaleLottery(savedFlashSale.getId(), now.plusMinutes(10), null));
+        assertEquals(OrderPlacement.LOTTERY,
+            orderRepository.placeOrder(itemId, UUID.randomUUID(), 1, now, now.plusMinutes(2)).getOutcome());
+        entityManager.clear();
+        assertEquals(9, flashSaleItemRepository.findById(itemId).orElseThrow().getSoldCount());
+    }
+
+    @Test
+    public void shouldTransitionStatusAdjustingStockAndRecordingHistory() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        final FlashSaleItem item = flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 10, 5, BigDecimal.valueOf(79.99)));
+        final Order order = orderRepository.save(holdingOrder(item, OrderStatus.PAID, null));
+        final UUID adminId = UUID.randomUUID();
+
+        // PAID → REFUNDED releases the sold count
+        final OrderTransition refund = orderRepository.transitionStatus(order.getId(), OrderStatus.PAID, OrderStatus.REFUNDED, null, true);
+        assertEquals(new OrderTransition(OrderTransition.Outcome.OK, OrderStatus.PAID, order.getUserId(), item.getId()), refund);
+        assertEquals(4, flashSaleItemRepository.findById(item.getId()).orElseThrow().getSoldCount());
+
+        // REFUNDED → PAID (any current status allowed) takes it back
+        assertEquals(OrderTransition.Outcome.OK,
+            orderRepository.transitionStatus(order.getId(), null, OrderStatus.PAID, adminId, true).outcome());
+        assertEquals(5, flashSaleItemRepository.findById(item.getId()).orElseThrow().getSoldCount());
+
+        // PAID → DISPATCHED takes the product's physical and reserved stock
+        assertEquals(OrderTransition.Outcome.OK,
+            orderRepository.transitionStatus(order.getId(), OrderStatus.PAID, OrderStatus.DISPATCHED, null, true).outcome());
+        final Product dispatched = productRepository.findById(savedProduct.getId()).orElseThrow();
+        assertEquals(99, dispatched.getTotalPhysicalStock());
+        assertEquals(9, dispatched.getReservedCount());
+        assertEquals(OrderStatus.DISPATCHED, orderRepository.findById(order.getId()).orElseThrow().getStatus());
+
+        final List<OrderStatusHistory> history = orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(order.getId());
+        assertEquals(List.of(OrderStatus.REFUNDED, OrderStatus.PAID, OrderStatus.DISPATCHED),
+            history.stream().map(OrderStatusHistory::getToStatus).toList());
+        assertEquals(OrderStatus.PAID, history.get(0).getFromStatus());
+        assertNull(history.get(0).getChangedByUserId());
+        assertEquals(adminId, history.get(1).getChangedByUserId());
+    }
+
+    @Test
+    public void shouldReportWhyTransitionIsRejectedAndChangeNothing() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        // Nothing sold, so releasing the order's stock cannot succeed
+        final FlashSaleItem item = flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 10, 0, BigDecimal.valueOf(79.99)));
+        final Order order = orderRepository.save(holdingOrder(item, OrderStatus.PENDING, OffsetDateTime.now().plusMinutes(2)));
+        final UUID orderId = order.getId();
+
+        assertEquals(OrderTransition.Outcome.NOT_FOUND,
+            orderRepository.transitionStatus(UUID.randomUUID(), null, OrderStatus.PAID, null, true).outcome());
+        assertEquals(OrderTransition.Outcome.WRONG_STATUS,
+            orderRepository.transitionStatus(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, null, true).outcome());
+        assertEquals(OrderTransition.Outcome.UNCHANGED,
+            orderRepository.transitionStatus(orderId, null, OrderStatus.PENDING, null, true).outcome());
+        assertEquals(OrderTransition.Outcome.INVALID_TRANSITION,
+            orderRepository.transitionStatus(orderId, null, OrderStatus.DISPATCHED, null, true).outcome());
+        assertEquals(OrderTransition.Outcome.STOCK_CONFLICT,
+            orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null, true).outcome());
+        assertEquals(OrderStatus.PENDING, orderRepository.findById(orderId).orElseThrow().getStatus());
+        assertTrue(orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(orderId).isEmpty());
+
+        // Without the stock adjustment only the status changes
+        assertEquals(OrderTransition.Outcome.OK,
+            orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null, false).outcome());
+        assertEquals(OrderStatus.FAILED, orderRepository.findById(orderId).orElseThrow().getStatus());
+        assertEquals(0, flashSaleItemRepository.findById(item.getId()).orElseThrow().getSoldCount());
+    }
+
+    @Test
+    public void shouldFindOrderSummariesWithoutJoins() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        final FlashSaleItem item = flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 10, 0, BigDecimal.valueOf(79.99)));
+        final Order paid = orderRepository.save(holdingOrder(item, OrderStatus.PAID, null));
+        final Order pending = orderRepository.save(holdingOrder(item, OrderStatus.PENDING, null));
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<OrderSummary> summaries = orderRepository.findSummaryPageWithFilters(OrderStatus.PAID, null, null, paid.getUserId(),
+            OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(10));
+
+        assertEquals(1, summaries.size());
+        final OrderSummary summary = summaries.get(0);
+        assertEquals(paid.getId(), summary.getOrderId());
+        assertEquals(paid.getUserId(), summary.getUserId());
+        assertEquals(savedProduct.getId(), summary.getProductId());
+        assertEquals(item.getId(), summary.getFlashSaleItemId());
+        assertEquals(0, BigDecimal.valueOf(79.99).compareTo(summary.getSoldPrice()));
+        assertEquals(1, summary.getSoldQuantity());
+        assertEquals(OrderStatus.PAID, summary.getStatus());
+        assertTrue(orderRepository.findSummaryPageWithFilters(null, null, null, pending.getUserId(),
+            OrderCursor.FIRST.createdAt(), OrderCursor.FIRST.orderId(), Limit.of(10)).stream()
+            .anyMatch(s -> s.getOrderId().equals(pending.getId())));
+    }
+
+    @Test
+    public void shouldPageOrdersByKeysetNewestFirst() {
+        final FlashSaleItem item = saleItem();
+        final UUID userId = UUID.randomUUID();
+        final OffsetDateTime createdAt = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        final Set<UUID> expected = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            final Order order = holdingOrder(item, OrderStatus.PAID, null);
+            order.setUserId(userId);
+            // Pairs of orders share a timestamp so the ID has to break the tie
+            order.setCreatedAt(createdAt.minusMinutes(i / 2));
+            expected.add(orderRepository.save(order).getId());
+        }
+        orderRepository.save(holdingOrder(item, OrderStatus.PAID, null));
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<Order> paged = new ArrayList<>();
+        OrderCursor after = OrderCursor.FIRST;
+        List<Order> page;
+        do {
+            page = orderRepository.findPageWithFilters(null, null, null, userId, after.createdAt(), after.orderId(), Limit.of(2));
+            assertTrue(page.size() <= 2);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                after = new OrderCursor(page.getLast().getCreatedAt(), page.getLast().getId());
+            }
+        } while (!page.isEmpty());
+
+        assertEquals(5, paged.size());
+        assertEquals(expected, paged.stream().map(Order::getId).collect(Collectors.toSet()));
+        for (int i = 1; i < paged.size(); i++) {
+            assertFalse(paged.get(i).getCreatedAt().isAfter(paged.get(i - 1).getCreatedAt()));
+        }
+    }
+
+    @Test
+    public void shouldCountOrdersUpToTheCap() {
+        final FlashSaleItem item = saleItem();
+        final UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            final Order order = holdingOrder(item, i == 0 ? OrderStatus.PENDING : OrderStatus.PAID, null);
+            order.setUserId(userId);
+            orderRepository.save(order);
+        }
+
+        assertEquals(3, orderRepository.countWithFilters(null, null, null, userId, 100));
+        assertEquals(2, orderRepository.countWithFilters(OrderStatus.PAID, null, null, userId, 100));
+        assertEquals(2, orderRepository.countWithFilters(null, null, null, userId, 2));
+        assertEquals(0, orderRepository.countWithFilters(null, OffsetDateTime.now().plusDays(1), null, userId, 100));
+    }
+
+    @Test
+    public void shouldStreamExportRowsNewestFirstWithTheFiltersGiven() {
+        final FlashSaleItem item = saleItem();
+        final OffsetDateTime now = OffsetDateTime.now();
+        final Order older = holdingOrder(item, OrderStatus.PAID, null);
+        older.setSoldQuantity(2);
+        older.setCreatedAt(now.minusDays(2));
+        orderRepository.save(older);
+        final Order newer = orderRepository.save(holdingOrder(item, OrderStatus.REFUNDED, null));
+
+        final List<OrderExportRow> all = new ArrayList<>();
+        orderRepository.streamWithFilters(null, null, null, null, 1, all::add);
+        assertEquals(List.of(newer.getId(), older.getId()), all.stream().map(OrderExportRow::orderId).toList());
+        final OrderExportRow row = all.get(1);
+        assertEquals(older.getUserId(), row.userId());
+        assertEquals("Test Product", row.productName());
+        assertEquals(item.getFlashSale().getId(), row.flashSaleId());
+        assertEquals(item.getId(), row.flashSaleItemId());
+        assertEquals(0, BigDecimal.valueOf(159.98).compareTo(row.totalAmount()));
+        assertEquals(OrderStatus.PAID, row.status());
+
+        final List<OrderExportRow> paid = new ArrayList<>();
+        orderRepository.streamWithFilters(OrderStatus.PAID, now.minusDays(3), now.minusDays(1), older.getUserId(), 100, paid::add);
+        assertEquals(List.of(older.getId()), paid.stream().map(OrderExportRow::orderId).toList());
+    }
+
+    @Test
+    public void shouldGiveNewOrdersAndHistoryTimeOrderedIds() {
+        final FlashSaleItem item = saleItem();
+        final OffsetDateTime now = OffsetDateTime.now();
+        final Order saved = orderRepository.save(holdingOrder(item, OrderStatus.PENDING, now.plusMinutes(2)));
+        final OrderPlacement placed = orderRepository.placeOrder(item.getId(), UUID.randomUUID(), 1, now, now.plusMinutes(2));
+        final OrderStatusHistory history = orderStatusHistoryRepository.save(OrderStatusHistory.builder()
+            .orderId(saved.getId())
+            .fromStatus(OrderStatus.PENDING)
+            .toStatus(OrderStatus.PAID)
+            .changedAt(now)
+            .build());
+        entityManager.flush();
+
+        // Generated by Hibernate, and by the column default for orders placed in SQL
+        assertEquals(7, saved.getId().version());
+        assertEquals(7, placed.getOrderId().version());
+        assertEquals(7, history.getId().version());
+    }
+
+    @Test
+    public void shouldKeepRollupsInStepAsOrdersArePlacedChangedAndDeleted() {
+        final FlashSaleItem item = saleItem();
+        final OffsetDateTime now = OffsetDateTime.now();
+        final Order older = holdingOrder(item, OrderStatus.PAID, null);
+        older.setSoldQuantity(2);
+        older.setCreatedAt(now.minusDays(2));
+        orderRepository.save(older);
+        final Order refunded = orderRepository.save(holdingOrder(item, OrderStatus.REFUNDED, null));
+        final OrderPlacement placed = orderRepository.placeOrder(item.getId(), UUID.randomUUID(), 1, now, now.plusMinutes(2));
+
+        final BigDecimal price = BigDecimal.valueOf(79.99);
+        Map<OrderStatus, OrderStatusTotals> totals = rollups(null, null);
+        assertEquals(new OrderStatusTotals(OrderStatus.PAID, 1L, 2L, price.multiply(BigDecimal.valueOf(2))),
+            totals.get(OrderStatus.PAID));
+        assertEquals(1L, totals.get(OrderStatus.PENDING).orders());
+        assertEquals(1L, totals.get(OrderStatus.REFUNDED).orders());
+
+        // The order moves from its PENDING bucket to its PAID one
+        assertEquals(OrderTransition.Outcome.OK,
+            orderRepository.transitionStatus(placed.getOrderId(), OrderStatus.PENDING, OrderStatus.PAID, null, true).outcome());
+        orderRepository.deleteById(refunded.getId());
+        totals = rollups(null, null);
+        assertEquals(new OrderStatusTotals(OrderStatus.PAID, 2L, 3L, price.multiply(BigDecimal.valueOf(3))),
+            totals.get(OrderStatus.PAID));
+        assertEquals(0L, totals.get(OrderStatus.PENDING).orders());
+        assertEquals(0L, totals.get(OrderStatus.REFUNDED).orders());
+
+        // Folding the deltas into their buckets leaves the totals as they were
+        assertTrue(orderRepository.foldRollupDeltas(1000) > 0);
+        assertEquals(totals, rollups(null, null));
+        assertEquals(0, orderRepository.foldRollupDeltas(1000));
+
+        // A range covers the hours it overlaps
+        assertEquals(Set.of(OrderStatus.PAID), rollups(now.minusDays(3), now.minusDays(2)).keySet());
+        assertEquals(1L, rollups(now.minusDays(3), now.minusDays(2)).get(OrderStatus.PAID).orders());
+
+        final List<ProductTotals> top = orderRepository.findTopPaidProductsByRevenue(10, null, null);
+        assertEquals(1, top.size());
+        assertEquals(new ProductTotals(item.getProduct().getId(), "Test Product", 3L, price.multiply(BigDecimal.valueOf(3))),
+            top.get(0));
+        assertEquals(top, orderRepository.findTopPaidProductsByQuantity(10, null, null));
+        assertTrue(orderRepository.findTopPaidProductsByQuantity(10, now.plusHours(2), null).isEmpty());
+    }
+
+    private Map<OrderStatus, OrderStatusTotals> rollups(final OffsetDateTime startDate, final OffsetDateTime endDate) {
+        return orderRepository.sumOrdersByStatus(startDate, endDate).stream()
+            .collect(Collectors.toMap(OrderStatusTotals::status, Function.identity()));
+    }
+
+    private FlashSaleItem saleItem() {
+        final Product savedProduct = productRepository.save(
+            new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale savedFlashSale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        return flashSaleItemRepository.save(
+            new FlashSaleItem(null, savedFlashSale, savedProduct, 10, 0, BigDecimal.valueOf(79.99)));
+    }
+
+    private Order holdingOrder(final FlashSaleItem item, final OrderStatus status, final OffsetDateTime expiresAt) {
+        final Order order = new Order();
+        order.setUserId(UUID.randomUUID());
+        order.setFlashSaleItem(item);
+        order.setProduct(item.getProduct());
+        order.setSoldPrice(item.getSalePrice());
+        order.setSoldQuantity(1);
+        order.setStatus(status);
+        order.setCreatedAt(OffsetDateTime.now());
+        order.setExpiresAt(expiresAt);
+        return order;
+    }
 }
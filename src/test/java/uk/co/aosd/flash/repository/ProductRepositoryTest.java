@@ -0,0 +1,68 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.Product;
+
+/**
+ * Test the Product Repository.
+ */
+@DataJpaTest
+public class ProductRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private ProductRepository products;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void shouldReserveStockForAllProductsThatHaveEnough() {
+        final var plenty = products.save(new Product(null, "Plenty", "Plenty of stock", 100, BigDecimal.valueOf(10.00), 10));
+        final var scarce = products.save(new Product(null, "Scarce", "Little stock", 20, BigDecimal.valueOf(10.00), 15));
+        final UUID unknown = UUID.randomUUID();
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<UUID> failures = products.reserveStockReturningFailures(
+            new UUID[] { plenty.getId(), scarce.getId(), unknown },
+            new Integer[] { 40, 10, 1 });
+        entityManager.clear();
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.containsAll(List.of(scarce.getId(), unknown)));
+        assertEquals(50, products.findById(plenty.getId()).orElseThrow().getReservedCount());
+        assertEquals(15, products.findById(scarce.getId()).orElseThrow().getReservedCount());
+    }
+
+    @Test
+    public void shouldSumQuantitiesForRepeatedProducts() {
+        final var product = products.save(new Product(null, "Repeated", "Listed twice", 100, BigDecimal.valueOf(10.00), 0));
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<UUID> failures = products.reserveStockReturningFailures(
+            new UUID[] { product.getId(), product.getId() },
+            new Integer[] { 60, 50 });
+        entityManager.clear();
+
+        assertEquals(List.of(product.getId()), failures);
+        assertEquals(0, products.findById(product.getId()).orElseThrow().getReservedCount());
+    }
+}
@@ -0,0 +1,37 @@
+package uk.co.aosd.flash.repository;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Records the SQL that Hibernate prepares, so tests can inspect the statements a repository
+ * method generates.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(final String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    /**
+     * Forget the statements recorded so far.
+     */
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    /**
+     * Get the most recently prepared statement.
+     *
+     * @return the SQL, with a {@code ?} for each parameter
+     */
+    public static String last() {
+        return STATEMENTS.getLast();
+    }
+}
@@ -0,0 +1,104 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.TimeOrderedUuidGenerator;
+
+/**
+ * Compares random (v4) and time-ordered (v7) UUID primary keys: the same rows are inserted into two
+ * otherwise identical tables, a batch into each in turn, and the insert time and primary key index
+ * size of each are reported. Run with {@code -Dbenchmark=true}; {@code -Dbenchmark.rows} sets the
+ * number of rows (default 2,000,000).
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class UuidKeyBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UuidKeyBenchmarkTest.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void shouldKeepTheTimeOrderedKeyIndexSmaller() {
+        final int rows = Integer.getInteger("benchmark.rows", 2_000_000);
+        final Table random = new Table("uuid_benchmark_v4", UUID::randomUUID);
+        final Table timeOrdered = new Table("uuid_benchmark_v7", TimeOrderedUuidGenerator::next);
+        for (final Table table : List.of(random, timeOrdered)) {
+            jdbcTemplate.execute("CREATE TABLE " + table.name + " (id UUID PRIMARY KEY, user_id UUID NOT NULL, "
+                + "created_at TIMESTAMPTZ NOT NULL, sold_quantity INT NOT NULL)");
+        }
+
+        for (int inserted = 0; inserted < rows; inserted += BATCH_SIZE) {
+            final int batch = Math.min(BATCH_SIZE, rows - inserted);
+            random.insert(batch);
+            timeOrdered.insert(batch);
+        }
+
+        for (final Table table : List.of(random, timeOrdered)) {
+            assertEquals(rows, jdbcTemplate.queryForObject("SELECT count(*) FROM " + table.name, Integer.class));
+            log.info("{}: {} rows in {} ms ({} rows/s), primary key index {}", table.name, rows, table.nanos / 1_000_000,
+                rows * 1_000_000_000L / Math.max(1, table.nanos), jdbcTemplate.queryForObject(
+                    "SELECT pg_size_pretty(pg_relation_size(?::regclass))", String.class, table.name + "_pkey"));
+        }
+        // Appending to the right-hand edge leaves index pages full; random keys split them half empty
+        final long randomIndex = indexSize(random);
+        final long timeOrderedIndex = indexSize(timeOrdered);
+        assertTrue(timeOrderedIndex < randomIndex, timeOrderedIndex + " bytes vs " + randomIndex + " bytes");
+    }
+
+    private long indexSize(final Table table) {
+        return jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, table.name + "_pkey");
+    }
+
+    /**
+     * A benchmark table, its key generator and the time spent inserting into it.
+     */
+    private final class Table {
+
+        private final String name;
+        private final Supplier<UUID> ids;
+        private long nanos;
+
+        Table(final String name, final Supplier<UUID> ids) {
+            this.name = name;
+            this.ids = ids;
+        }
+
+        void insert(final int count) {
+            final List<Object[]> batch = new ArrayList<>(count);
+            final OffsetDateTime now = OffsetDateTime.now();
+            for (int i = 0; i < count; i++) {
+                batch.add(new Object[] { ids.get(), UUID.randomUUID(), now, 1 });
+            }
+            final long start = System.nanoTime();
+            jdbcTemplate.batchUpdate("INSERT INTO " + name + " (id, user_id, created_at, sold_quantity) VALUES (?, ?, ?, ?)",
+                batch, new int[] { Types.OTHER, Types.OTHER, Types.TIMESTAMP_WITH_TIMEZONE, Types.INTEGER });
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
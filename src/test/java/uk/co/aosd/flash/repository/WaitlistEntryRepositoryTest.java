@@ -0,0 +1,91 @@
+package uk.co.aosd.flash.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.domain.WaitlistEntry;
+
+/**
+ * Test the Waitlist Entry Repository.
+ */
+@DataJpaTest
+public class WaitlistEntryRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @Autowired
+    private WaitlistEntryRepository waitlist;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Test
+    public void shouldQueueBuyersInArrivalOrderAndKeepPlaceWhenRejoining() {
+        final UUID itemId = createItem();
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final UUID third = UUID.randomUUID();
+
+        waitlist.upsert(itemId, first, 1);
+        waitlist.upsert(itemId, second, 2);
+        waitlist.upsert(itemId, third, 1);
+        // Rejoining changes the quantity but not the place
+        waitlist.upsert(itemId, first, 3);
+
+        assertEquals(1, waitlist.findPosition(itemId, first));
+        assertEquals(2, waitlist.findPosition(itemId, second));
+        assertEquals(3, waitlist.findPosition(itemId, third));
+        assertEquals(0, waitlist.findPosition(itemId, UUID.randomUUID()));
+
+        final List<WaitlistEntry> head = waitlist.findHeadForUpdate(itemId, 2);
+        assertEquals(List.of(first, second), head.stream().map(WaitlistEntry::getUserId).toList());
+        assertEquals(3, head.get(0).getQuantity());
+    }
+
+    @Test
+    public void shouldRemoveBuyersFromWaitlist() {
+        final UUID itemId = createItem();
+        final UUID leaving = UUID.randomUUID();
+        final UUID staying = UUID.randomUUID();
+        waitlist.upsert(itemId, leaving, 1);
+        waitlist.upsert(itemId, staying, 1);
+
+        assertEquals(1, waitlist.deleteByFlashSaleItemIdAndUserId(itemId, leaving));
+        assertEquals(1, waitlist.findPosition(itemId, staying));
+
+        assertEquals(1, waitlist.deleteByFlashSaleItemId(itemId));
+        assertTrue(waitlist.findByFlashSaleItemIdAndUserId(itemId, staying).isEmpty());
+    }
+
+    private UUID createItem() {
+        final Product product = productRepository.save(new Product(null, "Test Product", "Description", 100, BigDecimal.valueOf(99.99), 10));
+        final FlashSale sale = flashSaleRepository.save(new FlashSale(null, "Test Sale",
+            OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+        return flashSaleItemRepository.save(new FlashSaleItem(null, sale, product, 10, 10, BigDecimal.valueOf(79.99))).getId();
+    }
+}
@@ -0,0 +1,77 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Tests for ActivateSaleJob.
+ */
+public class ActivateSaleJobTest {
+
+    private final UUID saleId = UUID.randomUUID();
+    private ActivateSaleJob job;
+    private FlashSalesService flashSalesService;
+    private SaleWarmUpService saleWarmUpService;
+    private JobExecutionContext jobExecutionContext;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        flashSalesService = Mockito.mock(FlashSalesService.class);
+        saleWarmUpService = Mockito.mock(SaleWarmUpService.class);
+        jobExecutionContext = Mockito.mock(JobExecutionContext.class);
+        final JobDataMap data = new JobDataMap();
+        data.put(SaleScheduler.SALE_ID, saleId.toString());
+        when(jobExecutionContext.getMergedJobDataMap()).thenReturn(data);
+        job = new ActivateSaleJob();
+
+        // Use reflection to inject the mock services
+        final Field serviceField = ActivateSaleJob.class.getDeclaredField("flashSalesService");
+        serviceField.setAccessible(true);
+        serviceField.set(job, flashSalesService);
+        final Field warmUpField = ActivateSaleJob.class.getDeclaredField("saleWarmUpService");
+        warmUpField.setAccessible(true);
+        warmUpField.set(job, saleWarmUpService);
+    }
+
+    @Test
+    public void shouldActivateSaleAndRefreshActiveSales() throws JobExecutionException {
+        when(flashSalesService.activateSale(saleId)).thenReturn(true);
+
+        job.execute(jobExecutionContext);
+
+        verify(flashSalesService, times(1)).activateSale(saleId);
+        verify(saleWarmUpService, times(1)).refreshAfterActivation(saleId);
+    }
+
+    @Test
+    public void shouldNotRefreshWhenSaleWasNotActivated() throws JobExecutionException {
+        when(flashSalesService.activateSale(saleId)).thenReturn(false);
+
+        job.execute(jobExecutionContext);
+
+        verify(saleWarmUpService, never()).refreshAfterActivation(saleId);
+    }
+
+    @Test
+    public void shouldThrowJobExecutionExceptionOnServiceError() {
+        doThrow(new RuntimeException("Service error")).when(flashSalesService).activateSale(saleId);
+
+        assertThrows(JobExecutionException.class, () -> {
+            job.execute(jobExecutionContext);
+        });
+    }
+}
@@ -7,6 +7,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
@@ -27,7 +29,9 @@ import uk.co.aosd.flash.dto.RevenueMetricsDto;
 import uk.co.aosd.flash.dto.SalesMetricsDto;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.OrderStatusTotals;
 import uk.co.aosd.flash.repository.ProductRepository;
+import uk.co.aosd.flash.repository.ProductTotals;
 
 /**
  * Test the Analytics Service.
@@ -106,14 +110,9 @@ public class AnalyticsServiceTest {
         // Setup
         final BigDecimal totalRevenue = new BigDecimal("125000.00");
         final BigDecimal refundedRevenue = new BigDecimal("5000.00");
-        when(orderRepository.calculateTotalRevenue(eq(OrderStatus.PAID), isNull(), isNull()))
-            .thenReturn(totalRevenue);
-        when(orderRepository.calculateTotalRevenue(eq(OrderStatus.REFUNDED), isNull(), isNull()))
-            .thenReturn(refundedRevenue);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.PAID), isNull(), isNull()))
-            .thenReturn(500L);
-        when(orderRepository.calculateAverageOrderValue(isNull(), isNull()))
-            .thenReturn(new BigDecimal("250.00"));
+        when(orderRepository.sumOrdersByStatus(isNull(), isNull())).thenReturn(List.of(
+            new OrderStatusTotals(OrderStatus.PAID, 500L, 600L, totalRevenue),
+            new OrderStatusTotals(OrderStatus.REFUNDED, 20L, 20L, refundedRevenue)));
 
         // Execute
         final RevenueMetricsDto metrics = analyticsService.getRevenueMetrics(null, null);
@@ -124,6 +123,7 @@ public class AnalyticsServiceTest {
         assertEquals(refundedRevenue, metrics.totalRefundedRevenue());
         assertEquals(500L, metrics.totalPaidOrders());
         assertEquals(new BigDecimal("250.00"), metrics.averageOrderValue());
+        assertEquals(new BigDecimal("0.0400"), metrics.refundRate());
     }
 
     @Test
@@ -133,9 +133,9 @@ public class AnalyticsServiceTest {
         when(productRepository.calculateTotalPhysicalStock()).thenReturn(10000L);
         when(productRepository.calculateTotalReservedStock()).thenReturn(2500L);
         when(flashSaleRepository.calculateAverageProductsPerSale()).thenReturn(4.5);
-        when(orderRepository.findTopProductsByQuantity(eq(10), isNull(), isNull()))
+        when(orderRepository.findTopPaidProductsByQuantity(eq(10), isNull(), isNull()))
             .thenReturn(new ArrayList<>());
-        when(orderRepository.findTopProductsByRevenue(eq(10), isNull(), isNull()))
+        when(orderRepository.findTopPaidProductsByRevenue(eq(10), isNull(), isNull()))
             .thenReturn(new ArrayList<>());
         when(productRepository.findProductsWithLowStock(eq(10))).thenReturn(new ArrayList<>());
 
@@ -162,26 +162,14 @@ public class AnalyticsServiceTest {
         when(flashSaleRepository.calculateAverageProductsPerSale()).thenReturn(4.5);
 
         // Top products by quantity
-        final List<Object[]> topByQuantity = new ArrayList<>();
-        topByQuantity.add(new Object[] { productId1, "Product 1", 500L });
-        topByQuantity.add(new Object[] { productId2, "Product 2", 300L });
-        when(orderRepository.findTopProductsByQuantity(eq(10), isNull(), isNull()))
-            .thenReturn(topByQuantity);
-        when(orderRepository.calculateRevenueForProduct(eq(productId1), isNull(), isNull()))
-            .thenReturn(new BigDecimal("9995.00"));
-        when(orderRepository.calculateRevenueForProduct(eq(productId2), isNull(), isNull()))
-            .thenReturn(new BigDecimal("5997.00"));
+        final ProductTotals product1 = new ProductTotals(productId1, "Product 1", 500L, new BigDecimal("9995.00"));
+        final ProductTotals product2 = new ProductTotals(productId2, "Product 2", 300L, new BigDecimal("5997.00"));
+        when(orderRepository.findTopPaidProductsByQuantity(eq(10), isNull(), isNull()))
+            .thenReturn(List.of(product1, product2));
 
         // Top products by revenue
-        final List<Object[]> topByRevenue = new ArrayList<>();
-        topByRevenue.add(new Object[] { productId1, "Product 1", new BigDecimal("9995.00") });
-        topByRevenue.add(new Object[] { productId2, "Product 2", new BigDecimal("5997.00") });
-        when(orderRepository.findTopProductsByRevenue(eq(10), isNull(), isNull()))
-            .thenReturn(topByRevenue);
-        when(orderRepository.calculateQuantityForProduct(eq(productId1), isNull(), isNull()))
-            .thenReturn(500L);
-        when(orderRepository.calculateQuantityForProduct(eq(productId2), isNull(), isNull()))
-            .thenReturn(300L);
+        when(orderRepository.findTopPaidProductsByRevenue(eq(10), isNull(), isNull()))
+            .thenReturn(List.of(product1, product2));
 
         when(productRepository.findProductsWithLowStock(eq(10))).thenReturn(new ArrayList<>());
 
@@ -193,43 +181,51 @@ public class AnalyticsServiceTest {
         assertEquals(2, metrics.topProductsByQuantity().size());
         assertEquals("Product 1", metrics.topProductsByQuantity().get(0).productName());
         assertEquals(500L, metrics.topProductsByQuantity().get(0).quantitySold());
+        assertEquals(new BigDecimal("9995.00"), metrics.topProductsByQuantity().get(0).revenue());
         assertEquals(2, metrics.topProductsByRevenue().size());
+        assertEquals(300L, metrics.topProductsByRevenue().get(1).quantitySold());
     }
 
     @Test
     public void shouldGetOrderStatisticsSuccessfully() {
         // Setup
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.PENDING), isNull(), isNull()))
-            .thenReturn(100L);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.PAID), isNull(), isNull()))
-            .thenReturn(800L);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.FAILED), isNull(), isNull()))
-            .thenReturn(50L);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.REFUNDED), isNull(), isNull()))
-            .thenReturn(30L);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.DISPATCHED), isNull(), isNull()))
-            .thenReturn(20L);
-        when(orderRepository.countOrdersByStatus(eq(OrderStatus.CANCELLED), isNull(), isNull()))
-            .thenReturn(10L);
-        when(orderRepository.calculateTotalOrderQuantity(isNull(), isNull())).thenReturn(2500L);
+        when(orderRepository.sumOrdersByStatus(isNull(), isNull())).thenReturn(List.of(
+            new OrderStatusTotals(OrderStatus.PENDING, 100L, 200L, new BigDecimal("2000.00")),
+            new OrderStatusTotals(OrderStatus.PAID, 800L, 1700L, new BigDecimal("17000.00")),
+            new OrderStatusTotals(OrderStatus.FAILED, 50L, 100L, new BigDecimal("1000.00")),
+            new OrderStatusTotals(OrderStatus.REFUNDED, 30L, 60L, new BigDecimal("600.00")),
+            new OrderStatusTotals(OrderStatus.DISPATCHED, 20L, 40L, new BigDecimal("400.00")),
+            new OrderStatusTotals(OrderStatus.CANCELLED, 10L, 20L, new BigDecimal("200.00")),
+            new OrderStatusTotals(OrderStatus.EXPIRED, 5L, 380L, new BigDecimal("3800.00"))));
 
         // Execute
         final OrderStatisticsDto statistics = analyticsService.getOrderStatistics(null, null);
 
         // Verify
         assertNotNull(statistics);
-        assertEquals(1010L, statistics.totalOrders());
+        assertEquals(1015L, statistics.totalOrders());
         assertEquals(100L, statistics.ordersByStatus().pending());
         assertEquals(800L, statistics.ordersByStatus().paid());
         assertEquals(50L, statistics.ordersByStatus().failed());
         assertEquals(30L, statistics.ordersByStatus().refunded());
         assertEquals(20L, statistics.ordersByStatus().dispatched());
         assertEquals(10L, statistics.ordersByStatus().cancelled());
+        assertEquals(5L, statistics.ordersByStatus().expired());
         assertEquals(2500L, statistics.totalOrderQuantity());
+        assertEquals(new BigDecimal("2.46"), statistics.averageOrderQuantity());
         assertEquals(800L, statistics.paidOrders());
         assertEquals(50L, statistics.failedOrders());
     }
 
+    @Test
+    public void shouldFoldRollupDeltasUntilABatchIsShort() {
+        when(orderRepository.foldRollupDeltas(10000)).thenReturn(10000, 10000, 42);
+
+        assertEquals(20042, analyticsService.foldOrderRollups());
+
+        verify(orderRepository, times(3)).foldRollupDeltas(10000);
+    }
+
     @Test
     public void shouldHandleEmptyData() {
         // Setup - all empty
@@ -238,18 +234,15 @@ public class AnalyticsServiceTest {
         when(flashSaleRepository.calculateTotalItemsAllocated(any(), any())).thenReturn(0L);
         when(flashSaleRepository.findTopSalesByItemsSold(anyInt(), any(), any()))
             .thenReturn(new ArrayList<>());
-        when(orderRepository.calculateTotalRevenue(any(), any(), any())).thenReturn(BigDecimal.ZERO);
-        when(orderRepository.countOrdersByStatus(any(), any(), any())).thenReturn(0L);
-        when(orderRepository.calculateAverageOrderValue(any(), any())).thenReturn(BigDecimal.ZERO);
+        when(orderRepository.sumOrdersByStatus(any(), any())).thenReturn(List.of());
         when(productRepository.count()).thenReturn(0L);
         when(productRepository.calculateTotalPhysicalStock()).thenReturn(0L);
         when(productRepository.calculateTotalReservedStock()).thenReturn(0L);
         when(flashSaleRepository.calculateAverageProductsPerSale()).thenReturn(0.0);
-        when(orderRepository.findTopProductsByQuantity(anyInt(), any(), any()))
+        when(orderRepository.findTopPaidProductsByQuantity(anyInt(), any(), any()))
             .thenReturn(new ArrayList<>());
-        when(orderRepository.findTopProductsByRevenue(anyInt(), any(), any()))
+        when(orderRepository.findTopPaidProductsByRevenue(anyInt(), any(), any()))
             .thenReturn(new ArrayList<>());
-        when(orderRepository.calculateTotalOrderQuantity(any(), any())).thenReturn(0L);
         when(productRepository.findProductsWithLowStock(anyInt())).thenReturn(new ArrayList<>());
 
         // Execute
@@ -263,6 +256,7 @@ public class AnalyticsServiceTest {
         assertEquals(0L, salesMetrics.totalSales());
         assertNotNull(revenueMetrics);
         assertEquals(BigDecimal.ZERO, revenueMetrics.totalRevenue());
+        assertEquals(BigDecimal.ZERO, revenueMetrics.averageOrderValue());
         assertNotNull(productMetrics);
         assertEquals(0L, productMetrics.totalProducts());
         assertNotNull(orderStats);
@@ -281,9 +275,9 @@ public class AnalyticsServiceTest {
         when(productRepository.calculateTotalPhysicalStock()).thenReturn(10000L);
         when(productRepository.calculateTotalReservedStock()).thenReturn(2500L);
         when(flashSaleRepository.calculateAverageProductsPerSale()).thenReturn(4.5);
-        when(orderRepository.findTopProductsByQuantity(anyInt(), any(), any()))
+        when(orderRepository.findTopPaidProductsByQuantity(anyInt(), any(), any()))
             .thenReturn(new ArrayList<>());
-        when(orderRepository.findTopProductsByRevenue(anyInt(), any(), any()))
+        when(orderRepository.findTopPaidProductsByRevenue(anyInt(), any(), any()))
             .thenReturn(new ArrayList<>());
         when(productRepository.findProductsWithLowStock(eq(10)))
             .thenReturn(List.of(lowStockProduct1, lowStockProduct2));
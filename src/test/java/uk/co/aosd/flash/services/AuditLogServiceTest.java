@@ -1,7 +1,6 @@
 package uk.co.aosd.flash.services;
 
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 
 import java.util.UUID;
@@ -10,20 +9,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import uk.co.aosd.flash.domain.AdminAuditLogEntry;
-import uk.co.aosd.flash.repository.AdminAuditLogRepository;
 
 /**
  * Unit tests for AuditLogService.
  */
 class AuditLogServiceTest {
 
-    private AdminAuditLogRepository adminAuditLogRepository;
+    private AuditLogSink auditLogSink;
     private AuditLogService auditLogService;
 
     @BeforeEach
     void setUp() {
-        adminAuditLogRepository = Mockito.mock(AdminAuditLogRepository.class);
-        auditLogService = new AuditLogService(adminAuditLogRepository);
+        auditLogSink = Mockito.mock(AuditLogSink.class);
+        auditLogService = new AuditLogService(auditLogSink);
     }
 
     @Test
@@ -31,7 +29,7 @@ class AuditLogServiceTest {
         final UUID entityId = UUID.randomUUID();
         auditLogService.recordAdminAction(AuditLogService.ACTION_CREATE_PRODUCT, AuditLogService.ENTITY_PRODUCT, entityId);
 
-        verify(adminAuditLogRepository).save(argThat((AdminAuditLogEntry e) ->
+        verify(auditLogSink).submit(argThat((AdminAuditLogEntry e) ->
             AuditLogService.ACTION_CREATE_PRODUCT.equals(e.getAction())
                 && AuditLogService.ENTITY_PRODUCT.equals(e.getEntityType())
                 && entityId.equals(e.getEntityId())
@@ -44,7 +42,7 @@ class AuditLogServiceTest {
         final String payload = "{\"from\":\"PENDING\",\"to\":\"PAID\"}";
         auditLogService.recordAdminAction(AuditLogService.ACTION_UPDATE_ORDER_STATUS, AuditLogService.ENTITY_ORDER, entityId, payload);
 
-        verify(adminAuditLogRepository).save(argThat((AdminAuditLogEntry e) ->
+        verify(auditLogSink).submit(argThat((AdminAuditLogEntry e) ->
             payload.equals(e.getPayload())));
     }
 }
@@ -0,0 +1,102 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.co.aosd.flash.domain.AdminAuditLogEntry;
+
+/**
+ * Unit tests for AuditLogSink.
+ */
+class AuditLogSinkTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void syncBatch_outsideTransaction_writesImmediately() {
+        final AuditLogSink sink = new AuditLogSink(jdbcTemplate, meterRegistry, "sync-batch", 10, 500, 1000);
+        final AdminAuditLogEntry entry = entry();
+
+        sink.submit(entry);
+
+        assertNotNull(entry.getId());
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((Collection<AdminAuditLogEntry> c) -> c.size() == 1), anyInt(), any());
+    }
+
+    @Test
+    void syncBatch_insideTransaction_writesOneBatchBeforeCommit() {
+        final AuditLogSink sink = new AuditLogSink(jdbcTemplate, meterRegistry, "sync-batch", 10, 500, 1000);
+        TransactionSynchronizationManager.initSynchronization();
+
+        sink.submit(entry());
+        sink.submit(entry());
+        sink.submit(entry());
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCommit());
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), argThat((Collection<AdminAuditLogEntry> c) -> c.size() == 3), anyInt(), any());
+        assertEquals(1, meterRegistry.get("flash.audit.batch.size").summary().count());
+    }
+
+    @Test
+    void async_whenBufferFull_writesOverflowSynchronously() {
+        final AuditLogSink sink = new AuditLogSink(jdbcTemplate, meterRegistry, "async", 1, 500, 1000);
+
+        sink.submit(entry());
+        sink.submit(entry());
+
+        assertEquals(1.0, meterRegistry.get("flash.audit.overflow").counter().count());
+        assertEquals(1.0, meterRegistry.get("flash.audit.buffer.size").gauge().value());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+
+        assertEquals(1, sink.flushOnce());
+        assertEquals(0.0, meterRegistry.get("flash.audit.buffer.size").gauge().value());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+    }
+
+    private static AdminAuditLogEntry entry() {
+        return AdminAuditLogEntry.builder()
+            .action(AuditLogService.ACTION_CREATE_PRODUCT)
+            .entityType(AuditLogService.ENTITY_PRODUCT)
+            .entityId(UUID.randomUUID())
+            .occurredAt(OffsetDateTime.now())
+            .build();
+    }
+}
@@ -0,0 +1,97 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Tests for CompleteSaleJob, WarmUpSaleJob and DrawLotteryJob.
+ */
+public class CompleteSaleJobTest {
+
+    private final UUID saleId = UUID.randomUUID();
+    private FlashSalesService flashSalesService;
+    private SaleWarmUpService saleWarmUpService;
+    private LotteryService lotteryService;
+    private JobExecutionContext jobExecutionContext;
+
+    @BeforeEach
+    public void setUp() {
+        flashSalesService = Mockito.mock(FlashSalesService.class);
+        saleWarmUpService = Mockito.mock(SaleWarmUpService.class);
+        lotteryService = Mockito.mock(LotteryService.class);
+        jobExecutionContext = Mockito.mock(JobExecutionContext.class);
+        final JobDataMap data = new JobDataMap();
+        data.put(SaleScheduler.SALE_ID, saleId.toString());
+        when(jobExecutionContext.getMergedJobDataMap()).thenReturn(data);
+    }
+
+    @Test
+    public void shouldCompleteSale() throws Exception {
+        final CompleteSaleJob job = new CompleteSaleJob();
+        inject(job, "flashSalesService", flashSalesService);
+        when(flashSalesService.completeSale(saleId)).thenReturn(true);
+
+        job.execute(jobExecutionContext);
+
+        verify(flashSalesService, times(1)).completeSale(saleId);
+    }
+
+    @Test
+    public void shouldThrowJobExecutionExceptionWhenCompletionFails() throws Exception {
+        final CompleteSaleJob job = new CompleteSaleJob();
+        inject(job, "flashSalesService", flashSalesService);
+        doThrow(new RuntimeException("Service error")).when(flashSalesService).completeSale(saleId);
+
+        assertThrows(JobExecutionException.class, () -> {
+            job.execute(jobExecutionContext);
+        });
+    }
+
+    @Test
+    public void shouldWarmUpSale() throws Exception {
+        final WarmUpSaleJob job = new WarmUpSaleJob();
+        inject(job, "saleWarmUpService", saleWarmUpService);
+
+        job.execute(jobExecutionContext);
+
+        verify(saleWarmUpService, times(1)).warmUp(saleId);
+    }
+
+    @Test
+    public void shouldDrawLottery() throws Exception {
+        final DrawLotteryJob job = new DrawLotteryJob();
+        inject(job, "lotteryService", lotteryService);
+
+        job.execute(jobExecutionContext);
+
+        verify(lotteryService, times(1)).draw(saleId);
+    }
+
+    @Test
+    public void shouldThrowJobExecutionExceptionWhenDrawFails() throws Exception {
+        final DrawLotteryJob job = new DrawLotteryJob();
+        inject(job, "lotteryService", lotteryService);
+        doThrow(new RuntimeException("Service error")).when(lotteryService).draw(saleId);
+
+        assertThrows(JobExecutionException.class, () -> job.execute(jobExecutionContext));
+    }
+
+    private void inject(final Object job, final String name, final Object value) throws Exception {
+        final Field field = job.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(job, value);
+    }
+}
@@ -0,0 +1,113 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.co.aosd.flash.domain.OrderJob;
+import uk.co.aosd.flash.domain.OrderStage;
+import uk.co.aosd.flash.repository.OrderJobRepository;
+
+/**
+ * Test the DB queue order worker.
+ */
+public class DbQueueOrderWorkerTest {
+
+    private static final Duration VISIBILITY = Duration.ofSeconds(60);
+
+    private OrderJobRepository orderJobRepository;
+    private OrderStageHandler stageHandler;
+    private SimpleMeterRegistry meterRegistry;
+    private PlatformTransactionManager transactionManager;
+    private DbQueueOrderWorker worker;
+
+    @BeforeEach
+    public void beforeEach() {
+        orderJobRepository = Mockito.mock(OrderJobRepository.class);
+        stageHandler = Mockito.mock(OrderStageHandler.class);
+        meterRegistry = new SimpleMeterRegistry();
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        worker = new DbQueueOrderWorker(orderJobRepository, stageHandler, meterRegistry,
+            new TransactionTemplate(transactionManager), 1, 1, 100, 60, 5, 200);
+    }
+
+    @Test
+    public void shouldHandleAndDeleteClaimedJobs() {
+        final OrderJob job = job(OrderStage.DISPATCH, 1);
+        when(orderJobRepository.claimBatch(eq("DISPATCH"), anyInt(), eq(60), eq(5), anyString())).thenReturn(List.of(job));
+
+        assertEquals(1, worker.pollOnce(OrderStage.DISPATCH));
+
+        final InOrder inOrder = Mockito.inOrder(transactionManager, stageHandler, orderJobRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(stageHandler).handle(eq(OrderStage.DISPATCH), eq(job.getOrderId()), any());
+        inOrder.verify(orderJobRepository).deleteById(job.getId());
+        inOrder.verify(transactionManager).commit(any());
+        assertEquals(1, meterRegistry.get("flash.messaging.handoff.latency").tag("transport", "db-queue").timer().count());
+    }
+
+    @Test
+    public void shouldLeaveFailedJobForRetry() {
+        final OrderJob job = job(OrderStage.PROCESSING, 1);
+        when(orderJobRepository.claimBatch(eq("PROCESSING"), anyInt(), anyInt(), anyInt(), anyString())).thenReturn(List.of(job));
+        doThrow(new RuntimeException("boom")).when(stageHandler).handle(eq(OrderStage.PROCESSING), eq(job.getOrderId()), any());
+
+        assertEquals(1, worker.pollOnce(OrderStage.PROCESSING));
+
+        verify(orderJobRepository, never()).deleteById(any());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    public void shouldReturnZeroWhenNothingClaimed() {
+        when(orderJobRepository.claimBatch(anyString(), anyInt(), anyInt(), anyInt(), anyString())).thenReturn(List.of());
+
+        assertEquals(0, worker.pollOnce(OrderStage.REFUND));
+
+        verify(stageHandler, never()).handle(any(), any(), any());
+    }
+
+    @Test
+    public void shouldGrowBatchSizeWhenBatchIsFullAndFast() {
+        assertEquals(15, DbQueueOrderWorker.nextBatchSize(10, 10, Duration.ofMillis(50), VISIBILITY, 1, 100));
+        assertEquals(2, DbQueueOrderWorker.nextBatchSize(1, 1, Duration.ofMillis(50), VISIBILITY, 1, 100));
+        assertEquals(100, DbQueueOrderWorker.nextBatchSize(90, 90, Duration.ofMillis(50), VISIBILITY, 1, 100));
+    }
+
+    @Test
+    public void shouldKeepBatchSizeWhenBatchIsNotFull() {
+        assertEquals(10, DbQueueOrderWorker.nextBatchSize(10, 3, Duration.ofMillis(50), VISIBILITY, 1, 100));
+    }
+
+    @Test
+    public void shouldHalveBatchSizeWhenBatchIsSlow() {
+        assertEquals(5, DbQueueOrderWorker.nextBatchSize(10, 10, Duration.ofSeconds(40), VISIBILITY, 1, 100));
+        assertEquals(1, DbQueueOrderWorker.nextBatchSize(1, 1, Duration.ofSeconds(40), VISIBILITY, 1, 100));
+    }
+
+    private static OrderJob job(final OrderStage stage, final int attempts) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        return new OrderJob(UUID.randomUUID(), UUID.randomUUID(), stage, now, attempts, "worker-test", now);
+    }
+}
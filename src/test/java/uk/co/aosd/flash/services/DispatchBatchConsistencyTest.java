@@ -0,0 +1,156 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import org.testcontainers.rabbitmq.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+import uk.co.aosd.flash.config.TestSecurityConfig;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.OrderStatusHistoryRepository;
+import uk.co.aosd.flash.repository.ProductRepository;
+
+/**
+ * Verifies that batched dispatch leaves product stock exactly as per-order dispatch does.
+ * Two identical pairs of products get identical PAID orders; one pair is dispatched order by order,
+ * the other in batches, and the resulting stock figures are compared.
+ */
+@SpringBootTest(classes = TestSecurityConfig.class)
+@Testcontainers
+@ActiveProfiles({ "test", "admin-service", "api-service" })
+public class DispatchBatchConsistencyTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres:latest");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    @SuppressWarnings("resource")
+    public static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:latest"))
+        .withExposedPorts(6379);
+
+    @Container
+    @ServiceConnection
+    public static RabbitMQContainer rabbitMQContainer = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    private static final int ORDERS_PER_PRODUCT = 25;
+    private static final int BATCH_SIZE = 7;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    private FlashSale sale;
+
+    @BeforeEach
+    public void setUp() {
+        orderStatusHistoryRepository.deleteAll();
+        orderRepository.deleteAll();
+        flashSaleItemRepository.deleteAll();
+        flashSaleRepository.deleteAll();
+        productRepository.deleteAll();
+
+        final OffsetDateTime now = OffsetDateTime.now();
+        sale = flashSaleRepository.save(new FlashSale(null, "Dispatch Consistency Sale", now.minusHours(1), now.plusHours(1),
+            SaleStatus.ACTIVE, List.of()));
+    }
+
+    @Test
+    public void batchedDispatchShouldMatchPerOrderDispatch() {
+        final Product perOrderA = createProduct("Per-order A");
+        final Product perOrderB = createProduct("Per-order B");
+        final Product batchedA = createProduct("Batched A");
+        final Product batchedB = createProduct("Batched B");
+
+        final List<UUID> perOrderIds = new ArrayList<>();
+        perOrderIds.addAll(createPaidOrders(perOrderA));
+        perOrderIds.addAll(createPaidOrders(perOrderB));
+        final List<UUID> batchedIds = new ArrayList<>();
+        batchedIds.addAll(createPaidOrders(batchedA));
+        batchedIds.addAll(createPaidOrders(batchedB));
+
+        // Per-order path
+        perOrderIds.forEach(orderService::processDispatch);
+
+        // Batched path, including a redelivered batch that must be skipped
+        for (int i = 0; i < batchedIds.size(); i += BATCH_SIZE) {
+            orderService.processDispatchBatch(batchedIds.subList(i, Math.min(i + BATCH_SIZE, batchedIds.size())));
+        }
+        assertEquals(0, orderService.processDispatchBatch(batchedIds.subList(0, BATCH_SIZE)));
+
+        assertSameStock(perOrderA, batchedA);
+        assertSameStock(perOrderB, batchedB);
+
+        for (final UUID id : batchedIds) {
+            assertEquals(OrderStatus.DISPATCHED, orderRepository.findById(id).orElseThrow().getStatus());
+            assertEquals(1, orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(id).size());
+        }
+    }
+
+    private Product createProduct(final String name) {
+        return productRepository.save(new Product(null, name, name + " description", 1000, BigDecimal.valueOf(49.99), 500));
+    }
+
+    private List<UUID> createPaidOrders(final Product product) {
+        final FlashSaleItem item = flashSaleItemRepository.save(
+            new FlashSaleItem(null, sale, product, 500, 0, BigDecimal.valueOf(29.99)));
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < ORDERS_PER_PRODUCT; i++) {
+            final Order order = new Order();
+            order.setUserId(UUID.randomUUID());
+            order.setFlashSaleItem(item);
+            order.setProduct(product);
+            order.setSoldPrice(item.getSalePrice());
+            order.setSoldQuantity(1 + (i % 4));
+            order.setStatus(OrderStatus.PAID);
+            order.setCreatedAt(OffsetDateTime.now());
+            ids.add(orderRepository.save(order).getId());
+        }
+        return ids;
+    }
+
+    private void assertSameStock(final Product perOrder, final Product batched) {
+        final Product expected = productRepository.findById(perOrder.getId()).orElseThrow();
+        final Product actual = productRepository.findById(batched.getId()).orElseThrow();
+        assertEquals(expected.getTotalPhysicalStock(), actual.getTotalPhysicalStock());
+        assertEquals(expected.getReservedCount(), actual.getReservedCount());
+    }
+}
@@ -0,0 +1,72 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Tests for DrawDueLotteriesJob.
+ */
+public class DrawDueLotteriesJobTest {
+
+    private DrawDueLotteriesJob job;
+    private LotteryService lotteryService;
+    private JobExecutionContext jobExecutionContext;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        lotteryService = Mockito.mock(LotteryService.class);
+        jobExecutionContext = Mockito.mock(JobExecutionContext.class);
+        job = new DrawDueLotteriesJob();
+
+        // Use reflection to inject the mock service
+        final Field field = DrawDueLotteriesJob.class.getDeclaredField("lotteryService");
+        field.setAccessible(true);
+        field.set(job, lotteryService);
+    }
+
+    @Test
+    public void shouldDrawEveryDueLottery() throws JobExecutionException {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        when(lotteryService.findLotteriesDueToDraw()).thenReturn(List.of(first, second));
+
+        job.execute(jobExecutionContext);
+
+        verify(lotteryService).draw(first);
+        verify(lotteryService).draw(second);
+    }
+
+    @Test
+    public void shouldDoNothingWhenNoLotteryIsDue() throws JobExecutionException {
+        when(lotteryService.findLotteriesDueToDraw()).thenReturn(List.of());
+
+        job.execute(jobExecutionContext);
+
+        verify(lotteryService, never()).draw(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void shouldDrawTheRestWhenOneDrawFails() {
+        final UUID failing = UUID.randomUUID();
+        final UUID other = UUID.randomUUID();
+        when(lotteryService.findLotteriesDueToDraw()).thenReturn(List.of(failing, other));
+        when(lotteryService.draw(failing)).thenThrow(new IllegalStateException("Lottery draw would exceed allocated stock"));
+
+        assertThrows(JobExecutionException.class, () -> job.execute(jobExecutionContext));
+
+        verify(lotteryService).draw(other);
+    }
+}
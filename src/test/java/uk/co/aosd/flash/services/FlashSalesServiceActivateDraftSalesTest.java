@@ -1,29 +1,38 @@
 package uk.co.aosd.flash.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
 /**
- * Tests for the FlashSalesService activateDraftSales method.
+ * Tests for the FlashSalesService activateDraftSales and activateSale methods.
  */
 public class FlashSalesServiceActivateDraftSalesTest {
 
@@ -37,6 +46,8 @@ public class FlashSalesServiceActivateDraftSalesTest {
 
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
     /**
      * Set up the mocks and the service for testing.
      */
@@ -46,7 +57,10 @@ public class FlashSalesServiceActivateDraftSalesTest {
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler,
+            Mockito.mock(FlashSaleLotteryRepository.class));
     }
 
     /**
@@ -61,67 +75,85 @@ public class FlashSalesServiceActivateDraftSalesTest {
 
     @Test
     public void shouldActivateDraftSalesWhenStartTimeHasPassed() {
-        final var now = OffsetDateTime.of(2026, 1, 15, 12, 0, 0, 0, ZoneOffset.UTC);
-        
-        // Create draft sales ready to activate
-        final var draftSale1 = new FlashSale(UUID.randomUUID(), "Draft Sale 1", 
-            now.minusHours(1), now.plusHours(1), SaleStatus.DRAFT, List.of());
-        final var draftSale2 = new FlashSale(UUID.randomUUID(), "Draft Sale 2", 
-            now.minusMinutes(30), now.plusHours(1), SaleStatus.DRAFT, List.of());
-        final var draftSale3 = new FlashSale(UUID.randomUUID(), "Draft Sale 3", 
-            now, now.plusHours(1), SaleStatus.DRAFT, List.of());
-
-        when(sales.findDraftSalesReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class)))
-            .thenReturn(List.of(draftSale1, draftSale2, draftSale3));
+        final List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
 
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sales.findSaleIdsReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class))).thenReturn(ids);
+        when(sales.transitionStatus(ids, "DRAFT", "ACTIVE")).thenReturn(ids);
 
         final int activatedCount = service.activateDraftSales();
 
         assertEquals(3, activatedCount);
-        assertEquals(SaleStatus.ACTIVE, draftSale1.getStatus());
-        assertEquals(SaleStatus.ACTIVE, draftSale2.getStatus());
-        assertEquals(SaleStatus.ACTIVE, draftSale3.getStatus());
-        verify(sales, times(3)).save(any(FlashSale.class));
+        verify(sales, times(1)).transitionStatus(ids, "DRAFT", "ACTIVE");
+        // Sales are never loaded with their items or saved one at a time
+        verify(sales, never()).findDraftSalesReadyToActivate(any(), any());
+        verify(sales, never()).save(any(FlashSale.class));
     }
 
     @Test
     public void shouldReturnZeroWhenNoDraftSalesReadyToActivate() {
-        when(sales.findDraftSalesReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class)))
+        when(sales.findSaleIdsReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class)))
             .thenReturn(List.of());
 
         final int activatedCount = service.activateDraftSales();
 
         assertEquals(0, activatedCount);
-        verify(sales, times(0)).save(any(FlashSale.class));
+        verify(sales, never()).transitionStatus(anyList(), anyString(), anyString());
     }
 
     @Test
-    public void shouldOnlyActivateDraftSalesWithStartTimePassed() {
-        final var now = OffsetDateTime.of(2026, 1, 15, 12, 0, 0, 0, ZoneOffset.UTC);
-        
-        // Create a draft sale ready to activate
-        final var draftSale1 = new FlashSale(UUID.randomUUID(), "Draft Sale Ready", 
-            now.minusHours(1), now.plusHours(1), SaleStatus.DRAFT, List.of());
-        
-        // Create a draft sale that shouldn't be activated (status changed externally between query and processing)
-        // This tests the defensive check in the service method
-        final var draftSale2 = new FlashSale(UUID.randomUUID(), "Draft Sale Changed", 
-            now.minusHours(1), now.plusHours(1), SaleStatus.DRAFT, List.of());
-        // Simulate status change after query but before processing
-        draftSale2.setStatus(SaleStatus.ACTIVE);
-
-        when(sales.findDraftSalesReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class)))
-            .thenReturn(List.of(draftSale1, draftSale2));
-
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    public void shouldOnlyCountSalesThatWereStillDraft() {
+        final UUID ready = UUID.randomUUID();
+        // Status changed externally (e.g. by a per-sale trigger on another node) between the query and the batch
+        final UUID changed = UUID.randomUUID();
+
+        when(sales.findSaleIdsReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class)))
+            .thenReturn(List.of(ready, changed));
+        when(sales.transitionStatus(List.of(ready, changed), "DRAFT", "ACTIVE")).thenReturn(List.of(ready));
 
         final int activatedCount = service.activateDraftSales();
 
         assertEquals(1, activatedCount);
-        assertEquals(SaleStatus.ACTIVE, draftSale1.getStatus());
-        assertEquals(SaleStatus.ACTIVE, draftSale2.getStatus()); // Already active, defensive check prevented re-activation
-        verify(sales, times(1)).save(draftSale1);
     }
 
+    @Test
+    public void shouldActivateSalesInBatches() {
+        final List<UUID> ids = IntStream.range(0, 150).mapToObj(i -> UUID.randomUUID()).toList();
+
+        when(sales.findSaleIdsReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class))).thenReturn(ids);
+        when(sales.transitionStatus(anyList(), eq("DRAFT"), eq("ACTIVE")))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+
+        final int activatedCount = service.activateDraftSales();
+
+        assertEquals(150, activatedCount);
+        verify(sales, times(1)).transitionStatus(ids.subList(0, 100), "DRAFT", "ACTIVE");
+        verify(sales, times(1)).transitionStatus(ids.subList(100, 150), "DRAFT", "ACTIVE");
+    }
+
+    @Test
+    public void shouldActivateSingleDraftSaleWhenTriggered() {
+        final UUID saleId = UUID.randomUUID();
+        final var sale = new FlashSale(saleId, "Draft Sale", OffsetDateTime.now().minusSeconds(1),
+            OffsetDateTime.now().plusHours(1), SaleStatus.DRAFT, List.of());
+        when(sales.findById(saleId)).thenReturn(Optional.of(sale));
+        when(sales.transitionStatus(List.of(saleId), "DRAFT", "ACTIVE")).thenReturn(List.of(saleId));
+
+        assertTrue(service.activateSale(saleId));
+        verify(sales, times(1)).transitionStatus(List.of(saleId), "DRAFT", "ACTIVE");
+    }
+
+    @Test
+    public void shouldNotActivateSingleSaleThatIsNoLongerDraftOrNotYetDue() {
+        final UUID activeId = UUID.randomUUID();
+        final UUID futureId = UUID.randomUUID();
+        when(sales.findById(activeId)).thenReturn(Optional.of(new FlashSale(activeId, "Active Sale",
+            OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1), SaleStatus.ACTIVE, List.of())));
+        when(sales.findById(futureId)).thenReturn(Optional.of(new FlashSale(futureId, "Moved Sale",
+            OffsetDateTime.now().plusHours(1), OffsetDateTime.now().plusHours(2), SaleStatus.DRAFT, List.of())));
+
+        assertFalse(service.activateSale(activeId));
+        assertFalse(service.activateSale(futureId));
+        assertFalse(service.activateSale(UUID.randomUUID()));
+        verify(sales, never()).transitionStatus(anyList(), anyString(), anyString());
+    }
 }
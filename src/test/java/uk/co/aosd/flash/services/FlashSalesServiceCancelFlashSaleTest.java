@@ -3,6 +3,9 @@ package uk.co.aosd.flash.services;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -10,6 +13,7 @@ import static org.mockito.Mockito.when;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,17 +21,21 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
 /**
  * Tests for the FlashSalesService cancelFlashSale method.
+ * The stock arithmetic itself is covered by FlashSaleItemRepositoryTest.
  */
 public class FlashSalesServiceCancelFlashSaleTest {
 
@@ -44,13 +52,18 @@ public class FlashSalesServiceCancelFlashSaleTest {
      */
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
     @BeforeAll
     public static void beforeAll() {
         sales = Mockito.mock(FlashSaleRepository.class);
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler,
+            Mockito.mock(FlashSaleLotteryRepository.class));
     }
 
     /**
@@ -61,6 +74,7 @@ public class FlashSalesServiceCancelFlashSaleTest {
         Mockito.reset(sales);
         Mockito.reset(items);
         Mockito.reset(products);
+        Mockito.reset(saleScheduler);
     }
 
     @Test
@@ -75,90 +89,56 @@ public class FlashSalesServiceCancelFlashSaleTest {
         final var sale = new FlashSale(saleId, "Draft Sale",
             OffsetDateTime.now().plusDays(1), OffsetDateTime.now().plusDays(2),
             SaleStatus.DRAFT, new ArrayList<>());
-        final var saleItem = new FlashSaleItem(UUID.randomUUID(), sale, product, 20, 0,
-            BigDecimal.valueOf(40.0));
-        sale.getItems().add(saleItem);
+        sale.getItems().add(new FlashSaleItem(UUID.randomUUID(), sale, product, 20, 0,
+            BigDecimal.valueOf(40.0)));
 
         when(sales.findById(saleId)).thenReturn(Optional.of(sale));
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(items.save(any(FlashSaleItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(products.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sales.transitionStatus(List.of(saleId), "DRAFT", "CANCELLED")).thenReturn(List.of(saleId));
+        when(items.releaseUnsoldStock(List.of(saleId))).thenReturn(1);
 
         service.cancelFlashSale(saleId);
 
-        assertEquals(SaleStatus.CANCELLED, sale.getStatus());
-        // Verify allocatedStock was reduced to 0 (soldCount for DRAFT)
-        assertEquals(0, saleItem.getAllocatedStock());
-        // Verify product reservedCount was decreased by 20 (all allocated stock)
-        assertEquals(10, product.getReservedCount()); // 30 - 20 = 10
-        verify(sales, times(1)).save(sale);
-        verify(items, times(1)).save(saleItem);
-        verify(products, times(1)).save(product);
+        verify(sales, times(1)).transitionStatus(List.of(saleId), "DRAFT", "CANCELLED");
+        verify(items, times(1)).releaseUnsoldStock(List.of(saleId));
+        verify(saleScheduler, times(1)).unscheduleSale(saleId);
+        // Stock is released set-based, never by saving entities one at a time
+        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(products, never()).save(any(Product.class));
+        verify(sales, never()).save(any(FlashSale.class));
     }
 
     @Test
     public void shouldCancelActiveSaleWithUnsoldStock() {
         final UUID saleId = UUID.randomUUID();
 
-        // Create a product with reserved stock
-        final var product = new Product(UUID.randomUUID(), "Test Product", "Description", 100,
-            BigDecimal.valueOf(50.0), 30);
-
-        // Create an ACTIVE sale with unsold stock (allocated 20, sold 10)
         final var sale = new FlashSale(saleId, "Active Sale",
             OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1),
             SaleStatus.ACTIVE, new ArrayList<>());
-        final var saleItem = new FlashSaleItem(UUID.randomUUID(), sale, product, 20, 10,
-            BigDecimal.valueOf(40.0));
-        sale.getItems().add(saleItem);
 
         when(sales.findById(saleId)).thenReturn(Optional.of(sale));
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(items.save(any(FlashSaleItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(products.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sales.transitionStatus(List.of(saleId), "ACTIVE", "CANCELLED")).thenReturn(List.of(saleId));
 
         service.cancelFlashSale(saleId);
 
-        assertEquals(SaleStatus.CANCELLED, sale.getStatus());
-        // Verify allocatedStock was reduced to match soldCount (10)
-        assertEquals(10, saleItem.getAllocatedStock());
-        // Verify product reservedCount was decreased by the difference (20 - 10 = 10)
-        assertEquals(20, product.getReservedCount()); // 30 - 10 = 20
-        verify(sales, times(1)).save(sale);
-        verify(items, times(1)).save(saleItem);
-        verify(products, times(1)).save(product);
+        verify(sales, times(1)).transitionStatus(List.of(saleId), "ACTIVE", "CANCELLED");
+        verify(items, times(1)).releaseUnsoldStock(List.of(saleId));
     }
 
     @Test
-    public void shouldCancelActiveSaleWithAllStockSold() {
+    public void shouldNotReleaseStockWhenStatusChangedConcurrently() {
         final UUID saleId = UUID.randomUUID();
 
-        // Create a product
-        final var product = new Product(UUID.randomUUID(), "Test Product", "Description", 100,
-            BigDecimal.valueOf(50.0), 20);
-
-        // Create an ACTIVE sale where all stock was sold (allocated 20, sold 20)
         final var sale = new FlashSale(saleId, "Active Sale",
             OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1),
             SaleStatus.ACTIVE, new ArrayList<>());
-        final var saleItem = new FlashSaleItem(UUID.randomUUID(), sale, product, 20, 20,
-            BigDecimal.valueOf(40.0));
-        sale.getItems().add(saleItem);
 
         when(sales.findById(saleId)).thenReturn(Optional.of(sale));
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sales.transitionStatus(List.of(saleId), "ACTIVE", "CANCELLED")).thenReturn(List.of());
 
-        service.cancelFlashSale(saleId);
+        assertThrows(IllegalArgumentException.class, () -> service.cancelFlashSale(saleId));
 
-        assertEquals(SaleStatus.CANCELLED, sale.getStatus());
-        // Verify allocatedStock was not changed (all stock was sold, difference = 0)
-        assertEquals(20, saleItem.getAllocatedStock());
-        // Verify product reservedCount was not changed (no unsold stock to release)
-        assertEquals(20, product.getReservedCount());
-        verify(sales, times(1)).save(sale);
-        // Verify item and product were not saved (no changes needed)
-        verify(items, times(0)).save(any(FlashSaleItem.class));
-        verify(products, times(0)).save(any(Product.class));
+        assertEquals(SaleStatus.ACTIVE, sale.getStatus());
+        verify(items, never()).releaseUnsoldStock(anyList());
     }
 
     @Test
@@ -176,7 +156,8 @@ public class FlashSalesServiceCancelFlashSaleTest {
 
         assertEquals("Cannot cancel a COMPLETED sale", exception.getMessage());
         assertEquals(SaleStatus.COMPLETED, sale.getStatus()); // Status should not change
-        verify(sales, times(0)).save(any(FlashSale.class));
+        verify(sales, never()).transitionStatus(anyList(), anyString(), anyString());
+        verify(items, never()).releaseUnsoldStock(anyList());
     }
 
     @Test
@@ -194,7 +175,8 @@ public class FlashSalesServiceCancelFlashSaleTest {
 
         assertEquals("Sale is already CANCELLED", exception.getMessage());
         assertEquals(SaleStatus.CANCELLED, sale.getStatus()); // Status should not change
-        verify(sales, times(0)).save(any(FlashSale.class));
+        verify(sales, never()).transitionStatus(anyList(), anyString(), anyString());
+        verify(items, never()).releaseUnsoldStock(anyList());
     }
 
     @Test
@@ -207,83 +189,6 @@ public class FlashSalesServiceCancelFlashSaleTest {
             () -> service.cancelFlashSale(saleId));
 
         assertEquals(saleId, exception.getSaleId());
-        verify(sales, times(0)).save(any(FlashSale.class));
+        verify(sales, never()).transitionStatus(anyList(), anyString(), anyString());
     }
-
-    @Test
-    public void shouldProcessMultipleItemsInSale() {
-        final UUID saleId = UUID.randomUUID();
-
-        // Create products
-        final var product1 = new Product(UUID.randomUUID(), "Product 1", "Description", 100,
-            BigDecimal.valueOf(50.0), 30);
-        final var product2 = new Product(UUID.randomUUID(), "Product 2", "Description", 200,
-            BigDecimal.valueOf(75.0), 50);
-
-        // Create a DRAFT sale with multiple items
-        final var sale = new FlashSale(saleId, "Draft Sale",
-            OffsetDateTime.now().plusDays(1), OffsetDateTime.now().plusDays(2),
-            SaleStatus.DRAFT, new ArrayList<>());
-
-        // Item 1: allocated 20, sold 0 (20 unsold - all should be released)
-        final var saleItem1 = new FlashSaleItem(UUID.randomUUID(), sale, product1, 20, 0,
-            BigDecimal.valueOf(40.0));
-        // Item 2: allocated 30, sold 15 (15 unsold)
-        final var saleItem2 = new FlashSaleItem(UUID.randomUUID(), sale, product2, 30, 15,
-            BigDecimal.valueOf(60.0));
-        // Item 3: allocated 10, sold 10 (0 unsold - should be skipped)
-        final var saleItem3 = new FlashSaleItem(UUID.randomUUID(), sale, product2, 10, 10,
-            BigDecimal.valueOf(60.0));
-
-        sale.getItems().add(saleItem1);
-        sale.getItems().add(saleItem2);
-        sale.getItems().add(saleItem3);
-
-        when(sales.findById(saleId)).thenReturn(Optional.of(sale));
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(items.save(any(FlashSaleItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(products.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
-
-        service.cancelFlashSale(saleId);
-
-        assertEquals(SaleStatus.CANCELLED, sale.getStatus());
-
-        // Verify item 1: allocatedStock reduced to 0, product1 reservedCount reduced by
-        // 20
-        assertEquals(0, saleItem1.getAllocatedStock());
-        assertEquals(10, product1.getReservedCount()); // 30 - 20 = 10
-
-        // Verify item 2: allocatedStock reduced to 15, product2 reservedCount reduced
-        // by 15
-        assertEquals(15, saleItem2.getAllocatedStock());
-        assertEquals(35, product2.getReservedCount()); // 50 - 15 = 35
-
-        // Verify item 3: no changes (all stock was sold)
-        assertEquals(10, saleItem3.getAllocatedStock());
-
-        // Verify saves: 2 items and 2 products (item3 was not saved)
-        verify(items, times(2)).save(any(FlashSaleItem.class));
-        verify(products, times(2)).save(any(Product.class));
-    }
-
-    @Test
-    public void shouldHandleSaleWithNoItems() {
-        final UUID saleId = UUID.randomUUID();
-
-        // Create a sale with no items
-        final var sale = new FlashSale(saleId, "Draft Sale",
-            OffsetDateTime.now().plusDays(1), OffsetDateTime.now().plusDays(2),
-            SaleStatus.DRAFT, new ArrayList<>());
-
-        when(sales.findById(saleId)).thenReturn(Optional.of(sale));
-        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
-
-        service.cancelFlashSale(saleId);
-
-        assertEquals(SaleStatus.CANCELLED, sale.getStatus());
-        // Verify no item or product saves were called
-        verify(items, times(0)).save(any(FlashSaleItem.class));
-        verify(products, times(0)).save(any(Product.class));
-    }
-
 }
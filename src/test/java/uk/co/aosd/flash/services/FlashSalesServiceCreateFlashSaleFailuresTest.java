@@ -14,6 +14,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
@@ -21,6 +23,7 @@ import uk.co.aosd.flash.dto.CreateSaleDto;
 import uk.co.aosd.flash.dto.SaleProductDto;
 import uk.co.aosd.flash.exc.*;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
@@ -42,13 +45,18 @@ public class FlashSalesServiceCreateFlashSaleFailuresTest {
      */
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
     @BeforeAll
     public static void beforeAll() {
         sales = Mockito.mock(FlashSaleRepository.class);
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler,
+            Mockito.mock(FlashSaleLotteryRepository.class));
     }
 
     /**
@@ -273,7 +281,9 @@ public class FlashSalesServiceCreateFlashSaleFailuresTest {
 
         final Optional<Product> product1 = Optional
             .of(new Product(UUID.fromString(productUuid1), name1, description1, totalPhysicalStock1, basePrice1, reservedCount1));
-        Mockito.when(products.findById(UUID.fromString(productUuid1))).thenReturn(product1);
+        Mockito.when(products.findAllById(List.of(UUID.fromString(productUuid1)))).thenReturn(List.of(product1.get()));
+        Mockito.when(products.reserveStockReturningFailures(Mockito.any(UUID[].class), Mockito.any(Integer[].class)))
+            .thenReturn(List.of(UUID.fromString(productUuid1)));
 
         final String title = "Title";
         final OffsetDateTime startTime = OffsetDateTime.of(2026, 01, 01, 12, 0, 0, 0, ZoneOffset.UTC);
@@ -290,5 +300,6 @@ public class FlashSalesServiceCreateFlashSaleFailuresTest {
         assertThrows(InsufficientResourcesException.class, () -> {
             service.createFlashSale(sale);
         });
+        Mockito.verify(items, Mockito.never()).insertAll(Mockito.anyList());
     }
 }
@@ -15,13 +15,17 @@ import java.util.UUID;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalMatchers;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.CreateSaleDto;
 import uk.co.aosd.flash.dto.SaleProductDto;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
@@ -43,13 +47,18 @@ public class FlashSalesServiceCreateFlashSaleSuccessTest {
      */
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
     @BeforeAll
     public static void beforeAll() {
         sales = Mockito.mock(FlashSaleRepository.class);
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler,
+            Mockito.mock(FlashSaleLotteryRepository.class));
     }
 
     /**
@@ -60,6 +69,7 @@ public class FlashSalesServiceCreateFlashSaleSuccessTest {
         Mockito.reset(sales);
         Mockito.reset(items);
         Mockito.reset(products);
+        Mockito.reset(saleScheduler);
     }
 
     @Test
@@ -93,9 +103,8 @@ public class FlashSalesServiceCreateFlashSaleSuccessTest {
             .of(new Product(UUID.fromString(productUuid2), name2, description2, totalPhysicalStock2, basePrice2, reservedCount2));
         final Optional<Product> product3 = Optional
             .of(new Product(UUID.fromString(productUuid3), name3, description3, totalPhysicalStock3, basePrice3, reservedCount3));
-        Mockito.when(products.findById(UUID.fromString(productUuid1))).thenReturn(product1);
-        Mockito.when(products.findById(UUID.fromString(productUuid2))).thenReturn(product2);
-        Mockito.when(products.findById(UUID.fromString(productUuid3))).thenReturn(product3);
+        Mockito.when(products.findAllById(List.of(UUID.fromString(productUuid1), UUID.fromString(productUuid2), UUID.fromString(productUuid3))))
+            .thenReturn(List.of(product1.get(), product2.get(), product3.get()));
 
         final String title = "Title";
         final OffsetDateTime startTime = OffsetDateTime.of(2026, 01, 01, 12, 0, 0, 0, ZoneOffset.UTC);
@@ -111,8 +120,14 @@ public class FlashSalesServiceCreateFlashSaleSuccessTest {
         final var saleUuid = service.createFlashSale(sale);
 
         assertNotNull(saleUuid);
-        verify(products, times(3)).findById(Mockito.any(UUID.class));
+        verify(products, times(1)).findAllById(Mockito.anyList());
+        verify(products, times(1)).reserveStockReturningFailures(
+            AdditionalMatchers.aryEq(new UUID[] { UUID.fromString(productUuid1), UUID.fromString(productUuid2), UUID.fromString(productUuid3) }),
+            AdditionalMatchers.aryEq(new Integer[] { 10, 11, 12 }));
+        verify(items, times(1)).insertAll(Mockito.argThat(inserted -> inserted.size() == 3));
+        verify(products, times(0)).save(Mockito.any(Product.class));
         verify(sales, times(1)).save(newSale);
+        verify(saleScheduler, times(1)).scheduleSale(savedSale.getId(), startTime, endTime, status);
         assertEquals(savedSale.getId(), saleUuid);
     }
 }
@@ -3,7 +3,11 @@ package uk.co.aosd.flash.services;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -21,6 +25,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
 import uk.co.aosd.flash.domain.Product;
@@ -33,6 +39,7 @@ import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
 import uk.co.aosd.flash.exc.InsufficientResourcesException;
 import uk.co.aosd.flash.exc.ProductNotFoundException;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
@@ -51,13 +58,18 @@ public class FlashSalesServiceItemManagementTest {
 
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
     @BeforeAll
     public static void beforeAll() {
         sales = Mockito.mock(FlashSaleRepository.class);
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler,
+            Mockito.mock(FlashSaleLotteryRepository.class));
     }
 
     @BeforeEach
@@ -65,6 +77,7 @@ public class FlashSalesServiceItemManagementTest {
         Mockito.reset(sales);
         Mockito.reset(items);
         Mockito.reset(products);
+        Mockito.reset(auditLogService);
     }
 
     // addItemsToFlashSale tests
@@ -79,18 +92,18 @@ public class FlashSalesServiceItemManagementTest {
         final var itemDto = new AddFlashSaleItemDto(productId.toString(), 30, null);
 
         when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
-        when(products.findById(productId)).thenReturn(Optional.of(product));
-        when(items.existsByFlashSaleIdAndProductId(saleId, productId)).thenReturn(false);
-        when(items.save(any(FlashSaleItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(products.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
+        when(products.findAllById(List.of(productId))).thenReturn(List.of(product));
+        when(products.reserveStockReturningFailures(any(UUID[].class), any(Integer[].class))).thenReturn(List.of());
 
         final FlashSaleResponseDto result = service.addItemsToFlashSale(saleId, List.of(itemDto));
 
         assertNotNull(result);
-        assertEquals(50, product.getReservedCount()); // 20 + 30 = 50
-        verify(items, times(1)).save(any(FlashSaleItem.class));
-        verify(products, times(1)).save(product);
+        verify(products, times(1)).reserveStockReturningFailures(
+            aryEq(new UUID[] { productId }), aryEq(new Integer[] { 30 }));
+        verify(items, times(1)).insertAll(argThat((List<FlashSaleItem> inserted) -> inserted.size() == 1
+            && inserted.get(0).getAllocatedStock() == 30
+            && BigDecimal.valueOf(50.0).equals(inserted.get(0).getSalePrice())));
+        verify(products, never()).save(any(Product.class));
     }
 
     @Test
@@ -107,21 +120,21 @@ public class FlashSalesServiceItemManagementTest {
         final var itemDto2 = new AddFlashSaleItemDto(productId2.toString(), 50, null);
 
         when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
-        when(products.findById(productId1)).thenReturn(Optional.of(product1));
-        when(products.findById(productId2)).thenReturn(Optional.of(product2));
-        when(items.existsByFlashSaleIdAndProductId(saleId, productId1)).thenReturn(false);
-        when(items.existsByFlashSaleIdAndProductId(saleId, productId2)).thenReturn(false);
-        when(items.save(any(FlashSaleItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(products.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
+        when(products.findAllById(List.of(productId1, productId2))).thenReturn(List.of(product1, product2));
+        when(products.reserveStockReturningFailures(any(UUID[].class), any(Integer[].class))).thenReturn(List.of());
 
         final FlashSaleResponseDto result = service.addItemsToFlashSale(saleId, List.of(itemDto1, itemDto2));
 
         assertNotNull(result);
-        assertEquals(40, product1.getReservedCount()); // 10 + 30 = 40
-        assertEquals(70, product2.getReservedCount()); // 20 + 50 = 70
-        verify(items, times(2)).save(any(FlashSaleItem.class));
-        verify(products, times(2)).save(any(Product.class));
+        verify(products, times(1)).findAllById(List.of(productId1, productId2));
+        verify(products, never()).findById(any(UUID.class));
+        verify(products, times(1)).reserveStockReturningFailures(
+            aryEq(new UUID[] { productId1, productId2 }), aryEq(new Integer[] { 30, 50 }));
+        verify(items, times(1)).insertAll(argThat((List<FlashSaleItem> inserted) -> inserted.size() == 2
+            && BigDecimal.valueOf(40.0).equals(inserted.get(0).getSalePrice())
+            && BigDecimal.valueOf(75.0).equals(inserted.get(1).getSalePrice())));
+        verify(auditLogService, times(2)).recordAdminAction(eq(AuditLogService.ACTION_ADD_FLASH_SALE_ITEM),
+            eq(AuditLogService.ENTITY_FLASH_SALE_ITEM), any());
     }
 
     @Test
@@ -133,7 +146,7 @@ public class FlashSalesServiceItemManagementTest {
 
         assertThrows(FlashSaleNotFoundException.class,
             () -> service.addItemsToFlashSale(saleId, List.of(itemDto)));
-        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(items, never()).insertAll(anyList());
     }
 
     @Test
@@ -147,7 +160,7 @@ public class FlashSalesServiceItemManagementTest {
         final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
             () -> service.addItemsToFlashSale(saleId, List.of(itemDto)));
         assertEquals("Only DRAFT flash sales can have items added", exception.getMessage());
-        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(items, never()).insertAll(anyList());
     }
 
     @Test
@@ -158,11 +171,12 @@ public class FlashSalesServiceItemManagementTest {
         final var itemDto = new AddFlashSaleItemDto(productId.toString(), 30, null);
 
         when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
-        when(products.findById(productId)).thenReturn(Optional.empty());
+        when(products.findAllById(List.of(productId))).thenReturn(List.of());
 
         assertThrows(ProductNotFoundException.class,
             () -> service.addItemsToFlashSale(saleId, List.of(itemDto)));
-        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(products, never()).reserveStockReturningFailures(any(UUID[].class), any(Integer[].class));
+        verify(items, never()).insertAll(anyList());
     }
 
     @Test
@@ -172,16 +186,34 @@ public class FlashSalesServiceItemManagementTest {
         final var product = new Product(productId, "Test Product", "Description", 100,
             BigDecimal.valueOf(50.0), 20);
         final var sale = createTestSale(saleId, "Draft Sale", SaleStatus.DRAFT);
+        sale.getItems().add(new FlashSaleItem(UUID.randomUUID(), sale, product, 10, 0, BigDecimal.valueOf(40.0)));
         final var itemDto = new AddFlashSaleItemDto(productId.toString(), 30, null);
 
         when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
-        when(products.findById(productId)).thenReturn(Optional.of(product));
-        when(items.existsByFlashSaleIdAndProductId(saleId, productId)).thenReturn(true);
+        when(products.findAllById(List.of(productId))).thenReturn(List.of(product));
 
         final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
             () -> service.addItemsToFlashSale(saleId, List.of(itemDto)));
         assertEquals("Products already in sale: " + productId, exception.getMessage());
-        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(items, never()).insertAll(anyList());
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionForProductListedTwice() {
+        final UUID saleId = UUID.randomUUID();
+        final UUID productId = UUID.randomUUID();
+        final var product = new Product(productId, "Test Product", "Description", 100,
+            BigDecimal.valueOf(50.0), 20);
+        final var sale = createTestSale(saleId, "Draft Sale", SaleStatus.DRAFT);
+        final var itemDto = new AddFlashSaleItemDto(productId.toString(), 10, null);
+
+        when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
+        when(products.findAllById(List.of(productId, productId))).thenReturn(List.of(product));
+
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> service.addItemsToFlashSale(saleId, List.of(itemDto, itemDto)));
+        assertEquals("Products already in sale: " + productId, exception.getMessage());
+        verify(items, never()).insertAll(anyList());
     }
 
     @Test
@@ -194,12 +226,12 @@ public class FlashSalesServiceItemManagementTest {
         final var itemDto = new AddFlashSaleItemDto(productId.toString(), 20, null); // Would exceed 100
 
         when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
-        when(products.findById(productId)).thenReturn(Optional.of(product));
-        when(items.existsByFlashSaleIdAndProductId(saleId, productId)).thenReturn(false);
+        when(products.findAllById(List.of(productId))).thenReturn(List.of(product));
+        when(products.reserveStockReturningFailures(any(UUID[].class), any(Integer[].class))).thenReturn(List.of(productId));
 
         assertThrows(InsufficientResourcesException.class,
             () -> service.addItemsToFlashSale(saleId, List.of(itemDto)));
-        verify(items, never()).save(any(FlashSaleItem.class));
+        verify(items, never()).insertAll(anyList());
     }
 
     // updateFlashSaleItem tests
@@ -22,8 +22,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.FlashSaleResponseDto;
@@ -32,6 +35,7 @@ import uk.co.aosd.flash.exc.FlashSaleNotFoundException;
 import uk.co.aosd.flash.exc.InvalidSaleTimesException;
 import uk.co.aosd.flash.exc.SaleDurationTooShortException;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
 import uk.co.aosd.flash.repository.FlashSaleRepository;
 import uk.co.aosd.flash.repository.ProductRepository;
 
@@ -50,13 +54,20 @@ public class FlashSalesServiceManagementTest {
 
     private static AuditLogService auditLogService;
 
+    private static SaleScheduler saleScheduler;
+
+    private static FlashSaleLotteryRepository lotteries;
+
     @BeforeAll
     public static void beforeAll() {
         sales = Mockito.mock(FlashSaleRepository.class);
         items = Mockito.mock(FlashSaleItemRepository.class);
         products = Mockito.mock(ProductRepository.class);
         auditLogService = Mockito.mock(AuditLogService.class);
-        service = new FlashSalesService(sales, items, products, auditLogService);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        lotteries = Mockito.mock(FlashSaleLotteryRepository.class);
+        service = new FlashSalesService(sales, items, products, auditLogService,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), saleScheduler, lotteries);
     }
 
     @BeforeEach
@@ -64,6 +75,7 @@ public class FlashSalesServiceManagementTest {
         Mockito.reset(sales);
         Mockito.reset(items);
         Mockito.reset(products);
+        Mockito.reset(lotteries);
     }
 
     // getAllFlashSales tests
@@ -305,6 +317,38 @@ public class FlashSalesServiceManagementTest {
         verify(sales, never()).save(any(FlashSale.class));
     }
 
+    @Test
+    public void shouldRejectTimesThatMoveTheSaleStartPastItsLotteryEntryWindow() {
+        final UUID saleId = UUID.randomUUID();
+        final var sale = createTestSale(saleId, "Test Sale", SaleStatus.DRAFT);
+        final OffsetDateTime closesAt = OffsetDateTime.of(2026, 1, 15, 11, 0, 0, 0, ZoneOffset.UTC);
+        final UpdateFlashSaleDto updateDto = new UpdateFlashSaleDto(null,
+            OffsetDateTime.of(2026, 1, 15, 11, 30, 0, 0, ZoneOffset.UTC), OffsetDateTime.of(2026, 1, 15, 13, 0, 0, 0, ZoneOffset.UTC));
+
+        when(sales.findById(saleId)).thenReturn(Optional.of(sale));
+        when(lotteries.findById(saleId)).thenReturn(Optional.of(new FlashSaleLottery(saleId, closesAt, null)));
+
+        assertThrows(IllegalArgumentException.class, () -> service.updateFlashSale(saleId, updateDto));
+        verify(sales, never()).save(any(FlashSale.class));
+    }
+
+    @Test
+    public void shouldAllowTimesThatStillContainTheLotteryEntryWindow() {
+        final UUID saleId = UUID.randomUUID();
+        final var sale = createTestSale(saleId, "Test Sale", SaleStatus.DRAFT);
+        final OffsetDateTime closesAt = OffsetDateTime.of(2026, 1, 15, 11, 0, 0, 0, ZoneOffset.UTC);
+        final OffsetDateTime newEndTime = OffsetDateTime.of(2026, 1, 15, 15, 0, 0, 0, ZoneOffset.UTC);
+
+        when(sales.findById(saleId)).thenReturn(Optional.of(sale));
+        when(sales.save(any(FlashSale.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sales.findByIdWithItems(saleId)).thenReturn(Optional.of(sale));
+        when(lotteries.findById(saleId)).thenReturn(Optional.of(new FlashSaleLottery(saleId, closesAt, null)));
+
+        final FlashSaleResponseDto result = service.updateFlashSale(saleId, new UpdateFlashSaleDto(null, null, newEndTime));
+
+        assertEquals(newEndTime, result.endTime());
+    }
+
     @Test
     public void shouldThrowFlashSaleNotFoundExceptionWhenUpdatingNonExistentSale() {
         final UUID saleId = UUID.randomUUID();
@@ -0,0 +1,54 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Tests for FoldOrderRollupsJob.
+ */
+public class FoldOrderRollupsJobTest {
+
+    private FoldOrderRollupsJob job;
+    private AnalyticsService analyticsService;
+    private JobExecutionContext jobExecutionContext;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        analyticsService = Mockito.mock(AnalyticsService.class);
+        jobExecutionContext = Mockito.mock(JobExecutionContext.class);
+        job = new FoldOrderRollupsJob();
+
+        // Use reflection to inject the mock service
+        final Field field = FoldOrderRollupsJob.class.getDeclaredField("analyticsService");
+        field.setAccessible(true);
+        field.set(job, analyticsService);
+    }
+
+    @Test
+    public void shouldFoldRollups() throws JobExecutionException {
+        when(analyticsService.foldOrderRollups()).thenReturn(42);
+
+        job.execute(jobExecutionContext);
+
+        verify(analyticsService, times(1)).foldOrderRollups();
+    }
+
+    @Test
+    public void shouldThrowJobExecutionExceptionOnServiceError() {
+        when(analyticsService.foldOrderRollups()).thenThrow(new RuntimeException("Service error"));
+
+        assertThrows(JobExecutionException.class, () -> {
+            job.execute(jobExecutionContext);
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.domain.OrderMessageJournalEntry;
+import uk.co.aosd.flash.domain.OrderStage;
+import uk.co.aosd.flash.repository.OrderMessageJournalRepository;
+
+/**
+ * Test the in-process order pipeline.
+ */
+public class InProcessOrderPipelineTest {
+
+    private OrderMessageJournalRepository journalRepository;
+    private OrderStageHandler stageHandler;
+    private SimpleMeterRegistry meterRegistry;
+    private InProcessOrderPipeline pipeline;
+
+    @BeforeEach
+    public void beforeEach() {
+        journalRepository = Mockito.mock(OrderMessageJournalRepository.class);
+        stageHandler = Mockito.mock(OrderStageHandler.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        when(journalRepository.save(any(OrderMessageJournalEntry.class))).thenAnswer(invocation -> {
+            final OrderMessageJournalEntry entry = invocation.getArgument(0);
+            entry.setId(UUID.randomUUID());
+            return entry;
+        });
+
+        pipeline = new InProcessOrderPipeline(journalRepository, stageHandler, meterRegistry, 16, 1, 2);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        pipeline.stop();
+    }
+
+    @Test
+    public void shouldJournalAndDeliverPublishedMessage() {
+        when(journalRepository.findByCreatedAtBeforeOrderByCreatedAtAsc(any())).thenReturn(List.of());
+        pipeline.start();
+        final UUID orderId = UUID.randomUUID();
+
+        pipeline.sendForProcessing(orderId);
+
+        verify(journalRepository).save(any(OrderMessageJournalEntry.class));
+        verify(stageHandler, timeout(2000)).handle(eq(OrderStage.PROCESSING), eq(orderId), any(Instant.class));
+        verify(journalRepository, timeout(2000)).deleteById(any(UUID.class));
+    }
+
+    @Test
+    public void shouldReplayJournalEntriesOnStart() {
+        final UUID orderId = UUID.randomUUID();
+        final UUID journalId = UUID.randomUUID();
+        when(journalRepository.findByCreatedAtBeforeOrderByCreatedAtAsc(any())).thenReturn(List.of(
+            new OrderMessageJournalEntry(journalId, orderId, OrderStage.DISPATCH, OffsetDateTime.now().minusMinutes(1))));
+
+        pipeline.start();
+
+        verify(stageHandler, timeout(2000)).handle(eq(OrderStage.DISPATCH), eq(orderId), any(Instant.class));
+        verify(journalRepository, timeout(2000)).deleteById(journalId);
+    }
+
+    @Test
+    public void shouldKeepJournalEntryWhenAllAttemptsFail() {
+        final UUID orderId = UUID.randomUUID();
+        final UUID journalId = UUID.randomUUID();
+        final Instant enqueuedAt = Instant.now();
+        doThrow(new RuntimeException("boom")).when(stageHandler).handle(OrderStage.DISPATCH, orderId, enqueuedAt);
+        final InProcessOrderPipeline.Envelope envelope = new InProcessOrderPipeline.Envelope(
+            journalId, orderId, OrderStage.DISPATCH, enqueuedAt, 2);
+
+        pipeline.handle(envelope);
+
+        verify(stageHandler, times(1)).handle(OrderStage.DISPATCH, orderId, enqueuedAt);
+        verify(journalRepository, never()).deleteById(eq(journalId));
+        assertEquals(1, meterRegistry.get("flash.messaging.handoff.latency").tag("transport", "in-process").timer().count());
+    }
+}
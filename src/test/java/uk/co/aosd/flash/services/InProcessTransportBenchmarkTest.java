@@ -0,0 +1,22 @@
+package uk.co.aosd.flash.services;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.co.aosd.flash.config.TestSecurityConfig;
+
+/**
+ * Hand-off benchmark of the in-process order pipeline.
+ */
+@SpringBootTest(classes = TestSecurityConfig.class)
+@Testcontainers
+@ActiveProfiles({ "test", "api-service", "in-process-broker" })
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class InProcessTransportBenchmarkTest extends OrderTransportBenchmark {
+
+    @Override
+    String transport() {
+        return InProcessOrderPipeline.TRANSPORT;
+    }
+}
@@ -0,0 +1,181 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.FlashSaleLottery;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.LotteryEntryDto;
+import uk.co.aosd.flash.exc.InsufficientStockException;
+import uk.co.aosd.flash.exc.SaleNotActiveException;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+
+/**
+ * Tests for LotteryService.
+ */
+public class LotteryServiceTest {
+
+    private FlashSaleRepository flashSaleRepository;
+    private FlashSaleItemRepository flashSaleItemRepository;
+    private FlashSaleLotteryRepository lotteryRepository;
+    private SaleScheduler saleScheduler;
+    private AuditLogService auditLogService;
+    private ReservationExpiryWheel reservationExpiryWheel;
+    private OrderMessageSender orderMessageSender;
+    private NotificationService notificationService;
+    private SimpleMeterRegistry meterRegistry;
+    private LotteryService service;
+
+    private FlashSale sale;
+    private FlashSaleItem item;
+    private FlashSaleLottery lottery;
+
+    @BeforeEach
+    public void setUp() {
+        flashSaleRepository = Mockito.mock(FlashSaleRepository.class);
+        flashSaleItemRepository = Mockito.mock(FlashSaleItemRepository.class);
+        lotteryRepository = Mockito.mock(FlashSaleLotteryRepository.class);
+        saleScheduler = Mockito.mock(SaleScheduler.class);
+        auditLogService = Mockito.mock(AuditLogService.class);
+        reservationExpiryWheel = Mockito.mock(ReservationExpiryWheel.class);
+        orderMessageSender = Mockito.mock(OrderMessageSender.class);
+        notificationService = Mockito.mock(NotificationService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new LotteryService(flashSaleRepository, flashSaleItemRepository, lotteryRepository, saleScheduler,
+            auditLogService, reservationExpiryWheel, orderMessageSender, notificationService, meterRegistry);
+
+        sale = new FlashSale(UUID.randomUUID(), "Sale", OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of());
+        final Product product = new Product(UUID.randomUUID(), "Product", "Description", 100, BigDecimal.TEN, 10);
+        item = new FlashSaleItem(UUID.randomUUID(), sale, product, 10, 0, BigDecimal.ONE);
+        lottery = new FlashSaleLottery(sale.getId(), OffsetDateTime.now().plusMinutes(10), null);
+        when(flashSaleRepository.findById(sale.getId())).thenReturn(Optional.of(sale));
+        when(flashSaleItemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+        when(lotteryRepository.findById(sale.getId())).thenReturn(Optional.of(lottery));
+    }
+
+    @Test
+    public void shouldAllocateDraftSaleByLotteryAndScheduleTheDraw() {
+        sale.setStatus(SaleStatus.DRAFT);
+        final OffsetDateTime closesAt = sale.getStartTime().plusMinutes(30);
+
+        service.enableLottery(sale.getId(), closesAt);
+
+        verify(lotteryRepository).save(new FlashSaleLottery(sale.getId(), closesAt, null));
+        verify(saleScheduler).scheduleLotteryDraw(sale.getId(), closesAt);
+        verify(auditLogService).recordAdminAction(AuditLogService.ACTION_ENABLE_LOTTERY, AuditLogService.ENTITY_FLASH_SALE, sale.getId());
+    }
+
+    @Test
+    public void shouldOnlyAllocateDraftSalesByLottery() {
+        assertThrows(IllegalArgumentException.class, () -> service.enableLottery(sale.getId(), sale.getStartTime().plusMinutes(30)));
+        verify(saleScheduler, never()).scheduleLotteryDraw(any(), any());
+    }
+
+    @Test
+    public void shouldRequireEntryWindowToCloseWithinTheSale() {
+        sale.setStatus(SaleStatus.DRAFT);
+
+        assertThrows(IllegalArgumentException.class, () -> service.enableLottery(sale.getId(), sale.getStartTime()));
+        assertThrows(IllegalArgumentException.class, () -> service.enableLottery(sale.getId(), sale.getEndTime().plusMinutes(1)));
+        verify(lotteryRepository, never()).save(any());
+    }
+
+    @Test
+    public void shouldEnterDrawWhileWindowIsOpen() {
+        final UUID userId = UUID.randomUUID();
+
+        final LotteryEntryDto entry = service.enter(userId, new CreateOrderDto(item.getId(), 2));
+
+        assertEquals(lottery.getEntryWindowClosesAt(), entry.entryWindowClosesAt());
+        verify(lotteryRepository).enter(item.getId(), userId, 2);
+        assertEquals(1, meterRegistry.get("flash.lottery.entries").counter().count());
+    }
+
+    @Test
+    public void shouldNotEnterDrawOnceWindowHasClosed() {
+        lottery.setEntryWindowClosesAt(OffsetDateTime.now().minusSeconds(1));
+
+        assertThrows(SaleNotActiveException.class, () -> service.enter(UUID.randomUUID(), new CreateOrderDto(item.getId(), 1)));
+        verify(lotteryRepository, never()).enter(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldNotEnterDrawForSaleWithoutLottery() {
+        when(lotteryRepository.findById(sale.getId())).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> service.enter(UUID.randomUUID(), new CreateOrderDto(item.getId(), 1)));
+    }
+
+    @Test
+    public void shouldNotEnterDrawForMoreThanTheAllocatedStock() {
+        assertThrows(InsufficientStockException.class, () -> service.enter(UUID.randomUUID(), new CreateOrderDto(item.getId(), 11)));
+    }
+
+    @Test
+    public void shouldQueueAndNotifyEveryWinner() {
+        final UUID firstOrder = UUID.randomUUID();
+        final UUID firstUser = UUID.randomUUID();
+        final UUID secondOrder = UUID.randomUUID();
+        final UUID secondUser = UUID.randomUUID();
+        when(lotteryRepository.drawWinners(eq(sale.getId()), any(), any()))
+            .thenReturn(List.of(new Object[] { firstOrder, firstUser, true }, new Object[] { secondOrder, secondUser, true }));
+
+        assertEquals(2, service.draw(sale.getId()));
+
+        final ArgumentCaptor<OffsetDateTime> now = ArgumentCaptor.forClass(OffsetDateTime.class);
+        final ArgumentCaptor<OffsetDateTime> expiresAt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(lotteryRepository).drawWinners(eq(sale.getId()), now.capture(), expiresAt.capture());
+        assertEquals(now.getValue().plusSeconds(900), expiresAt.getValue());
+        verify(reservationExpiryWheel).schedule(firstOrder, expiresAt.getValue());
+        verify(orderMessageSender).sendForProcessing(firstOrder);
+        verify(orderMessageSender).sendForProcessing(secondOrder);
+        verify(notificationService).sendLotteryWonNotification(firstUser, firstOrder);
+        verify(notificationService).sendLotteryWonNotification(secondUser, secondOrder);
+        assertEquals(2, meterRegistry.get("flash.lottery.winners").counter().count());
+    }
+
+    @Test
+    public void shouldRollBackDrawThatWouldOversell() {
+        final UUID orderId = UUID.randomUUID();
+        when(lotteryRepository.drawWinners(eq(sale.getId()), any(), any()))
+            .thenReturn(List.<Object[]>of(new Object[] { orderId, UUID.randomUUID(), false }));
+
+        assertThrows(IllegalStateException.class, () -> service.draw(sale.getId()));
+
+        verify(orderMessageSender, never()).sendForProcessing(any());
+        verify(reservationExpiryWheel, never()).schedule(any(), any());
+    }
+
+    @Test
+    public void shouldDoNothingWhenThereIsNothingToDraw() {
+        when(lotteryRepository.drawWinners(eq(sale.getId()), any(), any())).thenReturn(List.of());
+
+        assertEquals(0, service.draw(sale.getId()));
+
+        verify(orderMessageSender, never()).sendForProcessing(any());
+    }
+}
@@ -0,0 +1,60 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Tests for MaintainOrderPartitionsJob.
+ */
+public class MaintainOrderPartitionsJobTest {
+
+    private MaintainOrderPartitionsJob job;
+    private OrderPartitionService orderPartitionService;
+    private JobExecutionContext jobExecutionContext;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        orderPartitionService = Mockito.mock(OrderPartitionService.class);
+        jobExecutionContext = Mockito.mock(JobExecutionContext.class);
+        job = new MaintainOrderPartitionsJob();
+
+        // Use reflection to inject the mock service
+        final Field field = MaintainOrderPartitionsJob.class.getDeclaredField("orderPartitionService");
+        field.setAccessible(true);
+        field.set(job, orderPartitionService);
+    }
+
+    @Test
+    public void shouldCreateAndArchivePartitions() throws JobExecutionException {
+        when(orderPartitionService.createFuturePartitions()).thenReturn(2);
+        when(orderPartitionService.archiveOldPartitions()).thenReturn(2);
+
+        job.execute(jobExecutionContext);
+
+        verify(orderPartitionService, times(1)).createFuturePartitions();
+        verify(orderPartitionService, times(1)).archiveOldPartitions();
+    }
+
+    @Test
+    public void shouldThrowJobExecutionExceptionOnServiceError() {
+        doThrow(new RuntimeException("Service error")).when(orderPartitionService).createFuturePartitions();
+
+        assertThrows(JobExecutionException.class, () -> {
+            job.execute(jobExecutionContext);
+        });
+
+        verify(orderPartitionService, never()).archiveOldPartitions();
+    }
+}
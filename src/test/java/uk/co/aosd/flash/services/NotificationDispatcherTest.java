@@ -0,0 +1,139 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.domain.NotificationType;
+
+/**
+ * Test the notification dispatcher.
+ */
+public class NotificationDispatcherTest {
+
+    private NotificationProvider provider;
+    private SimpleMeterRegistry meterRegistry;
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    public void beforeEach() {
+        provider = Mockito.mock(NotificationProvider.class);
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new NotificationDispatcher(provider, meterRegistry, 3, 10, 50);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldCoalesceNotificationsPerUserIntoOneBatch() throws InterruptedException {
+        final UUID user1 = UUID.randomUUID();
+        final UUID user2 = UUID.randomUUID();
+        dispatcher.onNotification(event(user1, NotificationType.ORDER_CONFIRMATION));
+        dispatcher.onNotification(event(user2, NotificationType.ORDER_CONFIRMATION));
+        dispatcher.onNotification(event(user1, NotificationType.DISPATCH));
+
+        assertEquals(3, dispatcher.dispatchOnce(100));
+
+        final ArgumentCaptor<List<NotificationProvider.UserNotifications>> captor = ArgumentCaptor.forClass(List.class);
+        verify(provider).send(captor.capture());
+        final List<NotificationProvider.UserNotifications> batch = captor.getValue();
+        assertEquals(2, batch.size());
+        assertEquals(user1, batch.get(0).userId());
+        assertEquals(List.of(NotificationType.ORDER_CONFIRMATION, NotificationType.DISPATCH),
+            batch.get(0).events().stream().map(NotificationEvent::type).toList());
+        assertEquals(user2, batch.get(1).userId());
+        assertEquals(3, meterRegistry.get("flash.notifications.latency").timers().stream().mapToLong(t -> t.count()).sum());
+        assertEquals(0.0, meterRegistry.get("flash.notifications.backlog").gauge().value());
+    }
+
+    @Test
+    public void shouldDropNotificationsWhenBacklogIsFull() {
+        for (int i = 0; i < 5; i++) {
+            dispatcher.onNotification(event(UUID.randomUUID(), NotificationType.REFUND));
+        }
+
+        assertEquals(3.0, meterRegistry.get("flash.notifications.backlog").gauge().value());
+        assertEquals(2.0, meterRegistry.get("flash.notifications.dropped").tag("type", "REFUND").counter().count());
+    }
+
+    @Test
+    public void shouldCountFailedSends() throws InterruptedException {
+        doThrow(new RuntimeException("provider down")).when(provider).send(anyList());
+        dispatcher.onNotification(event(UUID.randomUUID(), NotificationType.PAYMENT_FAILED));
+        dispatcher.onNotification(event(UUID.randomUUID(), NotificationType.PAYMENT_FAILED));
+
+        assertEquals(2, dispatcher.dispatchOnce(100));
+
+        assertEquals(2.0, meterRegistry.get("flash.notifications.failed").counter().count());
+    }
+
+    @Test
+    public void shouldReturnZeroWhenNothingIsQueued() throws InterruptedException {
+        assertEquals(0, dispatcher.dispatchOnce(10));
+        verify(provider, never()).send(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSendTheBatchBeingCollectedAndTheBacklogOnStop() throws InterruptedException {
+        dispatcher = new NotificationDispatcher(provider, meterRegistry, 10, 10, 60_000);
+        final UUID collected = UUID.randomUUID();
+        dispatcher.start();
+        dispatcher.onNotification(event(collected, NotificationType.ORDER_CONFIRMATION));
+        // Wait for the worker to take the first notification and start collecting its batch
+        final long deadline = System.nanoTime() + 5_000_000_000L;
+        while (meterRegistry.get("flash.notifications.backlog").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, meterRegistry.get("flash.notifications.backlog").gauge().value());
+
+        dispatcher.stop();
+
+        final ArgumentCaptor<List<NotificationProvider.UserNotifications>> captor = ArgumentCaptor.forClass(List.class);
+        verify(provider).send(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(collected, captor.getValue().get(0).userId());
+    }
+
+    @Test
+    public void shouldSendCollectedNotificationsWhenInterruptedWhileCollecting() throws InterruptedException {
+        dispatcher = new NotificationDispatcher(provider, meterRegistry, 10, 10, 60_000);
+        dispatcher.onNotification(event(UUID.randomUUID(), NotificationType.DISPATCH));
+        final int[] sent = new int[1];
+        final boolean[] interrupted = new boolean[1];
+        final Thread collector = Thread.ofPlatform().start(() -> {
+            try {
+                sent[0] = dispatcher.dispatchOnce(100);
+            } catch (final InterruptedException e) {
+                sent[0] = -1;
+            }
+            interrupted[0] = Thread.currentThread().isInterrupted();
+        });
+        final long deadline = System.nanoTime() + 5_000_000_000L;
+        while (meterRegistry.get("flash.notifications.backlog").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        collector.interrupt();
+        collector.join(5_000);
+
+        assertEquals(1, sent[0]);
+        assertTrue(interrupted[0]);
+        verify(provider).send(anyList());
+    }
+
+    private static NotificationEvent event(final UUID userId, final NotificationType type) {
+        return new NotificationEvent(userId, UUID.randomUUID(), type, Instant.now());
+    }
+}
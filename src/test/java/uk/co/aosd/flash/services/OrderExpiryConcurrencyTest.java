@@ -0,0 +1,145 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import org.testcontainers.rabbitmq.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+import uk.co.aosd.flash.config.TestSecurityConfig;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+import uk.co.aosd.flash.repository.OrderPlacement;
+import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.ProductRepository;
+
+/**
+ * Verifies that expiring holds while new orders are placed for the same item neither deadlocks nor
+ * loses stock. Expiry locks the orders and then the item; placement locks the item and appends the
+ * order, so the two never wait on each other in opposite orders.
+ */
+@SpringBootTest(classes = TestSecurityConfig.class)
+@Testcontainers
+@ActiveProfiles({ "test", "admin-service", "api-service" })
+public class OrderExpiryConcurrencyTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres:latest");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    @SuppressWarnings("resource")
+    public static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:latest"))
+        .withExposedPorts(6379);
+
+    @Container
+    @ServiceConnection
+    public static RabbitMQContainer rabbitMQContainer = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    private static final int ORDERS = 200;
+    private static final int EXPIRY_BATCH_SIZE = 10;
+    private static final int PLACING_THREADS = 4;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private FlashSaleItem item;
+
+    @BeforeEach
+    public void setUp() {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final FlashSale sale = flashSaleRepository.save(new FlashSale(null, "Expiry Concurrency Sale", now.minusHours(1),
+            now.plusHours(1), SaleStatus.ACTIVE, List.of()));
+        final Product product = productRepository.save(
+            new Product(null, "Expiry Concurrency Product", "Description", 1000, BigDecimal.valueOf(49.99), 2 * ORDERS));
+        item = flashSaleItemRepository.save(new FlashSaleItem(null, sale, product, 2 * ORDERS, 0, BigDecimal.valueOf(29.99)));
+    }
+
+    @Test
+    public void placingOrdersWhileHoldsExpireShouldNeitherDeadlockNorLoseStock() throws Exception {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final List<UUID> overdue = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            overdue.add(place(now.minusMinutes(5), now.minusMinutes(1)));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(PLACING_THREADS + 1);
+        try {
+            final List<CompletableFuture<?>> work = new ArrayList<>();
+            work.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < overdue.size(); i += EXPIRY_BATCH_SIZE) {
+                    orderService.expireOrders(overdue.subList(i, Math.min(i + EXPIRY_BATCH_SIZE, overdue.size())));
+                }
+            }, executor));
+            for (int t = 0; t < PLACING_THREADS; t++) {
+                work.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < ORDERS / PLACING_THREADS; i++) {
+                        place(OffsetDateTime.now(), OffsetDateTime.now().plusMinutes(10));
+                    }
+                }, executor));
+            }
+            // A deadlock surfaces here as the database's deadlock error from one of the tasks
+            CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (final UUID id : overdue) {
+            assertEquals(OrderStatus.EXPIRED, orderRepository.findById(id).orElseThrow().getStatus());
+        }
+        // Read in one statement, so the sold count and the holds come from the same snapshot
+        final List<Long> stock = jdbcTemplate.queryForObject(
+            "SELECT i.sold_count, (SELECT COALESCE(SUM(o.sold_quantity), 0) FROM orders o "
+                + "WHERE o.flash_sale_item_id = i.id AND o.status IN ('PENDING', 'PAID', 'DISPATCHED')) "
+                + "FROM flash_sale_items i WHERE i.id = ?",
+            (rs, rowNum) -> List.of(rs.getLong(1), rs.getLong(2)), item.getId());
+        assertEquals(ORDERS, stock.get(0));
+        assertEquals(stock.get(0), stock.get(1));
+    }
+
+    private UUID place(final OffsetDateTime placedAt, final OffsetDateTime expiresAt) {
+        final OrderPlacement placement = orderRepository.placeOrder(item.getId(), UUID.randomUUID(), 1, placedAt, expiresAt);
+        assertEquals(OrderPlacement.PLACED, placement.getOutcome());
+        return placement.getOrderId();
+    }
+}
@@ -0,0 +1,171 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Order;
+import uk.co.aosd.flash.domain.OrderStatus;
+import uk.co.aosd.flash.domain.OrderStatusHistory;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderView;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.OrderStatusHistoryRepository;
+import uk.co.aosd.flash.repository.ProductRepository;
+
+/**
+ * Verifies that listing orders with their status history runs a fixed number of statements,
+ * however many orders are listed.
+ */
+@DataJpaTest
+@Import(OrderService.class)
+public class OrderListQueryCountTest {
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres");
+
+    @MockitoBean
+    private AuditLogService auditLogService;
+
+    @MockitoBean
+    private PaymentService paymentService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private OrderMessageSender orderMessageSender;
+
+    @MockitoBean
+    private ReservationExpiryWheel reservationExpiryWheel;
+
+    @MockitoBean
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void shouldListOrdersWithHistoryInConstantStatements() {
+        final UUID smallBuyer = UUID.randomUUID();
+        final UUID largeBuyer = UUID.randomUUID();
+        createOrders(smallBuyer, 2);
+        createOrders(largeBuyer, 40);
+
+        final long smallListStatements = countStatements(smallBuyer, 2);
+        final long largeListStatements = countStatements(largeBuyer, 40);
+
+        // One for the orders with their product, item and sale, one for all of their history and one
+        // for the capped count
+        assertEquals(3, smallListStatements);
+        assertEquals(smallListStatements, largeListStatements);
+    }
+
+    @Test
+    public void shouldListSlimOrdersWithoutJoins() {
+        final UUID buyer = UUID.randomUUID();
+        createOrders(buyer, 5);
+        entityManager.clear();
+        statistics.clear();
+
+        final List<OrderDetailDto> orders = orderService.getOrdersByUser(buyer, null, null, null,
+            OrderView.of("orderId,status,totalAmount", null), null, null).orders();
+
+        // Just the order rows and the count: no product, sale or history
+        assertEquals(5, orders.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private long countStatements(final UUID userId, final int expectedOrders) {
+        entityManager.clear();
+        statistics.clear();
+
+        final List<OrderDetailDto> orders = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, 100).orders();
+
+        assertEquals(expectedOrders, orders.size());
+        orders.forEach(order -> assertEquals(2, order.statusHistory().size()));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createOrders(final UUID userId, final int count) {
+        final FlashSale sale = flashSaleRepository.save(new FlashSale(null, "Query Count Sale",
+            OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1), SaleStatus.ACTIVE, List.of()));
+        for (int i = 0; i < count; i++) {
+            final Product product = productRepository.save(
+                new Product(null, "Product " + i, "Description", 100, BigDecimal.valueOf(9.99), 10));
+            final FlashSaleItem item = flashSaleItemRepository.save(
+                new FlashSaleItem(null, sale, product, 10, 1, BigDecimal.valueOf(4.99)));
+            final Order order = new Order();
+            order.setUserId(userId);
+            order.setFlashSaleItem(item);
+            order.setProduct(product);
+            order.setSoldPrice(item.getSalePrice());
+            order.setSoldQuantity(1);
+            order.setStatus(OrderStatus.DISPATCHED);
+            order.setCreatedAt(OffsetDateTime.now());
+            final UUID orderId = orderRepository.save(order).getId();
+            orderStatusHistoryRepository.save(history(orderId, OrderStatus.PENDING, OrderStatus.PAID));
+            orderStatusHistoryRepository.save(history(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED));
+        }
+        entityManager.flush();
+    }
+
+    private OrderStatusHistory history(final UUID orderId, final OrderStatus from, final OrderStatus to) {
+        return OrderStatusHistory.builder()
+            .orderId(orderId)
+            .fromStatus(from)
+            .toStatus(to)
+            .changedAt(OffsetDateTime.now())
+            .build();
+    }
+}
@@ -0,0 +1,59 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.repository.OrderRepository;
+
+/**
+ * Tests for OrderPartitionService.
+ */
+public class OrderPartitionServiceTest {
+
+    private OrderRepository orderRepository;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository = Mockito.mock(OrderRepository.class);
+    }
+
+    @Test
+    public void shouldCreatePartitionsFromThisMonthToTheConfiguredMonthsAhead() {
+        final ArgumentCaptor<OffsetDateTime> from = ArgumentCaptor.forClass(OffsetDateTime.class);
+        final ArgumentCaptor<OffsetDateTime> to = ArgumentCaptor.forClass(OffsetDateTime.class);
+        when(orderRepository.createMonthlyPartitions(from.capture(), to.capture())).thenReturn(2);
+
+        assertEquals(2, new OrderPartitionService(orderRepository, 3, 0).createFuturePartitions());
+
+        assertEquals(from.getValue().plusMonths(3), to.getValue());
+        assertEquals(ZoneOffset.UTC, from.getValue().getOffset());
+    }
+
+    @Test
+    public void shouldArchiveMonthsOlderThanTheRetentionPeriod() {
+        when(orderRepository.archiveMonthlyPartitions(any())).thenReturn(4);
+
+        assertEquals(4, new OrderPartitionService(orderRepository, 3, 12).archiveOldPartitions());
+
+        final OffsetDateTime startOfMonth = OffsetDateTime.now(ZoneOffset.UTC).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+        verify(orderRepository).archiveMonthlyPartitions(startOfMonth.minusMonths(12));
+    }
+
+    @Test
+    public void shouldNotArchiveWithoutARetentionPeriod() {
+        assertEquals(0, new OrderPartitionService(orderRepository, 3, 0).archiveOldPartitions());
+
+        verify(orderRepository, never()).archiveMonthlyPartitions(any());
+    }
+}
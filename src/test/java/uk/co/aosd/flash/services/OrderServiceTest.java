@@ -3,6 +3,7 @@ package uk.co.aosd.flash.services;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -18,7 +19,15 @@ import java.util.UUID;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.co.aosd.flash.domain.FlashSale;
 import uk.co.aosd.flash.domain.FlashSaleItem;
 import uk.co.aosd.flash.domain.Order;
@@ -27,16 +36,23 @@ import uk.co.aosd.flash.domain.OrderStatus;
 import uk.co.aosd.flash.domain.Product;
 import uk.co.aosd.flash.domain.SaleStatus;
 import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.OrderCursor;
 import uk.co.aosd.flash.dto.OrderDetailDto;
+import uk.co.aosd.flash.dto.OrderPage;
 import uk.co.aosd.flash.dto.OrderResponseDto;
+import uk.co.aosd.flash.dto.OrderStatusHistoryDto;
+import uk.co.aosd.flash.dto.OrderView;
 import uk.co.aosd.flash.dto.ProcessPaymentResult;
 import uk.co.aosd.flash.exc.InsufficientStockException;
 import uk.co.aosd.flash.exc.InvalidOrderStatusException;
 import uk.co.aosd.flash.exc.OrderNotFoundException;
 import uk.co.aosd.flash.exc.SaleNotActiveException;
 import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.OrderPlacement;
 import uk.co.aosd.flash.repository.OrderRepository;
 import uk.co.aosd.flash.repository.OrderStatusHistoryRepository;
+import uk.co.aosd.flash.repository.OrderSummary;
+import uk.co.aosd.flash.repository.OrderTransition;
 import uk.co.aosd.flash.repository.ProductRepository;
 
 /**
@@ -51,7 +67,11 @@ public class OrderServiceTest {
     private AuditLogService auditLogService;
     private PaymentService paymentService;
     private NotificationService notificationService;
+    private OrderMessageSender orderMessageSender;
+    private ReservationExpiryWheel reservationExpiryWheel;
+    private ApplicationEventPublisher eventPublisher;
     private SimpleMeterRegistry meterRegistry;
+    private PlatformTransactionManager transactionManager;
     private OrderService orderService;
 
     private UUID userId;
@@ -71,7 +91,12 @@ public class OrderServiceTest {
         auditLogService = Mockito.mock(AuditLogService.class);
         paymentService = Mockito.mock(PaymentService.class);
         notificationService = Mockito.mock(NotificationService.class);
+        orderMessageSender = Mockito.mock(OrderMessageSender.class);
+        reservationExpiryWheel = Mockito.mock(ReservationExpiryWheel.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
         meterRegistry = new SimpleMeterRegistry();
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
 
         orderService = new OrderService(
             orderRepository,
@@ -81,7 +106,11 @@ public class OrderServiceTest {
             auditLogService,
             paymentService,
             notificationService,
-            meterRegistry);
+            orderMessageSender,
+            reservationExpiryWheel,
+            eventPublisher,
+            meterRegistry,
+            new TransactionTemplate(transactionManager));
 
         Mockito.when(orderStatusHistoryRepository.findByOrderIdOrderByChangedAtAsc(any())).thenReturn(List.of());
 
@@ -101,46 +130,208 @@ public class OrderServiceTest {
     @Test
     public void shouldCreateOrderSuccessfully() {
         final CreateOrderDto createOrderDto = new CreateOrderDto(flashSaleItemId, 5);
+        final UUID orderId = UUID.randomUUID();
 
-        Mockito.when(flashSaleItemRepository.findById(flashSaleItemId)).thenReturn(Optional.of(flashSaleItem));
-        Mockito.when(flashSaleItemRepository.incrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
-            final Order order = invocation.getArgument(0);
-            order.setId(UUID.randomUUID());
-            return order;
-        });
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(5), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(orderId, OrderPlacement.PLACED, 45));
 
         final OrderResponseDto response = orderService.createOrder(createOrderDto, userId);
 
         assertNotNull(response);
-        assertNotNull(response.orderId());
+        assertEquals(orderId, response.orderId());
         assertEquals(OrderStatus.PENDING, response.status());
+        // The whole order is one statement: no separate reads, stock update or insert
+        Mockito.verify(flashSaleItemRepository, Mockito.never()).findById(any());
+        Mockito.verify(flashSaleItemRepository, Mockito.never()).incrementSoldCount(any(), Mockito.anyInt());
+        Mockito.verify(orderRepository, Mockito.never()).save(any(Order.class));
         Mockito.verify(notificationService).sendOrderConfirmation(eq(userId), eq(response.orderId()));
+        Mockito.verify(orderMessageSender).sendForProcessing(response.orderId());
         assertEquals(1, meterRegistry.find("flash.orders.created").counter().count());
     }
 
+    @Test
+    public void shouldHoldStockForNewOrderUntilItsExpiryTime() {
+        final CreateOrderDto createOrderDto = new CreateOrderDto(flashSaleItemId, 1);
+
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(1), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(UUID.randomUUID(), OrderPlacement.PLACED, 39));
+
+        final OrderResponseDto response = orderService.createOrder(createOrderDto, userId);
+
+        final ArgumentCaptor<OffsetDateTime> createdAt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        final ArgumentCaptor<OffsetDateTime> expiresAt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        Mockito.verify(orderRepository).placeOrder(eq(flashSaleItemId), eq(userId), eq(1), createdAt.capture(), expiresAt.capture());
+        assertEquals(createdAt.getValue().plusSeconds(120), expiresAt.getValue());
+        Mockito.verify(reservationExpiryWheel).schedule(response.orderId(), expiresAt.getValue());
+    }
+
+    @Test
+    public void shouldExpireOrdersAndReleaseStockOncePerItem() {
+        final UUID otherItemId = UUID.randomUUID();
+        final FlashSaleItem otherItem = new FlashSaleItem(otherItemId, flashSale, product, 50, 10, BigDecimal.ONE);
+        final Order first = pendingOrder(flashSaleItem, 2);
+        final Order second = pendingOrder(flashSaleItem, 3);
+        final Order third = pendingOrder(otherItem, 1);
+        final Order paid = pendingOrder(flashSaleItem, 4); // Paid for before its hold ran out
+        final List<UUID> candidates = List.of(first.getId(), second.getId(), third.getId(), paid.getId());
+        final List<UUID> expiredIds = List.of(first.getId(), second.getId(), third.getId());
+
+        Mockito.when(orderRepository.lockExpiredPendingOrders(eq(candidates), any(OffsetDateTime.class)))
+            .thenReturn(List.of(first, second, third));
+        Mockito.when(flashSaleItemRepository.decrementSoldCount(any(UUID.class), Mockito.anyInt())).thenReturn(1);
+
+        assertEquals(3, orderService.expireOrders(candidates));
+
+        // Stock is released before the status change, so item rows are locked after the order rows
+        final InOrder lockOrder = Mockito.inOrder(orderRepository, flashSaleItemRepository);
+        lockOrder.verify(orderRepository).lockExpiredPendingOrders(eq(candidates), any(OffsetDateTime.class));
+        lockOrder.verify(flashSaleItemRepository, Mockito.times(2)).decrementSoldCount(any(UUID.class), Mockito.anyInt());
+        lockOrder.verify(orderRepository).updateStatusForIds(expiredIds, OrderStatus.PENDING, OrderStatus.EXPIRED);
+
+        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
+        Mockito.verify(flashSaleItemRepository).decrementSoldCount(otherItemId, 1);
+        Mockito.verify(eventPublisher).publishEvent(new StockReleasedEvent(flashSaleItemId));
+        Mockito.verify(eventPublisher).publishEvent(new StockReleasedEvent(otherItemId));
+        Mockito.verify(flashSaleItemRepository, Mockito.times(2)).decrementSoldCount(any(UUID.class), Mockito.anyInt());
+        Mockito.verify(orderStatusHistoryRepository).saveAll(argThat((List<OrderStatusHistory> history) -> history.size() == 3
+            && history.stream().allMatch(h -> h.getFromStatus() == OrderStatus.PENDING && h.getToStatus() == OrderStatus.EXPIRED)));
+        Mockito.verify(notificationService).sendReservationExpiredNotification(userId, first.getId());
+        Mockito.verify(notificationService, Mockito.never()).sendReservationExpiredNotification(userId, paid.getId());
+        assertEquals(3, meterRegistry.get("flash.orders.expired").counter().count());
+        assertEquals(3, meterRegistry.get("flash.stock.release.latency").tag("reason", "expiry").timer().count());
+    }
+
+    @Test
+    public void shouldNotReleaseStockWhenNoOrderCouldBeExpired() {
+        final List<UUID> candidates = List.of(UUID.randomUUID());
+        Mockito.when(orderRepository.lockExpiredPendingOrders(eq(candidates), any(OffsetDateTime.class))).thenReturn(List.of());
+
+        assertEquals(0, orderService.expireOrders(candidates));
+
+        Mockito.verify(flashSaleItemRepository, Mockito.never()).decrementSoldCount(any(UUID.class), Mockito.anyInt());
+        Mockito.verify(orderRepository, Mockito.never()).updateStatusForIds(any(), any(), any());
+        Mockito.verify(orderStatusHistoryRepository, Mockito.never()).saveAll(any());
+    }
+
+    @Test
+    public void shouldCreateOrderForWaitingBuyerWhenStockIsAvailable() {
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(2), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(UUID.randomUUID(), OrderPlacement.PLACED, 38));
+
+        final Optional<UUID> orderId = orderService.createWaitlistOrder(userId, flashSaleItemId, 2);
+
+        assertTrue(orderId.isPresent());
+        Mockito.verify(orderMessageSender).sendForProcessing(orderId.get());
+        Mockito.verify(notificationService).sendWaitlistOrderNotification(userId, orderId.get());
+        Mockito.verify(reservationExpiryWheel).schedule(eq(orderId.get()), any(OffsetDateTime.class));
+    }
+
+    @Test
+    public void shouldNotCreateOrderForWaitingBuyerWhenStockIsNotAvailable() {
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(2), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(null, OrderPlacement.INSUFFICIENT_STOCK, 1));
+
+        assertTrue(orderService.createWaitlistOrder(userId, flashSaleItemId, 2).isEmpty());
+
+        Mockito.verify(orderMessageSender, Mockito.never()).sendForProcessing(any());
+        Mockito.verify(notificationService, Mockito.never()).sendWaitlistOrderNotification(any(), any());
+    }
+
+    private OrderPlacement placement(final UUID orderId, final String outcome, final Integer available) {
+        return new OrderPlacement() {
+            @Override
+            public UUID getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public String getOutcome() {
+                return outcome;
+            }
+
+            @Override
+            public Integer getAvailable() {
+                return available;
+            }
+        };
+    }
+
+    private Order pendingOrder(final FlashSaleItem item, final int quantity) {
+        final Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUserId(userId);
+        order.setFlashSaleItem(item);
+        order.setProduct(product);
+        order.setSoldPrice(item.getSalePrice());
+        order.setSoldQuantity(quantity);
+        order.setStatus(OrderStatus.PENDING);
+        order.setExpiresAt(OffsetDateTime.now().minusSeconds(1));
+        return order;
+    }
+
     @Test
     public void shouldFailWhenSaleHasEnded() {
         final CreateOrderDto createOrderDto = new CreateOrderDto(flashSaleItemId, 5);
         flashSale.setEndTime(OffsetDateTime.now().minusHours(1));
 
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(5), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(null, OrderPlacement.SALE_NOT_ACTIVE, 40));
         Mockito.when(flashSaleItemRepository.findById(flashSaleItemId)).thenReturn(Optional.of(flashSaleItem));
 
-        assertThrows(SaleNotActiveException.class, () -> {
+        final SaleNotActiveException e = assertThrows(SaleNotActiveException.class, () -> {
             orderService.createOrder(createOrderDto, userId);
         });
+        assertEquals(flashSaleId, e.getSaleId());
+        Mockito.verify(orderMessageSender, Mockito.never()).sendForProcessing(any());
     }
 
     @Test
     public void shouldFailWhenInsufficientStock() {
         final CreateOrderDto createOrderDto = new CreateOrderDto(flashSaleItemId, 50);
-        flashSaleItem.setSoldCount(45); // Only 5 available, but requesting 50
 
-        Mockito.when(flashSaleItemRepository.findById(flashSaleItemId)).thenReturn(Optional.of(flashSaleItem));
+        // Only 5 available, but requesting 50
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(50), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(null, OrderPlacement.INSUFFICIENT_STOCK, 5));
 
-        assertThrows(InsufficientStockException.class, () -> {
+        final InsufficientStockException e = assertThrows(InsufficientStockException.class, () -> {
             orderService.createOrder(createOrderDto, userId);
         });
+        assertEquals(5, e.getAvailableStock());
+        Mockito.verify(flashSaleItemRepository, Mockito.never()).findById(any());
+    }
+
+    @Test
+    public void shouldFailWhenItemDoesNotExistOrIsAllocatedByLottery() {
+        final CreateOrderDto createOrderDto = new CreateOrderDto(flashSaleItemId, 1);
+
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), eq(userId), eq(1), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(null, OrderPlacement.ITEM_NOT_FOUND, null), placement(null, OrderPlacement.LOTTERY, 10));
+
+        assertThrows(OrderNotFoundException.class, () -> orderService.createOrder(createOrderDto, userId));
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(createOrderDto, userId));
+    }
+
+    @Test
+    public void shouldDryRunPlacementInRolledBackTransaction() {
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), any(), eq(1), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(UUID.randomUUID(), OrderPlacement.PLACED, null));
+
+        assertTrue(orderService.dryRunOrder(flashSaleItemId, 1));
+
+        final ArgumentCaptor<TransactionStatus> status = ArgumentCaptor.forClass(TransactionStatus.class);
+        Mockito.verify(transactionManager).commit(status.capture());
+        assertTrue(status.getValue().isRollbackOnly());
+        Mockito.verify(reservationExpiryWheel, Mockito.never()).schedule(any(), any());
+        Mockito.verify(orderMessageSender, Mockito.never()).sendForProcessing(any());
+        assertEquals(0, meterRegistry.counter("flash.orders.created").count());
+    }
+
+    @Test
+    public void shouldReportDryRunOrderThatWouldNotBePlaced() {
+        Mockito.when(orderRepository.placeOrder(eq(flashSaleItemId), any(), eq(1), any(OffsetDateTime.class), any(OffsetDateTime.class)))
+            .thenReturn(placement(null, OrderPlacement.SALE_NOT_ACTIVE, 10));
+
+        assertFalse(orderService.dryRunOrder(flashSaleItemId, 1));
     }
 
     @Test
@@ -155,15 +346,17 @@ public class OrderServiceTest {
         order.setSoldQuantity(5);
         order.setStatus(OrderStatus.PENDING);
 
-        Mockito.when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.findByIdForUpdate(orderId)).thenReturn(Optional.of(order));
         Mockito.when(paymentService.processPayment(orderId, BigDecimal.valueOf(399.95))).thenReturn(true);
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.PAID, null, false))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PENDING));
 
         final ProcessPaymentResult result = orderService.processOrderPayment(orderId);
 
         assertNotNull(result);
         assertTrue(result.success());
         assertEquals(orderId, result.orderId());
-        assertEquals(OrderStatus.PAID, order.getStatus());
+        Mockito.verify(orderRepository).transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.PAID, null, false);
         assertEquals(1, meterRegistry.find("flash.payments.success").counter().count());
     }
 
@@ -179,7 +372,7 @@ public class OrderServiceTest {
         order.setSoldQuantity(5);
         order.setStatus(OrderStatus.PENDING);
 
-        Mockito.when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.findByIdForUpdate(orderId)).thenReturn(Optional.of(order));
         Mockito.when(paymentService.processPayment(orderId, BigDecimal.valueOf(399.95))).thenReturn(false);
 
         final ProcessPaymentResult result = orderService.processOrderPayment(orderId);
@@ -187,95 +380,83 @@ public class OrderServiceTest {
         assertNotNull(result);
         assertTrue(!result.success());
         assertEquals(orderId, result.orderId());
-        assertEquals(OrderStatus.FAILED, order.getStatus());
+        // The order is moved to FAILED and its stock released when the payment-failed message is handled
+        Mockito.verify(orderRepository, Mockito.never()).transitionStatus(any(), any(), any(), any(), Mockito.anyBoolean());
         assertEquals(1, meterRegistry.find("flash.payments.failure").counter().count());
     }
 
     @Test
     public void shouldHandleRefundSuccessfully() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
-
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.decrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PAID, OrderStatus.REFUNDED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PAID));
 
         orderService.handleRefund(orderId);
 
-        assertEquals(OrderStatus.REFUNDED, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
+        Mockito.verify(orderRepository).transitionStatus(orderId, OrderStatus.PAID, OrderStatus.REFUNDED, null, true);
         Mockito.verify(notificationService).sendRefundNotification(userId, orderId);
+        Mockito.verify(eventPublisher).publishEvent(new StockReleasedEvent(flashSaleItemId));
     }
 
     @Test
     public void shouldProcessFailedPayment() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.FAILED);
-
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.decrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PENDING));
 
         orderService.processFailedPayment(orderId);
 
-        assertEquals(OrderStatus.FAILED, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
+        // The status change and the stock release are one transition
+        Mockito.verify(orderRepository).transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null, true);
+        Mockito.verify(flashSaleItemRepository, Mockito.never()).decrementSoldCount(any(), Mockito.anyInt());
+        Mockito.verify(eventPublisher).publishEvent(new StockReleasedEvent(flashSaleItemId));
         Mockito.verify(notificationService).sendPaymentFailedNotification(userId, orderId);
     }
 
     @Test
-    public void shouldHandleCancelSuccessfully() {
+    public void shouldIgnoreReplayedFailedPayment() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PENDING);
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.FAILED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.WRONG_STATUS, OrderStatus.FAILED));
+
+        orderService.processFailedPayment(orderId);
 
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.decrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
+        Mockito.verify(eventPublisher, Mockito.never()).publishEvent(any(Object.class));
+        Mockito.verify(notificationService, Mockito.never()).sendPaymentFailedNotification(any(), any());
+    }
+
+    @Test
+    public void shouldHandleCancelSuccessfully() {
+        final UUID orderId = UUID.randomUUID();
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PENDING));
 
         orderService.handleCancel(orderId);
 
-        assertEquals(OrderStatus.CANCELLED, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
+        Mockito.verify(orderRepository).transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null, true);
         Mockito.verify(notificationService).sendCancellationNotification(userId, orderId);
+        Mockito.verify(eventPublisher).publishEvent(new StockReleasedEvent(flashSaleItemId));
     }
 
     @Test
     public void shouldFailCancelWhenOrderNotPending() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setStatus(OrderStatus.PAID);
-
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.WRONG_STATUS, OrderStatus.PAID));
 
-        assertThrows(InvalidOrderStatusException.class, () -> {
+        final InvalidOrderStatusException e = assertThrows(InvalidOrderStatusException.class, () -> {
             orderService.handleCancel(orderId);
         });
+        assertEquals(OrderStatus.PAID, e.getCurrentStatus());
+        assertEquals(OrderStatus.PENDING, e.getRequiredStatus());
+        Mockito.verify(eventPublisher, Mockito.never()).publishEvent(any(Object.class));
     }
 
     @Test
     public void shouldFailCancelWhenOrderNotFound() {
         final UUID orderId = UUID.randomUUID();
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED, null, true))
+            .thenReturn(new OrderTransition(OrderTransition.Outcome.NOT_FOUND, null, null, null));
 
         assertThrows(OrderNotFoundException.class, () -> {
             orderService.handleCancel(orderId);
@@ -285,57 +466,98 @@ public class OrderServiceTest {
     @Test
     public void shouldProcessDispatchSuccessfully() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
-
-        Mockito.when(orderRepository.findByIdWithProduct(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(productRepository.decrementStock(productId, 5)).thenReturn(1);
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PAID));
 
         orderService.processDispatch(orderId);
 
-        assertEquals(OrderStatus.DISPATCHED, order.getStatus());
-        Mockito.verify(productRepository).decrementStock(productId, 5);
+        Mockito.verify(orderRepository).transitionStatus(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, null, true);
         Mockito.verify(notificationService).sendDispatchNotification(userId, orderId);
     }
 
     @Test
     public void shouldFailDispatchWhenOrderNotPaid() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setStatus(OrderStatus.PENDING);
-
-        Mockito.when(orderRepository.findByIdWithProduct(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PAID, OrderStatus.DISPATCHED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.WRONG_STATUS, OrderStatus.PENDING));
 
         assertThrows(InvalidOrderStatusException.class, () -> {
             orderService.processDispatch(orderId);
         });
+        Mockito.verify(notificationService, Mockito.never()).sendDispatchNotification(any(), any());
     }
 
     @Test
-    public void shouldFailRefundWhenOrderNotPaid() {
-        final UUID orderId = UUID.randomUUID();
+    public void shouldDispatchBatchWithOneStockDecrementPerProduct() {
+        final Order first = paidOrder(3);
+        final Order second = paidOrder(4);
+        final Order refunded = paidOrder(2);
+        refunded.setStatus(OrderStatus.REFUNDED);
+        final List<UUID> ids = List.of(first.getId(), second.getId(), refunded.getId());
+
+        Mockito.when(orderRepository.findByIdInWithProduct(ids)).thenReturn(List.of(first, second, refunded));
+        Mockito.when(productRepository.decrementStock(productId, 7)).thenReturn(1);
+        Mockito.when(orderRepository.updateStatusForIds(List.of(first.getId(), second.getId()), OrderStatus.PAID, OrderStatus.DISPATCHED))
+            .thenReturn(2);
+
+        final int dispatched = orderService.processDispatchBatch(ids);
+
+        assertEquals(2, dispatched);
+        Mockito.verify(productRepository, Mockito.times(1)).decrementStock(productId, 7);
+        Mockito.verify(orderStatusHistoryRepository).saveAll(argThat((List<OrderStatusHistory> history) -> history.size() == 2));
+        Mockito.verify(notificationService).sendDispatchNotification(userId, first.getId());
+        Mockito.verify(notificationService).sendDispatchNotification(userId, second.getId());
+        Mockito.verify(notificationService, Mockito.never()).sendDispatchNotification(userId, refunded.getId());
+    }
+
+    @Test
+    public void shouldFailDispatchBatchWhenStockDecrementFails() {
+        final Order order = paidOrder(3);
+        Mockito.when(orderRepository.findByIdInWithProduct(List.of(order.getId()))).thenReturn(List.of(order));
+        Mockito.when(productRepository.decrementStock(productId, 3)).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> orderService.processDispatchBatch(List.of(order.getId())));
+        Mockito.verify(orderRepository, Mockito.never()).updateStatusForIds(any(), any(), any());
+    }
+
+    @Test
+    public void shouldFailDispatchBatchWhenStatusChangedConcurrently() {
+        final Order order = paidOrder(3);
+        Mockito.when(orderRepository.findByIdInWithProduct(List.of(order.getId()))).thenReturn(List.of(order));
+        Mockito.when(productRepository.decrementStock(productId, 3)).thenReturn(1);
+        Mockito.when(orderRepository.updateStatusForIds(any(), any(), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> orderService.processDispatchBatch(List.of(order.getId())));
+    }
+
+    private Order paidOrder(final int quantity) {
         final Order order = new Order();
-        order.setId(orderId);
-        order.setStatus(OrderStatus.PENDING);
+        order.setId(UUID.randomUUID());
+        order.setUserId(userId);
+        order.setFlashSaleItem(flashSaleItem);
+        order.setProduct(product);
+        order.setSoldPrice(BigDecimal.valueOf(79.99));
+        order.setSoldQuantity(quantity);
+        order.setStatus(OrderStatus.PAID);
+        return order;
+    }
 
-        Mockito.when(orderRepository.findByIdWithFlashSaleItem(orderId)).thenReturn(Optional.of(order));
+    @Test
+    public void shouldFailRefundWhenOrderNotPaid() {
+        final UUID orderId = UUID.randomUUID();
+        Mockito.when(orderRepository.transitionStatus(orderId, OrderStatus.PAID, OrderStatus.REFUNDED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.WRONG_STATUS, OrderStatus.PENDING));
 
         assertThrows(InvalidOrderStatusException.class, () -> {
             orderService.handleRefund(orderId);
         });
+        Mockito.verify(notificationService, Mockito.never()).sendRefundNotification(any(), any());
     }
 
     @Test
     public void shouldFailWhenOrderNotFound() {
         final UUID orderId = UUID.randomUUID();
-        Mockito.when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.findByIdForUpdate(orderId)).thenReturn(Optional.empty());
 
         assertThrows(OrderNotFoundException.class, () -> {
             orderService.processOrderPayment(orderId);
@@ -457,9 +679,9 @@ public class OrderServiceTest {
         order2.setStatus(OrderStatus.PENDING);
         order2.setCreatedAt(now);
 
-        Mockito.when(orderRepository.findByUserId(userId)).thenReturn(List.of(order2, order1));
+        Mockito.when(findFirstPage(null, null, null, userId)).thenReturn(List.of(order2, order1));
 
-        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null);
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(2, result.size());
@@ -468,6 +690,71 @@ public class OrderServiceTest {
         assertEquals(orderId1, result.get(1).orderId());
     }
 
+    @Test
+    public void shouldReadStatusHistoryForTheWholeListInOneQuery() {
+        final Order first = paidOrder(1);
+        final Order second = paidOrder(2);
+        final Order third = paidOrder(3);
+        final OffsetDateTime now = OffsetDateTime.now();
+        final OrderStatusHistory firstPaid = new OrderStatusHistory(UUID.randomUUID(), first.getId(), OrderStatus.PENDING, OrderStatus.PAID, now, null);
+        final OrderStatusHistory secondPaid = new OrderStatusHistory(UUID.randomUUID(), second.getId(), OrderStatus.PENDING, OrderStatus.PAID, now, null);
+        final OrderStatusHistory firstRefunded = new OrderStatusHistory(UUID.randomUUID(), first.getId(), OrderStatus.PAID, OrderStatus.REFUNDED,
+            now.plusMinutes(1), null);
+
+        Mockito.when(findFirstPage(null, null, null, userId)).thenReturn(List.of(first, second, third));
+        Mockito.when(orderStatusHistoryRepository.findByOrderIdIn(any())).thenReturn(List.of(firstPaid, secondPaid, firstRefunded));
+
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, null).orders();
+
+        assertEquals(List.of(first.getId(), second.getId(), third.getId()), result.stream().map(OrderDetailDto::orderId).toList());
+        assertEquals(List.of(OrderStatus.PAID, OrderStatus.REFUNDED),
+            result.get(0).statusHistory().stream().map(OrderStatusHistoryDto::toStatus).toList());
+        assertEquals(1, result.get(1).statusHistory().size());
+        assertTrue(result.get(2).statusHistory().isEmpty());
+        Mockito.verify(orderStatusHistoryRepository).findByOrderIdIn(new UUID[] { first.getId(), second.getId(), third.getId() });
+        Mockito.verify(orderStatusHistoryRepository, Mockito.never()).findByOrderIdOrderByChangedAtAsc(any());
+    }
+
+    @Test
+    public void shouldReadOnlyOrderRowsForASlimView() {
+        final UUID orderId = UUID.randomUUID();
+        final OrderSummary summary = Mockito.mock(OrderSummary.class);
+        Mockito.when(summary.getOrderId()).thenReturn(orderId);
+        Mockito.when(summary.getSoldPrice()).thenReturn(BigDecimal.valueOf(79.99));
+        Mockito.when(summary.getSoldQuantity()).thenReturn(2);
+        Mockito.when(summary.getStatus()).thenReturn(OrderStatus.PAID);
+        Mockito.when(findFirstSummaryPage(null, null, null, userId)).thenReturn(List.of(summary));
+
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null,
+            OrderView.of("orderId,status,totalAmount", null), null, null).orders();
+
+        assertEquals(1, result.size());
+        assertEquals(orderId, result.get(0).orderId());
+        assertEquals(OrderStatus.PAID, result.get(0).status());
+        assertEquals(BigDecimal.valueOf(159.98), result.get(0).totalAmount());
+        assertNull(result.get(0).soldPrice());
+        assertNull(result.get(0).productName());
+        assertNull(result.get(0).statusHistory());
+        Mockito.verify(orderRepository, Mockito.never()).findPageWithFilters(any(), any(), any(), any(), any(), any(), any());
+        Mockito.verify(orderStatusHistoryRepository, Mockito.never()).findByOrderIdIn(any());
+    }
+
+    @Test
+    public void shouldJoinTheProductOnlyWhenASlimViewNeedsIt() {
+        final Order order = paidOrder(1);
+        Mockito.when(findFirstPage(null, null, null, null)).thenReturn(List.of(order));
+
+        final List<OrderDetailDto> result = orderService.getAllOrders(null, null, null, null,
+            OrderView.of("orderId,productName", "history"), null, null).orders();
+
+        assertEquals(order.getId(), result.get(0).orderId());
+        assertEquals(product.getName(), result.get(0).productName());
+        assertNull(result.get(0).totalAmount());
+        assertTrue(result.get(0).statusHistory().isEmpty());
+        Mockito.verify(orderRepository, Mockito.never()).findSummaryPageWithFilters(any(), any(), any(), any(), any(), any(), any());
+        Mockito.verify(orderStatusHistoryRepository).findByOrderIdIn(new UUID[] { order.getId() });
+    }
+
     @Test
     public void shouldGetOrdersByUserWithStatusFilter() {
         final UUID orderId1 = UUID.randomUUID();
@@ -483,9 +770,9 @@ public class OrderServiceTest {
         order1.setStatus(OrderStatus.PAID);
         order1.setCreatedAt(now);
 
-        Mockito.when(orderRepository.findByUserIdAndStatus(userId, OrderStatus.PAID)).thenReturn(List.of(order1));
+        Mockito.when(findFirstPage(OrderStatus.PAID, null, null, userId)).thenReturn(List.of(order1));
 
-        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, OrderStatus.PAID, null, null);
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, OrderStatus.PAID, null, null, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -510,10 +797,10 @@ public class OrderServiceTest {
         order1.setStatus(OrderStatus.PAID);
         order1.setCreatedAt(orderDate);
 
-        Mockito.when(orderRepository.findByUserIdAndCreatedAtBetween(userId, startDate, endDate))
+        Mockito.when(findFirstPage(null, startDate, endDate, userId))
             .thenReturn(List.of(order1));
 
-        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, startDate, endDate);
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, startDate, endDate, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -537,10 +824,10 @@ public class OrderServiceTest {
         order1.setStatus(OrderStatus.PAID);
         order1.setCreatedAt(orderDate);
 
-        Mockito.when(orderRepository.findByUserIdAndStatusAndCreatedAtBetween(userId, OrderStatus.PAID, startDate, endDate))
+        Mockito.when(findFirstPage(OrderStatus.PAID, startDate, endDate, userId))
             .thenReturn(List.of(order1));
 
-        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, OrderStatus.PAID, startDate, endDate);
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, OrderStatus.PAID, startDate, endDate, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -554,15 +841,15 @@ public class OrderServiceTest {
         final OffsetDateTime endDate = OffsetDateTime.now().minusDays(1); // endDate before startDate
 
         assertThrows(IllegalArgumentException.class, () -> {
-            orderService.getOrdersByUser(userId, null, startDate, endDate);
+            orderService.getOrdersByUser(userId, null, startDate, endDate, OrderView.FULL, null, null);
         });
     }
 
     @Test
     public void shouldReturnEmptyListWhenNoOrdersFound() {
-        Mockito.when(orderRepository.findByUserId(userId)).thenReturn(List.of());
+        Mockito.when(findFirstPage(null, null, null, userId)).thenReturn(List.of());
 
-        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null);
+        final List<OrderDetailDto> result = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
@@ -596,10 +883,10 @@ public class OrderServiceTest {
         order2.setStatus(OrderStatus.PENDING);
         order2.setCreatedAt(now);
 
-        Mockito.when(orderRepository.findAllWithFilters(null, null, null, null))
+        Mockito.when(findFirstPage(null, null, null, null))
             .thenReturn(List.of(order2, order1));
 
-        final List<OrderDetailDto> result = orderService.getAllOrders(null, null, null, null);
+        final List<OrderDetailDto> result = orderService.getAllOrders(null, null, null, null, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(2, result.size());
@@ -620,10 +907,10 @@ public class OrderServiceTest {
         order.setStatus(OrderStatus.PAID);
         order.setCreatedAt(OffsetDateTime.now());
 
-        Mockito.when(orderRepository.findAllWithFilters(OrderStatus.PAID, null, null, null))
+        Mockito.when(findFirstPage(OrderStatus.PAID, null, null, null))
             .thenReturn(List.of(order));
 
-        final List<OrderDetailDto> result = orderService.getAllOrders(OrderStatus.PAID, null, null, null);
+        final List<OrderDetailDto> result = orderService.getAllOrders(OrderStatus.PAID, null, null, null, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -647,10 +934,10 @@ public class OrderServiceTest {
         order.setStatus(OrderStatus.PAID);
         order.setCreatedAt(OffsetDateTime.now().minusDays(3));
 
-        Mockito.when(orderRepository.findAllWithFilters(OrderStatus.PAID, startDate, endDate, filterUserId))
+        Mockito.when(findFirstPage(OrderStatus.PAID, startDate, endDate, filterUserId))
             .thenReturn(List.of(order));
 
-        final List<OrderDetailDto> result = orderService.getAllOrders(OrderStatus.PAID, startDate, endDate, filterUserId);
+        final List<OrderDetailDto> result = orderService.getAllOrders(OrderStatus.PAID, startDate, endDate, filterUserId, OrderView.FULL, null, null).orders();
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -658,111 +945,82 @@ public class OrderServiceTest {
     }
 
     @Test
-    public void shouldGetOrderByIdForAdminSuccessfully() {
-        final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
-        order.setCreatedAt(OffsetDateTime.now());
+    public void shouldReturnACursorToTheNextPageWhenMoreOrdersRemain() {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final Order newer = paidOrder(1);
+        newer.setCreatedAt(now);
+        final Order older = paidOrder(2);
+        older.setCreatedAt(now.minusMinutes(1));
 
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.findPageWithFilters(null, null, null, userId, OrderCursor.FIRST.createdAt(),
+            OrderCursor.FIRST.orderId(), Limit.of(2))).thenReturn(List.of(newer, older));
+        Mockito.when(orderRepository.countWithFilters(null, null, null, userId, 10000)).thenReturn(2L);
 
-        final OrderDetailDto result = orderService.getOrderByIdForAdmin(orderId);
+        final OrderPage page = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, null, 1);
 
-        assertNotNull(result);
-        assertEquals(orderId, result.orderId());
-        assertEquals(OrderStatus.PAID, result.status());
+        assertEquals(List.of(newer.getId()), page.orders().stream().map(OrderDetailDto::orderId).toList());
+        assertEquals(new OrderCursor(now, newer.getId()), OrderCursor.decode(page.nextCursor()));
+        assertEquals(2, page.totalCount());
+        assertFalse(page.totalCountCapped());
     }
 
     @Test
-    public void shouldFailGetOrderByIdForAdminWhenNotFound() {
-        final UUID orderId = UUID.randomUUID();
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.empty());
-
-        assertThrows(OrderNotFoundException.class, () -> {
-            orderService.getOrderByIdForAdmin(orderId);
-        });
-    }
-
-    // updateOrderStatus tests
-
-    @Test
-    public void shouldUpdateStatusFromPendingToPaid() {
-        final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PENDING);
+    public void shouldReadThePageAfterTheCursor() {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final OrderCursor cursor = new OrderCursor(now, UUID.randomUUID());
+        final Order older = paidOrder(1);
+        older.setCreatedAt(now.minusMinutes(1));
 
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
+        Mockito.when(orderRepository.findPageWithFilters(null, null, null, userId, now, cursor.orderId(), Limit.of(21)))
+            .thenReturn(List.of(older));
 
-        orderService.updateOrderStatus(orderId, OrderStatus.PAID);
+        final OrderPage page = orderService.getOrdersByUser(userId, null, null, null, OrderView.FULL, cursor.encode(), null);
 
-        assertEquals(OrderStatus.PAID, order.getStatus());
-        Mockito.verify(orderRepository).save(order);
-        Mockito.verify(orderStatusHistoryRepository).save(argThat((OrderStatusHistory h) ->
-            orderId.equals(h.getOrderId()) && h.getFromStatus() == OrderStatus.PENDING && h.getToStatus() == OrderStatus.PAID));
-        Mockito.verify(auditLogService).recordAdminAction(eq(AuditLogService.ACTION_UPDATE_ORDER_STATUS), eq(AuditLogService.ENTITY_ORDER), eq(orderId), any());
+        assertEquals(List.of(older.getId()), page.orders().stream().map(OrderDetailDto::orderId).toList());
+        assertNull(page.nextCursor());
     }
 
     @Test
-    public void shouldUpdateStatusFromPaidToDispatched() {
-        final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
+    public void shouldCapThePageSize() {
+        orderService.getAllOrders(null, null, null, null, OrderView.FULL, null, 5000);
 
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(productRepository.decrementStock(productId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
-
-        orderService.updateOrderStatus(orderId, OrderStatus.DISPATCHED);
+        Mockito.verify(orderRepository).findPageWithFilters(null, null, null, null, OrderCursor.FIRST.createdAt(),
+            OrderCursor.FIRST.orderId(), Limit.of(101));
+    }
 
-        assertEquals(OrderStatus.DISPATCHED, order.getStatus());
-        Mockito.verify(productRepository).decrementStock(productId, 5);
-        Mockito.verify(orderRepository).save(order);
+    @Test
+    public void shouldFailToListOrdersWithAnInvalidPageSizeOrCursor() {
+        assertThrows(IllegalArgumentException.class,
+            () -> orderService.getAllOrders(null, null, null, null, OrderView.FULL, null, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> orderService.getAllOrders(null, null, null, null, OrderView.FULL, "not-a-cursor", null));
+        Mockito.verify(orderRepository, Mockito.never()).findPageWithFilters(any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
-    public void shouldUpdateStatusFromPaidToRefunded() {
-        final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
+    public void shouldReportACappedTotalCount() {
+        Mockito.when(orderRepository.countWithFilters(OrderStatus.PAID, null, null, null, 10000)).thenReturn(10000L);
 
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.decrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
+        final OrderPage page = orderService.getAllOrders(OrderStatus.PAID, null, null, null, OrderView.FULL, null, null);
 
-        orderService.updateOrderStatus(orderId, OrderStatus.REFUNDED);
+        assertEquals(10000, page.totalCount());
+        assertTrue(page.totalCountCapped());
+    }
 
-        assertEquals(OrderStatus.REFUNDED, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
-        Mockito.verify(orderRepository).save(order);
+    private List<Order> findFirstPage(final OrderStatus status, final OffsetDateTime startDate, final OffsetDateTime endDate,
+        final UUID userId) {
+        return orderRepository.findPageWithFilters(status, startDate, endDate, userId, OrderCursor.FIRST.createdAt(),
+            OrderCursor.FIRST.orderId(), Limit.of(21));
+    }
+
+    private List<OrderSummary> findFirstSummaryPage(final OrderStatus status, final OffsetDateTime startDate,
+        final OffsetDateTime endDate, final UUID userId) {
+        return orderRepository.findSummaryPageWithFilters(status, startDate, endDate, userId, OrderCursor.FIRST.createdAt(),
+            OrderCursor.FIRST.orderId(), Limit.of(21));
     }
 
     @Test
-    public void shouldUpdateStatusFromDispatchedToPaid() {
+    public void shouldGetOrderByIdForAdminSuccessfully() {
         final UUID orderId = UUID.randomUUID();
         final Order order = new Order();
         order.setId(orderId);
@@ -771,107 +1029,78 @@ public class OrderServiceTest {
         order.setProduct(product);
         order.setSoldPrice(BigDecimal.valueOf(79.99));
         order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.DISPATCHED);
+        order.setStatus(OrderStatus.PAID);
+        order.setCreatedAt(OffsetDateTime.now());
 
         Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(productRepository.incrementStock(productId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
 
-        orderService.updateOrderStatus(orderId, OrderStatus.PAID);
+        final OrderDetailDto result = orderService.getOrderByIdForAdmin(orderId);
 
-        assertEquals(OrderStatus.PAID, order.getStatus());
-        Mockito.verify(productRepository).incrementStock(productId, 5);
-        Mockito.verify(orderRepository).save(order);
+        assertNotNull(result);
+        assertEquals(orderId, result.orderId());
+        assertEquals(OrderStatus.PAID, result.status());
     }
 
     @Test
-    public void shouldUpdateStatusFromRefundedToPaid() {
+    public void shouldFailGetOrderByIdForAdminWhenNotFound() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.REFUNDED);
-
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.incrementSoldCountForAdmin(flashSaleItemId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
-
-        orderService.updateOrderStatus(orderId, OrderStatus.PAID);
+        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.empty());
 
-        assertEquals(OrderStatus.PAID, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).incrementSoldCountForAdmin(flashSaleItemId, 5);
-        Mockito.verify(orderRepository).save(order);
+        assertThrows(OrderNotFoundException.class, () -> {
+            orderService.getOrderByIdForAdmin(orderId);
+        });
     }
 
+    // updateOrderStatus tests
+
     @Test
-    public void shouldUpdateStatusFromPendingToFailed() {
+    public void shouldUpdateStatusWithTheDatabaseTransition() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PENDING);
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.PAID, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.PENDING));
 
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.decrementSoldCount(flashSaleItemId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
-
-        orderService.updateOrderStatus(orderId, OrderStatus.FAILED);
+        orderService.updateOrderStatus(orderId, OrderStatus.PAID);
 
-        assertEquals(OrderStatus.FAILED, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).decrementSoldCount(flashSaleItemId, 5);
-        Mockito.verify(orderRepository).save(order);
+        // Any permitted transition, with stock adjusted and the change recorded by the database
+        Mockito.verify(orderRepository).transitionStatus(orderId, null, OrderStatus.PAID, null, true);
+        Mockito.verify(orderRepository, Mockito.never()).restartHold(any(), any());
+        Mockito.verify(orderRepository, Mockito.never()).save(any(Order.class));
+        Mockito.verify(orderStatusHistoryRepository, Mockito.never()).save(any());
+        Mockito.verify(auditLogService).recordAdminAction(AuditLogService.ACTION_UPDATE_ORDER_STATUS, AuditLogService.ENTITY_ORDER, orderId,
+            "{\"from\":\"PENDING\",\"to\":\"PAID\"}");
     }
 
     @Test
-    public void shouldUpdateStatusFromFailedToPending() {
+    public void shouldStartNewHoldWhenOrderMovesBackToPending() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.FAILED);
-
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(flashSaleItemRepository.incrementSoldCountForAdmin(flashSaleItemId, 5)).thenReturn(1);
-        Mockito.when(orderRepository.save(any(Order.class))).thenReturn(order);
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.PENDING, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.OK, OrderStatus.FAILED));
 
+        final OffsetDateTime before = OffsetDateTime.now();
         orderService.updateOrderStatus(orderId, OrderStatus.PENDING);
 
-        assertEquals(OrderStatus.PENDING, order.getStatus());
-        Mockito.verify(flashSaleItemRepository).incrementSoldCountForAdmin(flashSaleItemId, 5);
-        Mockito.verify(orderRepository).save(order);
+        final ArgumentCaptor<OffsetDateTime> expiresAt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        Mockito.verify(orderRepository).restartHold(eq(orderId), expiresAt.capture());
+        assertTrue(expiresAt.getValue().isAfter(before));
+        Mockito.verify(reservationExpiryWheel).schedule(orderId, expiresAt.getValue());
     }
 
     @Test
     public void shouldNotUpdateWhenStatusUnchanged() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setStatus(OrderStatus.PAID);
-
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.PAID, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.UNCHANGED, OrderStatus.PAID));
 
         orderService.updateOrderStatus(orderId, OrderStatus.PAID);
 
-        assertEquals(OrderStatus.PAID, order.getStatus());
-        Mockito.verify(orderRepository, Mockito.never()).save(any(Order.class));
+        Mockito.verify(auditLogService, Mockito.never()).recordAdminAction(any(), any(), any(), any());
     }
 
     @Test
     public void shouldFailUpdateStatusWhenOrderNotFound() {
         final UUID orderId = UUID.randomUUID();
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.DISPATCHED, null, true))
+            .thenReturn(new OrderTransition(OrderTransition.Outcome.NOT_FOUND, null, null, null));
 
         assertThrows(OrderNotFoundException.class, () -> {
             orderService.updateOrderStatus(orderId, OrderStatus.DISPATCHED);
@@ -881,39 +1110,29 @@ public class OrderServiceTest {
     @Test
     public void shouldFailUpdateStatusForInvalidTransition() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.DISPATCHED);
-
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.PENDING, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.INVALID_TRANSITION, OrderStatus.DISPATCHED));
 
-        assertThrows(InvalidOrderStatusException.class, () -> {
+        final InvalidOrderStatusException e = assertThrows(InvalidOrderStatusException.class, () -> {
             orderService.updateOrderStatus(orderId, OrderStatus.PENDING);
         });
+        assertEquals(OrderStatus.DISPATCHED, e.getCurrentStatus());
+        assertEquals(OrderStatus.PENDING, e.getRequiredStatus());
+        Mockito.verify(auditLogService, Mockito.never()).recordAdminAction(any(), any(), any(), any());
     }
 
     @Test
     public void shouldFailUpdateStatusWhenStockOperationFails() {
         final UUID orderId = UUID.randomUUID();
-        final Order order = new Order();
-        order.setId(orderId);
-        order.setUserId(userId);
-        order.setFlashSaleItem(flashSaleItem);
-        order.setProduct(product);
-        order.setSoldPrice(BigDecimal.valueOf(79.99));
-        order.setSoldQuantity(5);
-        order.setStatus(OrderStatus.PAID);
-
-        Mockito.when(orderRepository.findByIdForAdmin(orderId)).thenReturn(Optional.of(order));
-        Mockito.when(productRepository.decrementStock(productId, 5)).thenReturn(0); // Stock operation fails
+        Mockito.when(orderRepository.transitionStatus(orderId, null, OrderStatus.DISPATCHED, null, true))
+            .thenReturn(transition(OrderTransition.Outcome.STOCK_CONFLICT, OrderStatus.PAID));
 
         assertThrows(IllegalStateException.class, () -> {
             orderService.updateOrderStatus(orderId, OrderStatus.DISPATCHED);
         });
     }
+
+    private OrderTransition transition(final OrderTransition.Outcome outcome, final OrderStatus previousStatus) {
+        return new OrderTransition(outcome, previousStatus, userId, flashSaleItemId);
+    }
 }
@@ -0,0 +1,120 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import org.testcontainers.rabbitmq.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+import uk.co.aosd.flash.dto.ProcessPaymentResult;
+
+/**
+ * Measures the order pipeline's message transport on its own: each order is sent for processing,
+ * the processing consumer sends it on for dispatch, and the time from the first send to the
+ * dispatch consumer's call is recorded. {@link OrderService} is mocked, so only the two hand-offs
+ * are measured. Subclasses choose the transport; run with {@code -Dbenchmark=true}, and
+ * {@code -Dbenchmark.orders} to set the number of orders (default 20,000).
+ */
+abstract class OrderTransportBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderTransportBenchmark.class);
+
+    @Container
+    @ServiceConnection
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres:latest");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    @SuppressWarnings("resource")
+    public static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:latest"))
+        .withExposedPorts(6379);
+
+    @Container
+    @ServiceConnection
+    public static RabbitMQContainer rabbitMQContainer = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    @MockitoBean
+    private OrderService orderService;
+
+    @Autowired
+    private OrderMessageSender orderMessageSender;
+
+    private final Map<UUID, Long> sentAt = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> latencies = new ConcurrentHashMap<>();
+    private CountDownLatch remaining;
+
+    /**
+     * The transport name to report.
+     *
+     * @return the value of {@code app.messaging.transport}
+     */
+    abstract String transport();
+
+    @Test
+    public void shouldReportHandOffThroughputAndLatency() throws InterruptedException {
+        final int orders = Integer.getInteger("benchmark.orders", 20_000);
+        when(orderService.processOrderPayment(any())).thenAnswer(inv -> new ProcessPaymentResult(true, inv.getArgument(0)));
+        doAnswer(inv -> {
+            dispatched(inv.getArgument(0));
+            return null;
+        }).when(orderService).processDispatch(any());
+        doAnswer(inv -> {
+            final List<UUID> ids = inv.getArgument(0);
+            ids.forEach(this::dispatched);
+            return ids.size();
+        }).when(orderService).processDispatchBatch(anyList());
+
+        // Warm up connections, JIT and the journal table before measuring
+        send(Math.min(orders, 1_000));
+        final long start = System.nanoTime();
+        send(orders);
+        final long elapsed = System.nanoTime() - start;
+
+        final long[] sorted = latencies.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        log.info("{}: {} orders in {} ms ({} orders/s); hand-off latency p50 {} ms, p99 {} ms, max {} ms",
+            transport(), orders, elapsed / 1_000_000, orders * 1_000_000_000L / Math.max(1, elapsed),
+            percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    private void send(final int orders) throws InterruptedException {
+        sentAt.clear();
+        latencies.clear();
+        remaining = new CountDownLatch(orders);
+        for (int i = 0; i < orders; i++) {
+            final UUID orderId = UUID.randomUUID();
+            sentAt.put(orderId, System.nanoTime());
+            orderMessageSender.sendForProcessing(orderId);
+        }
+        assertTrue(remaining.await(5, TimeUnit.MINUTES), remaining.getCount() + " orders were not dispatched");
+    }
+
+    private void dispatched(final UUID orderId) {
+        final Long sent = sentAt.get(orderId);
+        if (sent != null && latencies.putIfAbsent(orderId, System.nanoTime() - sent) == null) {
+            remaining.countDown();
+        }
+    }
+
+    private static double percentile(final long[] sorted, final double fraction) {
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,82 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import uk.co.aosd.flash.services.ProcessedMessageStore.Claim;
+
+/**
+ * Test the processed message store.
+ */
+public class ProcessedMessageStoreTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private ProcessedMessageStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void beforeEach() {
+        redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        valueOperations = Mockito.mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        store = new ProcessedMessageStore(redisTemplate, 3600, 30);
+    }
+
+    @Test
+    public void shouldClaimNewMessageAsInProgress() {
+        when(valueOperations.setIfAbsent(eq("flash_processed_msg:order.dispatch:m1"), eq("in-progress"), eq(Duration.ofSeconds(30))))
+            .thenReturn(true);
+
+        assertEquals(Claim.CLAIMED, store.tryClaim("order.dispatch", "m1"));
+    }
+
+    @Test
+    public void shouldSkipMessageAlreadyDone() {
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get("flash_processed_msg:order.dispatch:m1")).thenReturn("done");
+
+        assertEquals(Claim.DONE, store.tryClaim("order.dispatch", "m1"));
+    }
+
+    @Test
+    public void shouldReportMessageStillInProgress() {
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get("flash_processed_msg:order.dispatch:m1")).thenReturn("in-progress");
+
+        assertEquals(Claim.IN_PROGRESS, store.tryClaim("order.dispatch", "m1"));
+    }
+
+    @Test
+    public void shouldFailOpenWhenRedisUnavailable() {
+        when(valueOperations.setIfAbsent(any(), any(), any(Duration.class)))
+            .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(Claim.CLAIMED, store.tryClaim("order.dispatch", "m1"));
+    }
+
+    @Test
+    public void shouldMarkDoneWithLongTtl() {
+        store.markDone("order.dispatch", "m1");
+
+        verify(valueOperations).set("flash_processed_msg:order.dispatch:m1", "done", Duration.ofSeconds(3600));
+    }
+
+    @Test
+    public void shouldDeleteKeyOnRelease() {
+        store.release("order.dispatch", "m1");
+
+        verify(redisTemplate).delete("flash_processed_msg:order.dispatch:m1");
+    }
+}
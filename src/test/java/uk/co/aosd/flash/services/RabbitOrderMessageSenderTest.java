@@ -1,5 +1,7 @@
 package uk.co.aosd.flash.services;
 
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 
@@ -7,22 +9,26 @@ import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import uk.co.aosd.flash.config.RabbitMQConfig;
 
 /**
- * Test OrderMessageSender.
+ * Test RabbitOrderMessageSender.
  */
-public class OrderMessageSenderTest {
+public class RabbitOrderMessageSenderTest {
 
     private RabbitTemplate rabbitTemplate;
-    private OrderMessageSender sender;
+    private RabbitOrderMessageSender sender;
 
     @BeforeEach
     public void beforeEach() {
         rabbitTemplate = Mockito.mock(RabbitTemplate.class);
-        sender = new OrderMessageSender(rabbitTemplate);
+        sender = new RabbitOrderMessageSender(rabbitTemplate);
     }
 
     @Test
@@ -32,7 +38,8 @@ public class OrderMessageSenderTest {
         verify(rabbitTemplate).convertAndSend(
             eq(RabbitMQConfig.ORDER_EXCHANGE),
             eq(RabbitMQConfig.ROUTING_KEY_PROCESSING),
-            eq(orderId.toString()));
+            eq(orderId.toString()),
+            any(MessagePostProcessor.class));
     }
 
     @Test
@@ -42,7 +49,8 @@ public class OrderMessageSenderTest {
         verify(rabbitTemplate).convertAndSend(
             eq(RabbitMQConfig.ORDER_EXCHANGE),
             eq(RabbitMQConfig.ROUTING_KEY_DISPATCH),
-            eq(orderId.toString()));
+            eq(orderId.toString()),
+            any(MessagePostProcessor.class));
     }
 
     @Test
@@ -52,7 +60,8 @@ public class OrderMessageSenderTest {
         verify(rabbitTemplate).convertAndSend(
             eq(RabbitMQConfig.ORDER_EXCHANGE),
             eq(RabbitMQConfig.ROUTING_KEY_PAYMENT_FAILED),
-            eq(orderId.toString()));
+            eq(orderId.toString()),
+            any(MessagePostProcessor.class));
     }
 
     @Test
@@ -62,6 +71,24 @@ public class OrderMessageSenderTest {
         verify(rabbitTemplate).convertAndSend(
             eq(RabbitMQConfig.ORDER_EXCHANGE),
             eq(RabbitMQConfig.ROUTING_KEY_REFUND),
-            eq(orderId.toString()));
+            eq(orderId.toString()),
+            any(MessagePostProcessor.class));
+    }
+
+    @Test
+    public void sendForPaymentFailed_shouldStampMessageIdAndEnqueueTimestamp() {
+        final UUID orderId = UUID.randomUUID();
+        sender.sendForPaymentFailed(orderId);
+
+        final ArgumentCaptor<MessagePostProcessor> captor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(
+            eq(RabbitMQConfig.ORDER_EXCHANGE),
+            eq(RabbitMQConfig.ROUTING_KEY_PAYMENT_FAILED),
+            eq(orderId.toString()),
+            captor.capture());
+
+        final Message message = captor.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertNotNull(message.getMessageProperties().getMessageId());
+        assertNotNull(message.getMessageProperties().getTimestamp());
     }
 }
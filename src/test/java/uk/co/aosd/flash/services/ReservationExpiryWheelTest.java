@@ -0,0 +1,86 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ReservationExpiryWheel.
+ */
+public class ReservationExpiryWheelTest {
+
+    private static final long TICK_MS = 100;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReservationExpiryWheel wheel;
+    private long start;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        wheel = new ReservationExpiryWheel(TICK_MS, 8, meterRegistry);
+        start = System.currentTimeMillis();
+    }
+
+    @Test
+    public void shouldReleaseHoldOnlyOnceItsExpiryTimeHasPassed() {
+        final UUID orderId = UUID.randomUUID();
+        wheel.schedule(orderId, at(start + 500));
+
+        assertTrue(wheel.advance(start + 300).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(List.of(orderId), wheel.advance(start + 600));
+        assertEquals(0, wheel.size());
+        assertEquals(0, meterRegistry.get("flash.orders.expiry.wheel.size").gauge().value());
+    }
+
+    @Test
+    public void shouldKeepHoldsMoreThanOneTurnAwayUntilTheirOwnTick() {
+        // 8 slots of 100 ms: a hold 1.5 s away shares a slot with nearer ticks
+        final UUID near = UUID.randomUUID();
+        final UUID far = UUID.randomUUID();
+        wheel.schedule(near, at(start + 300));
+        wheel.schedule(far, at(start + 1_500));
+
+        assertEquals(List.of(near), wheel.advance(start + 800));
+        assertTrue(wheel.advance(start + 1_400).isEmpty());
+        assertEquals(List.of(far), wheel.advance(start + 1_600));
+    }
+
+    @Test
+    public void shouldReleaseEverythingDueAfterALongPause() {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final UUID later = UUID.randomUUID();
+        wheel.schedule(first, at(start + 200));
+        wheel.schedule(second, at(start + 2_000));
+        wheel.schedule(later, at(start + 60_000));
+
+        final List<UUID> due = wheel.advance(start + 10_000);
+
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of(first, second)));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void shouldReleaseHoldThatIsAlreadyDueOnTheNextTick() {
+        final UUID orderId = UUID.randomUUID();
+        wheel.schedule(orderId, at(start - 5_000));
+
+        assertEquals(List.of(orderId), wheel.advance(start + TICK_MS));
+    }
+
+    private static OffsetDateTime at(final long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,90 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.repository.OrderRepository;
+
+/**
+ * Tests for ReservationExpiryWorker.
+ */
+public class ReservationExpiryWorkerTest {
+
+    private ReservationExpiryWheel wheel;
+    private OrderService orderService;
+    private OrderRepository orderRepository;
+    private ReservationExpiryWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = Mockito.mock(ReservationExpiryWheel.class);
+        orderService = Mockito.mock(OrderService.class);
+        orderRepository = Mockito.mock(OrderRepository.class);
+        worker = new ReservationExpiryWorker(wheel, orderService, orderRepository, true, 2, 30);
+    }
+
+    @Test
+    public void shouldExpireDueHoldsInBatches() {
+        final List<UUID> due = ids(5);
+        when(wheel.advance(1_000L)).thenReturn(due);
+        when(orderService.expireOrders(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        assertEquals(5, worker.expireDue(1_000L));
+
+        verify(orderService).expireOrders(due.subList(0, 2));
+        verify(orderService).expireOrders(due.subList(2, 4));
+        verify(orderService).expireOrders(due.subList(4, 5));
+    }
+
+    @Test
+    public void shouldDoNothingWhenNoHoldIsDue() {
+        when(wheel.advance(1_000L)).thenReturn(List.of());
+
+        assertEquals(0, worker.expireDue(1_000L));
+
+        verify(orderService, never()).expireOrders(anyList());
+    }
+
+    @Test
+    public void shouldSweepOverdueOrdersUntilTheBacklogIsCleared() {
+        final List<UUID> firstBatch = ids(2);
+        final List<UUID> lastBatch = ids(1);
+        when(orderRepository.findExpiredPendingOrderIds(any(OffsetDateTime.class), eq(2))).thenReturn(firstBatch, lastBatch);
+        when(orderService.expireOrders(firstBatch)).thenReturn(2);
+        when(orderService.expireOrders(lastBatch)).thenReturn(1);
+
+        assertEquals(3, worker.sweep());
+
+        verify(orderRepository, times(2)).findExpiredPendingOrderIds(any(OffsetDateTime.class), anyInt());
+    }
+
+    @Test
+    public void shouldStopSweepingWhenRemainingOrdersAreLocked() {
+        final List<UUID> locked = ids(2);
+        when(orderRepository.findExpiredPendingOrderIds(any(OffsetDateTime.class), eq(2))).thenReturn(locked);
+        when(orderService.expireOrders(locked)).thenReturn(0);
+
+        assertEquals(0, worker.sweep());
+
+        verify(orderService, times(1)).expireOrders(anyList());
+    }
+
+    private static List<UUID> ids(final int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).toList();
+    }
+}
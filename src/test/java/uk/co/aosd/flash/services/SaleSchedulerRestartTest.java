@@ -0,0 +1,77 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import org.testcontainers.rabbitmq.RabbitMQContainer;
+import org.testcontainers.utility.DockerImageName;
+import uk.co.aosd.flash.FlashSalesDemoAppApplication;
+import uk.co.aosd.flash.config.TestSecurityConfig;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Verifies that per-sale triggers survive a node restart. Each node is a separate application
+ * context on the same database, so the second start runs everything a real restart runs against
+ * the Quartz tables the first one wrote.
+ */
+@Testcontainers
+public class SaleSchedulerRestartTest {
+
+    @Container
+    public static PostgreSQLContainer postgreSQLContainer = new PostgreSQLContainer("postgres:latest");
+
+    @Container
+    @SuppressWarnings("resource")
+    public static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:latest"))
+        .withExposedPorts(6379);
+
+    @Container
+    public static RabbitMQContainer rabbitMQContainer = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    @Test
+    public void perSaleTriggersShouldSurviveANodeRestart() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+        final OffsetDateTime start = OffsetDateTime.now().plusHours(1);
+
+        try (ConfigurableApplicationContext node = startNode()) {
+            node.getBean(TransactionTemplate.class).executeWithoutResult(status ->
+                node.getBean(SaleScheduler.class).scheduleSale(saleId, start, start.plusHours(1), SaleStatus.DRAFT));
+        }
+
+        try (ConfigurableApplicationContext node = startNode()) {
+            final Scheduler scheduler = node.getBean(Scheduler.class);
+            assertNotNull(scheduler.getTrigger(SaleScheduler.triggerKey(saleId, SaleScheduler.ACTIVATE_JOB)));
+            assertNotNull(scheduler.getTrigger(SaleScheduler.triggerKey(saleId, SaleScheduler.COMPLETE_JOB)));
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(FlashSalesDemoAppApplication.class, TestSecurityConfig.class)
+            .profiles("test", "admin-service", "api-service")
+            .properties(
+                "server.port=0",
+                "management.server.port=0",
+                "spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                "spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                "spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                "spring.data.redis.host=" + redisContainer.getHost(),
+                "spring.data.redis.port=" + redisContainer.getMappedPort(6379),
+                "spring.rabbitmq.host=" + rabbitMQContainer.getHost(),
+                "spring.rabbitmq.port=" + rabbitMQContainer.getAmqpPort(),
+                "spring.rabbitmq.username=" + rabbitMQContainer.getAdminUsername(),
+                "spring.rabbitmq.password=" + rabbitMQContainer.getAdminPassword())
+            .run();
+    }
+}
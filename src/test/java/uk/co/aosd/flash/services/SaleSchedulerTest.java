@@ -0,0 +1,137 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import uk.co.aosd.flash.domain.SaleStatus;
+
+/**
+ * Tests for SaleScheduler.
+ */
+public class SaleSchedulerTest {
+
+    private Scheduler scheduler;
+    private SaleScheduler saleScheduler;
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = Mockito.mock(Scheduler.class);
+        saleScheduler = new SaleScheduler(scheduler, 10);
+    }
+
+    @Test
+    public void shouldScheduleWarmUpActivationAndCompletionForDraftSale() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+        final OffsetDateTime start = OffsetDateTime.now().plusHours(1);
+        final OffsetDateTime end = start.plusHours(2);
+
+        saleScheduler.scheduleSale(saleId, start, end, SaleStatus.DRAFT);
+
+        final Map<String, Trigger> triggers = scheduledTriggers(3);
+        assertEquals(Date.from(start.minusSeconds(10).toInstant()), triggers.get(SaleScheduler.WARM_UP_JOB).getStartTime());
+        assertEquals(Date.from(start.toInstant()), triggers.get(SaleScheduler.ACTIVATE_JOB).getStartTime());
+        assertEquals(Date.from(end.toInstant()), triggers.get(SaleScheduler.COMPLETE_JOB).getStartTime());
+        triggers.values().forEach(trigger -> {
+            assertEquals(saleId.toString(), trigger.getJobDataMap().getString(SaleScheduler.SALE_ID));
+            assertEquals(SimpleTrigger.MISFIRE_INSTRUCTION_FIRE_NOW, trigger.getMisfireInstruction());
+        });
+    }
+
+    @Test
+    public void shouldOnlyScheduleCompletionForActiveSale() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+        final OffsetDateTime end = OffsetDateTime.now().plusHours(1);
+
+        saleScheduler.scheduleSale(saleId, OffsetDateTime.now().minusHours(1), end, SaleStatus.ACTIVE);
+
+        final Map<String, Trigger> triggers = scheduledTriggers(1);
+        assertEquals(Date.from(end.toInstant()), triggers.get(SaleScheduler.COMPLETE_JOB).getStartTime());
+    }
+
+    @Test
+    public void shouldNotScheduleFinishedSales() throws SchedulerException {
+        saleScheduler.scheduleSale(UUID.randomUUID(), OffsetDateTime.now(), OffsetDateTime.now().plusHours(1), SaleStatus.CANCELLED);
+
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void shouldReplaceExistingTriggersWhenRescheduling() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+
+        saleScheduler.scheduleSale(saleId, OffsetDateTime.now().plusHours(1), OffsetDateTime.now().plusHours(2), SaleStatus.DRAFT);
+
+        verify(scheduler).unscheduleJobs(List.of(
+            SaleScheduler.triggerKey(saleId, SaleScheduler.WARM_UP_JOB),
+            SaleScheduler.triggerKey(saleId, SaleScheduler.ACTIVATE_JOB),
+            SaleScheduler.triggerKey(saleId, SaleScheduler.COMPLETE_JOB)));
+    }
+
+    @Test
+    public void shouldUnscheduleAllTriggersForSale() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+
+        saleScheduler.unscheduleSale(saleId);
+
+        verify(scheduler, times(1)).unscheduleJobs(List.of(
+            SaleScheduler.triggerKey(saleId, SaleScheduler.WARM_UP_JOB),
+            SaleScheduler.triggerKey(saleId, SaleScheduler.ACTIVATE_JOB),
+            SaleScheduler.triggerKey(saleId, SaleScheduler.COMPLETE_JOB)));
+        verify(scheduler).unscheduleJob(SaleScheduler.triggerKey(saleId, SaleScheduler.DRAW_LOTTERY_JOB));
+    }
+
+    @Test
+    public void shouldScheduleLotteryDrawAtCloseOfEntryWindow() throws SchedulerException {
+        final UUID saleId = UUID.randomUUID();
+        final OffsetDateTime drawAt = OffsetDateTime.now().plusMinutes(30);
+
+        saleScheduler.scheduleLotteryDraw(saleId, drawAt);
+
+        verify(scheduler).unscheduleJob(SaleScheduler.triggerKey(saleId, SaleScheduler.DRAW_LOTTERY_JOB));
+        final Trigger trigger = scheduledTriggers(1).get(SaleScheduler.DRAW_LOTTERY_JOB);
+        assertEquals(Date.from(drawAt.toInstant()), trigger.getStartTime());
+        assertEquals(saleId.toString(), trigger.getJobDataMap().getString(SaleScheduler.SALE_ID));
+    }
+
+    @Test
+    public void shouldNotRemoveLotteryDrawWhenReschedulingSale() throws SchedulerException {
+        saleScheduler.scheduleSale(UUID.randomUUID(), OffsetDateTime.now().plusHours(1), OffsetDateTime.now().plusHours(2), SaleStatus.DRAFT);
+
+        verify(scheduler, never()).unscheduleJob(any());
+    }
+
+    @Test
+    public void shouldThrowIllegalStateExceptionWhenSchedulerFails() throws SchedulerException {
+        doThrow(new SchedulerException("store down")).when(scheduler).scheduleJob(any(Trigger.class));
+
+        assertThrows(IllegalStateException.class, () -> saleScheduler.scheduleSale(UUID.randomUUID(),
+            OffsetDateTime.now().plusHours(1), OffsetDateTime.now().plusHours(2), SaleStatus.DRAFT));
+    }
+
+    private Map<String, Trigger> scheduledTriggers(final int expected) throws SchedulerException {
+        final ArgumentCaptor<Trigger> captor = ArgumentCaptor.forClass(Trigger.class);
+        verify(scheduler, times(expected)).scheduleJob(captor.capture());
+        return captor.getAllValues().stream().collect(Collectors.toMap(t -> t.getJobKey().getName(), Function.identity()));
+    }
+}
@@ -0,0 +1,125 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.dto.ClientActiveSaleDto;
+import uk.co.aosd.flash.repository.FlashSaleRepository;
+
+/**
+ * Tests for SaleWarmUpService.
+ */
+public class SaleWarmUpServiceTest {
+
+    private FlashSaleRepository sales;
+    private ProductsService productsService;
+    private ActiveSalesService activeSalesService;
+    private FlashSalesService flashSalesService;
+    private OrderService orderService;
+    private SimpleMeterRegistry meterRegistry;
+    private SaleWarmUpService service;
+
+    @BeforeEach
+    public void setUp() {
+        sales = Mockito.mock(FlashSaleRepository.class);
+        productsService = Mockito.mock(ProductsService.class);
+        activeSalesService = Mockito.mock(ActiveSalesService.class);
+        flashSalesService = Mockito.mock(FlashSalesService.class);
+        orderService = Mockito.mock(OrderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new SaleWarmUpService(sales, productsService, activeSalesService, flashSalesService, orderService, meterRegistry);
+    }
+
+    @Test
+    public void shouldWarmProductCachesAndDryRunOrdersForEachItem() {
+        final FlashSale sale = saleWithItems(SaleStatus.DRAFT, 2);
+        when(sales.findByIdWithItems(sale.getId())).thenReturn(Optional.of(sale));
+
+        assertEquals(2, service.warmUp(sale.getId()));
+
+        for (final FlashSaleItem item : sale.getItems()) {
+            final String productId = item.getProduct().getId().toString();
+            verify(productsService, times(1)).getProductById(productId);
+            verify(productsService, times(1)).getProductStockById(productId);
+            verify(orderService, times(1)).dryRunOrder(item.getId(), 1);
+        }
+        assertEquals(4, meterRegistry.get("flash.warmup.cache.entries").tag("cache", "products").counter().count());
+        assertEquals(1, meterRegistry.get("flash.warmup.duration").tag("stage", "sale").timer().count());
+    }
+
+    @Test
+    public void shouldSkipMissingSale() {
+        final UUID saleId = UUID.randomUUID();
+        when(sales.findByIdWithItems(saleId)).thenReturn(Optional.empty());
+
+        assertEquals(0, service.warmUp(saleId));
+
+        verify(productsService, never()).getProductById(anyString());
+    }
+
+    @Test
+    public void shouldRefillSaleAndActiveSalesCachesAfterActivation() {
+        final UUID saleId = UUID.randomUUID();
+        when(activeSalesService.getActiveSales()).thenReturn(List.of(activeItem(saleId), activeItem(saleId)));
+
+        service.refreshAfterActivation(saleId);
+
+        verify(activeSalesService, times(1)).getActiveSales();
+        verify(flashSalesService, times(1)).getFlashSaleById(saleId);
+        assertEquals(2, meterRegistry.get("flash.warmup.cache.entries").tag("cache", "activeSales").counter().count());
+    }
+
+    @Test
+    public void shouldWarmActiveAndUpcomingSalesOnStartup() {
+        final FlashSale active = saleWithItems(SaleStatus.ACTIVE, 1);
+        final FlashSale upcoming = saleWithItems(SaleStatus.DRAFT, 2);
+        when(activeSalesService.getActiveSales()).thenReturn(List.of(activeItem(active.getId())));
+        when(sales.findDraftSalesReadyToActivate(eq(SaleStatus.DRAFT), any(OffsetDateTime.class))).thenReturn(List.of(upcoming));
+        when(sales.findByIdWithItems(active.getId())).thenReturn(Optional.of(active));
+
+        assertEquals(3, service.warmUpOnStartup());
+
+        verify(flashSalesService, times(1)).getFlashSaleById(active.getId());
+        verify(flashSalesService, times(1)).getFlashSaleById(upcoming.getId());
+        // The upcoming sale was already loaded with its items
+        verify(sales, never()).findByIdWithItems(upcoming.getId());
+        assertEquals(1, meterRegistry.get("flash.warmup.duration").tag("stage", "startup").timer().count());
+    }
+
+    private FlashSale saleWithItems(final SaleStatus status, final int count) {
+        final FlashSale sale = new FlashSale(UUID.randomUUID(), "Sale", OffsetDateTime.now().plusSeconds(10),
+            OffsetDateTime.now().plusHours(1), status, new ArrayList<>());
+        for (int i = 0; i < count; i++) {
+            final Product product = new Product(UUID.randomUUID(), "Product " + i, "Description", 100, BigDecimal.TEN, 10);
+            sale.getItems().add(new FlashSaleItem(UUID.randomUUID(), sale, product, 10, 0, BigDecimal.ONE));
+        }
+        return sale;
+    }
+
+    private ClientActiveSaleDto activeItem(final UUID saleId) {
+        return new ClientActiveSaleDto(saleId.toString(), UUID.randomUUID().toString(), "Sale", OffsetDateTime.now().minusHours(1),
+            OffsetDateTime.now().plusHours(1), UUID.randomUUID().toString(), "Product", "Description", BigDecimal.TEN, 10, 0,
+            BigDecimal.ONE);
+    }
+}
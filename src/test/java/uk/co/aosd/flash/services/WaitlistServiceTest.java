@@ -0,0 +1,173 @@
+package uk.co.aosd.flash.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.co.aosd.flash.domain.FlashSale;
+import uk.co.aosd.flash.domain.FlashSaleItem;
+import uk.co.aosd.flash.domain.Product;
+import uk.co.aosd.flash.domain.SaleStatus;
+import uk.co.aosd.flash.domain.WaitlistEntry;
+import uk.co.aosd.flash.dto.CreateOrderDto;
+import uk.co.aosd.flash.dto.WaitlistEntryDto;
+import uk.co.aosd.flash.exc.DuplicateEntityException;
+import uk.co.aosd.flash.exc.SaleNotActiveException;
+import uk.co.aosd.flash.repository.FlashSaleItemRepository;
+import uk.co.aosd.flash.repository.FlashSaleLotteryRepository;
+import uk.co.aosd.flash.repository.OrderRepository;
+import uk.co.aosd.flash.repository.WaitlistEntryRepository;
+
+/**
+ * Tests for WaitlistService.
+ */
+public class WaitlistServiceTest {
+
+    private WaitlistEntryRepository waitlist;
+    private FlashSaleItemRepository flashSaleItemRepository;
+    private FlashSaleLotteryRepository lotteryRepository;
+    private OrderRepository orderRepository;
+    private OrderService orderService;
+    private ApplicationEventPublisher eventPublisher;
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private WaitlistService service;
+
+    private FlashSale sale;
+    private FlashSaleItem item;
+
+    @BeforeEach
+    public void setUp() {
+        waitlist = Mockito.mock(WaitlistEntryRepository.class);
+        flashSaleItemRepository = Mockito.mock(FlashSaleItemRepository.class);
+        lotteryRepository = Mockito.mock(FlashSaleLotteryRepository.class);
+        orderRepository = Mockito.mock(OrderRepository.class);
+        orderService = Mockito.mock(OrderService.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new WaitlistService(waitlist, flashSaleItemRepository, lotteryRepository, orderRepository, orderService, eventPublisher,
+            meterRegistry, transactionManager, 2);
+
+        sale = new FlashSale(UUID.randomUUID(), "Sale", OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusHours(1),
+            SaleStatus.ACTIVE, List.of());
+        final Product product = new Product(UUID.randomUUID(), "Product", "Description", 100, BigDecimal.TEN, 10);
+        item = new FlashSaleItem(UUID.randomUUID(), sale, product, 10, 10, BigDecimal.ONE);
+        when(flashSaleItemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+    }
+
+    @Test
+    public void shouldJoinWaitlistAndTryToAllocateAfterCommit() {
+        final UUID userId = UUID.randomUUID();
+        when(waitlist.findPosition(item.getId(), userId)).thenReturn(4L);
+
+        final WaitlistEntryDto entry = service.join(userId, new CreateOrderDto(item.getId(), 2));
+
+        assertEquals(4, entry.position());
+        verify(waitlist).upsert(item.getId(), userId, 2);
+        verify(eventPublisher).publishEvent(new StockReleasedEvent(item.getId()));
+        assertEquals(1, meterRegistry.get("flash.waitlist.joined").counter().count());
+    }
+
+    @Test
+    public void shouldNotJoinWaitlistForSaleThatIsNotActive() {
+        sale.setStatus(SaleStatus.COMPLETED);
+
+        assertThrows(SaleNotActiveException.class, () -> service.join(UUID.randomUUID(), new CreateOrderDto(item.getId(), 1)));
+        verify(waitlist, never()).upsert(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldNotJoinWaitlistForLotterySale() {
+        when(lotteryRepository.existsById(sale.getId())).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> service.join(UUID.randomUUID(), new CreateOrderDto(item.getId(), 1)));
+        verify(waitlist, never()).upsert(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldNotJoinWaitlistWhenUserAlreadyHasAnOrder() {
+        final UUID userId = UUID.randomUUID();
+        when(orderRepository.existsByUserIdAndFlashSaleItemId(userId, item.getId())).thenReturn(true);
+
+        assertThrows(DuplicateEntityException.class, () -> service.join(userId, new CreateOrderDto(item.getId(), 1)));
+        verify(waitlist, never()).upsert(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldServeWaitlistInArrivalOrderUntilTheHeadNoLongerFits() {
+        final WaitlistEntry first = entry(1);
+        final WaitlistEntry second = entry(3);
+        when(waitlist.findHeadForUpdate(item.getId(), 2)).thenReturn(List.of(first, second));
+        when(orderService.createWaitlistOrder(first.getUserId(), item.getId(), 1)).thenReturn(Optional.of(UUID.randomUUID()));
+        when(orderService.createWaitlistOrder(second.getUserId(), item.getId(), 3)).thenReturn(Optional.empty());
+
+        assertEquals(1, service.allocate(item.getId()));
+
+        verify(waitlist).deleteEntry(first.getId());
+        verify(waitlist, never()).deleteEntry(second.getId());
+        // The head did not fit, so no second batch is read
+        verify(waitlist, times(1)).findHeadForUpdate(any(), anyInt());
+        assertEquals(1, meterRegistry.get("flash.waitlist.allocated").counter().count());
+    }
+
+    @Test
+    public void shouldKeepAllocatingWhileBatchesAreFullyServed() {
+        final WaitlistEntry first = entry(1);
+        final WaitlistEntry second = entry(1);
+        final WaitlistEntry third = entry(1);
+        when(waitlist.findHeadForUpdate(item.getId(), 2)).thenReturn(List.of(first, second), List.of(third));
+        when(orderService.createWaitlistOrder(any(), eq(item.getId()), eq(1))).thenReturn(Optional.of(UUID.randomUUID()));
+
+        assertEquals(3, service.allocate(item.getId()));
+
+        verify(waitlist, times(2)).findHeadForUpdate(any(), anyInt());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    public void shouldDropWaitingBuyerWhoAlreadyHasAnOrder() {
+        final WaitlistEntry ordered = entry(1);
+        final WaitlistEntry waiting = entry(1);
+        when(waitlist.findHeadForUpdate(item.getId(), 2)).thenReturn(List.of(ordered, waiting), List.of());
+        when(orderRepository.existsByUserIdAndFlashSaleItemId(ordered.getUserId(), item.getId())).thenReturn(true);
+        when(orderService.createWaitlistOrder(waiting.getUserId(), item.getId(), 1)).thenReturn(Optional.of(UUID.randomUUID()));
+
+        assertEquals(1, service.allocate(item.getId()));
+
+        verify(waitlist).deleteEntry(ordered.getId());
+        verify(orderService, never()).createWaitlistOrder(eq(ordered.getUserId()), any(), anyInt());
+    }
+
+    @Test
+    public void shouldDropWaitlistOnceSaleHasEnded() {
+        sale.setEndTime(OffsetDateTime.now().minusMinutes(1));
+
+        assertEquals(0, service.allocate(item.getId()));
+
+        verify(waitlist).deleteByFlashSaleItemId(item.getId());
+        verify(orderService, never()).createWaitlistOrder(any(), any(), anyInt());
+    }
+
+    private WaitlistEntry entry(final int quantity) {
+        return new WaitlistEntry(UUID.randomUUID(), item.getId(), UUID.randomUUID(), quantity, OffsetDateTime.now().minusSeconds(5));
+    }
+}